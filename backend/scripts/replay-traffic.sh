@@ -0,0 +1,19 @@
+#!/usr/bin/env bash
+# Replays recorded chat traffic (traffic.record.enabled=true) against a running build and
+# compares builds. Build the jar first with mvn package, then for example:
+#   scripts/replay-traffic.sh stub --port=18090 &        # optional stand-in for OpenAI
+#   scripts/replay-traffic.sh replay --recording=traffic/traffic-20250101-120000.ndjson \
+#       --target=http://localhost:18080 --speed=2 --out=target/replay-baseline.json
+#   scripts/replay-traffic.sh compare target/replay-baseline.json target/replay-candidate.json
+# Start the target without an OpenAI key to replay against the rule-based fallback, or with
+# --openai.api.key=stub --openai.api.base-url=http://localhost:18090 to use the stub.
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+JAR=${JAR:-target/shopping-chat-agent-1.0.0.jar}
+if [[ ! -f "$JAR" ]]; then
+    echo "$JAR not found, run mvn package first" >&2
+    exit 1
+fi
+exec java -cp "$JAR" -Dloader.main=com.example.agent.traffic.TrafficReplay \
+    org.springframework.boot.loader.launch.PropertiesLauncher "$@"
@@ -0,0 +1,58 @@
+#!/usr/bin/env bash
+# Starts each available build of the backend, waits until /actuator/health is UP and reports
+# time-to-ready and resident memory (RSS). Build the artifacts first:
+#   mvn package                    -> target/shopping-chat-agent-1.0.0.jar   (jvm)
+#   mvn -Pcds package              -> target/cds/application.{jar,jsa}       (cds)
+#   mvn -Pnative native:compile    -> target/shopping-chat-agent             (native)
+set -euo pipefail
+
+cd "$(dirname "$0")/.."
+PORT=${PORT:-18080}
+TIMEOUT_SECONDS=${TIMEOUT_SECONDS:-60}
+COMMON_ARGS=(--server.port="$PORT" --analytics.enabled=false)
+
+now_ms() {
+    date +%s%3N
+}
+
+rss_mb() {
+    awk '/^VmRSS:/ { printf "%d", $2 / 1024 }' "/proc/$1/status" 2>/dev/null || echo "n/a"
+}
+
+measure() {
+    local mode=$1
+    shift
+    local start pid ready
+    start=$(now_ms)
+    "$@" "${COMMON_ARGS[@]}" >"target/startup-$mode.log" 2>&1 &
+    pid=$!
+    ready=""
+    while (( $(now_ms) - start < TIMEOUT_SECONDS * 1000 )); do
+        if curl -fs "http://localhost:$PORT/actuator/health" | grep -q '"UP"'; then
+            ready=$(( $(now_ms) - start ))
+            break
+        fi
+        if ! kill -0 "$pid" 2>/dev/null; then
+            break
+        fi
+        sleep 0.05
+    done
+    if [[ -n "$ready" ]]; then
+        printf "%-8s %10s ms %10s MB\n" "$mode" "$ready" "$(rss_mb "$pid")"
+    else
+        printf "%-8s %13s %13s  (see target/startup-%s.log)\n" "$mode" "failed" "-" "$mode"
+    fi
+    kill "$pid" 2>/dev/null || true
+    wait "$pid" 2>/dev/null || true
+}
+
+printf "%-8s %13s %13s\n" "mode" "ready" "rss"
+if [[ -f target/shopping-chat-agent-1.0.0.jar ]]; then
+    measure jvm java -jar target/shopping-chat-agent-1.0.0.jar
+fi
+if [[ -f target/cds/application.jsa ]]; then
+    measure cds java -XX:SharedArchiveFile=target/cds/application.jsa -Xlog:cds=error -jar target/cds/application.jar
+fi
+if [[ -x target/shopping-chat-agent ]]; then
+    measure native target/shopping-chat-agent
+fi
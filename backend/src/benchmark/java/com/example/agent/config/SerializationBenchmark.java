@@ -0,0 +1,112 @@
+package com.example.agent.config;
+
+import com.example.agent.ShoppingChatAgentApplication;
+import com.example.agent.model.ChatResponse;
+import com.example.agent.model.Phone;
+import com.example.agent.model.PhonePage;
+import com.example.agent.model.PhoneRecommendation;
+import com.example.agent.service.PhoneCatalogService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of chat responses and catalog pages in each format the API negotiates.
+ * The mappers and phones come from a running application context, so JSON goes through
+ * {@link PhoneJsonModule} and every format has the application's modules and settings.
+ * Payload sizes are printed once per trial. Run with {@code mvn -Pbenchmarks process-test-classes}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    // "chat": a recommendation reply; "page": a catalog page of 100 phones
+    @Param({"chat", "page"})
+    public String payload;
+
+    private ConfigurableApplicationContext context;
+    private ObjectMapper mapper;
+    private Object value;
+    private Class<?> type;
+    private byte[] encoded;
+
+    @Setup
+    public void setUp() throws IOException {
+        context = new SpringApplicationBuilder(ShoppingChatAgentApplication.class)
+                .properties("server.port=0", "openai.api.key=", "warmup.enabled=false", "analytics.enabled=false",
+                        "spring.main.banner-mode=off", "logging.level.root=warn")
+                .run();
+        // The mappers behind the HTTP converters
+        mapper = switch (format) {
+            case "cbor" -> context.getBean(TimedCborHttpMessageConverter.class).getObjectMapper();
+            case "smile" -> context.getBean(TimedSmileHttpMessageConverter.class).getObjectMapper();
+            default -> context.getBean(ObjectMapper.class);
+        };
+        // Catalog phones, which JSON writes from the pre-serialized cache
+        List<Phone> catalog = context.getBean(PhoneCatalogService.class).getAllPhones();
+        if (payload.equals("page")) {
+            List<Phone> phones = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                phones.add(catalog.get(i % catalog.size()));
+            }
+            value = new PhonePage("benchmark", phones, 1000, "YmVuY2htYXJrOjEwMA");
+            type = PhonePage.class;
+        } else {
+            ChatResponse response = new ChatResponse();
+            response.setConversationId("3f2b6c1e-8d4a-4b1f-9c7e-2a5d8e9f0b13");
+            response.setIntent("recommend");
+            response.setCatalogVersion("benchmark");
+            response.setMessage("Based on your budget and focus on camera quality, here are the phones I would look at first. "
+                    + "Each one has a strong main sensor, good low-light processing and enough battery for a full day.");
+            List<PhoneRecommendation> recommendations = new ArrayList<>();
+            for (Phone phone : catalog.subList(0, Math.min(5, catalog.size()))) {
+                recommendations.add(new PhoneRecommendation(phone, "Priced at " + phone.getPrice()
+                        + " with a " + phone.getCamera() + " camera and " + phone.getBattery() + " battery."));
+            }
+            response.setRecommendations(recommendations);
+            value = response;
+            type = ChatResponse.class;
+        }
+        encoded = mapper.writeValueAsBytes(value);
+        System.out.printf("%n%s %s: %d bytes%n", payload, format, encoded.length);
+    }
+
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return mapper.writeValueAsBytes(value);
+    }
+
+    @Benchmark
+    public Object decode() throws IOException {
+        return mapper.readValue(encoded, type);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.agent.analytics;
+
+/**
+ * What to do with an analytics event when the ring buffer is full.
+ */
+public enum DropPolicy {
+    /** Discard the event being published; queued events are kept. */
+    DROP_NEWEST,
+    /** Evict the oldest queued event to make room, retrying a bounded number of times. */
+    DROP_OLDEST
+}
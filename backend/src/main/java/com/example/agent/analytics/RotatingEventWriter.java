@@ -0,0 +1,94 @@
+package com.example.agent.analytics;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes turn events as gzip-compressed line-delimited JSON. The active file carries a
+ * {@code .part} suffix and is renamed once it is rotated, so every {@code .ndjson.gz} file in
+ * the directory is complete. Only the analytics writer thread uses an instance.
+ */
+class RotatingEventWriter implements Closeable {
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+
+    private final Path directory;
+    private final long rotateBytes;
+    private final long rotateIntervalMillis;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private OutputStream out;
+    private Path partFile;
+    private Path finalFile;
+    private long bytesWritten;
+    private long openedAt;
+    private int sequence;
+
+    RotatingEventWriter(Path directory, long rotateBytes, long rotateIntervalMillis) {
+        this.directory = directory;
+        this.rotateBytes = rotateBytes;
+        this.rotateIntervalMillis = rotateIntervalMillis;
+    }
+
+    void write(TurnEvent event) throws IOException {
+        if (out == null) {
+            open();
+        }
+        byte[] line = objectMapper.writeValueAsBytes(event);
+        out.write(line);
+        out.write('\n');
+        bytesWritten += line.length + 1;
+        if (bytesWritten >= rotateBytes) {
+            rotate();
+        }
+    }
+
+    /**
+     * Pushes buffered events to disk and rotates the file if it has been open too long.
+     */
+    void flush() throws IOException {
+        if (out == null) {
+            return;
+        }
+        if (System.currentTimeMillis() - openedAt >= rotateIntervalMillis) {
+            rotate();
+        } else {
+            out.flush();
+        }
+    }
+
+    void rotate() throws IOException {
+        if (out == null) {
+            return;
+        }
+        out.close();
+        out = null;
+        Files.move(partFile, finalFile, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    @Override
+    public void close() throws IOException {
+        rotate();
+    }
+
+    private void open() throws IOException {
+        Files.createDirectories(directory);
+        String name = "turns-" + LocalDateTime.now().format(FILE_TIMESTAMP) + "-" + (sequence++) + ".ndjson.gz";
+        finalFile = directory.resolve(name);
+        partFile = directory.resolve(name + ".part");
+        // Sync flush so a flushed file can be decompressed up to the last complete event
+        out = new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(partFile), 8192, true), 64 * 1024);
+        bytesWritten = 0;
+        openedAt = System.currentTimeMillis();
+    }
+}
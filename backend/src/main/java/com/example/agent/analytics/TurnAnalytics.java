@@ -0,0 +1,189 @@
+package com.example.agent.analytics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Per-turn analytics pipeline, off unless {@code analytics.enabled} is set. Request threads
+ * publish into a lock-free ring buffer and return immediately; a single writer thread drains it
+ * in batches into rotated compressed files. When the buffer is full events are dropped according
+ * to the configured policy and counted.
+ */
+@Component
+public class TurnAnalytics implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TurnAnalytics.class);
+
+    private static final int DROP_OLDEST_ATTEMPTS = 3;
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    private final boolean enabled;
+    private final DropPolicy dropPolicy;
+    private final int batchSize;
+    private final long flushIntervalNanos;
+    private final RingBuffer<TurnEvent> buffer;
+    private final RotatingEventWriter writer;
+
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writeErrors = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writerThread;
+
+    public TurnAnalytics(
+            @Value("${analytics.enabled:false}") boolean enabled,
+            @Value("${analytics.buffer-capacity:8192}") int capacity,
+            @Value("${analytics.drop-policy:drop-newest}") String dropPolicy,
+            @Value("${analytics.directory:analytics}") String directory,
+            @Value("${analytics.batch-size:512}") int batchSize,
+            @Value("${analytics.flush-interval-ms:1000}") long flushIntervalMillis,
+            @Value("${analytics.rotate-bytes:67108864}") long rotateBytes,
+            @Value("${analytics.rotate-interval-minutes:60}") long rotateIntervalMinutes) {
+        this.enabled = enabled;
+        this.dropPolicy = DropPolicy.valueOf(dropPolicy.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+        this.batchSize = batchSize;
+        this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(flushIntervalMillis);
+        this.buffer = new RingBuffer<>(capacity);
+        this.writer = new RotatingEventWriter(Path.of(directory), rotateBytes,
+                TimeUnit.MINUTES.toMillis(rotateIntervalMinutes));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        running = true;
+        writerThread = new Thread(this::runWriter, "turn-analytics-writer");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Publishes an event without blocking. Safe to call from any number of threads.
+     */
+    public void publish(TurnEvent event) {
+        if (!enabled) {
+            return;
+        }
+        if (buffer.offer(event)) {
+            published.incrementAndGet();
+            return;
+        }
+        if (dropPolicy == DropPolicy.DROP_OLDEST) {
+            for (int attempt = 0; attempt < DROP_OLDEST_ATTEMPTS; attempt++) {
+                if (buffer.poll() != null) {
+                    dropped.incrementAndGet();
+                }
+                if (buffer.offer(event)) {
+                    published.incrementAndGet();
+                    return;
+                }
+            }
+        }
+        dropped.incrementAndGet();
+    }
+
+    public long getPublished() {
+        return published.get();
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    private void runWriter() {
+        long lastFlush = System.nanoTime();
+        while (running) {
+            int drained = drainBatch();
+            long now = System.nanoTime();
+            if (now - lastFlush >= flushIntervalNanos) {
+                flush();
+                lastFlush = now;
+            }
+            if (drained == 0) {
+                LockSupport.parkNanos(IDLE_PARK_NANOS);
+            }
+        }
+        while (drainBatch() > 0) {
+            // Write out whatever was published before shutdown
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            writeErrors.incrementAndGet();
+            logger.warn("Failed to close analytics file: {}", e.getMessage());
+        }
+    }
+
+    private int drainBatch() {
+        return buffer.drain(event -> {
+            try {
+                writer.write(event);
+                written.incrementAndGet();
+            } catch (IOException e) {
+                writeErrors.incrementAndGet();
+                logger.warn("Failed to write analytics event: {}", e.getMessage());
+            }
+        }, batchSize);
+    }
+
+    private void flush() {
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            writeErrors.incrementAndGet();
+            logger.warn("Failed to flush analytics file: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("analytics.buffer.size", buffer, RingBuffer::size)
+                .description("Turn events waiting to be written")
+                .register(registry);
+        FunctionCounter.builder("analytics.events.published", published, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("analytics.events.dropped", dropped, AtomicLong::get)
+                .tag("policy", dropPolicy.name().toLowerCase(Locale.ROOT))
+                .register(registry);
+        FunctionCounter.builder("analytics.events.written", written, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("analytics.write.errors", writeErrors, AtomicLong::get)
+                .register(registry);
+    }
+}
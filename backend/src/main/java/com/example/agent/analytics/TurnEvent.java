@@ -0,0 +1,90 @@
+package com.example.agent.analytics;
+
+import java.util.List;
+
+/**
+ * One chat turn as recorded for analytics. Built once on the request path and never mutated,
+ * so it can be handed to the writer thread without copying.
+ */
+public final class TurnEvent {
+    private final long timestamp;
+    private final String conversationId;
+    private final String intent;
+    private final List<String> retrievedPhoneIds;
+    private final List<String> recommendedPhoneIds;
+    private final boolean fallback;
+    private final long retrievalMicros;
+    private final long generationMicros;
+    private final long totalMicros;
+    // Prompt size and the part repeating the previous prompt; zero when the model was not called
+    private final long promptChars;
+    private final long sharedPrefixChars;
+    // Reply tier chosen by the router: template, fast_model or full_model
+    private final String tier;
+
+    public TurnEvent(long timestamp, String conversationId, String intent,
+                     List<String> retrievedPhoneIds, List<String> recommendedPhoneIds,
+                     boolean fallback, long retrievalMicros, long generationMicros, long totalMicros,
+                     long promptChars, long sharedPrefixChars, String tier) {
+        this.timestamp = timestamp;
+        this.conversationId = conversationId;
+        this.intent = intent;
+        this.retrievedPhoneIds = retrievedPhoneIds;
+        this.recommendedPhoneIds = recommendedPhoneIds;
+        this.fallback = fallback;
+        this.retrievalMicros = retrievalMicros;
+        this.generationMicros = generationMicros;
+        this.totalMicros = totalMicros;
+        this.promptChars = promptChars;
+        this.sharedPrefixChars = sharedPrefixChars;
+        this.tier = tier;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public String getIntent() {
+        return intent;
+    }
+
+    public List<String> getRetrievedPhoneIds() {
+        return retrievedPhoneIds;
+    }
+
+    public List<String> getRecommendedPhoneIds() {
+        return recommendedPhoneIds;
+    }
+
+    public boolean isFallback() {
+        return fallback;
+    }
+
+    public long getRetrievalMicros() {
+        return retrievalMicros;
+    }
+
+    public long getGenerationMicros() {
+        return generationMicros;
+    }
+
+    public long getTotalMicros() {
+        return totalMicros;
+    }
+
+    public long getPromptChars() {
+        return promptChars;
+    }
+
+    public long getSharedPrefixChars() {
+        return sharedPrefixChars;
+    }
+
+    public String getTier() {
+        return tier;
+    }
+}
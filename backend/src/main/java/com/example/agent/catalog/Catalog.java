@@ -0,0 +1,187 @@
+package com.example.agent.catalog;
+
+import com.example.agent.model.Phone;
+
+import java.util.*;
+
+/**
+ * Immutable snapshot of a loaded catalog together with its indexes. A new instance is built
+ * whenever the catalog is (re)loaded, so readers never see a half-updated catalog.
+ * <p>
+ * Brands, features and processors are dictionary-encoded: each phone refers to them by integer
+ * codes from dictionaries shared with the catalogs loaded alongside it, and the brand and
+ * feature indexes are keyed by code.
+ */
+public final class Catalog {
+
+    public static final String DEFAULT_NAME = "default";
+
+    private static final int[] NO_CODES = new int[0];
+
+    private final String name;
+    private final String version;
+    private final List<Phone> phones;
+    private final CatalogDictionaries dictionaries;
+    private final int[] brandCodes;
+    private final int[] processorCodes;
+    private final int[][] featureCodes;
+    private final SpecColumns specColumns;
+    private final Map<Integer, BitSet> brandIndex;
+    private final Map<Integer, BitSet> featureIndex;
+    private final Map<String, Integer> ordinalById;
+
+    public Catalog(String version, List<Phone> phones) {
+        this(DEFAULT_NAME, version, phones, new CatalogDictionaries());
+    }
+
+    public Catalog(String name, String version, List<Phone> phones, CatalogDictionaries dictionaries) {
+        this.name = name;
+        this.version = version;
+        this.phones = Collections.unmodifiableList(new ArrayList<>(phones));
+        this.dictionaries = dictionaries;
+        this.specColumns = SpecColumns.build(this.phones);
+        int size = this.phones.size();
+        this.brandCodes = new int[size];
+        this.processorCodes = new int[size];
+        this.featureCodes = new int[size][];
+        this.brandIndex = new HashMap<>();
+        this.featureIndex = new HashMap<>();
+        this.ordinalById = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            Phone phone = this.phones.get(i);
+            if (phone.getId() != null) {
+                ordinalById.put(phone.getId(), i);
+            }
+            brandCodes[i] = dictionaries.brands().encode(phone.getBrand());
+            if (brandCodes[i] != Dictionary.MISSING) {
+                brandIndex.computeIfAbsent(brandCodes[i], k -> new BitSet()).set(i);
+            }
+            processorCodes[i] = dictionaries.processors().encode(phone.getProcessor());
+            featureCodes[i] = NO_CODES;
+            if (phone.getFeatures() != null) {
+                featureCodes[i] = new int[phone.getFeatures().size()];
+                for (int f = 0; f < featureCodes[i].length; f++) {
+                    featureCodes[i][f] = dictionaries.features().encode(phone.getFeatures().get(f));
+                    featureIndex.computeIfAbsent(featureCodes[i][f], k -> new BitSet()).set(i);
+                }
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public CatalogDictionaries getDictionaries() {
+        return dictionaries;
+    }
+
+    public int brandCode(int ordinal) {
+        return brandCodes[ordinal];
+    }
+
+    public int processorCode(int ordinal) {
+        return processorCodes[ordinal];
+    }
+
+    /**
+     * Feature codes of the phone at the given ordinal. The array is shared; do not modify it.
+     */
+    public int[] featureCodes(int ordinal) {
+        return featureCodes[ordinal];
+    }
+
+    public List<Phone> getPhones() {
+        return phones;
+    }
+
+    public int size() {
+        return phones.size();
+    }
+
+    public Phone findById(String id) {
+        Integer ordinal = id != null ? ordinalById.get(id) : null;
+        return ordinal != null ? phones.get(ordinal) : null;
+    }
+
+    /**
+     * Returns the ordinal of a phone in this catalog, or -1 if it belongs to another catalog.
+     */
+    public int ordinalOf(Phone phone) {
+        Integer ordinal = phone.getId() != null ? ordinalById.get(phone.getId()) : null;
+        return ordinal != null && phones.get(ordinal) == phone ? ordinal : -1;
+    }
+
+    public SpecColumns getSpecColumns() {
+        return specColumns;
+    }
+
+    /**
+     * Evaluates a structured query against the indexes and returns matching ordinals in
+     * catalog order.
+     */
+    public BitSet match(CatalogQuery query) {
+        BitSet result = all();
+        if (query.getBrand() != null) {
+            result.and(brandBitmap(query.getBrand()));
+        }
+        if (query.getFeature() != null) {
+            BitSet feature = featureIndex.get(dictionaries.features().lookup(query.getFeature()));
+            result.and(feature != null ? feature : new BitSet());
+        }
+        for (SpecRange range : query.getRanges()) {
+            result.and(rangeBitmap(range));
+        }
+        return result;
+    }
+
+    public BitSet all() {
+        BitSet result = new BitSet(phones.size());
+        result.set(0, phones.size());
+        return result;
+    }
+
+    public BitSet brandBitmap(String brand) {
+        BitSet bitmap = brandIndex.get(dictionaries.brands().lookup(brand));
+        return bitmap != null ? (BitSet) bitmap.clone() : new BitSet();
+    }
+
+    /**
+     * Phones having any feature that contains the given term, e.g. "charging" matches
+     * "fast charging".
+     */
+    public BitSet featureBitmap(String term) {
+        String normalized = normalize(term);
+        BitSet result = new BitSet(phones.size());
+        for (Map.Entry<Integer, BitSet> entry : featureIndex.entrySet()) {
+            if (normalize(dictionaries.features().decode(entry.getKey())).contains(normalized)) {
+                result.or(entry.getValue());
+            }
+        }
+        return result;
+    }
+
+    public BitSet rangeBitmap(SpecRange range) {
+        BitSet result = new BitSet(phones.size());
+        for (int ordinal : specColumns.column(range.getSpec()).range(range.getMin(), range.getMax())) {
+            result.set(ordinal);
+        }
+        return result;
+    }
+
+    public List<Phone> select(BitSet ordinals) {
+        List<Phone> result = new ArrayList<>(ordinals.cardinality());
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            result.add(phones.get(i));
+        }
+        return result;
+    }
+
+    static String normalize(String value) {
+        return value.trim().toLowerCase(Locale.ROOT);
+    }
+}
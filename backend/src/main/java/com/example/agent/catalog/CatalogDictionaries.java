@@ -0,0 +1,63 @@
+package com.example.agent.catalog;
+
+import com.example.agent.model.Phone;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Dictionaries for the string attributes that repeat across SKUs. One instance is built per
+ * load and shared by the catalogs loaded together, so a brand or feature in several regional
+ * catalogs is stored once and has the same code in each; the next load starts afresh, so
+ * values that have left every catalog do not pile up.
+ */
+public final class CatalogDictionaries {
+
+    private final Dictionary brands = new Dictionary();
+    private final Dictionary features = new Dictionary();
+    private final Dictionary processors = new Dictionary();
+
+    public Dictionary brands() {
+        return brands;
+    }
+
+    public Dictionary features() {
+        return features;
+    }
+
+    public Dictionary processors() {
+        return processors;
+    }
+
+    /**
+     * Replaces the phone's brand, feature and processor strings with shared instances of the
+     * same spelling, so duplicates parsed from JSON can be collected.
+     *
+     * @return the number of string references that now point at a shared value
+     */
+    public int intern(Phone phone) {
+        int interned = 0;
+        if (phone.getBrand() != null) {
+            phone.setBrand(brands.intern(phone.getBrand()));
+            interned++;
+        }
+        if (phone.getProcessor() != null) {
+            phone.setProcessor(processors.intern(phone.getProcessor()));
+            interned++;
+        }
+        if (phone.getFeatures() != null) {
+            List<String> shared = new ArrayList<>(phone.getFeatures().size());
+            for (String feature : phone.getFeatures()) {
+                shared.add(features.intern(feature));
+            }
+            phone.setFeatures(Collections.unmodifiableList(shared));
+            interned += shared.size();
+        }
+        return interned;
+    }
+
+    public int size() {
+        return brands.size() + features.size() + processors.size();
+    }
+}
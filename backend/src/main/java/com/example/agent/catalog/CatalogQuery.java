@@ -0,0 +1,110 @@
+package com.example.agent.catalog;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A structured catalog filter. Ranges are kept in a canonical order so that equal filters
+ * produce equal {@link #key()}s regardless of how they were built.
+ */
+public final class CatalogQuery {
+
+    private final String brand;
+    private final String feature;
+    private final List<SpecRange> ranges;
+
+    private CatalogQuery(Builder builder) {
+        this.brand = builder.brand;
+        this.feature = builder.feature;
+        List<SpecRange> sorted = new ArrayList<>(builder.ranges);
+        sorted.sort(Comparator.comparing(SpecRange::getSpec)
+                .thenComparingDouble(SpecRange::getMin)
+                .thenComparingDouble(SpecRange::getMax));
+        this.ranges = List.copyOf(sorted);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public String getBrand() {
+        return brand;
+    }
+
+    public String getFeature() {
+        return feature;
+    }
+
+    public List<SpecRange> getRanges() {
+        return ranges;
+    }
+
+    /**
+     * Canonical string form, suitable as a cache key.
+     */
+    public String key() {
+        StringBuilder key = new StringBuilder();
+        key.append("brand=").append(brand == null ? "" : Catalog.normalize(brand));
+        key.append("&feature=").append(feature == null ? "" : Catalog.normalize(feature));
+        for (SpecRange range : ranges) {
+            key.append('&').append(range);
+        }
+        return key.toString();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof CatalogQuery && key().equals(((CatalogQuery) o).key());
+    }
+
+    @Override
+    public int hashCode() {
+        return key().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return key();
+    }
+
+    public static class Builder {
+        private String brand;
+        private String feature;
+        private final List<SpecRange> ranges = new ArrayList<>();
+
+        public Builder brand(String brand) {
+            this.brand = blankToNull(brand);
+            return this;
+        }
+
+        public Builder feature(String feature) {
+            this.feature = blankToNull(feature);
+            return this;
+        }
+
+        public Builder range(SpecRange range) {
+            if (range != null) {
+                ranges.add(range);
+            }
+            return this;
+        }
+
+        public Builder atLeast(Spec spec, Number min) {
+            return min == null ? this : range(SpecRange.atLeast(spec, min.doubleValue()));
+        }
+
+        public Builder atMost(Spec spec, Number max) {
+            return max == null ? this : range(SpecRange.atMost(spec, max.doubleValue()));
+        }
+
+        public CatalogQuery build() {
+            return new CatalogQuery(this);
+        }
+
+        private static String blankToNull(String value) {
+            return value == null || value.isBlank() ? null : value.trim().toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.agent.catalog;
+
+import java.util.Map;
+
+/**
+ * Published by the catalog service after its catalogs were (re)loaded, so holders of long-lived
+ * state such as open chat connections can react to new catalog versions.
+ */
+public class CatalogsReloadedEvent {
+
+    private final Map<String, Catalog> catalogs;
+
+    public CatalogsReloadedEvent(Map<String, Catalog> catalogs) {
+        this.catalogs = catalogs;
+    }
+
+    public Map<String, Catalog> getCatalogs() {
+        return catalogs;
+    }
+}
@@ -0,0 +1,79 @@
+package com.example.agent.catalog;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only dictionary assigning dense integer codes to strings. Codes ignore case and
+ * surrounding whitespace, and decode to the first spelling seen; that spelling is meant for
+ * matching, not for display. {@link #intern(String)} separately shares instances of each exact
+ * spelling, so the strings phones return are the ones their source had.
+ */
+public final class Dictionary {
+
+    public static final int MISSING = -1;
+
+    private final Map<String, Integer> codes = new HashMap<>();
+    private final Map<String, String> instances = new HashMap<>();
+    private volatile String[] values = new String[16];
+    private volatile int size;
+
+    /**
+     * Returns the code for a value, adding it if it has not been seen. {@code null} maps to
+     * {@link #MISSING}.
+     */
+    public synchronized int encode(String value) {
+        if (value == null) {
+            return MISSING;
+        }
+        String key = Catalog.normalize(value);
+        Integer code = codes.get(key);
+        if (code != null) {
+            return code;
+        }
+        int next = size;
+        String[] current = values;
+        if (next == current.length) {
+            current = Arrays.copyOf(current, current.length * 2);
+        }
+        current[next] = value.trim();
+        codes.put(key, next);
+        values = current;
+        size = next + 1;
+        return next;
+    }
+
+    /**
+     * Returns the code for a value without adding it, or {@link #MISSING}.
+     */
+    public synchronized int lookup(String value) {
+        if (value == null) {
+            return MISSING;
+        }
+        Integer code = codes.get(Catalog.normalize(value));
+        return code != null ? code : MISSING;
+    }
+
+    public String decode(int code) {
+        if (code == MISSING) {
+            return null;
+        }
+        // size is written after values, so reading it first makes the slot visible
+        if (code < 0 || code >= size) {
+            throw new IllegalArgumentException("Unknown dictionary code: " + code);
+        }
+        return values[code];
+    }
+
+    /**
+     * Returns the shared instance equal to the given value, case and whitespace included.
+     */
+    public synchronized String intern(String value) {
+        return instances.computeIfAbsent(value, v -> v);
+    }
+
+    public int size() {
+        return size;
+    }
+}
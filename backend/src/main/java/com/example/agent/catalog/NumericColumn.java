@@ -0,0 +1,88 @@
+package com.example.agent.catalog;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.stream.IntStream;
+
+/**
+ * A primitive column of one spec across the catalog, with a sorted index for range queries.
+ * Values are addressed by catalog ordinal; missing values are stored as NaN and never match.
+ */
+public final class NumericColumn {
+
+    private final double[] values;
+    private final int[] sortedOrdinals;
+    private final double[] sortedValues;
+
+    public NumericColumn(double[] values) {
+        this.values = values.clone();
+        this.sortedOrdinals = IntStream.range(0, values.length)
+                .filter(i -> !Double.isNaN(values[i]))
+                .boxed()
+                .sorted(Comparator.comparingDouble((Integer i) -> values[i]).thenComparingInt(i -> i))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.sortedValues = new double[sortedOrdinals.length];
+        for (int i = 0; i < sortedOrdinals.length; i++) {
+            sortedValues[i] = values[sortedOrdinals[i]];
+        }
+    }
+
+    public double get(int ordinal) {
+        return values[ordinal];
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns the ordinals whose value lies in {@code [min, max]}, ordered by value ascending.
+     */
+    public int[] range(double min, double max) {
+        if (min > max) {
+            return new int[0];
+        }
+        int from = lowerBound(min);
+        int to = upperBound(max);
+        return from >= to ? new int[0] : Arrays.copyOfRange(sortedOrdinals, from, to);
+    }
+
+    public double min() {
+        return sortedValues.length == 0 ? Double.NaN : sortedValues[0];
+    }
+
+    public double max() {
+        return sortedValues.length == 0 ? Double.NaN : sortedValues[sortedValues.length - 1];
+    }
+
+    // First index with value >= key
+    private int lowerBound(double key) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedValues[mid] < key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index with value > key
+    private int upperBound(double key) {
+        int low = 0;
+        int high = sortedValues.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sortedValues[mid] <= key) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
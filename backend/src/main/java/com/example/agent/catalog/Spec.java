@@ -0,0 +1,89 @@
+package com.example.agent.catalog;
+
+import com.example.agent.model.Phone;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Numeric phone specifications that are parsed once at catalog load into primitive columns.
+ */
+public enum Spec {
+    PRICE("price", "₹", Preference.LOWER),
+    CAMERA_MP("camera", "MP", Preference.HIGHER),
+    BATTERY_MAH("battery", "mAh", Preference.HIGHER),
+    // Screen size is a matter of taste, so comparisons name no winner for it
+    DISPLAY_INCHES("display", "in", Preference.NONE),
+    RAM_GB("ram", "GB", Preference.HIGHER),
+    STORAGE_GB("storage", "GB", Preference.HIGHER);
+
+    /**
+     * Which direction of a spec is better when comparing phones.
+     */
+    public enum Preference {
+        HIGHER, LOWER, NONE
+    }
+
+    private static final Pattern CAMERA = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*MP", Pattern.CASE_INSENSITIVE);
+    private static final Pattern BATTERY = Pattern.compile("(\\d+)\\s*mAh", Pattern.CASE_INSENSITIVE);
+    private static final Pattern DISPLAY = Pattern.compile("(\\d+(?:\\.\\d+)?)\\s*(?:inch|in\\b|\")", Pattern.CASE_INSENSITIVE);
+
+    private final String label;
+    private final String unit;
+    private final Preference preference;
+
+    Spec(String label, String unit, Preference preference) {
+        this.label = label;
+        this.unit = unit;
+        this.preference = preference;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public Preference getPreference() {
+        return preference;
+    }
+
+    /**
+     * Extracts this spec from a phone, or {@link Double#NaN} when it is missing or unparseable.
+     */
+    public double extract(Phone phone) {
+        switch (this) {
+            case PRICE:
+                return phone.getPrice() != null ? phone.getPrice() : Double.NaN;
+            case CAMERA_MP:
+                return parse(CAMERA, phone.getCamera());
+            case BATTERY_MAH:
+                return parse(BATTERY, phone.getBattery());
+            case DISPLAY_INCHES:
+                return parse(DISPLAY, phone.getDisplay());
+            case RAM_GB:
+                return phone.getRam() != null ? phone.getRam() : Double.NaN;
+            case STORAGE_GB:
+                return phone.getStorage() != null ? phone.getStorage() : Double.NaN;
+            default:
+                return Double.NaN;
+        }
+    }
+
+    private static double parse(Pattern pattern, String value) {
+        if (value == null) {
+            return Double.NaN;
+        }
+        Matcher matcher = pattern.matcher(value);
+        if (matcher.find()) {
+            try {
+                return Double.parseDouble(matcher.group(1));
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        return Double.NaN;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.agent.catalog;
+
+import com.example.agent.model.Phone;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * All numeric spec columns of one catalog, parsed once when the catalog is loaded.
+ */
+public final class SpecColumns {
+
+    private final Map<Spec, NumericColumn> columns;
+    private final int size;
+
+    private SpecColumns(Map<Spec, NumericColumn> columns, int size) {
+        this.columns = columns;
+        this.size = size;
+    }
+
+    public static SpecColumns build(List<Phone> phones) {
+        Map<Spec, NumericColumn> columns = new EnumMap<>(Spec.class);
+        for (Spec spec : Spec.values()) {
+            double[] values = new double[phones.size()];
+            for (int i = 0; i < phones.size(); i++) {
+                values[i] = spec.extract(phones.get(i));
+            }
+            columns.put(spec, new NumericColumn(values));
+        }
+        return new SpecColumns(columns, phones.size());
+    }
+
+    public NumericColumn column(Spec spec) {
+        return columns.get(spec);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns ordinals matching every range, ordered by the first range's spec ascending.
+     */
+    public int[] matchAll(List<SpecRange> ranges) {
+        if (ranges.isEmpty()) {
+            return new int[0];
+        }
+        SpecRange first = ranges.get(0);
+        int[] candidates = column(first.getSpec()).range(first.getMin(), first.getMax());
+        if (ranges.size() == 1) {
+            return candidates;
+        }
+        BitSet allowed = new BitSet(size);
+        allowed.set(0, size);
+        for (int i = 1; i < ranges.size(); i++) {
+            SpecRange range = ranges.get(i);
+            BitSet matching = new BitSet(size);
+            for (int ordinal : column(range.getSpec()).range(range.getMin(), range.getMax())) {
+                matching.set(ordinal);
+            }
+            allowed.and(matching);
+        }
+        return Arrays.stream(candidates).filter(allowed::get).toArray();
+    }
+}
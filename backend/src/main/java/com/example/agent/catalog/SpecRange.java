@@ -0,0 +1,62 @@
+package com.example.agent.catalog;
+
+/**
+ * An inclusive range constraint on a single numeric spec.
+ */
+public final class SpecRange {
+
+    private final Spec spec;
+    private final double min;
+    private final double max;
+
+    public SpecRange(Spec spec, double min, double max) {
+        this.spec = spec;
+        this.min = min;
+        this.max = max;
+    }
+
+    public static SpecRange atLeast(Spec spec, double min) {
+        return new SpecRange(spec, min, Double.POSITIVE_INFINITY);
+    }
+
+    public static SpecRange atMost(Spec spec, double max) {
+        return new SpecRange(spec, Double.NEGATIVE_INFINITY, max);
+    }
+
+    public Spec getSpec() {
+        return spec;
+    }
+
+    public double getMin() {
+        return min;
+    }
+
+    public double getMax() {
+        return max;
+    }
+
+    public boolean matches(double value) {
+        return !Double.isNaN(value) && value >= min && value <= max;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof SpecRange)) return false;
+        SpecRange other = (SpecRange) o;
+        return spec == other.spec && Double.compare(min, other.min) == 0 && Double.compare(max, other.max) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        int result = spec.hashCode();
+        result = 31 * result + Double.hashCode(min);
+        result = 31 * result + Double.hashCode(max);
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return spec.getLabel() + "[" + min + ", " + max + "]";
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.agent.concurrency;
+
+import com.example.agent.exception.ServiceOverloadedException;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.InterruptedIOException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gradient-style adaptive concurrency limit for the chat endpoint. The limit follows the ratio
+ * of long-term to short-term latency: when queueing pushes recent latency above the baseline the
+ * limit shrinks proportionally, otherwise it grows by roughly the square root of the limit.
+ * Part of the limit is held back for conversations that already exist.
+ * <p>
+ * Requests over the limit can be degraded to the rule-based fallback instead of rejected; those
+ * take permits from a small fixed pool of their own, so that degrading still sheds load.
+ */
+@Component
+public class AdaptiveConcurrencyLimiter implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final double smoothing;
+    private final double reservedForExisting;
+    private final int degradedLimit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong rejectedNew = new AtomicLong();
+    private final AtomicLong rejectedExisting = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicInteger degradedInFlight = new AtomicInteger();
+    private final AtomicLong degraded = new AtomicLong();
+    private final AtomicLong rejectedDegraded = new AtomicLong();
+
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double shortRttNanos = Double.NaN;
+    private double longRttNanos = Double.NaN;
+
+    public AdaptiveConcurrencyLimiter(
+            @Value("${chat.admission.initial-limit:20}") int initialLimit,
+            @Value("${chat.admission.min-limit:2}") int minLimit,
+            @Value("${chat.admission.max-limit:200}") int maxLimit,
+            @Value("${chat.admission.latency-tolerance:1.5}") double tolerance,
+            @Value("${chat.admission.smoothing:0.2}") double smoothing,
+            @Value("${chat.admission.reserved-for-existing:0.2}") double reservedForExisting,
+            @Value("${chat.admission.degraded-limit:16}") int degradedLimit) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Invalid concurrency limit bounds: " + minLimit + ".." + maxLimit);
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.smoothing = smoothing;
+        this.reservedForExisting = reservedForExisting;
+        this.degradedLimit = Math.max(0, degradedLimit);
+        this.limit = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+        this.estimatedLimit = this.limit;
+    }
+
+    /**
+     * Tries to admit a request. New conversations may only use the share of the limit that is
+     * not reserved for existing ones, so they are shed first.
+     *
+     * @return a permit that must be released, or {@code null} if the request should be shed
+     */
+    public Permit tryAcquire(boolean existingConversation) {
+        int currentLimit = limit;
+        int allowed = existingConversation
+                ? currentLimit
+                : Math.max(1, (int) Math.floor(currentLimit * (1.0 - reservedForExisting)));
+        while (true) {
+            int current = inFlight.get();
+            if (current >= allowed) {
+                (existingConversation ? rejectedExisting : rejectedNew).incrementAndGet();
+                return null;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                admitted.incrementAndGet();
+                return new Permit(System.nanoTime(), current + 1, false);
+            }
+        }
+    }
+
+    /**
+     * Tries to admit a request that was over the limit to the degraded (rule-based) path.
+     * Degraded requests do not feed the limit; release their permits with {@link Permit#ignore()}.
+     *
+     * @return a permit that must be released, or {@code null} if the request should be rejected
+     */
+    public Permit tryAcquireDegraded() {
+        while (true) {
+            int current = degradedInFlight.get();
+            if (current >= degradedLimit) {
+                rejectedDegraded.incrementAndGet();
+                return null;
+            }
+            if (degradedInFlight.compareAndSet(current, current + 1)) {
+                degraded.incrementAndGet();
+                return new Permit(System.nanoTime(), current + 1, true);
+            }
+        }
+    }
+
+    /**
+     * Whether a request failure is a sign of overload (a timeout or a rejected task) rather than,
+     * say, a client error, and should shrink the limit.
+     */
+    public static boolean isOverload(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException || cause instanceof InterruptedIOException
+                    || cause instanceof RejectedExecutionException || cause instanceof ServiceOverloadedException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public int getDegradedInFlight() {
+        return degradedInFlight.get();
+    }
+
+    private void onSample(long rttNanos, int inFlightAtStart, boolean dropped) {
+        synchronized (this) {
+            if (dropped) {
+                // Timeouts and upstream failures are a strong overload signal
+                estimatedLimit = Math.max(minLimit, estimatedLimit * 0.9);
+            } else {
+                if (Double.isNaN(longRttNanos)) {
+                    shortRttNanos = rttNanos;
+                    longRttNanos = rttNanos;
+                }
+                shortRttNanos += (rttNanos - shortRttNanos) * 0.1;
+                longRttNanos += (rttNanos - longRttNanos) * 0.005;
+                // After a sustained drop, pull the baseline down so the limit can recover
+                if (longRttNanos / shortRttNanos > 2.0) {
+                    longRttNanos *= 0.95;
+                }
+                // Don't grow the limit when it isn't being used
+                if (inFlightAtStart < estimatedLimit / 2) {
+                    return;
+                }
+                double gradient = Math.max(0.5, Math.min(1.0, tolerance * longRttNanos / shortRttNanos));
+                double target = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+                estimatedLimit = estimatedLimit * (1 - smoothing) + target * smoothing;
+            }
+            estimatedLimit = Math.max(minLimit, Math.min(maxLimit, estimatedLimit));
+            int newLimit = (int) estimatedLimit;
+            if (newLimit != limit) {
+                logger.debug("Concurrency limit {} -> {} (short rtt {} ms, long rtt {} ms)", limit, newLimit,
+                        (long) (shortRttNanos / 1_000_000), (long) (longRttNanos / 1_000_000));
+                limit = newLimit;
+            }
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.admission.limit", this, AdaptiveConcurrencyLimiter::getLimit)
+                .description("Current adaptive concurrency limit for /api/chat")
+                .register(registry);
+        Gauge.builder("chat.admission.in_flight", this, AdaptiveConcurrencyLimiter::getInFlight)
+                .register(registry);
+        FunctionCounter.builder("chat.admission.admitted", admitted, AtomicLong::get)
+                .register(registry);
+        FunctionCounter.builder("chat.admission.rejected", rejectedNew, AtomicLong::get)
+                .tag("conversation", "new")
+                .register(registry);
+        FunctionCounter.builder("chat.admission.rejected", rejectedExisting, AtomicLong::get)
+                .tag("conversation", "existing")
+                .register(registry);
+        FunctionCounter.builder("chat.admission.degraded", degraded, AtomicLong::get)
+                .description("Requests over the limit answered by the rule-based fallback")
+                .register(registry);
+        FunctionCounter.builder("chat.admission.rejected", rejectedDegraded, AtomicLong::get)
+                .tag("conversation", "degraded")
+                .register(registry);
+    }
+
+    public final class Permit {
+        private final long startNanos;
+        private final int inFlightAtStart;
+        private final boolean degraded;
+        private boolean released;
+
+        private Permit(long startNanos, int inFlightAtStart, boolean degraded) {
+            this.startNanos = startNanos;
+            this.inFlightAtStart = inFlightAtStart;
+            this.degraded = degraded;
+        }
+
+        /** Releases the permit and feeds the request latency into the limit. */
+        public void success() {
+            release(false, true);
+        }
+
+        /** Releases the permit and counts the request as dropped (timeout or upstream error). */
+        public void dropped() {
+            release(true, true);
+        }
+
+        /** Releases the permit without affecting the limit, e.g. for client errors. */
+        public void ignore() {
+            release(false, false);
+        }
+
+        private void release(boolean dropped, boolean sample) {
+            if (released) {
+                return;
+            }
+            released = true;
+            if (degraded) {
+                degradedInFlight.decrementAndGet();
+                return;
+            }
+            inFlight.decrementAndGet();
+            if (sample) {
+                onSample(System.nanoTime() - startNanos, inFlightAtStart, dropped);
+            }
+        }
+    }
+}
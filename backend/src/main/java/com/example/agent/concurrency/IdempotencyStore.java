@@ -0,0 +1,197 @@
+package com.example.agent.concurrency;
+
+import com.example.agent.exception.ServiceOverloadedException;
+import com.example.agent.model.ChatResponse;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs each chat turn at most once per idempotency key. A retry that arrives while the first
+ * attempt is still running waits for that attempt instead of starting another; a retry after
+ * it finished gets the stored response. Keys are kept for {@code chat.idempotency.ttl-seconds},
+ * and at most {@code chat.idempotency.max-entries} of them, oldest dropped first.
+ * <p>
+ * Failed attempts are forgotten so that the next retry runs the turn again.
+ */
+@Component
+public class IdempotencyStore implements MeterBinder {
+
+    private final long ttlNanos;
+    private final int maxEntries;
+    private final long waitMillis;
+    private final long retryAfterSeconds;
+
+    // Guarded by itself; creation order, which is also expiry order
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>();
+
+    private final Map<String, Counter> outcomes = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public IdempotencyStore(@Value("${chat.idempotency.ttl-seconds:600}") long ttlSeconds,
+                            @Value("${chat.idempotency.max-entries:10000}") int maxEntries,
+                            @Value("${chat.idempotency.wait-seconds:35}") long waitSeconds,
+                            @Value("${chat.admission.retry-after-seconds:2}") long retryAfterSeconds) {
+        this.ttlNanos = TimeUnit.SECONDS.toNanos(ttlSeconds);
+        this.maxEntries = maxEntries;
+        this.waitMillis = TimeUnit.SECONDS.toMillis(waitSeconds);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * Runs {@code turn} unless the key has been seen before.
+     *
+     * @param fingerprint identifies the request the key was first used with
+     * @throws IllegalArgumentException if the key was used for a different request
+     * @throws ServiceOverloadedException if the attempt this retry attached to is still running
+     *                                    after {@code chat.idempotency.wait-seconds}
+     */
+    public Result execute(String key, String fingerprint, Supplier<ChatResponse> turn) {
+        Entry entry;
+        boolean owner = false;
+        synchronized (entries) {
+            long now = System.nanoTime();
+            expire(now);
+            entry = entries.get(key);
+            if (entry == null) {
+                entry = new Entry(fingerprint, now);
+                entries.put(key, entry);
+                owner = true;
+                trim();
+            }
+        }
+        if (!entry.fingerprint.equals(fingerprint)) {
+            count("conflict");
+            throw new IllegalArgumentException("Idempotency key was already used for a different request");
+        }
+        if (owner) {
+            count("new");
+            return new Result(run(key, entry, turn), false);
+        }
+        count(entry.response.isDone() ? "replayed" : "attached");
+        return new Result(await(entry), true);
+    }
+
+    private ChatResponse run(String key, Entry entry, Supplier<ChatResponse> turn) {
+        try {
+            ChatResponse response = turn.get();
+            entry.response.complete(response);
+            return response;
+        } catch (RuntimeException | Error e) {
+            synchronized (entries) {
+                entries.remove(key, entry);
+            }
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private ChatResponse await(Entry entry) {
+        try {
+            return entry.response.get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // The first attempt holds the upstream call; a second one would only add load
+            throw new ServiceOverloadedException("The original request is still being processed, please retry shortly.",
+                    retryAfterSeconds);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException("The original request failed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the original request", e);
+        }
+    }
+
+    private void expire(long now) {
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (oldest.hasNext()) {
+            Entry entry = oldest.next();
+            if (now - entry.createdNanos < ttlNanos) {
+                break;
+            }
+            oldest.remove();
+        }
+    }
+
+    // Dropping a running attempt is safe: its retries already hold the future
+    private void trim() {
+        Iterator<Entry> oldest = entries.values().iterator();
+        while (entries.size() > maxEntries && oldest.hasNext()) {
+            oldest.next();
+            oldest.remove();
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private void count(String outcome) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return;
+        }
+        outcomes.computeIfAbsent(outcome, key -> Counter.builder("chat.idempotency.requests")
+                        .description("Chat requests carrying an idempotency key")
+                        .tag("outcome", outcome)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("chat.idempotency.keys", this, IdempotencyStore::size)
+                .description("Idempotency keys currently remembered")
+                .register(registry);
+    }
+
+    /**
+     * A turn's response, and whether it came from an earlier attempt.
+     */
+    public static final class Result {
+        private final ChatResponse response;
+        private final boolean replayed;
+
+        Result(ChatResponse response, boolean replayed) {
+            this.response = response;
+            this.replayed = replayed;
+        }
+
+        public ChatResponse getResponse() {
+            return response;
+        }
+
+        public boolean isReplayed() {
+            return replayed;
+        }
+    }
+
+    private static final class Entry {
+        private final String fingerprint;
+        private final long createdNanos;
+        private final CompletableFuture<ChatResponse> response = new CompletableFuture<>();
+
+        private Entry(String fingerprint, long createdNanos) {
+            this.fingerprint = fingerprint;
+            this.createdNanos = createdNanos;
+        }
+    }
+}
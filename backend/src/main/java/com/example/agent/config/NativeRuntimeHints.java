@@ -0,0 +1,70 @@
+package com.example.agent.config;
+
+import com.example.agent.analytics.TurnEvent;
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.model.*;
+import com.theokanning.openai.DeleteResult;
+import com.theokanning.openai.OpenAiError;
+import com.theokanning.openai.Usage;
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.completion.chat.*;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.util.List;
+
+/**
+ * Reflection, proxy and resource hints for the GraalVM native image. Spring infers hints for its
+ * own beans, but not for types that Jackson binds reflectively through plain ObjectMappers, for
+ * the Retrofit proxy behind the OpenAI client, or for the catalog file.
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    private static final MemberCategory[] BINDING = {
+            MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+            MemberCategory.INVOKE_DECLARED_METHODS,
+            MemberCategory.DECLARED_FIELDS
+    };
+
+    static final List<Class<?>> MODEL_TYPES = List.of(
+            ChatRequest.class, ChatResponse.class, Phone.class, PhonePage.class,
+            PhoneRecommendation.class, SafetyResult.class, ConversationSlots.class,
+            PhoneComparison.class, SpecComparison.class, ChatStreamFrame.class,
+            ConversationState.class, TurnEvent.class);
+
+    static final List<Class<?>> OPENAI_TYPES = List.of(
+            ChatCompletionRequest.class, ChatCompletionRequest.ChatCompletionRequestFunctionCall.class,
+            ChatCompletionResult.class, ChatCompletionChoice.class, ChatCompletionChunk.class,
+            ChatMessage.class, ChatFunctionCall.class, ChatFunction.class, ChatFunctionDynamic.class,
+            ChatFunctionParameters.class, ChatFunctionProperty.class,
+            Usage.class, OpenAiError.class, OpenAiError.OpenAiErrorDetails.class, DeleteResult.class);
+
+    // Jackson mix-ins and (de)serializers the OpenAI client registers on its own ObjectMapper
+    static final List<String> OPENAI_JACKSON_TYPES = List.of(
+            "com.theokanning.openai.service.ChatCompletionRequestMixIn",
+            "com.theokanning.openai.service.ChatFunctionCallMixIn",
+            "com.theokanning.openai.service.ChatFunctionMixIn",
+            "com.theokanning.openai.service.ChatFunctionParametersSerializer",
+            "com.theokanning.openai.service.ChatCompletionRequestSerializerAndDeserializer$Serializer",
+            "com.theokanning.openai.service.ChatCompletionRequestSerializerAndDeserializer$Deserializer",
+            "com.theokanning.openai.service.ChatFunctionCallArgumentsSerializerAndDeserializer$Serializer",
+            "com.theokanning.openai.service.ChatFunctionCallArgumentsSerializerAndDeserializer$Deserializer");
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> type : MODEL_TYPES) {
+            hints.reflection().registerType(type, BINDING);
+        }
+        for (Class<?> type : OPENAI_TYPES) {
+            hints.reflection().registerType(type, BINDING);
+        }
+        for (String type : OPENAI_JACKSON_TYPES) {
+            hints.reflection().registerType(TypeReference.of(type), BINDING);
+        }
+        hints.proxies().registerJdkProxy(OpenAiApi.class);
+
+        hints.resources().registerPattern("phones.json");
+    }
+}
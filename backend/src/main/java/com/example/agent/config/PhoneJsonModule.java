@@ -0,0 +1,75 @@
+package com.example.agent.config;
+
+import com.example.agent.model.Phone;
+import com.example.agent.service.PhoneJsonCache;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializationConfig;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.fasterxml.jackson.databind.ser.BeanSerializerModifier;
+import com.fasterxml.jackson.databind.ser.ResolvableSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Writes catalog phones straight from {@link PhoneJsonCache} instead of re-serializing them on
+ * every response. Spring Boot registers this module with the application's ObjectMapper.
+ */
+@Component
+public class PhoneJsonModule extends SimpleModule {
+
+    public PhoneJsonModule(ObjectProvider<PhoneJsonCache> phoneJsonCache) {
+        super("PhoneJsonModule");
+        setSerializerModifier(new BeanSerializerModifier() {
+            @Override
+            @SuppressWarnings("unchecked")
+            public JsonSerializer<?> modifySerializer(SerializationConfig config, BeanDescription beanDesc, JsonSerializer<?> serializer) {
+                if (beanDesc.getBeanClass() == Phone.class) {
+                    return new CachedPhoneSerializer((JsonSerializer<Object>) serializer, phoneJsonCache);
+                }
+                return serializer;
+            }
+        });
+    }
+
+    static class CachedPhoneSerializer extends StdSerializer<Phone> implements ResolvableSerializer {
+
+        private final JsonSerializer<Object> delegate;
+        private final ObjectProvider<PhoneJsonCache> phoneJsonCache;
+
+        CachedPhoneSerializer(JsonSerializer<Object> delegate, ObjectProvider<PhoneJsonCache> phoneJsonCache) {
+            super(Phone.class);
+            this.delegate = delegate;
+            this.phoneJsonCache = phoneJsonCache;
+        }
+
+        @Override
+        public void resolve(SerializerProvider provider) throws JsonMappingException {
+            if (delegate instanceof ResolvableSerializer) {
+                ((ResolvableSerializer) delegate).resolve(provider);
+            }
+        }
+
+        @Override
+        public void serialize(Phone phone, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            // Raw bytes are only valid for textual JSON output
+            if (gen instanceof JsonGeneratorImpl && provider.getAttribute(PhoneJsonCache.BYPASS) == null) {
+                PhoneJsonCache cache = phoneJsonCache.getIfAvailable();
+                SerializableString json = cache != null ? cache.get(phone) : null;
+                if (json != null) {
+                    gen.writeRawValue(json);
+                    return;
+                }
+            }
+            delegate.serialize(phone, gen, provider);
+        }
+    }
+}
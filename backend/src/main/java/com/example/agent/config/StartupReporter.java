@@ -0,0 +1,70 @@
+package com.example.agent.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Logs how long the process took to become ready and its resident memory at that point, so the
+ * plain JVM, CDS and native builds can be compared. RSS is read from /proc and is only available
+ * on Linux.
+ */
+@Component
+public class StartupReporter implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupReporter.class);
+    private static final Path PROC_STATUS = Path.of("/proc/self/status");
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        Duration sinceStart = ProcessHandle.current().info().startInstant()
+                .map(start -> Duration.between(start, Instant.now()))
+                .orElse(Duration.ZERO);
+        long rss = residentSetBytes();
+        logger.info("Startup complete: mode={} ready_ms={} rss_mb={}", runtimeMode(), sinceStart.toMillis(),
+                rss >= 0 ? rss / (1024 * 1024) : "n/a");
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("process.memory.rss", StartupReporter::residentSetBytes)
+                .baseUnit("bytes")
+                .description("Resident set size of this process")
+                .register(registry);
+    }
+
+    static String runtimeMode() {
+        if ("runtime".equals(System.getProperty("org.graalvm.nativeimage.imagecode"))) {
+            return "native";
+        }
+        List<String> jvmArgs = ManagementFactory.getRuntimeMXBean().getInputArguments();
+        return jvmArgs.stream().anyMatch(arg -> arg.startsWith("-XX:SharedArchiveFile")) ? "cds" : "jvm";
+    }
+
+    static long residentSetBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS)) {
+                if (line.startsWith("VmRSS:")) {
+                    // "VmRSS:    123456 kB"
+                    return Long.parseLong(line.substring(6).trim().split("\\s+")[0]) * 1024;
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            // Not on Linux
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.agent.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes {@code application/cbor} for clients that ask for it in {@code Accept} or
+ * send it as {@code Content-Type}. The mapper comes from Spring Boot's builder, so it has the
+ * same modules and {@code spring.jackson.*} settings as the JSON one.
+ */
+@Component
+public class TimedCborHttpMessageConverter extends MappingJackson2CborHttpMessageConverter {
+
+    public TimedCborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        super(builder.createXmlMapper(false).factory(new CBORFactory()).build());
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        TimedWrites.write(object, "cbor", outputMessage, message -> super.writeInternal(object, type, message));
+    }
+}
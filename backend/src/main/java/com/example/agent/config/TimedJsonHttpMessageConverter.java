@@ -0,0 +1,29 @@
+package com.example.agent.config;
+
+import com.example.agent.profiling.SerializationEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * The JSON converter for HTTP responses, recording each write as a {@link SerializationEvent}
+ * while a flight recording wants it. Spring Boot uses it in place of its default converter.
+ */
+@Component
+public class TimedJsonHttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public TimedJsonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        TimedWrites.write(object, "json", outputMessage, message -> super.writeInternal(object, type, message));
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.agent.config;
+
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+
+/**
+ * Reads and writes Smile ({@value #MEDIA_TYPE_VALUE}), configured like
+ * {@link TimedCborHttpMessageConverter}.
+ */
+@Component
+public class TimedSmileHttpMessageConverter extends MappingJackson2SmileHttpMessageConverter {
+
+    public static final String MEDIA_TYPE_VALUE = "application/x-jackson-smile";
+    public static final MediaType MEDIA_TYPE = MediaType.parseMediaType(MEDIA_TYPE_VALUE);
+
+    public TimedSmileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        super(builder.createXmlMapper(false).factory(new SmileFactory()).build());
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        TimedWrites.write(object, "smile", outputMessage, message -> super.writeInternal(object, type, message));
+    }
+}
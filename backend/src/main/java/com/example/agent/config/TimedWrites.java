@@ -0,0 +1,74 @@
+package com.example.agent.config;
+
+import com.example.agent.profiling.SerializationEvent;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Records response body writes of the Jackson converters as {@link SerializationEvent}s while a
+ * flight recording wants them.
+ */
+final class TimedWrites {
+
+    private TimedWrites() {
+    }
+
+    static void write(Object object, String format, HttpOutputMessage outputMessage, Write write) throws IOException {
+        SerializationEvent event = new SerializationEvent();
+        if (!event.isEnabled()) {
+            write.to(outputMessage);
+            return;
+        }
+        CountingOutputMessage counting = new CountingOutputMessage(outputMessage);
+        event.begin();
+        write.to(counting);
+        event.end();
+        if (event.shouldCommit()) {
+            event.transport = "http";
+            event.format = format;
+            event.type = object.getClass().getSimpleName();
+            event.bytes = counting.bytes;
+            event.commit();
+        }
+    }
+
+    @FunctionalInterface
+    interface Write {
+        void to(HttpOutputMessage outputMessage) throws IOException;
+    }
+
+    private static final class CountingOutputMessage implements HttpOutputMessage {
+        private final HttpOutputMessage delegate;
+        private long bytes;
+
+        private CountingOutputMessage(HttpOutputMessage delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public OutputStream getBody() throws IOException {
+            return new FilterOutputStream(delegate.getBody()) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    bytes++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    bytes += len;
+                }
+            };
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return delegate.getHeaders();
+        }
+    }
+}
@@ -1,17 +1,28 @@
 package com.example.agent.controller;
 
+import com.example.agent.concurrency.AdaptiveConcurrencyLimiter;
+import com.example.agent.concurrency.IdempotencyStore;
+import com.example.agent.conversation.ConversationRouter;
+import com.example.agent.exception.ServiceOverloadedException;
 import com.example.agent.model.ChatRequest;
 import com.example.agent.model.ChatResponse;
 import com.example.agent.service.ConversationService;
+import com.example.agent.service.WarmupService;
+import com.example.agent.traffic.TrafficRecorder;
 import jakarta.validation.Valid;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.HashMap;
+import java.util.Locale;
 import java.util.Map;
+import java.util.regex.Pattern;
 
 @RestController
 @RequestMapping("/api/chat")
@@ -20,19 +31,106 @@ public class ChatController {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
 
+    public static final String IDEMPOTENCY_KEY_HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // Keys are not tied to a client, so only UUIDs are taken: another client can neither guess
+    // one nor pick the same one by accident and be handed this client's reply
+    private static final Pattern UUID_KEY = Pattern.compile(
+            "[0-9a-fA-F]{8}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{4}-[0-9a-fA-F]{12}");
+
     @Autowired
     private ConversationService conversationService;
 
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Autowired
+    private ConversationRouter conversationRouter;
+
+    @Autowired
+    private ObjectProvider<WarmupService> warmupService;
+
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+
+    @Autowired
+    private TrafficRecorder trafficRecorder;
+
+    // "reject" sheds excess requests with 503, "degrade" answers them from the rule-based fallback
+    // while chat.admission.degraded-limit allows, and sheds the rest
+    @Value("${chat.admission.overload-action:degrade}")
+    private String overloadAction;
+
+    @Value("${chat.admission.retry-after-seconds:2}")
+    private long retryAfterSeconds;
+
     @PostMapping
-    public ResponseEntity<ChatResponse> chat(@Valid @RequestBody ChatRequest request) {
+    public ResponseEntity<ChatResponse> chat(@RequestHeader(value = IDEMPOTENCY_KEY_HEADER, required = false) String idempotencyKey,
+                                             @Valid @RequestBody ChatRequest request) {
         logger.info("Received chat request - conversationId: {}, message length: {}", 
                 request.getConversationId(), request.getMessage() != null ? request.getMessage().length() : 0);
+        long receivedAt = System.currentTimeMillis();
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            ChatResponse response = handle(request);
+            trafficRecorder.record(request, response, receivedAt);
+            return ResponseEntity.ok(response);
+        }
+        String key = idempotencyKey.trim();
+        if (!UUID_KEY.matcher(key).matches()) {
+            throw new IllegalArgumentException(IDEMPOTENCY_KEY_HEADER + " must be a UUID");
+        }
+        // Retries of the same request share one turn: attach while it runs, replay once it is done
+        IdempotencyStore.Result result = idempotencyStore.execute(key.toLowerCase(Locale.ROOT), fingerprint(request),
+                () -> handle(request));
+        if (result.isReplayed()) {
+            logger.debug("Replaying response for idempotency key {}", idempotencyKey);
+            return ResponseEntity.ok().header(REPLAYED_HEADER, "true").body(result.getResponse());
+        }
+        // Replays are left out of recordings; only the attempt that ran the turn is recorded
+        trafficRecorder.record(request, result.getResponse(), receivedAt);
+        return ResponseEntity.ok(result.getResponse());
+    }
+
+    private static String fingerprint(ChatRequest request) {
+        return request.getConversationId() + '\u0000' + request.getCatalog() + '\u0000' + request.isCompact()
+                + '\u0000' + request.getMessage();
+    }
+
+    private ChatResponse handle(ChatRequest request) {
+        // In a cluster, turns are handled by the node that owns the conversation
+        ChatResponse forwarded = conversationRouter.forwardIfRemote(request);
+        if (forwarded != null) {
+            return forwarded;
+        }
+        boolean existingConversation = conversationService.hasConversation(request.getConversationId());
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(existingConversation);
+        if (permit == null) {
+            AdaptiveConcurrencyLimiter.Permit degraded = "degrade".equalsIgnoreCase(overloadAction)
+                    ? concurrencyLimiter.tryAcquireDegraded() : null;
+            if (degraded == null) {
+                throw new ServiceOverloadedException("Too many concurrent requests, please retry shortly.", retryAfterSeconds);
+            }
+            logger.info("Over concurrency limit ({}), degrading to fallback response", concurrencyLimiter.getLimit());
+            try {
+                return conversationService.processMessage(request, false);
+            } finally {
+                degraded.ignore();
+            }
+        }
         try {
             ChatResponse response = conversationService.processMessage(request);
+            permit.success();
             logger.debug("Chat response generated - intent: {}, has recommendations: {}", 
                     response.getIntent(), response.getRecommendations() != null);
-            return ResponseEntity.ok(response);
-        } catch (Exception e) {
+            return response;
+        } catch (RuntimeException e) {
+            // Only overload feeds the limit; client errors and bugs say nothing about capacity
+            if (AdaptiveConcurrencyLimiter.isOverload(e)) {
+                permit.dropped();
+            } else {
+                permit.ignore();
+            }
             logger.error("Error processing chat message", e);
             throw e; // Let GlobalExceptionHandler handle it
         }
@@ -41,8 +139,20 @@ public class ChatController {
     @GetMapping("/health")
     public ResponseEntity<Map<String, Object>> health() {
         Map<String, Object> health = new HashMap<>();
-        health.put("status", "UP");
         health.put("service", "shopping-chat-agent");
+        WarmupService warmup = warmupService.getIfAvailable();
+        if (warmup == null) {
+            health.put("status", "UP");
+            return ResponseEntity.ok(health);
+        }
+        health.put("warmup", warmup.getStatus());
+        health.put("warmupStatistics", warmup.getStatistics());
+        if (!warmup.isReady()) {
+            // Load balancers keep the node out of rotation until the JIT has seen the hot paths
+            health.put("status", "WARMING_UP");
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(health);
+        }
+        health.put("status", "UP");
         return ResponseEntity.ok(health);
     }
 }
@@ -0,0 +1,125 @@
+package com.example.agent.controller;
+
+import com.example.agent.concurrency.AdaptiveConcurrencyLimiter;
+import com.example.agent.conversation.ClusteredConversationStore;
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.exception.ServiceOverloadedException;
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.example.agent.service.ConversationService;
+import jakarta.validation.Valid;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Node-to-node endpoints used when conversations are sharded across a cluster. Every route
+ * requires {@code cluster.secret}; without one configured, they all answer 401.
+ */
+@RestController
+@RequestMapping("/internal")
+@ConditionalOnProperty(name = "conversation.store", havingValue = "clustered")
+public class ClusterController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterController.class);
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private ClusteredConversationStore conversationStore;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @Value("${chat.admission.retry-after-seconds:2}")
+    private long retryAfterSeconds;
+
+    @PostMapping("/chat")
+    public ResponseEntity<ChatResponse> chat(@RequestHeader(value = ClusteredConversationStore.SECRET_HEADER, required = false) String secret,
+                                             @Valid @RequestBody ChatRequest request) {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        // Forwarded turns take a permit like local ones; the forwarding node passes the 503 on
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(true);
+        if (permit == null) {
+            throw new ServiceOverloadedException("Too many concurrent requests, please retry shortly.", retryAfterSeconds);
+        }
+        try {
+            // Forwarded turns are always processed here, never forwarded again
+            ChatResponse response = conversationService.processMessage(request);
+            permit.success();
+            return ResponseEntity.ok(response);
+        } catch (RuntimeException e) {
+            if (AdaptiveConcurrencyLimiter.isOverload(e)) {
+                permit.dropped();
+            } else {
+                permit.ignore();
+            }
+            throw e;
+        }
+    }
+
+    @PutMapping("/conversations/{conversationId}")
+    public ResponseEntity<Void> acceptConversation(@RequestHeader(value = ClusteredConversationStore.SECRET_HEADER, required = false) String secret,
+                                                   @PathVariable String conversationId,
+                                                   @RequestBody ConversationState state) {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        logger.debug("Accepting conversation {} from peer", conversationId);
+        conversationStore.accept(conversationId, state);
+        return ResponseEntity.noContent().build();
+    }
+
+    @GetMapping("/cluster/ping")
+    public ResponseEntity<Map<String, Object>> ping(@RequestHeader(value = ClusteredConversationStore.SECRET_HEADER, required = false) String secret) {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("node", conversationStore.getSelfUrl());
+        return ResponseEntity.ok(body);
+    }
+
+    @GetMapping("/cluster/members")
+    public ResponseEntity<Map<String, Object>> members(@RequestHeader(value = ClusteredConversationStore.SECRET_HEADER, required = false) String secret) {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Map<String, Object> body = new HashMap<>();
+        body.put("self", conversationStore.getSelfUrl());
+        body.put("members", conversationStore.getMembers());
+        return ResponseEntity.ok(body);
+    }
+
+    // Replaces cluster.nodes; listed nodes join the ring once they answer a probe
+    @PutMapping("/cluster/members")
+    public ResponseEntity<Map<String, Object>> setMembers(@RequestHeader(value = ClusteredConversationStore.SECRET_HEADER, required = false) String secret,
+                                                          @RequestBody List<String> nodes) {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        conversationStore.setConfiguredNodes(nodes);
+        return members(secret);
+    }
+
+    private boolean authorized(String secret) {
+        String expected = conversationStore.getSecret();
+        // Constant time, so the secret can't be guessed a byte at a time from response times
+        return !expected.isEmpty() && secret != null
+                && MessageDigest.isEqual(expected.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+}
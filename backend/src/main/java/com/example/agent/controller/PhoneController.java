@@ -0,0 +1,181 @@
+package com.example.agent.controller;
+
+import com.example.agent.catalog.CatalogQuery;
+import com.example.agent.catalog.Spec;
+import com.example.agent.config.TimedSmileHttpMessageConverter;
+import com.example.agent.service.CatalogPageService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+@RestController
+@RequestMapping("/api/phones")
+@CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ETAG)
+public class PhoneController {
+
+    private static final Logger logger = LoggerFactory.getLogger(PhoneController.class);
+
+    // In order of preference when the client accepts several equally
+    private static final List<MediaType> PAGE_FORMATS = List.of(
+            MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, TimedSmileHttpMessageConverter.MEDIA_TYPE);
+
+    @Autowired
+    private CatalogPageService catalogPageService;
+
+    @GetMapping
+    public ResponseEntity<byte[]> listPhones(
+            @RequestParam(required = false) String brand,
+            @RequestParam(required = false) String feature,
+            @RequestParam(required = false) Integer minPrice,
+            @RequestParam(required = false) Integer maxPrice,
+            @RequestParam(required = false) Double minCamera,
+            @RequestParam(required = false) Integer minBattery,
+            @RequestParam(required = false) Double minDisplay,
+            @RequestParam(required = false) Double maxDisplay,
+            @RequestParam(required = false) Integer minRam,
+            @RequestParam(required = false) Integer minStorage,
+            @RequestParam(required = false) String catalog,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+
+        CatalogQuery query = CatalogQuery.builder()
+                .brand(brand)
+                .feature(feature)
+                .atLeast(Spec.PRICE, minPrice)
+                .atMost(Spec.PRICE, maxPrice)
+                .atLeast(Spec.CAMERA_MP, minCamera)
+                .atLeast(Spec.BATTERY_MAH, minBattery)
+                .atLeast(Spec.DISPLAY_INCHES, minDisplay)
+                .atMost(Spec.DISPLAY_INCHES, maxDisplay)
+                .atLeast(Spec.RAM_GB, minRam)
+                .atLeast(Spec.STORAGE_GB, minStorage)
+                .build();
+
+        MediaType format = negotiate(accept);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = catalogPageService.etag(catalog, query, cursor, limit, format);
+        if (gzip) {
+            etag = gzipEtag(etag);
+        }
+        if (matches(ifNoneMatch, etag)) {
+            logger.debug("Catalog page not modified - etag: {}", etag);
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic())
+                    .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+
+        CatalogPageService.SerializedPage page = catalogPageService.getPage(catalog, query, cursor, limit, format);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(page.getContentType())
+                .eTag(gzip ? gzipEtag(page.getEtag()) : page.getEtag())
+                .cacheControl(CacheControl.maxAge(60, TimeUnit.SECONDS).cachePublic())
+                .varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(page.getGzip());
+        }
+        return response.body(page.getBody());
+    }
+
+    /**
+     * Picks the page format with the highest quality in {@code Accept}. Anything without a
+     * supported type, including a malformed header, gets JSON as before.
+     */
+    static MediaType negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> accepted;
+        try {
+            accepted = MediaType.parseMediaTypes(accept);
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType best = MediaType.APPLICATION_JSON;
+        double bestQuality = 0;
+        for (MediaType candidate : accepted) {
+            for (MediaType format : PAGE_FORMATS) {
+                if (candidate.includes(format) && candidate.getQualityValue() > bestQuality) {
+                    best = format;
+                    bestQuality = candidate.getQualityValue();
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Whether {@code Accept-Encoding} allows gzip, directly or through {@code *}, with a
+     * non-zero quality.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double any = null;
+        for (String entry : acceptEncoding.split(",")) {
+            String[] parts = entry.split(";");
+            String coding = parts[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.toLowerCase(Locale.ROOT).startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (coding.equals("gzip") || coding.equals("x-gzip")) {
+                gzip = quality;
+            } else if (coding.equals("*")) {
+                any = quality;
+            }
+        }
+        // An explicit gzip entry overrides the wildcard, including gzip;q=0
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return any != null && any > 0;
+    }
+
+    // The compressed body differs byte for byte, so it must not share the identity body's strong tag
+    private static String gzipEtag(String etag) {
+        return etag.substring(0, etag.length() - 1) + "-gz\"";
+    }
+
+    // If-None-Match compares weakly, so W/ tags from intermediaries match too
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String trimmed = candidate.trim();
+            if (trimmed.startsWith("W/")) {
+                trimmed = trimmed.substring(2);
+            }
+            if (trimmed.equals("*") || trimmed.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.agent.controller;
+
+import com.example.agent.profiling.FlightRecorderService;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.text.ParseException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Starts, stops and downloads flight recordings on a running node. Disabled unless
+ * {@code profiling.admin.enabled=true}, in which case {@code profiling.admin.token} must be set
+ * and requests must send it in the {@value #TOKEN_HEADER} header.
+ */
+@RestController
+@RequestMapping("/admin/profiling")
+@ConditionalOnProperty(name = "profiling.admin.enabled", havingValue = "true")
+public class ProfilingController {
+
+    public static final String TOKEN_HEADER = "X-Admin-Token";
+
+    @Autowired
+    private FlightRecorderService flightRecorderService;
+
+    @Value("${profiling.admin.token:}")
+    private String token;
+
+    @PostConstruct
+    public void init() {
+        // Recordings show heap, threads and request data, so they are never served unauthenticated
+        if (token == null || token.isBlank()) {
+            throw new IllegalStateException("profiling.admin.token must be set when profiling.admin.enabled=true");
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status(@RequestHeader(value = TOKEN_HEADER, required = false) String secret) {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok(flightRecorderService.status());
+    }
+
+    @PostMapping("/start")
+    public ResponseEntity<Map<String, Object>> start(@RequestHeader(value = TOKEN_HEADER, required = false) String secret)
+            throws IOException, ParseException {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            return ResponseEntity.ok(flightRecorderService.start());
+        } catch (IllegalStateException e) {
+            return conflict(e);
+        }
+    }
+
+    @PostMapping("/stop")
+    public ResponseEntity<Map<String, Object>> stop(@RequestHeader(value = TOKEN_HEADER, required = false) String secret) {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        try {
+            return ResponseEntity.ok(flightRecorderService.stop());
+        } catch (IllegalStateException e) {
+            return conflict(e);
+        }
+    }
+
+    @GetMapping("/dump")
+    public ResponseEntity<StreamingResponseBody> dump(@RequestHeader(value = TOKEN_HEADER, required = false) String secret)
+            throws IOException {
+        if (!authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        Path file;
+        try {
+            file = flightRecorderService.dump();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        long size = Files.size(file);
+        StreamingResponseBody body = out -> {
+            try {
+                Files.copy(file, out);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .contentLength(size)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + file.getFileName() + "\"")
+                .body(body);
+    }
+
+    private boolean authorized(String secret) {
+        // Constant time, so the token can't be guessed a byte at a time from response times
+        return secret != null
+                && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ResponseEntity<Map<String, Object>> conflict(IllegalStateException e) {
+        Map<String, Object> body = new HashMap<>();
+        body.put("error", e.getMessage());
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(body);
+    }
+}
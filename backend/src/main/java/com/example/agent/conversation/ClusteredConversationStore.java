@@ -0,0 +1,266 @@
+package com.example.agent.conversation;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+
+/**
+ * Conversation store for a cluster of nodes. Each conversation is owned by one node chosen by
+ * consistent hashing; this node keeps only the conversations it owns. Peers are probed
+ * periodically, and when membership changes conversations that moved are pushed to their new
+ * owner. A peer joins on its first answered probe and leaves after
+ * {@code cluster.probe-failures-before-eviction} failed ones in a row, so that one lost probe
+ * doesn't move conversations back and forth.
+ */
+@Component
+@ConditionalOnProperty(name = "conversation.store", havingValue = "clustered")
+public class ClusteredConversationStore implements ConversationStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusteredConversationStore.class);
+
+    public static final String SECRET_HEADER = "X-Cluster-Secret";
+
+    @Value("${conversation.store:local}")
+    private String store;
+
+    @Value("${cluster.self-url}")
+    private String selfUrl;
+
+    // Replaced through PUT /internal/cluster/members; the probe works on a snapshot
+    @Value("${cluster.nodes:}")
+    private volatile List<String> configuredNodes;
+
+    @Value("${cluster.virtual-nodes:128}")
+    private int virtualNodes;
+
+    @Value("${cluster.secret:}")
+    private String secret;
+
+    @Value("${cluster.probe-failures-before-eviction:3}")
+    private int failuresBeforeEviction;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, ConversationState> conversations = new ConcurrentHashMap<>();
+    // Consecutive failed probes per peer; only touched by the probe thread
+    private final Map<String, Integer> probeFailures = new HashMap<>();
+    private final ExecutorService rebalanceExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "conversation-rebalance");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    private volatile ConsistentHashRing ring;
+
+    @PostConstruct
+    public void init() {
+        // Native images evaluate the condition above at build time; refuse a different setting
+        if (!"clustered".equals(store)) {
+            throw new IllegalStateException("conversation.store=" + store
+                    + " but this build only contains the clustered store; rebuild the native image with that setting");
+        }
+        selfUrl = normalize(selfUrl);
+        secret = secret.trim();
+        boolean hasPeers = configuredNodes.stream().map(ClusteredConversationStore::normalize)
+                .anyMatch(node -> !node.isEmpty() && !node.equals(selfUrl));
+        if (hasPeers && secret.isEmpty()) {
+            // Peers accept conversation state and membership from whoever knows the secret
+            throw new IllegalStateException("cluster.secret must be set when cluster.nodes lists other nodes");
+        }
+        // Start alone; peers join the ring once they answer a probe
+        ring = new ConsistentHashRing(Set.of(selfUrl), virtualNodes);
+        logger.info("Clustered conversation store started as {} with peers {}", selfUrl, configuredNodes);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebalanceExecutor.shutdownNow();
+    }
+
+    @Override
+    public ConversationState get(String conversationId) {
+        return conversations.get(conversationId);
+    }
+
+    @Override
+    public ConversationState update(String conversationId, UnaryOperator<ConversationState> updater) {
+        return conversations.compute(conversationId, (key, existing) -> updater.apply(existing));
+    }
+
+    @Override
+    public boolean contains(String conversationId) {
+        return conversations.containsKey(conversationId);
+    }
+
+    @Override
+    public String newConversationId() {
+        // Prefer an ID this node owns so the first turn needs no forwarding
+        ConsistentHashRing current = ring;
+        String id = UUID.randomUUID().toString();
+        for (int attempt = 0; attempt < 64 && !selfUrl.equals(current.ownerOf(id)); attempt++) {
+            id = UUID.randomUUID().toString();
+        }
+        return id;
+    }
+
+    @Override
+    public String remoteOwner(String conversationId) {
+        String owner = ring.ownerOf(conversationId);
+        return owner == null || owner.equals(selfUrl) ? null : owner;
+    }
+
+    public String getSelfUrl() {
+        return selfUrl;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public Set<String> getMembers() {
+        return ring.getNodes();
+    }
+
+    /**
+     * Accepts a conversation handed over by another node. If both sides have state, the longer
+     * history wins.
+     */
+    public void accept(String conversationId, ConversationState state) {
+        conversations.merge(conversationId, state,
+                (existing, incoming) -> incoming.getMessages().size() >= existing.getMessages().size() ? incoming : existing);
+    }
+
+    public synchronized void setMembers(Collection<String> members) {
+        Set<String> normalized = new TreeSet<>();
+        for (String member : members) {
+            normalized.add(normalize(member));
+        }
+        normalized.add(selfUrl);
+        if (normalized.equals(ring.getNodes())) {
+            return;
+        }
+        logger.info("Cluster membership changed: {} -> {}", ring.getNodes(), normalized);
+        ring = new ConsistentHashRing(normalized, virtualNodes);
+        rebalanceExecutor.execute(this::rebalance);
+    }
+
+    /**
+     * Replaces the nodes that are probed, as if {@code cluster.nodes} had listed them. Nodes no
+     * longer listed leave the ring at once; new ones join once they answer a probe.
+     */
+    public synchronized void setConfiguredNodes(Collection<String> nodes) {
+        configuredNodes = List.copyOf(nodes);
+        Set<String> listed = new TreeSet<>();
+        for (String node : nodes) {
+            listed.add(normalize(node));
+        }
+        Set<String> kept = new TreeSet<>(getMembers());
+        kept.retainAll(listed);
+        setMembers(kept);
+    }
+
+    @Scheduled(fixedDelayString = "${cluster.probe-interval-ms:5000}", initialDelayString = "${cluster.probe-interval-ms:5000}")
+    public void probePeers() {
+        List<String> nodes = configuredNodes;
+        Set<String> members = getMembers();
+        Set<String> alive = new TreeSet<>();
+        for (String node : nodes) {
+            String peer = normalize(node);
+            if (peer.isEmpty()) {
+                continue;
+            }
+            if (peer.equals(selfUrl) || isAlive(peer)) {
+                probeFailures.remove(peer);
+                alive.add(peer);
+            } else if (members.contains(peer) && probeFailures.merge(peer, 1, Integer::sum) < failuresBeforeEviction) {
+                alive.add(peer);
+            }
+        }
+        synchronized (this) {
+            // Probed against nodes that have since been replaced; the next probe uses the new ones
+            if (nodes == configuredNodes) {
+                setMembers(alive);
+            }
+        }
+    }
+
+    private boolean isAlive(String peer) {
+        try {
+            HttpRequest request = withSecret(HttpRequest.newBuilder(URI.create(peer + "/internal/cluster/ping")))
+                    .timeout(Duration.ofSeconds(1))
+                    .GET()
+                    .build();
+            return httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+        } catch (Exception e) {
+            logger.debug("Peer {} not reachable: {}", peer, e.getMessage());
+            return false;
+        }
+    }
+
+    private void rebalance() {
+        int moved = 0;
+        for (Map.Entry<String, ConversationState> entry : conversations.entrySet()) {
+            String owner = remoteOwner(entry.getKey());
+            if (owner == null) {
+                continue;
+            }
+            if (transfer(owner, entry.getKey(), entry.getValue())) {
+                // Only drop it if nothing was appended while the transfer was in flight
+                conversations.remove(entry.getKey(), entry.getValue());
+                moved++;
+            }
+        }
+        if (moved > 0) {
+            logger.info("Rebalanced {} conversations to their new owners", moved);
+        }
+    }
+
+    private boolean transfer(String owner, String conversationId, ConversationState state) {
+        try {
+            HttpRequest request = withSecret(HttpRequest.newBuilder(URI.create(owner + "/internal/conversations/"
+                            + URLEncoder.encode(conversationId, StandardCharsets.UTF_8))))
+                    .timeout(Duration.ofSeconds(2))
+                    .header("Content-Type", "application/json")
+                    .PUT(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(state)))
+                    .build();
+            int status = httpClient.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+            return status >= 200 && status < 300;
+        } catch (Exception e) {
+            logger.warn("Failed to transfer conversation {} to {}: {}", conversationId, owner, e.getMessage());
+            return false;
+        }
+    }
+
+    private HttpRequest.Builder withSecret(HttpRequest.Builder builder) {
+        return secret.isEmpty() ? builder : builder.header(SECRET_HEADER, secret);
+    }
+
+    private static String normalize(String url) {
+        String trimmed = url.trim();
+        return trimmed.endsWith("/") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.agent.conversation;
+
+import com.example.agent.exception.ServiceOverloadedException;
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * Forwards chat turns to the node that owns their conversation.
+ */
+@Component
+public class ConversationRouter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationRouter.class);
+
+    @Autowired
+    private ConversationStore conversationStore;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cluster.secret:}")
+    private String secret;
+
+    @Value("${cluster.forward-timeout-seconds:35}")
+    private long forwardTimeoutSeconds;
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(1))
+            .build();
+
+    /**
+     * Returns the owner's response if the conversation lives on another node, or {@code null}
+     * if it should be processed here. If the owner can't be reached the turn is processed
+     * locally rather than failed.
+     *
+     * @throws ServiceOverloadedException if the owner shed the turn
+     */
+    public ChatResponse forwardIfRemote(ChatRequest request) {
+        String conversationId = request.getConversationId();
+        if (conversationId == null || conversationId.isEmpty()) {
+            return null;
+        }
+        String owner = conversationStore.remoteOwner(conversationId);
+        if (owner == null) {
+            return null;
+        }
+        try {
+            HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(owner + "/internal/chat"))
+                    .timeout(Duration.ofSeconds(forwardTimeoutSeconds))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(request)));
+            if (!secret.isEmpty()) {
+                builder.header(ClusteredConversationStore.SECRET_HEADER, secret);
+            }
+            HttpResponse<byte[]> response = httpClient.send(builder.build(), HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() == 200) {
+                logger.debug("Forwarded conversation {} to {}", conversationId, owner);
+                return objectMapper.readValue(response.body(), ChatResponse.class);
+            }
+            if (response.statusCode() == 503) {
+                // Answering it here instead would add load to a cluster that is already shedding
+                long retryAfter = response.headers().firstValueAsLong("Retry-After").orElse(1);
+                throw new ServiceOverloadedException("Too many concurrent requests, please retry shortly.", retryAfter);
+            }
+            logger.warn("Owner {} answered {} for conversation {}, processing locally", owner, response.statusCode(), conversationId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ServiceOverloadedException e) {
+            throw e;
+        } catch (Exception e) {
+            logger.warn("Could not forward conversation {} to {}: {}", conversationId, owner, e.getMessage());
+        }
+        return null;
+    }
+}
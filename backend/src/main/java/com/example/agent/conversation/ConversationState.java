@@ -0,0 +1,91 @@
+package com.example.agent.conversation;
+
+import com.example.agent.model.ConversationSlots;
+import com.theokanning.openai.completion.chat.ChatMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the service remembers about one conversation. Instances are treated as immutable
+ * once stored; updates produce a copy. Serializable with Jackson so that conversations can be
+ * handed to another node.
+ */
+public class ConversationState {
+    private List<ChatMessage> messages = new ArrayList<>();
+    private String summary;
+    private int summarizedMessages;
+    private ConversationSlots slots;
+    // Previous result set as catalog ordinals (BitSet words), valid for slotsCatalogVersion only
+    private long[] resultBitmap;
+    private String slotsCatalogVersion;
+
+    public ConversationState() {}
+
+    public ConversationState(ConversationState other) {
+        this.messages = new ArrayList<>(other.messages);
+        this.summary = other.summary;
+        this.summarizedMessages = other.summarizedMessages;
+        this.slots = other.slots;
+        this.resultBitmap = other.resultBitmap;
+        this.slotsCatalogVersion = other.slotsCatalogVersion;
+    }
+
+    public List<ChatMessage> getMessages() {
+        return messages;
+    }
+
+    public void setMessages(List<ChatMessage> messages) {
+        this.messages = messages;
+    }
+
+    /**
+     * Running summary of the turns that have been folded out of {@link #getMessages()}.
+     */
+    public String getSummary() {
+        return summary;
+    }
+
+    public void setSummary(String summary) {
+        this.summary = summary;
+    }
+
+    public int getSummarizedMessages() {
+        return summarizedMessages;
+    }
+
+    public void setSummarizedMessages(int summarizedMessages) {
+        this.summarizedMessages = summarizedMessages;
+    }
+
+    public ConversationSlots getSlots() {
+        return slots;
+    }
+
+    public void setSlots(ConversationSlots slots) {
+        this.slots = slots;
+    }
+
+    public long[] getResultBitmap() {
+        return resultBitmap;
+    }
+
+    public void setResultBitmap(long[] resultBitmap) {
+        this.resultBitmap = resultBitmap;
+    }
+
+    public String getSlotsCatalogVersion() {
+        return slotsCatalogVersion;
+    }
+
+    public void setSlotsCatalogVersion(String slotsCatalogVersion) {
+        this.slotsCatalogVersion = slotsCatalogVersion;
+    }
+
+    public ConversationState withTurn(ChatMessage userMessage, ChatMessage assistantMessage) {
+        ConversationState copy = new ConversationState(this);
+        copy.messages.add(userMessage);
+        copy.messages.add(assistantMessage);
+        return copy;
+    }
+}
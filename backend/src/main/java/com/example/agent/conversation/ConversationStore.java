@@ -0,0 +1,36 @@
+package com.example.agent.conversation;
+
+import java.util.UUID;
+import java.util.function.UnaryOperator;
+
+/**
+ * Storage for per-conversation state. Implementations must apply {@link #update} atomically
+ * per conversation ID.
+ */
+public interface ConversationStore {
+
+    /**
+     * Returns the state of a conversation, or {@code null} if it is unknown.
+     */
+    ConversationState get(String conversationId);
+
+    /**
+     * Atomically replaces the state of a conversation with the updater's result. The updater
+     * receives {@code null} for a new conversation; returning {@code null} removes it.
+     */
+    ConversationState update(String conversationId, UnaryOperator<ConversationState> updater);
+
+    boolean contains(String conversationId);
+
+    default String newConversationId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * Returns the base URL of the node that owns a conversation when that is not this node,
+     * or {@code null} when it should be handled locally.
+     */
+    default String remoteOwner(String conversationId) {
+        return null;
+    }
+}
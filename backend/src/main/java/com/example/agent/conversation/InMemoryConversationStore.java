@@ -0,0 +1,44 @@
+package com.example.agent.conversation;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.UnaryOperator;
+
+@Component
+@ConditionalOnProperty(name = "conversation.store", havingValue = "local", matchIfMissing = true)
+public class InMemoryConversationStore implements ConversationStore {
+
+    @Value("${conversation.store:local}")
+    private String store;
+
+    private final Map<String, ConversationState> conversations = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        // Native images evaluate the condition above at build time; refuse a different setting
+        if (!"local".equals(store)) {
+            throw new IllegalStateException("conversation.store=" + store
+                    + " but this build only contains the local store; rebuild the native image with that setting");
+        }
+    }
+
+    @Override
+    public ConversationState get(String conversationId) {
+        return conversations.get(conversationId);
+    }
+
+    @Override
+    public ConversationState update(String conversationId, UnaryOperator<ConversationState> updater) {
+        return conversations.compute(conversationId, (key, existing) -> updater.apply(existing));
+    }
+
+    @Override
+    public boolean contains(String conversationId) {
+        return conversations.containsKey(conversationId);
+    }
+}
@@ -0,0 +1,393 @@
+package com.example.agent.llm;
+
+import com.theokanning.openai.completion.chat.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Sends model calls to a primary endpoint and, when one is configured, hedges them to a backup:
+ * if the primary has not answered within its recent {@code llm.hedge.percentile} latency, the
+ * same call goes to the backup as well. Whichever answers first wins and the other request is
+ * cancelled. For streamed calls the race is decided by the first delta, so only the winner's
+ * deltas reach the caller.
+ * <p>
+ * Hedges are limited to {@code llm.hedge.max-ratio} of calls, so that a slow primary cannot
+ * double the load on both upstreams. A primary that fails before any reply fails over to the
+ * backup regardless of that limit, whether it fails before the hedge delay or after it.
+ */
+@Component
+public class HedgingLlmClient implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgingLlmClient.class);
+
+    // Hedges that can be saved up during quiet periods and spent in a burst
+    private static final double MAX_HEDGE_CREDIT = 10;
+
+    private final double percentile;
+    private final int minSamples;
+    private final long initialDelayNanos;
+    private final long minDelayNanos;
+    private final double maxRatio;
+    private final int window;
+
+    // Per endpoint and kind of call ("complete" or "stream")
+    private final Map<String, LatencyTracker> latencies = new ConcurrentHashMap<>();
+    // Guarded by this
+    private double hedgeCredit = 1;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public HedgingLlmClient(@Value("${llm.hedge.percentile:95}") double percentile,
+                            @Value("${llm.hedge.min-samples:20}") int minSamples,
+                            @Value("${llm.hedge.initial-delay-ms:3000}") long initialDelayMs,
+                            @Value("${llm.hedge.min-delay-ms:100}") long minDelayMs,
+                            @Value("${llm.hedge.max-ratio:0.1}") double maxRatio,
+                            @Value("${llm.latency.window:512}") int window) {
+        this.percentile = percentile;
+        this.minSamples = minSamples;
+        this.initialDelayNanos = TimeUnit.MILLISECONDS.toNanos(initialDelayMs);
+        this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(minDelayMs);
+        this.maxRatio = maxRatio;
+        this.window = window;
+    }
+
+    /**
+     * Runs a chat completion, hedged to {@code backup} unless it is null.
+     *
+     * @throws RuntimeException the primary's error when every endpoint tried has failed
+     */
+    public Reply complete(LlmEndpoint primary, LlmEndpoint backup, String model, List<ChatMessage> messages,
+                          double temperature, int maxTokens) {
+        return run(primary, backup, "complete",
+                (endpoint, deltas) -> endpoint.complete(model, messages, temperature, maxTokens), null);
+    }
+
+    /**
+     * Streams a chat completion, hedged to {@code backup} unless it is null, and blocks until
+     * the winning stream ends. Deltas arrive on the endpoint's threads.
+     */
+    public Reply stream(LlmEndpoint primary, LlmEndpoint backup, String model, List<ChatMessage> messages,
+                        double temperature, int maxTokens, Consumer<String> onDelta) {
+        return run(primary, backup, "stream",
+                (endpoint, deltas) -> endpoint.stream(model, messages, temperature, maxTokens, deltas), onDelta);
+    }
+
+    private Reply run(LlmEndpoint primary, LlmEndpoint backup, String kind,
+                      BiFunction<LlmEndpoint, Consumer<String>, CompletableFuture<String>> call, Consumer<String> onDelta) {
+        Race race = new Race(kind, call, onDelta);
+        try {
+            Attempt first = race.start(primary);
+            if (backup != null) {
+                earnHedgeCredit();
+                race.awaitFirst(first, hedgeDelayNanos(latency(primary, kind)));
+                boolean hedged = false;
+                if (!race.isDecided() && !first.reply.isCompletedExceptionally()) {
+                    if (spendHedgeCredit()) {
+                        count("llm.hedge.decisions", "decision", "hedged");
+                        race.start(backup);
+                        hedged = true;
+                    } else {
+                        count("llm.hedge.decisions", "decision", "over_budget");
+                        // The primary may still fail, e.g. on its call timeout, and must then fail over
+                        race.awaitFirst(first, Long.MAX_VALUE);
+                    }
+                }
+                if (!hedged && !race.isDecided() && first.reply.isCompletedExceptionally()) {
+                    count("llm.hedge.decisions", "decision", "failover");
+                    race.start(backup);
+                }
+            }
+            race.close();
+            return race.result();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the model", e);
+        } finally {
+            race.cancelLosers();
+        }
+    }
+
+    long hedgeDelayNanos(LatencyTracker tracker) {
+        long observed = tracker.percentile(percentile, minSamples);
+        return observed < 0 ? initialDelayNanos : Math.max(minDelayNanos, observed);
+    }
+
+    private synchronized void earnHedgeCredit() {
+        hedgeCredit = Math.min(MAX_HEDGE_CREDIT, hedgeCredit + maxRatio);
+    }
+
+    private synchronized boolean spendHedgeCredit() {
+        if (hedgeCredit < 1) {
+            return false;
+        }
+        hedgeCredit -= 1;
+        return true;
+    }
+
+    LatencyTracker latency(LlmEndpoint endpoint, String kind) {
+        return latencies.computeIfAbsent(endpoint.getName() + '|' + kind, key -> {
+            LatencyTracker tracker = new LatencyTracker(window);
+            MeterRegistry meterRegistry = registry;
+            if (meterRegistry != null) {
+                registerLatency(meterRegistry, key, tracker);
+            }
+            return tracker;
+        });
+    }
+
+    private void registerLatency(MeterRegistry meterRegistry, String key, LatencyTracker tracker) {
+        int separator = key.lastIndexOf('|');
+        Gauge.builder("llm.endpoint.latency", tracker, t -> t.percentile(percentile, 1) / 1_000_000.0)
+                .description("Recent model call latency at the hedging percentile in milliseconds; time to first delta for streams")
+                .tag("endpoint", key.substring(0, separator))
+                .tag("kind", key.substring(separator + 1))
+                .register(meterRegistry);
+    }
+
+    private void count(String name, String... tags) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return;
+        }
+        counters.computeIfAbsent(name + '|' + String.join("|", tags), key -> Counter.builder(name)
+                        .tags(tags)
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        latencies.forEach((key, tracker) -> registerLatency(registry, key, tracker));
+    }
+
+    /**
+     * The winning reply and where it came from.
+     */
+    public static final class Reply {
+        private final String text;
+        private final String endpoint;
+        private final boolean hedged;
+
+        Reply(String text, String endpoint, boolean hedged) {
+            this.text = text;
+            this.endpoint = endpoint;
+            this.hedged = hedged;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public String getEndpoint() {
+            return endpoint;
+        }
+
+        /**
+         * Whether a second endpoint was asked, by a hedge or a failover.
+         */
+        public boolean isHedged() {
+            return hedged;
+        }
+    }
+
+    private static final class Attempt {
+        private final LlmEndpoint endpoint;
+        private final LatencyTracker latency;
+        private final long startNanos = System.nanoTime();
+        private final AtomicBoolean timed = new AtomicBoolean();
+        private volatile CompletableFuture<String> reply;
+        // Completes once the race has taken the reply into account
+        private volatile CompletableFuture<String> settled;
+
+        private Attempt(LlmEndpoint endpoint, LatencyTracker latency) {
+            this.endpoint = endpoint;
+            this.latency = latency;
+        }
+
+        // Completions are timed to the reply, streams to their first delta
+        private void recordLatency() {
+            if (timed.compareAndSet(false, true)) {
+                latency.record(System.nanoTime() - startNanos);
+            }
+        }
+    }
+
+    /**
+     * The attempts of one call. The first attempt to answer (or, when streaming, to produce a
+     * delta) is the winner; the others are cancelled as soon as it is known.
+     */
+    private final class Race {
+        private final String kind;
+        private final BiFunction<LlmEndpoint, Consumer<String>, CompletableFuture<String>> call;
+        private final Consumer<String> onDelta;
+        private final CompletableFuture<Attempt> winner = new CompletableFuture<>();
+
+        // Guarded by this
+        private final List<Attempt> attempts = new ArrayList<>();
+        private int failures;
+        private boolean closed;
+        private Throwable error;
+
+        private Race(String kind, BiFunction<LlmEndpoint, Consumer<String>, CompletableFuture<String>> call,
+                     Consumer<String> onDelta) {
+            this.kind = kind;
+            this.call = call;
+            this.onDelta = onDelta;
+        }
+
+        private Attempt start(LlmEndpoint endpoint) {
+            Attempt attempt = new Attempt(endpoint, latency(endpoint, kind));
+            synchronized (this) {
+                attempts.add(attempt);
+            }
+            Consumer<String> deltas = onDelta == null ? null : delta -> {
+                attempt.recordLatency();
+                if (claim(attempt)) {
+                    onDelta.accept(delta);
+                }
+            };
+            CompletableFuture<String> reply;
+            try {
+                reply = call.apply(endpoint, deltas);
+            } catch (RuntimeException e) {
+                reply = CompletableFuture.failedFuture(e);
+            }
+            attempt.reply = reply;
+            attempt.settled = reply.whenComplete((text, failure) -> finished(attempt, failure));
+            if (winner.isDone() && winner() != attempt) {
+                reply.cancel(true);
+            }
+            return attempt;
+        }
+
+        private boolean claim(Attempt attempt) {
+            if (winner.complete(attempt)) {
+                cancelLosers();
+            }
+            return winner() == attempt;
+        }
+
+        private Attempt winner() {
+            return winner.isDone() && !winner.isCompletedExceptionally() ? winner.join() : null;
+        }
+
+        private void finished(Attempt attempt, Throwable failure) {
+            if (failure == null) {
+                attempt.recordLatency();
+                claim(attempt);
+                count("llm.calls", "endpoint", attempt.endpoint.getName(), "outcome", "success");
+                return;
+            }
+            if (attempt.reply.isCancelled()) {
+                // How long the loser had been running is a lower bound on its latency;
+                // leaving it out would make the endpoint look faster than it is
+                attempt.recordLatency();
+                count("llm.calls", "endpoint", attempt.endpoint.getName(), "outcome", "cancelled");
+                return;
+            }
+            count("llm.calls", "endpoint", attempt.endpoint.getName(), "outcome", "error");
+            logger.debug("Model call to {} failed: {}", attempt.endpoint.getName(), failure.getMessage());
+            synchronized (this) {
+                Throwable cause = unwrap(failure);
+                if (error == null) {
+                    error = cause;
+                } else if (error != cause) {
+                    error.addSuppressed(cause);
+                }
+                failures++;
+                failIfExhausted();
+            }
+        }
+
+        // Only once no further attempt can be started
+        private void failIfExhausted() {
+            if (closed && failures == attempts.size()) {
+                winner.completeExceptionally(error);
+            }
+        }
+
+        private synchronized void close() {
+            closed = true;
+            failIfExhausted();
+        }
+
+        private boolean isDecided() {
+            return winner.isDone();
+        }
+
+        /**
+         * Waits until there is a winner, the first attempt has failed, or {@code delayNanos} have
+         * passed.
+         */
+        private void awaitFirst(Attempt first, long delayNanos) throws InterruptedException {
+            try {
+                // Not first.reply: its dependents run in no particular order, so this could
+                // wake before a successful reply had been claimed
+                CompletableFuture.anyOf(winner, first.settled).get(delayNanos, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException | ExecutionException | CancellationException e) {
+                // Decided by the caller from the state of the race
+            }
+        }
+
+        private Reply result() throws InterruptedException {
+            try {
+                Attempt won = winner.get();
+                String text = won.reply.get();
+                boolean hedged;
+                synchronized (this) {
+                    hedged = attempts.size() > 1;
+                }
+                return new Reply(text, won.endpoint.getName(), hedged);
+            } catch (ExecutionException e) {
+                Throwable cause = unwrap(e);
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException("Model call failed", cause);
+            }
+        }
+
+        private void cancelLosers() {
+            Attempt won = winner();
+            List<Attempt> started;
+            synchronized (this) {
+                started = new ArrayList<>(attempts);
+            }
+            for (Attempt attempt : started) {
+                if (attempt != won && attempt.reply != null && !attempt.reply.isDone()) {
+                    attempt.reply.cancel(true);
+                }
+            }
+        }
+    }
+
+    private static Throwable unwrap(Throwable failure) {
+        Throwable cause = failure;
+        while ((cause instanceof ExecutionException || cause instanceof CompletionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
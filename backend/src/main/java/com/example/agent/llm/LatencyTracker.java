@@ -0,0 +1,45 @@
+package com.example.agent.llm;
+
+import java.util.Arrays;
+
+/**
+ * Latencies of the most recent calls to one endpoint, for percentiles over a sliding window.
+ */
+public class LatencyTracker {
+
+    // Guarded by this; a ring of the last samples.length latencies
+    private final long[] samples;
+    private int next;
+    private int count;
+
+    public LatencyTracker(int window) {
+        this.samples = new long[Math.max(1, window)];
+    }
+
+    public synchronized void record(long nanos) {
+        samples[next] = nanos;
+        next = (next + 1) % samples.length;
+        count = Math.min(count + 1, samples.length);
+    }
+
+    /**
+     * Nearest-rank percentile of the window, or -1 while it holds fewer than
+     * {@code minSamples} latencies.
+     */
+    public long percentile(double percentile, int minSamples) {
+        long[] sorted;
+        synchronized (this) {
+            if (count == 0 || count < minSamples) {
+                return -1;
+            }
+            sorted = Arrays.copyOf(samples, count);
+        }
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    public synchronized int size() {
+        return count;
+    }
+}
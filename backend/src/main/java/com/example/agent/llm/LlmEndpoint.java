@@ -0,0 +1,32 @@
+package com.example.agent.llm;
+
+import com.theokanning.openai.completion.chat.ChatMessage;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * One upstream that answers chat completions, such as the OpenAI API or a local
+ * OpenAI-compatible server. Calls are asynchronous; cancelling the returned future aborts the
+ * upstream request, which is how {@link HedgingLlmClient} drops the loser of a race.
+ */
+public interface LlmEndpoint {
+
+    /**
+     * Names the endpoint in metrics, logs and flight recordings.
+     */
+    String getName();
+
+    /**
+     * Starts a chat completion and completes with the assistant's reply.
+     */
+    CompletableFuture<String> complete(String model, List<ChatMessage> messages, double temperature, int maxTokens);
+
+    /**
+     * Starts a streamed chat completion, handing each content delta to {@code onDelta} as it
+     * arrives, and completes with the full reply once the stream ends.
+     */
+    CompletableFuture<String> stream(String model, List<ChatMessage> messages, double temperature, int maxTokens,
+                                     Consumer<String> onDelta);
+}
@@ -0,0 +1,113 @@
+package com.example.agent.llm;
+
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.completion.chat.ChatCompletionChunk;
+import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.service.OpenAiService;
+import io.reactivex.disposables.Disposable;
+import okhttp3.OkHttpClient;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Retrofit;
+import retrofit2.adapter.rxjava2.RxJava2CallAdapterFactory;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * The OpenAI chat completions API, or any server that implements it, such as a local model
+ * server. Endpoints share the connection pool and dispatcher of the {@link OkHttpClient} they
+ * are given; every call, streamed or not, is enqueued on that dispatcher.
+ */
+public class OpenAiEndpoint implements LlmEndpoint {
+
+    private final String name;
+    private final String model;
+    private final OpenAiApi api;
+
+    /**
+     * @param baseUrl empty for api.openai.com
+     * @param model   the model to use instead of the requested one, e.g. on a server that only
+     *                serves its own; empty to use the requested model
+     */
+    public OpenAiEndpoint(String name, String baseUrl, String apiKey, String model, OkHttpClient pool) {
+        this.name = name;
+        this.model = model == null || model.isBlank() ? null : model.trim();
+        OkHttpClient.Builder client = pool.newBuilder();
+        // Without a key of its own an endpoint gets no Authorization header, rather than another provider's key
+        if (apiKey != null && !apiKey.isBlank()) {
+            client.addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                    .header("Authorization", "Bearer " + apiKey)
+                    .build()));
+        }
+        Retrofit.Builder retrofit = OpenAiService.defaultRetrofit(client.build(), OpenAiService.defaultObjectMapper()).newBuilder();
+        // The library's adapter runs calls synchronously on the subscribing thread; the async one
+        // enqueues them, so the dispatcher's limits apply to them as they do to streams
+        retrofit.callAdapterFactories().clear();
+        retrofit.addCallAdapterFactory(RxJava2CallAdapterFactory.createAsync());
+        if (baseUrl != null && !baseUrl.isBlank()) {
+            retrofit.baseUrl(baseUrl.endsWith("/") ? baseUrl : baseUrl + "/");
+        }
+        this.api = retrofit.build().create(OpenAiApi.class);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public CompletableFuture<String> complete(String model, List<ChatMessage> messages, double temperature, int maxTokens) {
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        // Disposing the subscription cancels the underlying HTTP call
+        Disposable subscription = api.createChatCompletion(buildRequest(model, messages, temperature, maxTokens))
+                .subscribe(result -> reply.complete(result.getChoices().get(0).getMessage().getContent()),
+                        reply::completeExceptionally);
+        reply.whenComplete((text, error) -> {
+            if (reply.isCancelled()) {
+                subscription.dispose();
+            }
+        });
+        return reply;
+    }
+
+    @Override
+    public CompletableFuture<String> stream(String model, List<ChatMessage> messages, double temperature, int maxTokens,
+                                            Consumer<String> onDelta) {
+        ChatCompletionRequest request = buildRequest(model, messages, temperature, maxTokens);
+        request.setStream(true);
+        Call<ResponseBody> call = api.createChatCompletionStream(request);
+        CompletableFuture<String> reply = new CompletableFuture<>();
+        StringBuilder text = new StringBuilder();
+        Disposable subscription = OpenAiService.stream(call, ChatCompletionChunk.class)
+                .subscribe(chunk -> {
+                    if (chunk.getChoices().isEmpty() || chunk.getChoices().get(0).getMessage() == null) {
+                        return;
+                    }
+                    String delta = chunk.getChoices().get(0).getMessage().getContent();
+                    if (delta != null && !delta.isEmpty()) {
+                        text.append(delta);
+                        onDelta.accept(delta);
+                    }
+                }, reply::completeExceptionally, () -> reply.complete(text.toString()));
+        reply.whenComplete((result, error) -> {
+            if (reply.isCancelled()) {
+                // The stream only notices disposal between events; cancelling the call stops it at once
+                call.cancel();
+                subscription.dispose();
+            }
+        });
+        return reply;
+    }
+
+    private ChatCompletionRequest buildRequest(String model, List<ChatMessage> messages, double temperature, int maxTokens) {
+        return ChatCompletionRequest.builder()
+                .model(this.model != null ? this.model : model)
+                .messages(messages)
+                .temperature(temperature)
+                .maxTokens(maxTokens)
+                .build();
+    }
+}
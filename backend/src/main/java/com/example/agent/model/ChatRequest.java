@@ -2,6 +2,8 @@ package com.example.agent.model;
 
 import jakarta.validation.constraints.NotBlank;
 
+import java.util.List;
+
 public class ChatRequest {
     @NotBlank(message = "Message cannot be empty")
     private String message;
@@ -9,6 +11,13 @@ public class ChatRequest {
     private String conversationId;
     private String context;
 
+    // Compact mode: phones are referenced by ID and only sent in full when not cached by the client
+    private boolean compact;
+    private String catalogVersion;
+    private List<String> cachedPhoneIds;
+    // Named catalog (region or store) to search; the default catalog when absent
+    private String catalog;
+
     public ChatRequest() {}
 
     public ChatRequest(String message) {
@@ -38,5 +47,36 @@ public class ChatRequest {
     public void setContext(String context) {
         this.context = context;
     }
-}
 
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public void setCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public List<String> getCachedPhoneIds() {
+        return cachedPhoneIds;
+    }
+
+    public void setCachedPhoneIds(List<String> cachedPhoneIds) {
+        this.cachedPhoneIds = cachedPhoneIds;
+    }
+
+    public String getCatalog() {
+        return catalog;
+    }
+
+    public void setCatalog(String catalog) {
+        this.catalog = catalog;
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.agent.model;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class ChatResponse {
@@ -9,6 +11,18 @@ public class ChatResponse {
     private SafetyResult safetyResult;
     private String conversationId;
     private String intent;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String catalogVersion;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<String> comparisonPhoneIds;
+    // Compact mode only: full data for referenced phones the client does not have cached
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private List<Phone> phones;
+    // Structured constraints carried across turns, so clients can show and edit active filters
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ConversationSlots slots;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private PhoneComparison comparison;
 
     public ChatResponse() {}
 
@@ -59,5 +73,44 @@ public class ChatResponse {
     public void setIntent(String intent) {
         this.intent = intent;
     }
-}
 
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public void setCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public List<String> getComparisonPhoneIds() {
+        return comparisonPhoneIds;
+    }
+
+    public void setComparisonPhoneIds(List<String> comparisonPhoneIds) {
+        this.comparisonPhoneIds = comparisonPhoneIds;
+    }
+
+    public List<Phone> getPhones() {
+        return phones;
+    }
+
+    public void setPhones(List<Phone> phones) {
+        this.phones = phones;
+    }
+
+    public ConversationSlots getSlots() {
+        return slots;
+    }
+
+    public void setSlots(ConversationSlots slots) {
+        this.slots = slots;
+    }
+
+    public PhoneComparison getComparison() {
+        return comparison;
+    }
+
+    public void setComparison(PhoneComparison comparison) {
+        this.comparison = comparison;
+    }
+}
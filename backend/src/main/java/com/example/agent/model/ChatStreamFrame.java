@@ -0,0 +1,130 @@
+package com.example.agent.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * A server-to-client frame on the chat WebSocket. {@code session} opens the connection,
+ * {@code delta} carries part of a reply while it is generated, {@code replace} replaces the
+ * deltas of a turn so far, {@code reply} the final response of a turn, {@code catalog} a new catalog version and {@code error} a failed or rejected turn.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChatStreamFrame {
+
+    public static final String SESSION = "session";
+    public static final String DELTA = "delta";
+    public static final String REPLACE = "replace";
+    public static final String REPLY = "reply";
+    public static final String CATALOG = "catalog";
+    public static final String ERROR = "error";
+
+    private String type;
+    private Integer turn;
+    private String text;
+    private ChatResponse response;
+    private String conversationId;
+    private String catalogVersion;
+    private String error;
+
+    public ChatStreamFrame() {}
+
+    public ChatStreamFrame(String type) {
+        this.type = type;
+    }
+
+    public static ChatStreamFrame session(String conversationId, String catalogVersion) {
+        ChatStreamFrame frame = new ChatStreamFrame(SESSION);
+        frame.setConversationId(conversationId);
+        frame.setCatalogVersion(catalogVersion);
+        return frame;
+    }
+
+    public static ChatStreamFrame delta(int turn, String text) {
+        ChatStreamFrame frame = new ChatStreamFrame(DELTA);
+        frame.setTurn(turn);
+        frame.setText(text);
+        return frame;
+    }
+
+    public static ChatStreamFrame replace(int turn, String text) {
+        ChatStreamFrame frame = new ChatStreamFrame(REPLACE);
+        frame.setTurn(turn);
+        frame.setText(text);
+        return frame;
+    }
+
+    public static ChatStreamFrame reply(int turn, ChatResponse response) {
+        ChatStreamFrame frame = new ChatStreamFrame(REPLY);
+        frame.setTurn(turn);
+        frame.setResponse(response);
+        return frame;
+    }
+
+    public static ChatStreamFrame catalog(String catalogVersion) {
+        ChatStreamFrame frame = new ChatStreamFrame(CATALOG);
+        frame.setCatalogVersion(catalogVersion);
+        return frame;
+    }
+
+    public static ChatStreamFrame error(Integer turn, String error) {
+        ChatStreamFrame frame = new ChatStreamFrame(ERROR);
+        frame.setTurn(turn);
+        frame.setError(error);
+        return frame;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public Integer getTurn() {
+        return turn;
+    }
+
+    public void setTurn(Integer turn) {
+        this.turn = turn;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public void setText(String text) {
+        this.text = text;
+    }
+
+    public ChatResponse getResponse() {
+        return response;
+    }
+
+    public void setResponse(ChatResponse response) {
+        this.response = response;
+    }
+
+    public String getConversationId() {
+        return conversationId;
+    }
+
+    public void setConversationId(String conversationId) {
+        this.conversationId = conversationId;
+    }
+
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public void setCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+}
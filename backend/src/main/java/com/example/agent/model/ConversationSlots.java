@@ -0,0 +1,96 @@
+package com.example.agent.model;
+
+import com.example.agent.catalog.Spec;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+public class ConversationSlots {
+    private Integer minPrice;
+    private Integer maxPrice;
+    private List<String> brands = new ArrayList<>();
+    private List<String> features = new ArrayList<>();
+    // Inclusive bounds on numeric specs other than price, e.g. RAM_GB at least 8
+    private Map<Spec, Double> specMinimums = new EnumMap<>(Spec.class);
+    private Map<Spec, Double> specMaximums = new EnumMap<>(Spec.class);
+    private List<String> resultPhoneIds = new ArrayList<>();
+
+    public ConversationSlots() {}
+
+    public ConversationSlots(ConversationSlots other) {
+        this.minPrice = other.minPrice;
+        this.maxPrice = other.maxPrice;
+        this.brands = new ArrayList<>(other.brands);
+        this.features = new ArrayList<>(other.features);
+        this.specMinimums = copy(other.specMinimums);
+        this.specMaximums = copy(other.specMaximums);
+        this.resultPhoneIds = new ArrayList<>(other.resultPhoneIds);
+    }
+
+    public Integer getMinPrice() {
+        return minPrice;
+    }
+
+    public void setMinPrice(Integer minPrice) {
+        this.minPrice = minPrice;
+    }
+
+    public Integer getMaxPrice() {
+        return maxPrice;
+    }
+
+    public void setMaxPrice(Integer maxPrice) {
+        this.maxPrice = maxPrice;
+    }
+
+    public List<String> getBrands() {
+        return brands;
+    }
+
+    public void setBrands(List<String> brands) {
+        this.brands = brands;
+    }
+
+    public List<String> getFeatures() {
+        return features;
+    }
+
+    public void setFeatures(List<String> features) {
+        this.features = features;
+    }
+
+    public Map<Spec, Double> getSpecMinimums() {
+        return specMinimums;
+    }
+
+    public void setSpecMinimums(Map<Spec, Double> specMinimums) {
+        this.specMinimums = copy(specMinimums);
+    }
+
+    public Map<Spec, Double> getSpecMaximums() {
+        return specMaximums;
+    }
+
+    public void setSpecMaximums(Map<Spec, Double> specMaximums) {
+        this.specMaximums = copy(specMaximums);
+    }
+
+    public List<String> getResultPhoneIds() {
+        return resultPhoneIds;
+    }
+
+    public void setResultPhoneIds(List<String> resultPhoneIds) {
+        this.resultPhoneIds = resultPhoneIds;
+    }
+
+    public boolean isEmpty() {
+        return minPrice == null && maxPrice == null && brands.isEmpty() && features.isEmpty()
+                && specMinimums.isEmpty() && specMaximums.isEmpty();
+    }
+
+    private static Map<Spec, Double> copy(Map<Spec, Double> bounds) {
+        return bounds == null || bounds.isEmpty() ? new EnumMap<>(Spec.class) : new EnumMap<>(bounds);
+    }
+}
@@ -4,6 +4,7 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import java.util.List;
 
 public class Phone {
+    private String id;
     private String name;
     private String brand;
     private Integer price;
@@ -26,6 +27,14 @@ public class Phone {
         this.features = features;
     }
 
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
     public String getName() {
         return name;
     }
@@ -0,0 +1,69 @@
+package com.example.agent.model;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Structured differences between two or more phones: per-spec values, deltas and winners, and
+ * the features only some of them have. Instances are cached and shared, so treat them as
+ * read-only.
+ */
+public class PhoneComparison {
+    private List<String> phoneIds;
+    private List<String> phoneNames;
+    private List<SpecComparison> specs;
+    private List<String> commonFeatures;
+    // Phone ID -> features no other compared phone has
+    private Map<String, List<String>> uniqueFeatures;
+
+    public PhoneComparison() {}
+
+    public PhoneComparison(List<String> phoneIds, List<String> phoneNames, List<SpecComparison> specs,
+                           List<String> commonFeatures, Map<String, List<String>> uniqueFeatures) {
+        this.phoneIds = phoneIds;
+        this.phoneNames = phoneNames;
+        this.specs = specs;
+        this.commonFeatures = commonFeatures;
+        this.uniqueFeatures = uniqueFeatures;
+    }
+
+    public List<String> getPhoneIds() {
+        return phoneIds;
+    }
+
+    public void setPhoneIds(List<String> phoneIds) {
+        this.phoneIds = phoneIds;
+    }
+
+    public List<String> getPhoneNames() {
+        return phoneNames;
+    }
+
+    public void setPhoneNames(List<String> phoneNames) {
+        this.phoneNames = phoneNames;
+    }
+
+    public List<SpecComparison> getSpecs() {
+        return specs;
+    }
+
+    public void setSpecs(List<SpecComparison> specs) {
+        this.specs = specs;
+    }
+
+    public List<String> getCommonFeatures() {
+        return commonFeatures;
+    }
+
+    public void setCommonFeatures(List<String> commonFeatures) {
+        this.commonFeatures = commonFeatures;
+    }
+
+    public Map<String, List<String>> getUniqueFeatures() {
+        return uniqueFeatures;
+    }
+
+    public void setUniqueFeatures(Map<String, List<String>> uniqueFeatures) {
+        this.uniqueFeatures = uniqueFeatures;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.agent.model;
+
+import java.util.List;
+
+public class PhonePage {
+    private String catalogVersion;
+    private List<Phone> phones;
+    private int total;
+    private String nextCursor;
+
+    public PhonePage() {}
+
+    public PhonePage(String catalogVersion, List<Phone> phones, int total, String nextCursor) {
+        this.catalogVersion = catalogVersion;
+        this.phones = phones;
+        this.total = total;
+        this.nextCursor = nextCursor;
+    }
+
+    public String getCatalogVersion() {
+        return catalogVersion;
+    }
+
+    public void setCatalogVersion(String catalogVersion) {
+        this.catalogVersion = catalogVersion;
+    }
+
+    public List<Phone> getPhones() {
+        return phones;
+    }
+
+    public void setPhones(List<Phone> phones) {
+        this.phones = phones;
+    }
+
+    public int getTotal() {
+        return total;
+    }
+
+    public void setTotal(int total) {
+        this.total = total;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+}
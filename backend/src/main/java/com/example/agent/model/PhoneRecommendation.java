@@ -1,8 +1,11 @@
 package com.example.agent.model;
 
-import java.util.List;
+import com.fasterxml.jackson.annotation.JsonInclude;
 
 public class PhoneRecommendation {
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String phoneId;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
     private Phone phone;
     private String rationale;
     private Double relevanceScore;
@@ -14,6 +17,14 @@ public class PhoneRecommendation {
         this.rationale = rationale;
     }
 
+    public String getPhoneId() {
+        return phoneId;
+    }
+
+    public void setPhoneId(String phoneId) {
+        this.phoneId = phoneId;
+    }
+
     public Phone getPhone() {
         return phone;
     }
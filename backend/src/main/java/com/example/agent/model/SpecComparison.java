@@ -0,0 +1,70 @@
+package com.example.agent.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * One spec across the compared phones, in the same order as {@link PhoneComparison#getPhoneIds()}.
+ */
+public class SpecComparison {
+    private String spec;
+    private String unit;
+    // null where a phone does not list the spec
+    private List<Double> values;
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Double delta;
+    // null on ties, when fewer than two phones have the spec, or when neither direction is better
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String winnerId;
+
+    public SpecComparison() {}
+
+    public SpecComparison(String spec, String unit, List<Double> values, Double delta, String winnerId) {
+        this.spec = spec;
+        this.unit = unit;
+        this.values = values;
+        this.delta = delta;
+        this.winnerId = winnerId;
+    }
+
+    public String getSpec() {
+        return spec;
+    }
+
+    public void setSpec(String spec) {
+        this.spec = spec;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public void setUnit(String unit) {
+        this.unit = unit;
+    }
+
+    public List<Double> getValues() {
+        return values;
+    }
+
+    public void setValues(List<Double> values) {
+        this.values = values;
+    }
+
+    public Double getDelta() {
+        return delta;
+    }
+
+    public void setDelta(Double delta) {
+        this.delta = delta;
+    }
+
+    public String getWinnerId() {
+        return winnerId;
+    }
+
+    public void setWinnerId(String winnerId) {
+        this.winnerId = winnerId;
+    }
+}
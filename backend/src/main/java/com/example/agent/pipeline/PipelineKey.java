@@ -0,0 +1,40 @@
+package com.example.agent.pipeline;
+
+import java.util.List;
+
+/**
+ * A typed slot in a {@link TurnContext}. A plain key has exactly one producing stage; a
+ * collecting key may have several, and reads see their contributions concatenated in stage
+ * order once all of them have finished.
+ */
+public final class PipelineKey<T> {
+
+    private final String name;
+    private final boolean collecting;
+
+    private PipelineKey(String name, boolean collecting) {
+        this.name = name;
+        this.collecting = collecting;
+    }
+
+    public static <T> PipelineKey<T> of(String name) {
+        return new PipelineKey<>(name, false);
+    }
+
+    public static <E> PipelineKey<List<E>> collecting(String name) {
+        return new PipelineKey<>(name, true);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isCollecting() {
+        return collecting;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.agent.pipeline;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Assembles turn pipelines from built-in stages plus every {@link PipelineStage} bean, applies
+ * per-stage configuration and owns the worker pool for blocking stages. The pool has at most
+ * {@code pipeline.worker-threads} threads and no queue, so a stage that finds every worker busy
+ * falls back at once instead of waiting behind other turns:
+ * <ul>
+ *   <li>{@code pipeline.stages.<name>.enabled=false} always skips a stage</li>
+ *   <li>{@code pipeline.stages.<name>.timeout-ms} overrides a stage's timeout</li>
+ * </ul>
+ * Stage runs are recorded in the {@code chat.pipeline.stage} timer, tagged by stage and outcome.
+ */
+@Component
+public class PipelineScheduler implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(PipelineScheduler.class);
+
+    private final Environment environment;
+    private final ObjectProvider<PipelineStage> pluginStages;
+    private final ExecutorService workers;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public PipelineScheduler(Environment environment,
+                             ObjectProvider<PipelineStage> pluginStages,
+                             @Value("${pipeline.worker-threads:${chat.admission.max-limit:200}}") int workerThreads) {
+        this.environment = environment;
+        this.pluginStages = pluginStages;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(0, workerThreads, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "pipeline-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Builds a pipeline from the given stages followed by all stage beans.
+     *
+     * @param provided keys the caller puts into every turn's context
+     */
+    public TurnPipeline assemble(Set<PipelineKey<?>> provided, List<PipelineStage> builtIn) {
+        List<PipelineStage> stages = new ArrayList<>(builtIn);
+        pluginStages.orderedStream().forEach(stages::add);
+        TurnPipeline pipeline = new TurnPipeline(stages, provided,
+                stage -> environment.getProperty(property(stage, "enabled"), Boolean.class, true),
+                stage -> environment.getProperty(property(stage, "timeout-ms"), Long.class, stage.getTimeoutMs()),
+                workers, this::record);
+        List<String> names = new ArrayList<>();
+        for (PipelineStage stage : pipeline.getStages()) {
+            names.add(stage.getName());
+        }
+        logger.info("Assembled turn pipeline: {}", names);
+        return pipeline;
+    }
+
+    private static String property(PipelineStage stage, String setting) {
+        return "pipeline.stages." + stage.getName() + "." + setting;
+    }
+
+    private void record(String stage, StageOutcome outcome, long nanos) {
+        if (outcome == StageOutcome.TIMED_OUT) {
+            logger.warn("Pipeline stage '{}' timed out after {} ms, using its fallback", stage,
+                    TimeUnit.NANOSECONDS.toMillis(nanos));
+        } else if (outcome == StageOutcome.REJECTED) {
+            logger.warn("No pipeline worker free for stage '{}', using its fallback", stage);
+        }
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return;
+        }
+        String outcomeTag = outcome.name().toLowerCase(Locale.ROOT);
+        timers.computeIfAbsent(stage + '|' + outcomeTag, key -> Timer.builder("chat.pipeline.stage")
+                        .description("Turn pipeline stage runs")
+                        .tag("stage", stage)
+                        .tag("outcome", outcomeTag)
+                        .register(meterRegistry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.agent.pipeline;
+
+import java.util.Set;
+
+/**
+ * One step of the chat turn pipeline. A stage runs once every stage producing one of its
+ * inputs has finished; stages that do not depend on each other may run concurrently.
+ * <p>
+ * A stage that is skipped, disabled or times out does not run (or its result is discarded);
+ * {@link #fallback} is called instead and should put default values for its outputs. Outputs
+ * that are never put read as {@code null}.
+ * <p>
+ * Any {@code PipelineStage} bean is added to the chat pipeline, which is how extra stages,
+ * for example more retrieval sources contributing to {@link TurnKeys#CANDIDATES}, plug in.
+ */
+public interface PipelineStage {
+
+    String getName();
+
+    Set<PipelineKey<?>> getInputs();
+
+    Set<PipelineKey<?>> getOutputs();
+
+    /**
+     * Decides per turn whether the stage runs; checked once its inputs are available.
+     */
+    default boolean shouldRun(TurnContext context) {
+        return true;
+    }
+
+    void run(TurnContext context, StageOutputs outputs) throws Exception;
+
+    default void fallback(TurnContext context, StageOutputs outputs) {
+    }
+
+    /**
+     * Blocking stages (remote calls, model calls) run on the pipeline's worker pool so other
+     * stages can proceed meanwhile. Others run on the request thread, which is cheaper for the
+     * microsecond-scale in-memory stages.
+     */
+    default boolean isBlocking() {
+        return false;
+    }
+
+    /**
+     * Default timeout in milliseconds, 0 for none; {@code pipeline.stages.<name>.timeout-ms}
+     * overrides it. Stages with a timeout always run on the worker pool.
+     */
+    default long getTimeoutMs() {
+        return 0;
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.agent.pipeline;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * A {@link PipelineStage} assembled from lambdas.
+ */
+public final class Stage implements PipelineStage {
+
+    @FunctionalInterface
+    public interface Body {
+        void apply(TurnContext context, StageOutputs outputs) throws Exception;
+    }
+
+    private final String name;
+    private final Set<PipelineKey<?>> inputs;
+    private final Set<PipelineKey<?>> outputs;
+    private final Predicate<TurnContext> condition;
+    private final Body body;
+    private final Body fallback;
+    private final boolean blocking;
+    private final long timeoutMs;
+
+    private Stage(Builder builder) {
+        this.name = builder.name;
+        this.inputs = Set.copyOf(builder.inputs);
+        this.outputs = Set.copyOf(builder.outputs);
+        this.condition = builder.condition;
+        this.body = builder.body;
+        this.fallback = builder.fallback;
+        this.blocking = builder.blocking;
+        this.timeoutMs = builder.timeoutMs;
+    }
+
+    public static Builder builder(String name) {
+        return new Builder(name);
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Set<PipelineKey<?>> getInputs() {
+        return inputs;
+    }
+
+    @Override
+    public Set<PipelineKey<?>> getOutputs() {
+        return outputs;
+    }
+
+    @Override
+    public boolean shouldRun(TurnContext context) {
+        return condition.test(context);
+    }
+
+    @Override
+    public void run(TurnContext context, StageOutputs stageOutputs) throws Exception {
+        body.apply(context, stageOutputs);
+    }
+
+    @Override
+    public void fallback(TurnContext context, StageOutputs stageOutputs) {
+        if (fallback == null) {
+            return;
+        }
+        try {
+            fallback.apply(context, stageOutputs);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException("Fallback of stage '" + name + "' failed", e);
+        }
+    }
+
+    @Override
+    public boolean isBlocking() {
+        return blocking;
+    }
+
+    @Override
+    public long getTimeoutMs() {
+        return timeoutMs;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    public static final class Builder {
+        private final String name;
+        private final Set<PipelineKey<?>> inputs = new LinkedHashSet<>();
+        private final Set<PipelineKey<?>> outputs = new LinkedHashSet<>();
+        private Predicate<TurnContext> condition = context -> true;
+        private Body body;
+        private Body fallback;
+        private boolean blocking;
+        private long timeoutMs;
+
+        private Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder inputs(PipelineKey<?>... keys) {
+            inputs.addAll(List.of(keys));
+            return this;
+        }
+
+        public Builder outputs(PipelineKey<?>... keys) {
+            outputs.addAll(List.of(keys));
+            return this;
+        }
+
+        public Builder when(Predicate<TurnContext> condition) {
+            this.condition = condition;
+            return this;
+        }
+
+        public Builder run(Body body) {
+            this.body = body;
+            return this;
+        }
+
+        public Builder fallback(Body fallback) {
+            this.fallback = fallback;
+            return this;
+        }
+
+        public Builder blocking() {
+            this.blocking = true;
+            return this;
+        }
+
+        public Builder timeoutMs(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+            return this;
+        }
+
+        public Stage build() {
+            if (body == null) {
+                throw new IllegalStateException("Stage '" + name + "' has no body");
+            }
+            return new Stage(this);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.agent.pipeline;
+
+public enum StageOutcome {
+    COMPLETED,
+    SKIPPED,
+    TIMED_OUT,
+    // A blocking stage found every worker busy
+    REJECTED,
+    FAILED
+}
@@ -0,0 +1,83 @@
+package com.example.agent.pipeline;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * What one stage run produced. Outputs only become visible to other stages once the stage has
+ * finished, and are discarded if it timed out, so a late stage never overwrites its fallback.
+ * <p>
+ * A stage with side effects settles the race against its timeout with {@link #claim()}: once a
+ * run has claimed the turn its timeout no longer applies, and once it has timed out it can no
+ * longer claim, so exactly one of the stage and its fallback acts.
+ */
+public final class StageOutputs {
+
+    private final String stage;
+    private final Set<PipelineKey<?>> declared;
+    private final Map<PipelineKey<?>, Object> values = new HashMap<>();
+    // Guarded by this
+    private boolean cancelled;
+    private boolean claimed;
+
+    StageOutputs(String stage, Set<PipelineKey<?>> declared) {
+        this.stage = stage;
+        this.declared = declared;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the stage did not declare the key as an output
+     */
+    public <T> void put(PipelineKey<T> key, T value) {
+        if (!declared.contains(key)) {
+            throw new IllegalArgumentException("Stage '" + stage + "' does not declare output " + key);
+        }
+        values.put(key, value);
+    }
+
+    /**
+     * True once the stage has timed out. Long-running stages should check this to stop early;
+     * side effects need {@link #claim()} or {@link #ifActive(Runnable)}.
+     */
+    public synchronized boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Claims the turn for this run, so that its side effects stand and its fallback will not
+     * run. Returns false if the stage has already timed out; the caller must then drop its
+     * results.
+     */
+    public synchronized boolean claim() {
+        if (!cancelled) {
+            claimed = true;
+        }
+        return claimed;
+    }
+
+    /**
+     * Runs {@code action} unless the stage has timed out, without letting it time out meanwhile;
+     * e.g. to send part of a result before the run claims the turn. Returns whether it ran.
+     */
+    public synchronized boolean ifActive(Runnable action) {
+        if (cancelled) {
+            return false;
+        }
+        action.run();
+        return true;
+    }
+
+    // False once the run has claimed the turn; it then finishes as if it had not timed out
+    synchronized boolean cancel() {
+        if (claimed) {
+            return false;
+        }
+        cancelled = true;
+        return true;
+    }
+
+    Map<PipelineKey<?>, Object> values() {
+        return values;
+    }
+}
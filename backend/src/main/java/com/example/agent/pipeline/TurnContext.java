@@ -0,0 +1,120 @@
+package com.example.agent.pipeline;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The values of one chat turn: inputs supplied by the caller plus the outputs of every stage
+ * that has finished. Only the pipeline publishes outputs, from the thread driving the turn;
+ * stages read concurrently.
+ */
+public final class TurnContext {
+
+    // ConcurrentHashMap does not take null values
+    private static final Object NULL = new Object();
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final long id = IDS.incrementAndGet();
+
+    private final Map<PipelineKey<?>, Object> values = new ConcurrentHashMap<>();
+    private final Map<String, StageTiming> timings = new ConcurrentHashMap<>();
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * Identifies the turn in profiling events; unique within this process.
+     */
+    public long getId() {
+        return id;
+    }
+
+    public <T> TurnContext with(PipelineKey<T> key, T value) {
+        values.put(key, value != null ? value : NULL);
+        return this;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(PipelineKey<T> key) {
+        Object value = values.get(key);
+        if (value == null && key.isCollecting()) {
+            return (T) new ArrayList<>();
+        }
+        if (value instanceof Contributions) {
+            return (T) ((Contributions) value).concatenate();
+        }
+        return value == NULL ? null : (T) value;
+    }
+
+    public boolean contains(PipelineKey<?> key) {
+        return values.containsKey(key);
+    }
+
+    void publish(int stageOrder, StageOutputs outputs) {
+        for (Map.Entry<PipelineKey<?>, Object> entry : outputs.values().entrySet()) {
+            PipelineKey<?> key = entry.getKey();
+            if (key.isCollecting()) {
+                if (entry.getValue() != null) {
+                    ((Contributions) values.computeIfAbsent(key, k -> new Contributions()))
+                            .parts.put(stageOrder, (List<?>) entry.getValue());
+                }
+            } else {
+                values.put(key, entry.getValue() != null ? entry.getValue() : NULL);
+            }
+        }
+    }
+
+    void record(String stage, StageOutcome outcome, long startedNanos, long finishedNanos) {
+        timings.put(stage, new StageTiming(outcome, finishedNanos - startedNanos, finishedNanos - startNanos));
+    }
+
+    /**
+     * How the stage ended, or {@code null} if it has not finished.
+     */
+    public StageOutcome getOutcome(String stage) {
+        StageTiming timing = timings.get(stage);
+        return timing != null ? timing.outcome : null;
+    }
+
+    /**
+     * Time the stage ran for, 0 when it did not run.
+     */
+    public long getStageNanos(String stage) {
+        StageTiming timing = timings.get(stage);
+        return timing != null ? timing.durationNanos : 0;
+    }
+
+    /**
+     * Time from the start of the turn until the stage finished, 0 when it has not finished.
+     */
+    public long getFinishedNanos(String stage) {
+        StageTiming timing = timings.get(stage);
+        return timing != null ? timing.finishedNanos : 0;
+    }
+
+    private static final class Contributions {
+        private final ConcurrentSkipListMap<Integer, List<?>> parts = new ConcurrentSkipListMap<>();
+
+        private List<Object> concatenate() {
+            List<Object> all = new ArrayList<>();
+            for (List<?> part : parts.values()) {
+                all.addAll(part);
+            }
+            return all;
+        }
+    }
+
+    private static final class StageTiming {
+        private final StageOutcome outcome;
+        private final long durationNanos;
+        private final long finishedNanos;
+
+        private StageTiming(StageOutcome outcome, long durationNanos, long finishedNanos) {
+            this.outcome = outcome;
+            this.durationNanos = durationNanos;
+            this.finishedNanos = finishedNanos;
+        }
+    }
+}
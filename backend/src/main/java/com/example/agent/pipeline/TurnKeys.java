@@ -0,0 +1,34 @@
+package com.example.agent.pipeline;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.model.Phone;
+import com.example.agent.model.PhoneComparison;
+import com.example.agent.model.PhoneRecommendation;
+
+import java.util.List;
+
+/**
+ * Keys of the chat turn pipeline that stages outside the conversation service may read or
+ * produce. The first group is supplied with every turn.
+ */
+public final class TurnKeys {
+
+    public static final PipelineKey<Catalog> CATALOG = PipelineKey.of("catalog");
+    public static final PipelineKey<String> CONVERSATION_ID = PipelineKey.of("conversationId");
+    // The message after safety sanitization
+    public static final PipelineKey<String> MESSAGE = PipelineKey.of("message");
+    public static final PipelineKey<String> INTENT = PipelineKey.of("intent");
+    // State as of the start of the turn; null for a new conversation
+    public static final PipelineKey<ConversationState> STATE = PipelineKey.of("state");
+
+    // Retrieval stages contribute here; the rank stage merges them into RELEVANT_PHONES
+    public static final PipelineKey<List<Phone>> CANDIDATES = PipelineKey.collecting("candidates");
+    public static final PipelineKey<List<Phone>> RELEVANT_PHONES = PipelineKey.of("relevantPhones");
+    public static final PipelineKey<List<Phone>> COMPARISON_PHONES = PipelineKey.of("comparisonPhones");
+    public static final PipelineKey<PhoneComparison> COMPARISON = PipelineKey.of("comparison");
+    public static final PipelineKey<List<PhoneRecommendation>> RECOMMENDATIONS = PipelineKey.of("recommendations");
+
+    private TurnKeys() {
+    }
+}
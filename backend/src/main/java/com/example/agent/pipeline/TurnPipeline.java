@@ -0,0 +1,422 @@
+package com.example.agent.pipeline;
+
+import com.example.agent.profiling.TurnStageEvent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+
+/**
+ * A validated set of stages and the scheduler that runs them for one turn. Stages are ordered
+ * so that producers come before consumers; a stage becomes ready once all producers of its
+ * inputs have finished. The calling thread drives the turn: it runs in-memory stages itself,
+ * hands blocking stages and stages with a timeout to the worker pool, and enforces the
+ * timeouts, counted from when a stage starts running. Of the ready in-memory stages, those a
+ * worker stage waits for run first, so the others overlap with the worker stages. A worker
+ * stage the pool rejects is replaced by its fallback at once. Every stage run and fallback is
+ * also recorded as a {@link TurnStageEvent} on the thread that ran it.
+ */
+public final class TurnPipeline {
+
+    /**
+     * Told about every finished stage, e.g. to record metrics.
+     */
+    @FunctionalInterface
+    public interface Listener {
+        void stageFinished(String stage, StageOutcome outcome, long nanos);
+    }
+
+    private final List<PipelineStage> stages;
+    // Indexes of the stages each stage waits for
+    private final int[][] producers;
+    private final boolean[] enabled;
+    private final long[] timeoutNanos;
+    // Stages that run on a worker, or that a worker stage waits for
+    private final boolean[] critical;
+    private final ExecutorService executor;
+    private final Listener listener;
+
+    /**
+     * @throws IllegalArgumentException if stage names clash, an input is neither provided nor
+     *                                  produced, a plain key has several producers, or stages
+     *                                  depend on each other in a cycle
+     */
+    public TurnPipeline(List<PipelineStage> declared, Set<PipelineKey<?>> provided,
+                        Predicate<PipelineStage> enabled, ToLongFunction<PipelineStage> timeoutMs,
+                        ExecutorService executor, Listener listener) {
+        this.stages = order(declared, provided);
+        int n = stages.size();
+        Map<PipelineKey<?>, List<Integer>> producedBy = producedBy(stages);
+        this.producers = new int[n][];
+        this.enabled = new boolean[n];
+        this.timeoutNanos = new long[n];
+        for (int i = 0; i < n; i++) {
+            PipelineStage stage = stages.get(i);
+            Set<Integer> waitFor = new LinkedHashSet<>();
+            for (PipelineKey<?> input : stage.getInputs()) {
+                waitFor.addAll(producedBy.getOrDefault(input, List.of()));
+            }
+            producers[i] = waitFor.stream().mapToInt(Integer::intValue).toArray();
+            this.enabled[i] = enabled.test(stage);
+            this.timeoutNanos[i] = TimeUnit.MILLISECONDS.toNanos(timeoutMs.applyAsLong(stage));
+        }
+        this.critical = new boolean[n];
+        // Consumers come after their producers, so walking backwards sees every consumer first
+        for (int i = n - 1; i >= 0; i--) {
+            if (this.enabled[i] && (stages.get(i).isBlocking() || timeoutNanos[i] > 0)) {
+                critical[i] = true;
+            }
+            if (critical[i]) {
+                for (int producer : producers[i]) {
+                    critical[producer] = true;
+                }
+            }
+        }
+        this.executor = executor;
+        this.listener = listener;
+    }
+
+    private static List<PipelineStage> order(List<PipelineStage> declared, Set<PipelineKey<?>> provided) {
+        Set<String> names = new HashSet<>();
+        for (PipelineStage stage : declared) {
+            if (!names.add(stage.getName())) {
+                throw new IllegalArgumentException("Duplicate pipeline stage '" + stage.getName() + "'");
+            }
+        }
+        Map<PipelineKey<?>, List<Integer>> producedBy = producedBy(declared);
+        for (Map.Entry<PipelineKey<?>, List<Integer>> entry : producedBy.entrySet()) {
+            if (provided.contains(entry.getKey())) {
+                throw new IllegalArgumentException("Key '" + entry.getKey() + "' is provided by the caller and cannot be produced by a stage");
+            }
+            if (!entry.getKey().isCollecting() && entry.getValue().size() > 1) {
+                throw new IllegalArgumentException("Key '" + entry.getKey() + "' has several producing stages; use a collecting key");
+            }
+        }
+        for (PipelineStage stage : declared) {
+            for (PipelineKey<?> input : stage.getInputs()) {
+                if (!provided.contains(input) && !producedBy.containsKey(input)) {
+                    throw new IllegalArgumentException("Stage '" + stage.getName() + "' needs '" + input + "', which nothing produces");
+                }
+            }
+        }
+
+        // Kahn's algorithm, keeping declaration order among stages that are ready together
+        List<PipelineStage> ordered = new ArrayList<>();
+        boolean[] placed = new boolean[declared.size()];
+        while (ordered.size() < declared.size()) {
+            boolean progressed = false;
+            for (int i = 0; i < declared.size(); i++) {
+                if (placed[i] || !inputsPlaced(declared.get(i), producedBy, placed)) {
+                    continue;
+                }
+                placed[i] = true;
+                ordered.add(declared.get(i));
+                progressed = true;
+            }
+            if (!progressed) {
+                List<String> cyclic = new ArrayList<>();
+                for (int i = 0; i < declared.size(); i++) {
+                    if (!placed[i]) {
+                        cyclic.add(declared.get(i).getName());
+                    }
+                }
+                throw new IllegalArgumentException("Pipeline stages depend on each other in a cycle: " + cyclic);
+            }
+        }
+        return List.copyOf(ordered);
+    }
+
+    private static boolean inputsPlaced(PipelineStage stage, Map<PipelineKey<?>, List<Integer>> producedBy, boolean[] placed) {
+        for (PipelineKey<?> input : stage.getInputs()) {
+            for (int producer : producedBy.getOrDefault(input, List.of())) {
+                if (!placed[producer]) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    private static Map<PipelineKey<?>, List<Integer>> producedBy(List<PipelineStage> stages) {
+        Map<PipelineKey<?>, List<Integer>> producedBy = new HashMap<>();
+        for (int i = 0; i < stages.size(); i++) {
+            for (PipelineKey<?> output : stages.get(i).getOutputs()) {
+                producedBy.computeIfAbsent(output, key -> new ArrayList<>()).add(i);
+            }
+        }
+        return producedBy;
+    }
+
+    /**
+     * Stages in execution order.
+     */
+    public List<PipelineStage> getStages() {
+        return stages;
+    }
+
+    /**
+     * Runs every stage for one turn, publishing outputs into the context. Returns once all
+     * stages have finished, were skipped or timed out.
+     *
+     * @throws RuntimeException the failure of the first stage that threw; stages still running
+     *                          are cancelled
+     */
+    public void run(TurnContext context) {
+        int n = stages.size();
+        boolean[] started = new boolean[n];
+        boolean[] finished = new boolean[n];
+        StageRun[] inFlight = new StageRun[n];
+        BlockingQueue<StageRun> completions = new LinkedBlockingQueue<>();
+        int remaining = n;
+        try {
+            while (remaining > 0) {
+                List<Integer> inline = new ArrayList<>();
+                boolean criticalReady = false;
+                // Topological order, so a skipped stage unblocks later stages within the same pass
+                for (int i = 0; i < n; i++) {
+                    if (started[i] || !ready(i, finished)) {
+                        continue;
+                    }
+                    PipelineStage stage = stages.get(i);
+                    if (!enabled[i] || !stage.shouldRun(context)) {
+                        started[i] = true;
+                        fallback(context, i, StageOutcome.SKIPPED, new StageOutputs(stage.getName(), stage.getOutputs()), 0);
+                        finished[i] = true;
+                        remaining--;
+                    } else if (stage.isBlocking() || timeoutNanos[i] > 0) {
+                        started[i] = true;
+                        StageRun run = new StageRun(i, stage, timeoutNanos[i]);
+                        if (run.submit(context, completions)) {
+                            inFlight[i] = run;
+                        } else {
+                            fallback(context, i, StageOutcome.REJECTED, new StageOutputs(stage.getName(), stage.getOutputs()), 0);
+                            finished[i] = true;
+                            remaining--;
+                        }
+                    } else {
+                        inline.add(i);
+                        criticalReady |= critical[i];
+                    }
+                }
+                if (!inline.isEmpty()) {
+                    for (int i : inline) {
+                        // The rest wait until nothing on the way to a worker stage is ready
+                        if (criticalReady && !critical[i]) {
+                            continue;
+                        }
+                        started[i] = true;
+                        runInline(context, i);
+                        finished[i] = true;
+                        remaining--;
+                    }
+                    continue;
+                }
+                if (remaining > 0) {
+                    remaining -= awaitNext(context, inFlight, finished, completions);
+                }
+            }
+        } finally {
+            for (StageRun run : inFlight) {
+                if (run != null && !finished[run.index]) {
+                    run.cancel();
+                }
+            }
+        }
+    }
+
+    private boolean ready(int stage, boolean[] finished) {
+        for (int producer : producers[stage]) {
+            if (!finished[producer]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void runInline(TurnContext context, int index) {
+        PipelineStage stage = stages.get(index);
+        StageOutputs outputs = new StageOutputs(stage.getName(), stage.getOutputs());
+        TurnStageEvent event = new TurnStageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            stage.run(context, outputs);
+        } catch (Exception e) {
+            commit(event, context, stage, StageOutcome.FAILED);
+            finish(context, index, StageOutcome.FAILED, start, System.nanoTime());
+            throw failure(stage, e);
+        }
+        commit(event, context, stage, StageOutcome.COMPLETED);
+        context.publish(index, outputs);
+        finish(context, index, StageOutcome.COMPLETED, start, System.nanoTime());
+    }
+
+    // Waits for the next blocking stage to finish or time out; returns how many finished
+    private int awaitNext(TurnContext context, StageRun[] inFlight, boolean[] finished, BlockingQueue<StageRun> completions) {
+        long deadline = Long.MAX_VALUE;
+        boolean waiting = false;
+        for (StageRun run : inFlight) {
+            if (run != null && !finished[run.index]) {
+                waiting = true;
+                // Not started yet: its timeout has not begun, so look again after a full one
+                deadline = Math.min(deadline, run.deadline != Long.MAX_VALUE || run.timeoutNanos == 0 || run.claimed
+                        ? run.deadline
+                        : System.nanoTime() + run.timeoutNanos);
+            }
+        }
+        if (!waiting) {
+            throw new IllegalStateException("Turn pipeline stalled with no stage running");
+        }
+        StageRun done;
+        try {
+            done = deadline == Long.MAX_VALUE
+                    ? completions.take()
+                    : completions.poll(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while running the turn pipeline", e);
+        }
+        if (done != null) {
+            if (finished[done.index]) {
+                // Completed after its timeout; the fallback already stands in for it
+                return 0;
+            }
+            finished[done.index] = true;
+            if (done.failure != null) {
+                finish(context, done.index, StageOutcome.FAILED, done.startNanos, done.endNanos);
+                throw failure(done.stage, done.failure);
+            }
+            context.publish(done.index, done.outputs);
+            finish(context, done.index, StageOutcome.COMPLETED, done.startNanos, done.endNanos);
+            return 1;
+        }
+        long now = System.nanoTime();
+        int expired = 0;
+        for (StageRun run : inFlight) {
+            if (run != null && !finished[run.index] && run.deadline <= now) {
+                if (!run.cancel()) {
+                    // Claimed just in time: its result stands, so wait for it instead
+                    run.claimed = true;
+                    run.deadline = Long.MAX_VALUE;
+                    continue;
+                }
+                finished[run.index] = true;
+                fallback(context, run.index, StageOutcome.TIMED_OUT,
+                        new StageOutputs(run.stage.getName(), run.stage.getOutputs()), now - run.startNanos);
+                expired++;
+            }
+        }
+        return expired;
+    }
+
+    // The recorded time covers the fallback itself plus any time spent before giving up on the stage
+    private void fallback(TurnContext context, int index, StageOutcome outcome, StageOutputs outputs, long elapsedNanos) {
+        TurnStageEvent event = new TurnStageEvent();
+        event.begin();
+        long start = System.nanoTime();
+        stages.get(index).fallback(context, outputs);
+        commit(event, context, stages.get(index), outcome);
+        context.publish(index, outputs);
+        finish(context, index, outcome, start - elapsedNanos, System.nanoTime());
+    }
+
+    private void finish(TurnContext context, int index, StageOutcome outcome, long startNanos, long endNanos) {
+        String name = stages.get(index).getName();
+        context.record(name, outcome, startNanos, endNanos);
+        if (listener != null) {
+            listener.stageFinished(name, outcome, endNanos - startNanos);
+        }
+    }
+
+    private static void commit(TurnStageEvent event, TurnContext context, PipelineStage stage, StageOutcome outcome) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.turnId = context.getId();
+            event.stage = stage.getName();
+            event.outcome = outcome.name();
+            event.commit();
+        }
+    }
+
+    private static RuntimeException failure(PipelineStage stage, Throwable cause) {
+        if (cause instanceof RuntimeException) {
+            return (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        return new IllegalStateException("Pipeline stage '" + stage.getName() + "' failed", cause);
+    }
+
+    private final class StageRun {
+        private final int index;
+        private final PipelineStage stage;
+        private final StageOutputs outputs;
+        private final long timeoutNanos;
+        // Set by the worker when the stage starts, so time spent waiting for a worker is not counted
+        private volatile long deadline = Long.MAX_VALUE;
+        private volatile Future<?> future;
+        // Only touched by the driving thread: the stage claimed the turn after its deadline
+        private boolean claimed;
+        // Written by the worker before it sets the deadline or enqueues the run, read by the driving thread after
+        private long startNanos;
+        private long endNanos;
+        private Throwable failure;
+
+        private StageRun(int index, PipelineStage stage, long timeoutNanos) {
+            this.index = index;
+            this.stage = stage;
+            this.outputs = new StageOutputs(stage.getName(), stage.getOutputs());
+            this.timeoutNanos = timeoutNanos;
+        }
+
+        // False when the pool has no worker to spare
+        private boolean submit(TurnContext context, BlockingQueue<StageRun> completions) {
+            try {
+                future = executor.submit(() -> {
+                    TurnStageEvent event = new TurnStageEvent();
+                    event.begin();
+                    startNanos = System.nanoTime();
+                    if (timeoutNanos > 0) {
+                        deadline = startNanos + timeoutNanos;
+                    }
+                    try {
+                        stage.run(context, outputs);
+                    } catch (Throwable e) {
+                        failure = e;
+                    }
+                    endNanos = System.nanoTime();
+                    commit(event, context, stage, failure != null ? StageOutcome.FAILED : StageOutcome.COMPLETED);
+                    completions.add(this);
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        // False if the stage had already claimed the turn, in which case it keeps running
+        private boolean cancel() {
+            if (!outputs.cancel()) {
+                return false;
+            }
+            Future<?> running = future;
+            if (running != null) {
+                running.cancel(true);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.agent.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One chat turn, from the safety check to the finished response. Stage events with the same
+ * {@code turnId} break it down.
+ */
+@Name("com.example.agent.ChatTurn")
+@Label("Chat Turn")
+@Category({"Shopping Chat Agent", "Chat"})
+@StackTrace(false)
+public class ChatTurnEvent extends jdk.jfr.Event {
+
+    @Label("Turn ID")
+    public long turnId;
+
+    @Label("Conversation ID")
+    public String conversationId;
+
+    @Label("Intent")
+    public String intent;
+
+    @Label("Catalog Version")
+    public String catalogVersion;
+
+    @Label("Tier")
+    @Description("How the reply was produced: template, fast_model or full_model")
+    public String tier;
+
+    @Label("Candidates")
+    @Description("Phones found by the retrieval stages before de-duplication")
+    public int candidates;
+
+    @Label("Relevant Phones")
+    public int relevantPhones;
+
+    @Label("Recommendations")
+    public int recommendations;
+
+    @Label("Prompt Characters")
+    public long promptChars;
+
+    @Label("Shared Prefix Characters")
+    @Description("Prompt characters repeating the start of the previous prompt")
+    public long sharedPrefixChars;
+
+    @Label("Query Cache Hits")
+    @Description("Catalog query results served from the cache on the turn's thread")
+    public int queryCacheHits;
+
+    @Label("Fallback Reason")
+    @Description("Why the rule-based reply was used, or null when the model answered")
+    public String fallbackReason;
+}
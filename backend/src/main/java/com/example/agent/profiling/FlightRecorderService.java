@@ -0,0 +1,142 @@
+package com.example.agent.profiling;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Runs one on-demand Java Flight Recorder recording at a time. The recording is bounded by
+ * {@code profiling.jfr.max-age-minutes} and {@code profiling.jfr.max-size-mb}, so it can be
+ * left running; older data is discarded once a bound is reached. Besides the JVM's own events
+ * (GC, locks, I/O) it captures the {@code com.example.agent} events for turns, turn stages,
+ * model calls and serialization. Events that capture the environment, system properties or
+ * command line are left out, as they carry secrets.
+ */
+@Service
+public class FlightRecorderService {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderService.class);
+
+    private final String settings;
+    private final Duration maxAge;
+    private final long maxSizeBytes;
+    private final boolean startOnBoot;
+
+    // Guarded by this
+    private Recording recording;
+
+    public FlightRecorderService(@Value("${profiling.jfr.settings:default}") String settings,
+                                 @Value("${profiling.jfr.max-age-minutes:30}") long maxAgeMinutes,
+                                 @Value("${profiling.jfr.max-size-mb:64}") long maxSizeMb,
+                                 @Value("${profiling.jfr.start-on-boot:false}") boolean startOnBoot) {
+        this.settings = settings;
+        this.maxAge = Duration.ofMinutes(maxAgeMinutes);
+        this.maxSizeBytes = maxSizeMb * 1024 * 1024;
+        this.startOnBoot = startOnBoot;
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!startOnBoot) {
+            return;
+        }
+        try {
+            start();
+        } catch (IOException | ParseException | RuntimeException e) {
+            logger.error("Could not start flight recording on boot: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Starts a new recording, discarding a stopped one.
+     *
+     * @throws IllegalStateException if a recording is already running
+     */
+    public synchronized Map<String, Object> start() throws IOException, ParseException {
+        if (recording != null && recording.getState() == RecordingState.RUNNING) {
+            throw new IllegalStateException("A recording is already running");
+        }
+        close();
+        // "default" keeps the overhead low enough for production, "profile" samples more
+        Recording started = new Recording(Configuration.getConfiguration(settings));
+        // Secrets such as API keys and tokens are passed in the environment, as system properties
+        // or as arguments, and must not leave the node in a downloaded recording
+        started.disable("jdk.InitialEnvironmentVariable");
+        started.disable("jdk.InitialSystemProperty");
+        started.disable("jdk.JVMInformation");
+        started.setName("shopping-chat-agent");
+        started.setToDisk(true);
+        started.setMaxAge(maxAge);
+        started.setMaxSize(maxSizeBytes);
+        started.start();
+        recording = started;
+        logger.info("Started flight recording with '{}' settings, keeping at most {} and {} MB",
+                settings, maxAge, maxSizeBytes / (1024 * 1024));
+        return status();
+    }
+
+    /**
+     * Stops the running recording. Its data stays available to {@link #dump()} until the next
+     * start.
+     *
+     * @throws IllegalStateException if no recording is running
+     */
+    public synchronized Map<String, Object> stop() {
+        if (recording == null || recording.getState() != RecordingState.RUNNING) {
+            throw new IllegalStateException("No recording is running");
+        }
+        recording.stop();
+        logger.info("Stopped flight recording");
+        return status();
+    }
+
+    /**
+     * Writes the current contents of the recording, running or stopped, to a temporary file.
+     * The caller deletes the file.
+     *
+     * @throws IllegalStateException if nothing has been recorded
+     */
+    public synchronized Path dump() throws IOException {
+        if (recording == null || recording.getState() == RecordingState.NEW) {
+            throw new IllegalStateException("Nothing has been recorded");
+        }
+        Path file = Files.createTempFile("shopping-chat-agent-", ".jfr");
+        recording.dump(file);
+        return file;
+    }
+
+    public synchronized Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("state", recording != null ? recording.getState().name() : "NONE");
+        status.put("settings", settings);
+        status.put("maxAgeMinutes", maxAge.toMinutes());
+        status.put("maxSizeMb", maxSizeBytes / (1024 * 1024));
+        if (recording != null) {
+            status.put("startTime", recording.getStartTime());
+            status.put("stopTime", recording.getStopTime());
+        }
+        return status;
+    }
+
+    @PreDestroy
+    public synchronized void close() {
+        if (recording != null) {
+            recording.close();
+            recording = null;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.agent.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A call to the LLM API, covering the time spent waiting on the upstream.
+ */
+@Name("com.example.agent.ModelCall")
+@Label("Model Call")
+@Category({"Shopping Chat Agent", "Upstream"})
+@StackTrace(false)
+public class ModelCallEvent extends jdk.jfr.Event {
+
+    @Label("Model")
+    public String model;
+
+    @Label("Endpoint")
+    public String endpoint;
+
+    @Label("Hedged")
+    public boolean hedged;
+
+    @Label("Streamed")
+    public boolean streamed;
+
+    @Label("Messages")
+    public int messages;
+
+    @Label("Prompt Characters")
+    public long promptChars;
+
+    @Label("Reply Characters")
+    public long replyChars;
+
+    @Label("Error")
+    public String error;
+}
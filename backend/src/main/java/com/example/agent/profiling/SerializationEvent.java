@@ -0,0 +1,30 @@
+package com.example.agent.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Writing a response body or WebSocket frame, as JSON or one of the binary encodings.
+ */
+@Name("com.example.agent.Serialization")
+@Label("Serialization")
+@Category({"Shopping Chat Agent", "Chat"})
+@StackTrace(false)
+public class SerializationEvent extends jdk.jfr.Event {
+
+    @Label("Transport")
+    public String transport;
+
+    @Label("Format")
+    public String format;
+
+    @Label("Type")
+    public String type;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
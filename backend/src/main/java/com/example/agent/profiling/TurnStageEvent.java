@@ -0,0 +1,26 @@
+package com.example.agent.profiling;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One step of a chat turn: the safety check and intent detection, then every pipeline stage,
+ * including the fallbacks that stand in for skipped or timed out stages.
+ */
+@Name("com.example.agent.TurnStage")
+@Label("Turn Stage")
+@Category({"Shopping Chat Agent", "Chat"})
+@StackTrace(false)
+public class TurnStageEvent extends jdk.jfr.Event {
+
+    @Label("Turn ID")
+    public long turnId;
+
+    @Label("Stage")
+    public String stage;
+
+    @Label("Outcome")
+    public String outcome;
+}
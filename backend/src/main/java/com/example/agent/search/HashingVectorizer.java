@@ -0,0 +1,149 @@
+package com.example.agent.search;
+
+import java.util.*;
+
+/**
+ * Local TF-IDF vectoriser using the hashing trick, so no vocabulary has to be kept
+ * and nothing ever leaves the JVM.
+ */
+public class HashingVectorizer {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "the", "and", "or", "for", "of", "to", "in", "on", "with", "who", "that",
+            "is", "are", "my", "me", "i", "it", "phone", "phones", "mobile", "want", "need",
+            "looking", "mostly", "really", "very", "some", "any", "good", "best", "please");
+
+    // Maps everyday wording onto the vocabulary used in the catalog
+    private static final Map<String, String> SYNONYMS = Map.ofEntries(
+            Map.entry("photo", "camera"),
+            Map.entry("photos", "camera"),
+            Map.entry("picture", "camera"),
+            Map.entry("pictures", "camera"),
+            Map.entry("photography", "camera"),
+            Map.entry("selfie", "camera"),
+            Map.entry("selfies", "camera"),
+            Map.entry("ois", "camera"),
+            Map.entry("portrait", "camera"),
+            Map.entry("gaming", "performance"),
+            Map.entry("games", "performance"),
+            Map.entry("fast", "performance"),
+            Map.entry("snapdragon", "performance"),
+            Map.entry("dimensity", "performance"),
+            Map.entry("charging", "battery"),
+            Map.entry("charge", "battery"),
+            Map.entry("lasts", "battery"),
+            Map.entry("screen", "display"),
+            Map.entry("amoled", "display"),
+            Map.entry("oled", "display"),
+            Map.entry("poled", "display"),
+            Map.entry("small", "compact"),
+            Map.entry("cheap", "value"),
+            Map.entry("affordable", "value"),
+            Map.entry("budget", "value"),
+            Map.entry("clean", "stock"),
+            Map.entry("pure", "stock"),
+            Map.entry("simple", "stock"));
+
+    private final int dimensions;
+    private float[] idf;
+
+    public HashingVectorizer(int dimensions) {
+        if (dimensions <= 0) {
+            throw new IllegalArgumentException("dimensions must be positive");
+        }
+        this.dimensions = dimensions;
+    }
+
+    public int getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Computes smoothed inverse document frequencies for the given corpus. Must be called
+     * before {@link #transform(String)}.
+     */
+    public void fit(List<String> documents) {
+        int[] documentFrequency = new int[dimensions];
+        for (String document : documents) {
+            Set<Integer> seen = new HashSet<>();
+            for (String token : tokenize(document)) {
+                if (seen.add(bucket(token))) {
+                    documentFrequency[bucket(token)]++;
+                }
+            }
+        }
+        float[] weights = new float[dimensions];
+        int n = documents.size();
+        for (int i = 0; i < dimensions; i++) {
+            // Terms the corpus never uses say nothing about any document, so they get no weight
+            weights[i] = documentFrequency[i] == 0 ? 0f
+                    : (float) (Math.log((1.0 + n) / (1.0 + documentFrequency[i])) + 1.0);
+        }
+        this.idf = weights;
+    }
+
+    /**
+     * Returns an L2-normalised TF-IDF vector, or an all-zero vector if none of the tokens
+     * survive filtering.
+     */
+    public float[] transform(String text) {
+        if (idf == null) {
+            throw new IllegalStateException("Vectorizer has not been fitted");
+        }
+        float[] vector = new float[dimensions];
+        for (String token : tokenize(text)) {
+            vector[bucket(token)] += 1.0f;
+        }
+        double norm = 0;
+        for (int i = 0; i < dimensions; i++) {
+            if (vector[i] != 0) {
+                vector[i] *= idf[i];
+                norm += vector[i] * vector[i];
+            }
+        }
+        if (norm > 0) {
+            float inverse = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < dimensions; i++) {
+                vector[i] *= inverse;
+            }
+        }
+        return vector;
+    }
+
+    List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        for (String raw : text.toLowerCase(Locale.ROOT).split("[^a-z0-9.]+")) {
+            String token = raw.replaceAll("^\\.+|\\.+$", "");
+            if (token.isEmpty() || STOP_WORDS.contains(token)) {
+                continue;
+            }
+            String synonym = SYNONYMS.get(token);
+            if (synonym != null) {
+                tokens.add(synonym);
+            }
+            tokens.add(stem(token));
+        }
+        return tokens;
+    }
+
+    private static String stem(String token) {
+        if (token.length() > 3 && token.endsWith("s") && !token.endsWith("ss")) {
+            return token.substring(0, token.length() - 1);
+        }
+        return token;
+    }
+
+    private int bucket(String token) {
+        // Murmur3 finaliser spreads String.hashCode() over all bits before bucketing
+        int h = token.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, dimensions);
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.agent.search;
+
+import java.util.*;
+
+/**
+ * In-memory Hierarchical Navigable Small World graph over L2-normalised vectors.
+ * Similarity is the dot product (cosine for normalised input). Not thread-safe for
+ * concurrent inserts; build it once and then only search.
+ */
+public class HnswIndex<T> {
+
+    private final int dimensions;
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final Random random;
+
+    private final List<Node<T>> nodes = new ArrayList<>();
+    private Node<T> entryPoint;
+
+    public HnswIndex(int dimensions, int m, int efConstruction, long seed) {
+        if (m < 2) {
+            throw new IllegalArgumentException("m must be at least 2");
+        }
+        this.dimensions = dimensions;
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = Math.max(efConstruction, m);
+        this.levelMultiplier = 1.0 / Math.log(m);
+        this.random = new Random(seed);
+    }
+
+    public int size() {
+        return nodes.size();
+    }
+
+    public void add(T item, float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected vector of " + dimensions + " dimensions");
+        }
+        int level = (int) Math.floor(-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        Node<T> node = new Node<>(nodes.size(), item, vector, level);
+        nodes.add(node);
+
+        if (entryPoint == null) {
+            entryPoint = node;
+            return;
+        }
+
+        Node<T> current = entryPoint;
+        for (int l = entryPoint.level; l > level; l--) {
+            current = greedyClosest(vector, current, l);
+        }
+        for (int l = Math.min(level, entryPoint.level); l >= 0; l--) {
+            List<Candidate<T>> candidates = searchLayer(vector, current, efConstruction, l);
+            int maxConnections = l == 0 ? maxM0 : m;
+            List<Node<T>> neighbours = selectNeighbours(candidates, m);
+            for (Node<T> neighbour : neighbours) {
+                node.neighbours.get(l).add(neighbour);
+                neighbour.neighbours.get(l).add(node);
+                if (neighbour.neighbours.get(l).size() > maxConnections) {
+                    prune(neighbour, l, maxConnections);
+                }
+            }
+            current = candidates.get(0).node;
+        }
+        if (level > entryPoint.level) {
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * Returns up to {@code k} items ordered by decreasing similarity.
+     */
+    public List<SearchResult<T>> search(float[] query, int k, int ef) {
+        if (entryPoint == null || k <= 0) {
+            return List.of();
+        }
+        Node<T> current = entryPoint;
+        for (int l = entryPoint.level; l > 0; l--) {
+            current = greedyClosest(query, current, l);
+        }
+        List<Candidate<T>> candidates = searchLayer(query, current, Math.max(ef, k), 0);
+        List<SearchResult<T>> results = new ArrayList<>(Math.min(k, candidates.size()));
+        for (int i = 0; i < candidates.size() && i < k; i++) {
+            Candidate<T> candidate = candidates.get(i);
+            results.add(new SearchResult<>(candidate.node.item, candidate.similarity));
+        }
+        return results;
+    }
+
+    private Node<T> greedyClosest(float[] query, Node<T> start, int level) {
+        Node<T> current = start;
+        double best = dot(query, current.vector);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (Node<T> neighbour : current.neighbours.get(level)) {
+                double similarity = dot(query, neighbour.vector);
+                if (similarity > best) {
+                    best = similarity;
+                    current = neighbour;
+                    improved = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    // Returns candidates sorted by decreasing similarity
+    private List<Candidate<T>> searchLayer(float[] query, Node<T> start, int ef, int level) {
+        BitSet visited = new BitSet(nodes.size());
+        visited.set(start.id);
+        Candidate<T> first = new Candidate<>(start, dot(query, start.vector));
+
+        PriorityQueue<Candidate<T>> toVisit = new PriorityQueue<>(Comparator.comparingDouble((Candidate<T> c) -> c.similarity).reversed());
+        PriorityQueue<Candidate<T>> found = new PriorityQueue<>(Comparator.comparingDouble((Candidate<T> c) -> c.similarity));
+        toVisit.add(first);
+        found.add(first);
+
+        while (!toVisit.isEmpty()) {
+            Candidate<T> closest = toVisit.poll();
+            if (found.size() >= ef && closest.similarity < found.peek().similarity) {
+                break;
+            }
+            for (Node<T> neighbour : closest.node.neighbours.get(level)) {
+                if (visited.get(neighbour.id)) {
+                    continue;
+                }
+                visited.set(neighbour.id);
+                double similarity = dot(query, neighbour.vector);
+                if (found.size() < ef || similarity > found.peek().similarity) {
+                    Candidate<T> candidate = new Candidate<>(neighbour, similarity);
+                    toVisit.add(candidate);
+                    found.add(candidate);
+                    if (found.size() > ef) {
+                        found.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate<T>> result = new ArrayList<>(found);
+        result.sort(Comparator.comparingDouble((Candidate<T> c) -> c.similarity).reversed());
+        return result;
+    }
+
+    // Heuristic selection that favours neighbours in different directions over near-duplicates
+    private List<Node<T>> selectNeighbours(List<Candidate<T>> candidates, int count) {
+        List<Node<T>> selected = new ArrayList<>(count);
+        for (Candidate<T> candidate : candidates) {
+            if (selected.size() >= count) {
+                break;
+            }
+            boolean diverse = true;
+            for (Node<T> chosen : selected) {
+                if (dot(candidate.node.vector, chosen.vector) > candidate.similarity) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate.node);
+            }
+        }
+        // Top up with the closest remaining candidates so small graphs stay connected
+        for (Candidate<T> candidate : candidates) {
+            if (selected.size() >= count) {
+                break;
+            }
+            if (!selected.contains(candidate.node)) {
+                selected.add(candidate.node);
+            }
+        }
+        return selected;
+    }
+
+    private void prune(Node<T> node, int level, int maxConnections) {
+        List<Candidate<T>> candidates = new ArrayList<>();
+        for (Node<T> neighbour : node.neighbours.get(level)) {
+            candidates.add(new Candidate<>(neighbour, dot(node.vector, neighbour.vector)));
+        }
+        candidates.sort(Comparator.comparingDouble((Candidate<T> c) -> c.similarity).reversed());
+        List<Node<T>> kept = selectNeighbours(candidates, maxConnections);
+        node.neighbours.set(level, new ArrayList<>(kept));
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+
+    public static class SearchResult<T> {
+        private final T item;
+        private final double similarity;
+
+        public SearchResult(T item, double similarity) {
+            this.item = item;
+            this.similarity = similarity;
+        }
+
+        public T getItem() {
+            return item;
+        }
+
+        public double getSimilarity() {
+            return similarity;
+        }
+    }
+
+    private static class Node<T> {
+        final int id;
+        final T item;
+        final float[] vector;
+        final int level;
+        final List<List<Node<T>>> neighbours;
+
+        Node(int id, T item, float[] vector, int level) {
+            this.id = id;
+            this.item = item;
+            this.vector = vector;
+            this.level = level;
+            this.neighbours = new ArrayList<>(level + 1);
+            for (int i = 0; i <= level; i++) {
+                neighbours.add(new ArrayList<>());
+            }
+        }
+    }
+
+    private static class Candidate<T> {
+        final Node<T> node;
+        final double similarity;
+
+        Candidate(Node<T> node, double similarity) {
+            this.node = node;
+            this.similarity = similarity;
+        }
+    }
+}
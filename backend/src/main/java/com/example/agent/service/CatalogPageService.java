@@ -0,0 +1,221 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.catalog.CatalogQuery;
+import com.example.agent.config.TimedCborHttpMessageConverter;
+import com.example.agent.config.TimedSmileHttpMessageConverter;
+import com.example.agent.model.Phone;
+import com.example.agent.model.PhonePage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Serves catalog pages as pre-serialized JSON, CBOR or Smile. Pages are immutable for a given
+ * catalog version, so the serialized and gzip-compressed bytes are cached per format and
+ * replayed as-is.
+ */
+@Service
+public class CatalogPageService {
+
+    private static final Logger logger = LoggerFactory.getLogger(CatalogPageService.class);
+
+    @Autowired
+    private PhoneCatalogService phoneCatalogService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private TimedCborHttpMessageConverter cborConverter;
+
+    @Autowired
+    private TimedSmileHttpMessageConverter smileConverter;
+
+    @Value("${catalog.api.default-page-size:20}")
+    private int defaultPageSize;
+
+    @Value("${catalog.api.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value("${catalog.api.page-cache.max-entries:256}")
+    private int maxCachedPages;
+
+    private final Map<String, SerializedPage> pageCache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SerializedPage> eldest) {
+            return size() > maxCachedPages;
+        }
+    };
+
+    /**
+     * Computes the strong ETag for a page without building it. The page content depends only
+     * on the catalog version and the normalized request, so neither has to be serialized.
+     */
+    public String etag(String catalogName, CatalogQuery query, String cursor, Integer limit, MediaType format) {
+        Catalog catalog = phoneCatalogService.getCatalog(catalogName);
+        return etag(catalog.getVersion(), pageKey(query, decodeOffset(cursor, catalog.getVersion()), resolveLimit(limit), format));
+    }
+
+    public SerializedPage getPage(String catalogName, CatalogQuery query, String cursor, Integer limit, MediaType format) {
+        ObjectMapper mapper = mapper(format);
+        Catalog catalog = phoneCatalogService.getCatalog(catalogName);
+        int offset = decodeOffset(cursor, catalog.getVersion());
+        int pageSize = resolveLimit(limit);
+        String key = pageKey(query, offset, pageSize, format);
+        String cacheKey = catalog.getVersion() + "|" + key;
+
+        synchronized (pageCache) {
+            SerializedPage cached = pageCache.get(cacheKey);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        BitSet matches = catalog.match(query);
+        List<Phone> all = catalog.select(matches);
+        int from = Math.min(offset, all.size());
+        int to = Math.min(from + pageSize, all.size());
+        String nextCursor = to < all.size() ? encodeCursor(catalog.getVersion(), to) : null;
+        PhonePage page = new PhonePage(catalog.getVersion(), all.subList(from, to), all.size(), nextCursor);
+
+        SerializedPage serialized;
+        try {
+            byte[] body = mapper.writeValueAsBytes(page);
+            serialized = new SerializedPage(etag(catalog.getVersion(), key), format, body, gzip(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize catalog page", e);
+        }
+        logger.debug("Serialized catalog page {} ({} bytes, {} gzipped)", cacheKey, serialized.getBody().length, serialized.getGzip().length);
+
+        synchronized (pageCache) {
+            pageCache.put(cacheKey, serialized);
+        }
+        return serialized;
+    }
+
+    private ObjectMapper mapper(MediaType format) {
+        if (MediaType.APPLICATION_JSON.equalsTypeAndSubtype(format)) {
+            return objectMapper;
+        }
+        if (MediaType.APPLICATION_CBOR.equalsTypeAndSubtype(format)) {
+            return cborConverter.getObjectMapper();
+        }
+        if (TimedSmileHttpMessageConverter.MEDIA_TYPE.equalsTypeAndSubtype(format)) {
+            return smileConverter.getObjectMapper();
+        }
+        throw new IllegalArgumentException("Unsupported catalog page format " + format);
+    }
+
+    private int resolveLimit(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        if (limit < 1 || limit > maxPageSize) {
+            throw new IllegalArgumentException("limit must be between 1 and " + maxPageSize);
+        }
+        return limit;
+    }
+
+    // Each format is its own representation with its own ETag; JSON keeps the ETags it always had
+    private static String pageKey(CatalogQuery query, int offset, int limit, MediaType format) {
+        String key = query.key() + "|offset=" + offset + "|limit=" + limit;
+        return MediaType.APPLICATION_JSON.equalsTypeAndSubtype(format) ? key : key + "|format=" + format.getSubtype();
+    }
+
+    private static String etag(String version, String key) {
+        CRC32 crc = new CRC32();
+        crc.update(key.getBytes(StandardCharsets.UTF_8));
+        return "\"" + version + "-" + Long.toHexString(crc.getValue()) + "\"";
+    }
+
+    private static String encodeCursor(String version, int offset) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((version + ":" + offset).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static int decodeOffset(String cursor, String version) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0;
+        }
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        int separator = decoded.lastIndexOf(':');
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+        if (!decoded.substring(0, separator).equals(version)) {
+            throw new IllegalArgumentException("Cursor refers to an outdated catalog version; restart from the first page");
+        }
+        try {
+            int offset = Integer.parseInt(decoded.substring(separator + 1));
+            if (offset < 0) {
+                throw new IllegalArgumentException("Malformed cursor");
+            }
+            return offset;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(data.length / 3 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    public static class SerializedPage {
+        private final String etag;
+        private final MediaType contentType;
+        private final byte[] body;
+        private final byte[] gzip;
+
+        SerializedPage(String etag, MediaType contentType, byte[] body, byte[] gzip) {
+            this.etag = etag;
+            this.contentType = contentType;
+            this.body = body;
+            this.gzip = gzip;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+
+        public MediaType getContentType() {
+            return contentType;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+
+        public byte[] getGzip() {
+            return gzip;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.model.Phone;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Caches the results of structured catalog queries, keyed by catalog name, catalog version and
+ * the normalized query. Results are stored as unmodifiable lists and handed out as-is, so a hit
+ * costs one map lookup and no copying. Eviction is least-recently-used by weight, where an
+ * entry weighs one unit per phone in its result plus one for the entry itself.
+ */
+@Component
+public class CatalogQueryCache implements MeterBinder {
+
+    private final long maxWeight;
+
+    // Guarded by itself
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long weight;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    // Lets a turn count the hits of its own lookups without touching shared state
+    private final ThreadLocal<int[]> threadHits = ThreadLocal.withInitial(() -> new int[1]);
+
+    public CatalogQueryCache(@Value("${catalog.query-cache.max-weight:20000}") long maxWeight) {
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Returns the cached result of a query, computing and caching it on a miss. The returned
+     * list is unmodifiable and may be shared with other callers.
+     *
+     * @param queryKey canonical form of the query, e.g. {@link com.example.agent.catalog.CatalogQuery#key()}
+     */
+    public List<Phone> get(Catalog catalog, String queryKey, Function<Catalog, List<Phone>> compute) {
+        String key = catalog.getName() + '|' + catalog.getVersion() + '|' + queryKey;
+        synchronized (entries) {
+            Entry cached = entries.get(key);
+            // A reload with unchanged content keeps the version but builds new phone instances
+            if (cached != null && cached.catalog == catalog) {
+                hits.incrementAndGet();
+                threadHits.get()[0]++;
+                return cached.phones;
+            }
+        }
+        misses.incrementAndGet();
+        List<Phone> phones = Collections.unmodifiableList(compute.apply(catalog));
+        long entryWeight = phones.size() + 1L;
+        if (entryWeight > maxWeight) {
+            return phones;
+        }
+        synchronized (entries) {
+            Entry previous = entries.put(key, new Entry(catalog, phones, entryWeight));
+            weight += entryWeight - (previous != null ? previous.weight : 0);
+            Iterator<Entry> eldest = entries.values().iterator();
+            while (weight > maxWeight && eldest.hasNext()) {
+                weight -= eldest.next().weight;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+        return phones;
+    }
+
+    /**
+     * Number of hits so far on the calling thread; the difference between two calls counts
+     * the hits in between.
+     */
+    public int threadHits() {
+        return threadHits.get()[0];
+    }
+
+    /**
+     * Drops every entry, e.g. after the catalogs are reloaded.
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            weight = 0;
+        }
+    }
+
+    public long weight() {
+        synchronized (entries) {
+            return weight;
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("catalog.query.cache.requests", hits, AtomicLong::get)
+                .description("Catalog query lookups")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("catalog.query.cache.requests", misses, AtomicLong::get)
+                .description("Catalog query lookups")
+                .tag("result", "miss")
+                .register(registry);
+        FunctionCounter.builder("catalog.query.cache.evictions", evictions, AtomicLong::get)
+                .description("Cached catalog query results evicted to stay within the weight limit")
+                .register(registry);
+        Gauge.builder("catalog.query.cache.weight", this, CatalogQueryCache::weight)
+                .description("Phones referenced by cached catalog query results")
+                .register(registry);
+    }
+
+    private static final class Entry {
+        private final Catalog catalog;
+        private final List<Phone> phones;
+        private final long weight;
+
+        private Entry(Catalog catalog, List<Phone> phones, long weight) {
+            this.catalog = catalog;
+            this.phones = phones;
+            this.weight = weight;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.catalog.Spec;
+import com.example.agent.model.Phone;
+import com.example.agent.model.PhoneComparison;
+import com.example.agent.model.SpecComparison;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Computes structured comparisons between phones from the catalog's parsed spec columns and
+ * dictionary-encoded features. A comparison depends only on the catalog version and the set of
+ * phones, so results are cached per version; popular pairs and trios stay in the LRU.
+ */
+@Service
+public class ComparisonService {
+
+    @Value("${comparison.cache.max-entries:512}")
+    private int maxEntries = 512;
+
+    private final Map<String, PhoneComparison> cache = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PhoneComparison> eldest) {
+            return size() > maxEntries;
+        }
+    };
+
+    /**
+     * Compares the given phones in catalog order. Returns {@code null} for fewer than two
+     * distinct phones or if any of them is not part of the catalog.
+     */
+    public PhoneComparison compare(Catalog catalog, List<Phone> phones) {
+        if (phones == null || phones.size() < 2) {
+            return null;
+        }
+        int[] ordinals = new int[phones.size()];
+        for (int i = 0; i < ordinals.length; i++) {
+            ordinals[i] = catalog.ordinalOf(phones.get(i));
+            if (ordinals[i] < 0) {
+                return null;
+            }
+        }
+        ordinals = Arrays.stream(ordinals).sorted().distinct().toArray();
+        if (ordinals.length < 2) {
+            return null;
+        }
+        String key = catalog.getVersion() + ":" + Arrays.toString(ordinals);
+        synchronized (cache) {
+            PhoneComparison cached = cache.get(key);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        PhoneComparison comparison = compute(catalog, ordinals);
+        synchronized (cache) {
+            cache.put(key, comparison);
+        }
+        return comparison;
+    }
+
+    private static PhoneComparison compute(Catalog catalog, int[] ordinals) {
+        List<String> ids = new ArrayList<>(ordinals.length);
+        List<String> names = new ArrayList<>(ordinals.length);
+        for (int ordinal : ordinals) {
+            Phone phone = catalog.getPhones().get(ordinal);
+            ids.add(phone.getId());
+            names.add(phone.getName());
+        }
+
+        List<SpecComparison> specs = new ArrayList<>();
+        for (Spec spec : Spec.values()) {
+            SpecComparison diff = compareSpec(catalog, spec, ordinals, ids);
+            if (diff != null) {
+                specs.add(diff);
+            }
+        }
+
+        // Count in how many of the compared phones each feature code appears
+        Map<Integer, Integer> counts = new HashMap<>();
+        for (int ordinal : ordinals) {
+            for (int code : distinct(catalog.featureCodes(ordinal))) {
+                counts.merge(code, 1, Integer::sum);
+            }
+        }
+        List<String> common = new ArrayList<>();
+        for (int code : distinct(catalog.featureCodes(ordinals[0]))) {
+            if (counts.get(code) == ordinals.length) {
+                common.add(spelling(catalog, ordinals[0], code));
+            }
+        }
+        Map<String, List<String>> unique = new LinkedHashMap<>();
+        for (int i = 0; i < ordinals.length; i++) {
+            List<String> only = new ArrayList<>();
+            for (int code : distinct(catalog.featureCodes(ordinals[i]))) {
+                if (counts.get(code) == 1) {
+                    only.add(spelling(catalog, ordinals[i], code));
+                }
+            }
+            unique.put(ids.get(i), Collections.unmodifiableList(only));
+        }
+        return new PhoneComparison(Collections.unmodifiableList(ids), Collections.unmodifiableList(names),
+                Collections.unmodifiableList(specs), Collections.unmodifiableList(common),
+                Collections.unmodifiableMap(unique));
+    }
+
+    private static SpecComparison compareSpec(Catalog catalog, Spec spec, int[] ordinals, List<String> ids) {
+        List<Double> values = new ArrayList<>(ordinals.length);
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+        int present = 0;
+        for (int ordinal : ordinals) {
+            double value = catalog.getSpecColumns().column(spec).get(ordinal);
+            if (Double.isNaN(value)) {
+                values.add(null);
+            } else {
+                values.add(value);
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                present++;
+            }
+        }
+        if (present == 0) {
+            return null;
+        }
+        Double delta = present > 1 ? max - min : null;
+        String winnerId = null;
+        if (present > 1 && max > min && spec.getPreference() != Spec.Preference.NONE) {
+            double best = spec.getPreference() == Spec.Preference.HIGHER ? max : min;
+            int winners = 0;
+            for (int i = 0; i < values.size(); i++) {
+                if (values.get(i) != null && values.get(i) == best) {
+                    winnerId = ids.get(i);
+                    winners++;
+                }
+            }
+            if (winners > 1) {
+                winnerId = null;
+            }
+        }
+        return new SpecComparison(spec.getLabel(), spec.getUnit(), Collections.unmodifiableList(values), delta, winnerId);
+    }
+
+    // Codes ignore case, so they match features; what is shown is how the phone spells them
+    private static String spelling(Catalog catalog, int ordinal, int code) {
+        int[] codes = catalog.featureCodes(ordinal);
+        for (int f = 0; f < codes.length; f++) {
+            if (codes[f] == code) {
+                return catalog.getPhones().get(ordinal).getFeatures().get(f);
+            }
+        }
+        throw new IllegalArgumentException("Phone " + ordinal + " has no feature " + code);
+    }
+
+    private static int[] distinct(int[] codes) {
+        return codes.length < 2 ? codes : Arrays.stream(codes).distinct().toArray();
+    }
+
+    /**
+     * Renders a comparison as a few dense lines for the LLM prompt, e.g.
+     * {@code camera MP: 50 | 64 (diff 14, best Pixel 8a)}.
+     */
+    public static String toPrompt(PhoneComparison comparison) {
+        StringBuilder prompt = new StringBuilder();
+        prompt.append("Comparison of ").append(String.join(" | ", comparison.getPhoneNames())).append(":\n");
+        for (SpecComparison spec : comparison.getSpecs()) {
+            prompt.append(spec.getSpec()).append(' ').append(spec.getUnit()).append(": ");
+            for (int i = 0; i < spec.getValues().size(); i++) {
+                if (i > 0) {
+                    prompt.append(" | ");
+                }
+                Double value = spec.getValues().get(i);
+                prompt.append(value != null ? format(value) : "n/a");
+            }
+            if (spec.getDelta() != null) {
+                prompt.append(" (diff ").append(format(spec.getDelta()));
+                if (spec.getWinnerId() != null) {
+                    prompt.append(", best ").append(nameOf(comparison, spec.getWinnerId()));
+                }
+                prompt.append(')');
+            }
+            prompt.append('\n');
+        }
+        if (!comparison.getCommonFeatures().isEmpty()) {
+            prompt.append("all have: ").append(String.join(", ", comparison.getCommonFeatures())).append('\n');
+        }
+        for (Map.Entry<String, List<String>> entry : comparison.getUniqueFeatures().entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                prompt.append("only ").append(nameOf(comparison, entry.getKey())).append(": ")
+                        .append(String.join(", ", entry.getValue())).append('\n');
+            }
+        }
+        return prompt.toString();
+    }
+
+    static String nameOf(PhoneComparison comparison, String phoneId) {
+        int index = comparison.getPhoneIds().indexOf(phoneId);
+        return index >= 0 ? comparison.getPhoneNames().get(index) : phoneId;
+    }
+
+    static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}
@@ -1,21 +1,34 @@
 package com.example.agent.service;
 
+import com.example.agent.analytics.TurnAnalytics;
+import com.example.agent.analytics.TurnEvent;
+import com.example.agent.catalog.Catalog;
+import com.example.agent.catalog.Spec;
+import com.example.agent.catalog.SpecRange;
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.conversation.ConversationStore;
 import com.example.agent.model.*;
-import com.theokanning.openai.completion.chat.ChatCompletionRequest;
+import com.example.agent.pipeline.PipelineKey;
+import com.example.agent.pipeline.PipelineScheduler;
+import com.example.agent.pipeline.PipelineStage;
+import com.example.agent.pipeline.Stage;
+import com.example.agent.pipeline.StageOutcome;
+import com.example.agent.pipeline.StageOutputs;
+import com.example.agent.pipeline.TurnContext;
+import com.example.agent.pipeline.TurnKeys;
+import com.example.agent.pipeline.TurnPipeline;
+import com.example.agent.profiling.ChatTurnEvent;
+import com.example.agent.profiling.TurnStageEvent;
 import com.theokanning.openai.completion.chat.ChatMessage;
 import com.theokanning.openai.completion.chat.ChatMessageRole;
-import com.theokanning.openai.service.OpenAiService;
 import jakarta.annotation.PostConstruct;
-import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.time.Duration;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
@@ -27,74 +40,235 @@ public class ConversationService {
     @Autowired
     private PhoneCatalogService phoneCatalogService;
 
-    @Value("${openai.api.key:}")
-    private String openaiApiKey;
+    @Autowired
+    private SemanticSearchService semanticSearchService;
+
+    @Autowired
+    private ResponseCompactor responseCompactor;
+
+    @Autowired
+    private ConversationStore conversationStore;
+
+    @Value("${search.semantic.top-k:5}")
+    private int semanticTopK;
+
+    @Autowired
+    private OpenAiGateway openAiGateway;
+
+    @Autowired
+    private ConversationSummarizer conversationSummarizer;
+
+    @Autowired
+    private SlotStateService slotStateService;
+
+    @Autowired
+    private TurnAnalytics turnAnalytics;
+
+    @Autowired
+    private ComparisonService comparisonService;
+
+    @Autowired
+    private PromptLayout promptLayout;
+
+    @Autowired
+    private PipelineScheduler pipelineScheduler;
 
-    @Value("${openai.api.model:gpt-3.5-turbo}")
-    private String openaiModel;
+    @Autowired
+    private ResponseRouter responseRouter;
 
-    private final Map<String, List<ChatMessage>> conversationHistory = new ConcurrentHashMap<>();
-    private volatile OpenAiService openAiService;
+    @Autowired
+    private CatalogQueryCache catalogQueryCache;
 
     // Patterns for intent detection
-    private static final Pattern PRICE_PATTERN = Pattern.compile("(?:under|below|less than|max|maximum|budget|price|₹|\\$|rs|rupees?)\\s*(?:of\\s*)?(\\d+)", Pattern.CASE_INSENSITIVE);
-    private static final Pattern BRAND_PATTERN = Pattern.compile("\\b(OnePlus|Google|Pixel|Samsung|Xiaomi|Redmi|Nothing|Realme|Vivo|Motorola)\\b", Pattern.CASE_INSENSITIVE);
-    private static final Pattern FEATURE_PATTERN = Pattern.compile("\\b(fast charging|AMOLED|OLED|120Hz|camera|battery|storage|ram|processor|OIS|water resistant|AI features)\\b", Pattern.CASE_INSENSITIVE);
+    static final Pattern PRICE_PATTERN = Pattern.compile("(?:under|below|less than|max|maximum|budget|price|₹|\\$|rs|rupees?)\\s*(?:of\\s*)?(\\d+)", Pattern.CASE_INSENSITIVE);
+    static final Pattern BRAND_PATTERN = Pattern.compile("\\b(OnePlus|Google|Pixel|Samsung|Xiaomi|Redmi|Nothing|Realme|Vivo|Motorola)\\b", Pattern.CASE_INSENSITIVE);
+    static final Pattern FEATURE_PATTERN = Pattern.compile("\\b(fast charging|AMOLED|OLED|120Hz|camera|battery|storage|ram|processor|OIS|water resistant|AI features)\\b", Pattern.CASE_INSENSITIVE);
     private static final Pattern COMPARE_PATTERN = Pattern.compile("\\b(compare|comparison|difference|vs|versus|between)\\b", Pattern.CASE_INSENSITIVE);
     private static final Pattern RECOMMEND_PATTERN = Pattern.compile("\\b(recommend|suggest|best|good|which|what)\\b", Pattern.CASE_INSENSITIVE);
+    private static final String SPEC_OPERATOR = "(over|above|more than|greater than|bigger than|larger than|at least|minimum|under|below|less than|smaller than|at most|up to|maximum|max)";
+    // "battery over 5000", "camera of at least 64MP"
+    private static final Pattern SPEC_FIRST_PATTERN = Pattern.compile("\\b(battery|camera|display|screen|ram|memory|storage)\\b(?:\\s+[a-z]+){0,2}?\\s+" + SPEC_OPERATOR + "\\s*(\\d+(?:\\.\\d+)?)\\s*(mah|mp|gb|inch(?:es)?)?", Pattern.CASE_INSENSITIVE);
+    // "at least 12GB RAM", "over 5000mAh"
+    private static final Pattern VALUE_FIRST_PATTERN = Pattern.compile("\\b" + SPEC_OPERATOR + "\\s*(\\d+(?:\\.\\d+)?)\\s*(mah|mp|gb|inch(?:es)?)\\b\\s*(battery|camera|display|screen|ram|memory|storage)?", Pattern.CASE_INSENSITIVE);
+
+    // Turn inputs and stage outputs only the built-in stages use
+    private static final PipelineKey<Boolean> ALLOW_LLM = PipelineKey.of("allowLlm");
+    private static final PipelineKey<Boolean> RECORD = PipelineKey.of("record");
+    private static final PipelineKey<PartialReplies> PARTIAL_REPLIES = PipelineKey.of("partialReplies");
+    private static final PipelineKey<SlotStateService.Refinement> REFINEMENT = PipelineKey.of("refinement");
+    private static final PipelineKey<SlotStateService.Refinement> SLOTS = PipelineKey.of("slots");
+    private static final PipelineKey<ResponseRouter.Route> ROUTE = PipelineKey.of("route");
+    private static final PipelineKey<List<ChatMessage>> PROMPT = PipelineKey.of("prompt");
+    private static final PipelineKey<Reply> REPLY = PipelineKey.of("reply");
+
+    private TurnPipeline pipeline;
 
     @PostConstruct
     public void init() {
         logger.info("Initializing ConversationService");
-        // Initialize OpenAI service if API key is available
-        initializeOpenAiService();
-        if (openAiService != null) {
-            logger.info("OpenAI service initialized successfully");
-        } else {
-            logger.warn("OpenAI service not initialized - API key not available. Fallback responses will be used.");
-        }
+        pipeline = pipelineScheduler.assemble(Set.of(TurnKeys.CATALOG, TurnKeys.CONVERSATION_ID, TurnKeys.MESSAGE,
+                TurnKeys.INTENT, TurnKeys.STATE, ALLOW_LLM, RECORD, PARTIAL_REPLIES), builtInStages());
     }
 
-    @PreDestroy
-    public void cleanup() {
-        logger.info("Shutting down ConversationService");
-        // Properly shutdown OpenAI service to clean up resources
-        if (openAiService != null) {
-            openAiService.shutdownExecutor();
-            logger.info("OpenAI service shutdown complete");
-        }
+    /**
+     * The built-in turn stages. Everything generation needs runs first, so the model call starts
+     * early; slot capture, slot update and recommendations then run while it is in flight.
+     */
+    private List<PipelineStage> builtInStages() {
+        return List.of(
+                // Follow-ups refine the previous result set; anything else runs the full query
+                Stage.builder("refinement")
+                        .inputs(TurnKeys.CATALOG, TurnKeys.STATE, TurnKeys.MESSAGE, TurnKeys.INTENT)
+                        .outputs(REFINEMENT)
+                        .run((turn, out) -> out.put(REFINEMENT, slotStateService.refine(turn.get(TurnKeys.CATALOG),
+                                turn.get(TurnKeys.STATE), turn.get(TurnKeys.MESSAGE), turn.get(TurnKeys.INTENT))))
+                        .build(),
+                Stage.builder("retrieval")
+                        .inputs(TurnKeys.CATALOG, TurnKeys.MESSAGE, TurnKeys.INTENT, REFINEMENT)
+                        .outputs(TurnKeys.CANDIDATES)
+                        .run((turn, out) -> {
+                            SlotStateService.Refinement refinement = turn.get(REFINEMENT);
+                            out.put(TurnKeys.CANDIDATES, refinement != null
+                                    ? refinement.getPhones().stream().limit(10).collect(Collectors.toList())
+                                    : getRelevantPhones(turn.get(TurnKeys.CATALOG), turn.get(TurnKeys.MESSAGE), turn.get(TurnKeys.INTENT)));
+                        })
+                        .build(),
+                Stage.builder("slot-capture")
+                        .inputs(TurnKeys.CATALOG, TurnKeys.MESSAGE, REFINEMENT)
+                        .outputs(SLOTS)
+                        .run((turn, out) -> {
+                            SlotStateService.Refinement refinement = turn.get(REFINEMENT);
+                            out.put(SLOTS, refinement != null
+                                    ? refinement
+                                    : slotStateService.capture(turn.get(TurnKeys.CATALOG), turn.get(TurnKeys.MESSAGE)));
+                        })
+                        .build(),
+                Stage.builder("slot-update")
+                        .inputs(TurnKeys.CONVERSATION_ID, TurnKeys.MESSAGE, TurnKeys.INTENT, SLOTS)
+                        .when(turn -> turn.get(RECORD))
+                        .run((turn, out) -> updateSlots(turn.get(TurnKeys.CONVERSATION_ID), turn.get(TurnKeys.MESSAGE),
+                                turn.get(TurnKeys.INTENT), turn.get(SLOTS)))
+                        .build(),
+                // Merges what all retrieval stages found, in stage order
+                Stage.builder("rank")
+                        .inputs(TurnKeys.CANDIDATES)
+                        .outputs(TurnKeys.RELEVANT_PHONES)
+                        .run((turn, out) -> out.put(TurnKeys.RELEVANT_PHONES, distinct(turn.get(TurnKeys.CANDIDATES))))
+                        .build(),
+                // The diff feeds both the prompt and the response
+                Stage.builder("comparison")
+                        .inputs(TurnKeys.CATALOG, TurnKeys.INTENT, TurnKeys.RELEVANT_PHONES)
+                        .outputs(TurnKeys.COMPARISON_PHONES, TurnKeys.COMPARISON)
+                        .when(turn -> "compare".equals(turn.get(TurnKeys.INTENT)))
+                        .run((turn, out) -> {
+                            List<Phone> phones = turn.get(TurnKeys.RELEVANT_PHONES).stream().limit(3).collect(Collectors.toList());
+                            out.put(TurnKeys.COMPARISON_PHONES, phones);
+                            out.put(TurnKeys.COMPARISON, comparisonService.compare(turn.get(TurnKeys.CATALOG), phones));
+                        })
+                        .build(),
+                Stage.builder("recommendations")
+                        .inputs(TurnKeys.INTENT, TurnKeys.MESSAGE, TurnKeys.RELEVANT_PHONES)
+                        .outputs(TurnKeys.RECOMMENDATIONS)
+                        .when(turn -> "recommend".equals(turn.get(TurnKeys.INTENT)))
+                        .run((turn, out) -> out.put(TurnKeys.RECOMMENDATIONS,
+                                buildRecommendations(turn.get(TurnKeys.RELEVANT_PHONES), turn.get(TurnKeys.MESSAGE))))
+                        .build(),
+                // Template, fast model or full model; warm-up replays are not routed
+                Stage.builder("routing")
+                        .inputs(TurnKeys.INTENT, TurnKeys.MESSAGE, ALLOW_LLM, RECORD)
+                        .outputs(ROUTE)
+                        .when(turn -> turn.get(RECORD))
+                        .run((turn, out) -> out.put(ROUTE, responseRouter.route(turn.get(TurnKeys.INTENT),
+                                turn.get(TurnKeys.MESSAGE), turn.get(ALLOW_LLM) && openAiGateway.isAvailable())))
+                        .fallback((turn, out) -> out.put(ROUTE, ResponseRouter.NOT_ROUTED))
+                        .build(),
+                // Stable parts first so consecutive prompts share a cacheable prefix
+                Stage.builder("prompt")
+                        .inputs(TurnKeys.CATALOG, TurnKeys.STATE, TurnKeys.INTENT, TurnKeys.MESSAGE,
+                                TurnKeys.RELEVANT_PHONES, TurnKeys.COMPARISON, ROUTE)
+                        .outputs(PROMPT)
+                        .when(turn -> turn.get(ROUTE).getTier() != ResponseRouter.Tier.TEMPLATE)
+                        .run((turn, out) -> out.put(PROMPT, promptLayout.build(turn.get(TurnKeys.CATALOG),
+                                turn.get(TurnKeys.STATE), turn.get(TurnKeys.INTENT), turn.get(TurnKeys.RELEVANT_PHONES),
+                                turn.get(TurnKeys.COMPARISON), turn.get(TurnKeys.MESSAGE))))
+                        .build(),
+                // Without a prompt, or when the model is too slow, the rule-based reply stands in
+                Stage.builder("generation")
+                        .inputs(PROMPT, ROUTE, TurnKeys.CONVERSATION_ID, TurnKeys.INTENT, TurnKeys.MESSAGE,
+                                TurnKeys.RELEVANT_PHONES, TurnKeys.COMPARISON, PARTIAL_REPLIES, RECORD)
+                        .outputs(REPLY)
+                        .when(turn -> turn.get(PROMPT) != null)
+                        .run(this::generateWithModel)
+                        .fallback(this::generateFallback)
+                        .blocking()
+                        .build());
     }
 
-    private synchronized void initializeOpenAiService() {
-        if (openAiService == null && openaiApiKey != null && !openaiApiKey.isEmpty() && !openaiApiKey.equals("dummy")) {
-            openAiService = new OpenAiService(openaiApiKey, Duration.ofSeconds(30));
+    private static List<Phone> distinct(List<Phone> candidates) {
+        Map<Object, Phone> unique = new LinkedHashMap<>();
+        for (Phone phone : candidates) {
+            unique.putIfAbsent(phone.getId() != null ? phone.getId() : phone, phone);
         }
+        return unique.size() == candidates.size() ? candidates : new ArrayList<>(unique.values());
     }
 
-    private OpenAiService getOpenAiService() {
-        if (openAiService == null) {
-            initializeOpenAiService();
-        }
-        return openAiService;
+    public ChatResponse processMessage(ChatRequest request) {
+        return processMessage(request, true);
     }
 
-    public ChatResponse processMessage(ChatRequest request) {
+    /**
+     * Processes a chat turn. With {@code allowLlm} false the rule-based fallback is used even
+     * when an API key is configured, which is how overloaded requests are degraded.
+     */
+    public ChatResponse processMessage(ChatRequest request, boolean allowLlm) {
+        return process(request, allowLlm, true, null);
+    }
+
+    /**
+     * Processes a chat turn, handing parts of the reply to {@code onPartialReply} as they are
+     * generated. Partial replies are provisional; the returned response holds the final message.
+     */
+    public ChatResponse processMessage(ChatRequest request, boolean allowLlm, PartialReplies onPartialReply) {
+        return process(request, allowLlm, true, onPartialReply);
+    }
+
+    /**
+     * Runs a turn through the rule-based path without touching conversation state or analytics,
+     * so startup warm-up can exercise the same code as real traffic.
+     */
+    public ChatResponse warmUp(ChatRequest request) {
+        return process(request, false, false, null);
+    }
+
+    private ChatResponse process(ChatRequest request, boolean allowLlm, boolean record, PartialReplies onPartialReply) {
+        long startNanos = System.nanoTime();
+        ChatTurnEvent turnEvent = new ChatTurnEvent();
+        turnEvent.begin();
+        TurnContext turn = new TurnContext();
+        int cacheHitsBefore = catalogQueryCache.threadHits();
+        // Resolved once so every lookup in this turn sees the same catalog snapshot
+        Catalog catalog = phoneCatalogService.getCatalog(request.getCatalog());
         String message = request.getMessage();
         String conversationId = request.getConversationId();
         
         if (conversationId == null || conversationId.isEmpty()) {
-            conversationId = UUID.randomUUID().toString();
+            conversationId = conversationStore.newConversationId();
             logger.debug("Generated new conversation ID: {}", conversationId);
         }
 
         // Safety check
+        TurnStageEvent safetyEvent = new TurnStageEvent();
+        safetyEvent.begin();
         SafetyResult safetyResult = performSafetyCheck(message);
+        commitStage(safetyEvent, turn, "safety");
         if (!safetyResult.isSafe()) {
             logger.warn("Safety check failed for conversation {}: {}", conversationId, safetyResult.getReason());
             ChatResponse response = new ChatResponse();
             response.setMessage("I'm sorry, but I can't process that request. " + safetyResult.getReason());
             response.setSafetyResult(safetyResult);
             response.setConversationId(conversationId);
+            response.setCatalogVersion(catalog.getVersion());
+            commitTurn(turnEvent, turn, conversationId, null, catalog, "unsafe", cacheHitsBefore);
             return response;
         }
 
@@ -103,33 +277,148 @@ public class ConversationService {
                 safetyResult.getSanitizedMessage() : message;
 
         // Detect intent
+        TurnStageEvent intentEvent = new TurnStageEvent();
+        intentEvent.begin();
         String intent = detectIntent(processedMessage);
+        commitStage(intentEvent, turn, "intent");
         logger.debug("Detected intent: {} for conversation: {}", intent, conversationId);
         
-        // Get relevant phones based on intent
-        List<Phone> relevantPhones = getRelevantPhones(processedMessage, intent);
+        turn.with(TurnKeys.CATALOG, catalog)
+                .with(TurnKeys.CONVERSATION_ID, conversationId)
+                .with(TurnKeys.MESSAGE, processedMessage)
+                .with(TurnKeys.INTENT, intent)
+                .with(TurnKeys.STATE, conversationStore.get(conversationId))
+                .with(ALLOW_LLM, allowLlm)
+                .with(RECORD, record)
+                .with(PARTIAL_REPLIES, onPartialReply);
+        pipeline.run(turn);
+        
+        List<Phone> relevantPhones = turn.get(TurnKeys.RELEVANT_PHONES);
         logger.debug("Found {} relevant phones for intent: {}", relevantPhones.size(), intent);
-        
-        // Generate response
-        String aiResponse = generateResponse(processedMessage, intent, relevantPhones, conversationId);
-        
-        // Build recommendations if applicable
-        List<PhoneRecommendation> recommendations = buildRecommendations(relevantPhones, intent, processedMessage);
-        
-        // Extract comparison phones if compare intent
-        List<Phone> comparisonPhones = extractComparisonPhones(processedMessage, intent, relevantPhones);
+        Reply reply = turn.get(REPLY);
+        String aiResponse = reply.text;
+        List<PhoneRecommendation> recommendations = turn.get(TurnKeys.RECOMMENDATIONS);
+        List<Phone> comparisonPhones = turn.get(TurnKeys.COMPARISON_PHONES);
+        PhoneComparison comparison = turn.get(TurnKeys.COMPARISON);
+        SlotStateService.Refinement refinement = turn.get(SLOTS);
         
         ChatResponse response = new ChatResponse();
         response.setMessage(aiResponse);
         response.setRecommendations(recommendations);
         response.setComparisonPhones(comparisonPhones);
+        response.setComparison(comparison);
         response.setSafetyResult(safetyResult);
         response.setConversationId(conversationId);
         response.setIntent(intent);
+        response.setCatalogVersion(catalog.getVersion());
+        if (refinement != null) {
+            response.setSlots(refinement.getSlots());
+        }
+        
+        if (record) {
+            turnAnalytics.publish(new TurnEvent(System.currentTimeMillis(), conversationId, intent,
+                    phoneIds(relevantPhones), recommendedPhoneIds(recommendations), reply.fallback,
+                    turn.getFinishedNanos("rank") / 1000, turn.getStageNanos("generation") / 1000,
+                    (System.nanoTime() - startNanos) / 1000,
+                    reply.prefix != null ? reply.prefix.getPromptChars() : 0,
+                    reply.prefix != null ? reply.prefix.getSharedPrefixChars() : 0,
+                    turn.get(ROUTE).getTier().name().toLowerCase(Locale.ROOT)));
+        }
         
+        if (request.isCompact()) {
+            responseCompactor.compact(response, request, response.getCatalogVersion());
+        }
+        
+        commitTurn(turnEvent, turn, conversationId, intent, catalog, reply.fallback ? fallbackReason(turn) : null, cacheHitsBefore);
         return response;
     }
 
+    private static void commitStage(TurnStageEvent event, TurnContext turn, String stage) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.turnId = turn.getId();
+            event.stage = stage;
+            event.outcome = StageOutcome.COMPLETED.name();
+            event.commit();
+        }
+    }
+
+    // Field values are only gathered when a recording wants the event
+    private void commitTurn(ChatTurnEvent event, TurnContext turn, String conversationId, String intent,
+                            Catalog catalog, String fallbackReason, int cacheHitsBefore) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.turnId = turn.getId();
+        event.conversationId = conversationId;
+        event.intent = intent;
+        event.catalogVersion = catalog.getVersion();
+        event.fallbackReason = fallbackReason;
+        event.queryCacheHits = catalogQueryCache.threadHits() - cacheHitsBefore;
+        if (intent != null) {
+            ResponseRouter.Route route = turn.get(ROUTE);
+            event.tier = route != null ? route.getTier().name().toLowerCase(Locale.ROOT) : null;
+            event.candidates = turn.get(TurnKeys.CANDIDATES).size();
+            event.relevantPhones = turn.get(TurnKeys.RELEVANT_PHONES).size();
+            List<PhoneRecommendation> recommendations = turn.get(TurnKeys.RECOMMENDATIONS);
+            event.recommendations = recommendations != null ? recommendations.size() : 0;
+            Reply reply = turn.get(REPLY);
+            if (reply != null && reply.prefix != null) {
+                event.promptChars = reply.prefix.getPromptChars();
+                event.sharedPrefixChars = reply.prefix.getSharedPrefixChars();
+            }
+        }
+        event.commit();
+    }
+
+    private static String fallbackReason(TurnContext turn) {
+        ResponseRouter.Route route = turn.get(ROUTE);
+        if (route.getTier() == ResponseRouter.Tier.TEMPLATE) {
+            return "route:" + route.getReason();
+        }
+        if (turn.getOutcome("generation") == StageOutcome.TIMED_OUT) {
+            return "timeout";
+        }
+        if (turn.getOutcome("generation") == StageOutcome.REJECTED) {
+            return "no_worker";
+        }
+        return turn.get(PROMPT) == null ? "no_prompt" : "model_error";
+    }
+
+    private static List<String> phoneIds(List<Phone> phones) {
+        List<String> ids = new ArrayList<>(phones.size());
+        for (Phone phone : phones) {
+            ids.add(phone.getId());
+        }
+        return ids;
+    }
+
+    private static List<String> recommendedPhoneIds(List<PhoneRecommendation> recommendations) {
+        if (recommendations == null) {
+            return List.of();
+        }
+        List<String> ids = new ArrayList<>(recommendations.size());
+        for (PhoneRecommendation recommendation : recommendations) {
+            ids.add(recommendation.getPhone() != null ? recommendation.getPhone().getId() : recommendation.getPhoneId());
+        }
+        return ids;
+    }
+
+    private void updateSlots(String conversationId, String message, String intent, SlotStateService.Refinement refinement) {
+        if (refinement != null) {
+            conversationStore.update(conversationId, refinement::applyTo);
+        } else if (slotStateService.isReset(message, intent) && conversationStore.contains(conversationId)) {
+            conversationStore.update(conversationId, existing -> {
+                ConversationState cleared = new ConversationState(existing);
+                cleared.setSlots(null);
+                cleared.setResultBitmap(null);
+                cleared.setSlotsCatalogVersion(null);
+                return cleared;
+            });
+        }
+    }
+
     private SafetyResult performSafetyCheck(String message) {
         SafetyResult result = new SafetyResult();
         
@@ -169,6 +458,8 @@ public class ConversationService {
             return "compare";
         } else if (RECOMMEND_PATTERN.matcher(lowerMessage).find()) {
             return "recommend";
+        } else if (!extractSpecRanges(message).isEmpty()) {
+            return "search_by_spec";
         } else if (PRICE_PATTERN.matcher(lowerMessage).find() || lowerMessage.contains("price") || lowerMessage.contains("cost")) {
             return "search_by_price";
         } else if (BRAND_PATTERN.matcher(message).find() || lowerMessage.contains("brand")) {
@@ -182,40 +473,48 @@ public class ConversationService {
         }
     }
 
-    private List<Phone> getRelevantPhones(String message, String intent) {
+    private List<Phone> getRelevantPhones(Catalog catalog, String message, String intent) {
         List<Phone> phones = new ArrayList<>();
         
         switch (intent) {
             case "list_all":
-                phones = phoneCatalogService.getAllPhones();
+                phones = phoneCatalogService.getAllPhones(catalog);
                 break;
                 
             case "search_by_price":
-                phones = extractAndSearchByPrice(message);
+                phones = extractAndSearchByPrice(catalog, message);
                 break;
                 
             case "search_by_brand":
-                phones = extractAndSearchByBrand(message);
+                phones = extractAndSearchByBrand(catalog, message);
+                break;
+                
+            case "search_by_spec":
+                phones = extractAndSearchBySpec(catalog, message);
                 break;
                 
             case "search_by_feature":
-                phones = extractAndSearchByFeature(message);
+                phones = extractAndSearchByFeature(catalog, message);
                 break;
                 
             case "recommend":
-                phones = extractAndSearchForRecommendation(message);
+                phones = extractAndSearchForRecommendation(catalog, message);
                 break;
                 
             case "compare":
-                phones = extractAndSearchForComparison(message);
+                phones = extractAndSearchForComparison(catalog, message);
                 break;
                 
             default:
                 // General query - try to find phones by name first
-                phones = phoneCatalogService.searchByName(message);
+                phones = phoneCatalogService.searchByName(catalog, message);
+                if (phones.isEmpty()) {
+                    // Open-ended query - rank the catalog by semantic similarity
+                    phones = semanticSearchService.search(catalog, message, semanticTopK);
+                }
                 if (phones.isEmpty()) {
                     // Fallback: return all phones for general queries
-                    phones = phoneCatalogService.getAllPhones();
+                    phones = phoneCatalogService.getAllPhones(catalog);
                 }
                 break;
         }
@@ -224,7 +523,15 @@ public class ConversationService {
         return phones.stream().limit(10).collect(Collectors.toList());
     }
 
-    private List<Phone> extractAndSearchByPrice(String message) {
+    private List<Phone> extractAndSearchByPrice(Catalog catalog, String message) {
+        Integer maxPrice = extractMaxPrice(message);
+        if (maxPrice != null) {
+            return phoneCatalogService.searchByPriceRange(catalog, maxPrice);
+        }
+        return phoneCatalogService.getAllPhones(catalog);
+    }
+
+    static Integer extractMaxPrice(String message) {
         String lowerMessage = message.toLowerCase();
         java.util.regex.Matcher matcher = PRICE_PATTERN.matcher(lowerMessage);
         if (matcher.find()) {
@@ -235,60 +542,178 @@ public class ConversationService {
                 if (maxPrice < 100) {
                     maxPrice = maxPrice * 1000;
                 }
-                return phoneCatalogService.searchByPriceRange(maxPrice);
+                return maxPrice;
             } catch (NumberFormatException e) {
                 // Fall through
             }
         }
-        return phoneCatalogService.getAllPhones();
+        return null;
     }
 
-    private List<Phone> extractAndSearchByBrand(String message) {
+    private List<Phone> extractAndSearchByBrand(Catalog catalog, String message) {
         java.util.regex.Matcher matcher = BRAND_PATTERN.matcher(message);
         if (matcher.find()) {
-            String brand = matcher.group(1);
-            // Normalize brand names
-            if (brand.equalsIgnoreCase("pixel")) {
-                brand = "Google";
-            }
-            return phoneCatalogService.searchByBrand(brand);
+            return phoneCatalogService.searchByBrand(catalog, normalizeBrand(matcher.group(1)));
+        }
+        return phoneCatalogService.getAllPhones(catalog);
+    }
+
+    // Maps product lines onto the brand names used in the catalog
+    static String normalizeBrand(String brand) {
+        if (brand.equalsIgnoreCase("pixel")) {
+            return "Google";
+        } else if (brand.equalsIgnoreCase("redmi")) {
+            return "Xiaomi";
         }
-        return phoneCatalogService.getAllPhones();
+        return brand;
     }
 
-    private List<Phone> extractAndSearchByFeature(String message) {
+    private List<Phone> extractAndSearchByFeature(Catalog catalog, String message) {
         java.util.regex.Matcher matcher = FEATURE_PATTERN.matcher(message);
         if (matcher.find()) {
             String feature = matcher.group(1);
-            return phoneCatalogService.searchByFeature(feature);
+            return phoneCatalogService.searchByFeature(catalog, feature);
+        }
+        return phoneCatalogService.getAllPhones(catalog);
+    }
+
+    private List<Phone> extractAndSearchBySpec(Catalog catalog, String message) {
+        List<SpecRange> ranges = new ArrayList<>(extractSpecRanges(message));
+        if (ranges.isEmpty()) {
+            return phoneCatalogService.getAllPhones(catalog);
+        }
+        // A budget may be given alongside the spec, e.g. "under 30000 with at least 8GB RAM"
+        Integer maxPrice = extractMaxPrice(stripSpecPhrases(message));
+        if (maxPrice != null) {
+            ranges.add(SpecRange.atMost(Spec.PRICE, maxPrice));
         }
-        return phoneCatalogService.getAllPhones();
+        return phoneCatalogService.searchBySpecRanges(catalog, ranges);
     }
 
-    private List<Phone> extractAndSearchForRecommendation(String message) {
+    static List<SpecRange> extractSpecRanges(String message) {
+        List<SpecRange> ranges = new ArrayList<>();
+        java.util.regex.Matcher specFirst = SPEC_FIRST_PATTERN.matcher(message);
+        while (specFirst.find()) {
+            SpecRange range = toSpecRange(specFirst.group(1), specFirst.group(2), specFirst.group(3), specFirst.group(4));
+            if (range != null) {
+                ranges.add(range);
+            }
+        }
+        java.util.regex.Matcher valueFirst = VALUE_FIRST_PATTERN.matcher(SPEC_FIRST_PATTERN.matcher(message).replaceAll(" "));
+        while (valueFirst.find()) {
+            SpecRange range = toSpecRange(valueFirst.group(4), valueFirst.group(1), valueFirst.group(2), valueFirst.group(3));
+            if (range != null) {
+                ranges.add(range);
+            }
+        }
+        return ranges;
+    }
+
+    // Leaves out spec phrases, whose numbers would otherwise read as prices
+    static String stripSpecPhrases(String message) {
+        String stripped = SPEC_FIRST_PATTERN.matcher(message).replaceAll(" ");
+        return VALUE_FIRST_PATTERN.matcher(stripped).replaceAll(" ");
+    }
+
+    private static SpecRange toSpecRange(String keyword, String operator, String number, String unit) {
+        double value;
+        try {
+            value = Double.parseDouble(number);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        Spec spec = resolveSpec(keyword, unit, value);
+        if (spec == null) {
+            return null;
+        }
+        switch (operator.toLowerCase()) {
+            case "over":
+            case "above":
+            case "more than":
+            case "greater than":
+            case "bigger than":
+            case "larger than":
+                return SpecRange.atLeast(spec, Math.nextUp(value));
+            case "at least":
+            case "minimum":
+                return SpecRange.atLeast(spec, value);
+            case "under":
+            case "below":
+            case "less than":
+            case "smaller than":
+                return SpecRange.atMost(spec, Math.nextDown(value));
+            default:
+                return SpecRange.atMost(spec, value);
+        }
+    }
+
+    private static Spec resolveSpec(String keyword, String unit, double value) {
+        if (keyword != null) {
+            switch (keyword.toLowerCase()) {
+                case "battery":
+                    return Spec.BATTERY_MAH;
+                case "camera":
+                    return Spec.CAMERA_MP;
+                case "display":
+                case "screen":
+                    return Spec.DISPLAY_INCHES;
+                case "ram":
+                case "memory":
+                    return Spec.RAM_GB;
+                case "storage":
+                    return Spec.STORAGE_GB;
+                default:
+                    break;
+            }
+        }
+        if (unit == null) {
+            return null;
+        }
+        String lowerUnit = unit.toLowerCase();
+        if (lowerUnit.equals("mah")) {
+            return Spec.BATTERY_MAH;
+        } else if (lowerUnit.equals("mp")) {
+            return Spec.CAMERA_MP;
+        } else if (lowerUnit.startsWith("inch")) {
+            return Spec.DISPLAY_INCHES;
+        }
+        // Bare "GB": small amounts are memory, large ones storage
+        return value <= 24 ? Spec.RAM_GB : Spec.STORAGE_GB;
+    }
+
+    private List<Phone> extractAndSearchForRecommendation(Catalog catalog, String message) {
         List<Phone> phones = new ArrayList<>();
+        List<SpecRange> specRanges = extractSpecRanges(message);
+        String budgetMessage = specRanges.isEmpty() ? message : stripSpecPhrases(message);
         
         // Try price first
-        List<Phone> pricePhones = extractAndSearchByPrice(message);
+        List<Phone> pricePhones = extractAndSearchByPrice(catalog, budgetMessage);
         if (!pricePhones.isEmpty()) {
             phones.addAll(pricePhones);
         }
         
         // Try brand
-        List<Phone> brandPhones = extractAndSearchByBrand(message);
+        List<Phone> brandPhones = extractAndSearchByBrand(catalog, message);
         if (!brandPhones.isEmpty()) {
             phones.addAll(brandPhones);
         }
         
         // Try feature
-        List<Phone> featurePhones = extractAndSearchByFeature(message);
+        List<Phone> featurePhones = extractAndSearchByFeature(catalog, message);
         if (!featurePhones.isEmpty()) {
             phones.addAll(featurePhones);
         }
         
         // If nothing found, return all phones
         if (phones.isEmpty()) {
-            phones = phoneCatalogService.getAllPhones();
+            phones = phoneCatalogService.getAllPhones(catalog);
+        }
+        
+        // Keep only phones that satisfy any spec constraints
+        if (!specRanges.isEmpty()) {
+            Set<Phone> matching = Collections.newSetFromMap(new IdentityHashMap<>());
+            matching.addAll(phoneCatalogService.searchBySpecRanges(catalog, specRanges));
+            phones = phones.stream().filter(matching::contains).collect(Collectors.toList());
         }
         
         // Remove duplicates
@@ -299,7 +724,7 @@ public class ConversationService {
                 .collect(Collectors.toList());
     }
 
-    private List<Phone> extractAndSearchForComparison(String message) {
+    private List<Phone> extractAndSearchForComparison(Catalog catalog, String message) {
         List<Phone> phones = new ArrayList<>();
         
         // Extract phone names from message
@@ -314,10 +739,10 @@ public class ConversationService {
         }
         
         if (!phoneNames.isEmpty()) {
-            phones = phoneCatalogService.findMultipleByName(phoneNames);
+            phones = phoneCatalogService.findMultipleByName(catalog, phoneNames);
         } else {
             // Default comparison: get first 2-3 phones
-            phones = phoneCatalogService.getAllPhones().stream()
+            phones = phoneCatalogService.getAllPhones(catalog).stream()
                     .limit(3)
                     .collect(Collectors.toList());
         }
@@ -325,8 +750,8 @@ public class ConversationService {
         return phones;
     }
 
-    private List<PhoneRecommendation> buildRecommendations(List<Phone> phones, String intent, String message) {
-        if (!"recommend".equals(intent) || phones.isEmpty()) {
+    private List<PhoneRecommendation> buildRecommendations(List<Phone> phones, String message) {
+        if (phones.isEmpty()) {
             return null;
         }
         
@@ -394,123 +819,87 @@ public class ConversationService {
         return Math.min(1.0, score);
     }
 
-    private List<Phone> extractComparisonPhones(String message, String intent, List<Phone> relevantPhones) {
-        if (!"compare".equals(intent)) {
-            return null;
-        }
-        return relevantPhones.stream().limit(3).collect(Collectors.toList());
+    public boolean hasConversation(String conversationId) {
+        return conversationId != null && conversationStore.contains(conversationId);
     }
 
-    private String generateResponse(String message, String intent, List<Phone> relevantPhones, String conversationId) {
-        // Build system prompt
-        String systemPrompt = buildSystemPrompt(intent, relevantPhones);
-        
-        // Prepare messages for OpenAI
-        List<ChatMessage> messages = new ArrayList<>();
-        messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), systemPrompt));
-        
-        // Get conversation history thread-safely
-        List<ChatMessage> history = conversationHistory.getOrDefault(conversationId, new ArrayList<>());
-        
-        // Add conversation history (last 5 messages)
-        int historySize = Math.min(history.size(), 10); // Keep last 10 messages (5 pairs)
-        for (int i = history.size() - historySize; i < history.size(); i++) {
-            messages.add(history.get(i));
-        }
-        
-        // Add current user message
-        ChatMessage userMessage = new ChatMessage(ChatMessageRole.USER.value(), message);
-        messages.add(userMessage);
-        
-        // Generate response using OpenAI if API key is available
-        String aiResponse;
-        OpenAiService service = getOpenAiService();
-        if (service != null) {
-            try {
-                ChatCompletionRequest completionRequest = ChatCompletionRequest.builder()
-                        .model(openaiModel)
-                        .messages(messages)
-                        .temperature(0.7)
-                        .maxTokens(500)
-                        .build();
-                
-                ChatMessage responseMessage = service.createChatCompletion(completionRequest)
-                        .getChoices().get(0).getMessage();
-                
-                aiResponse = responseMessage.getContent();
-                
-                // Update conversation history thread-safely using compute()
-                conversationHistory.compute(conversationId, (key, existingHistory) -> {
-                    List<ChatMessage> updatedHistory = existingHistory != null 
-                            ? new ArrayList<>(existingHistory) 
-                            : new ArrayList<>();
-                    updatedHistory.add(userMessage);
-                    updatedHistory.add(new ChatMessage(ChatMessageRole.ASSISTANT.value(), aiResponse));
-                    return updatedHistory;
-                });
-                
-            } catch (Exception e) {
-                // Fallback to rule-based response if OpenAI fails
-                logger.warn("OpenAI API error, using fallback response: {}", e.getMessage(), e);
-                aiResponse = generateFallbackResponse(message, intent, relevantPhones);
+    private void generateWithModel(TurnContext turn, StageOutputs out) {
+        String conversationId = turn.get(TurnKeys.CONVERSATION_ID);
+        List<ChatMessage> messages = turn.get(PROMPT);
+        ChatMessage userMessage = messages.get(messages.size() - 1);
+        PartialReplies partialReplies = turn.get(PARTIAL_REPLIES);
+        ResponseRouter.Route route = turn.get(ROUTE);
+        PromptLayout.PrefixReport prefix = promptLayout.recordPrefix(conversationId, messages);
+        logger.debug("Prompt for conversation {}: {} chars, {} shared with the previous prompt",
+                conversationId, prefix.getPromptChars(), prefix.getSharedPrefixChars());
+        long callStart = System.nanoTime();
+        String aiResponse = null;
+        try {
+            // Once the stage has timed out its fallback reply stands, so late output is dropped
+            aiResponse = partialReplies != null
+                    ? openAiGateway.stream(route.getModel(), messages, 0.7, route.getMaxTokens(),
+                            delta -> out.ifActive(() -> partialReplies.append(delta)))
+                    : openAiGateway.complete(route.getModel(), messages, 0.7, route.getMaxTokens());
+            responseRouter.recordCall(route, System.nanoTime() - callStart, prefix.getPromptChars(), aiResponse.length());
+            // Either this reply or the timeout fallback is recorded, never both
+            if (!out.claim()) {
+                return;
             }
-        } else {
-            // No API key - use fallback response
-            aiResponse = generateFallbackResponse(message, intent, relevantPhones);
+            
+            remember(conversationId, userMessage, aiResponse);
+            out.put(REPLY, new Reply(aiResponse, false, prefix));
+        } catch (Exception e) {
+            if (aiResponse == null) {
+                // Slow failures should still push the router towards cheaper tiers
+                responseRouter.recordCall(route, System.nanoTime() - callStart, 0, 0);
+            }
+            if (!out.claim()) {
+                return;
+            }
+            // Fallback to rule-based response if OpenAI fails
+            logger.warn("OpenAI API error, using fallback response: {}", e.getMessage(), e);
+            generateFallback(turn, out);
         }
-        
-        return aiResponse;
     }
 
-    private String buildSystemPrompt(String intent, List<Phone> phones) {
-        StringBuilder prompt = new StringBuilder();
-        prompt.append("You are a helpful phone shopping assistant. ");
-        
-        if (!phones.isEmpty()) {
-            prompt.append("Here are some phones from our catalog:\n\n");
-            for (Phone phone : phones) {
-                prompt.append("- ").append(phone.getName()).append(" (");
-                prompt.append(phone.getBrand()).append(")");
-                if (phone.getPrice() != null) {
-                    prompt.append(" - ₹").append(phone.getPrice());
-                }
-                if (phone.getCamera() != null) {
-                    prompt.append(", Camera: ").append(phone.getCamera());
-                }
-                if (phone.getBattery() != null) {
-                    prompt.append(", Battery: ").append(phone.getBattery());
-                }
-                if (phone.getFeatures() != null && !phone.getFeatures().isEmpty()) {
-                    prompt.append(", Features: ").append(String.join(", ", phone.getFeatures()));
-                }
-                prompt.append("\n");
-            }
-            prompt.append("\n");
+    private void generateFallback(TurnContext turn, StageOutputs out) {
+        String aiResponse = generateFallbackResponse(turn.get(TurnKeys.MESSAGE), turn.get(TurnKeys.INTENT),
+                turn.get(TurnKeys.RELEVANT_PHONES), turn.get(TurnKeys.COMPARISON));
+        PartialReplies partialReplies = turn.get(PARTIAL_REPLIES);
+        if (partialReplies != null) {
+            // Part of the model's reply may already have been streamed
+            partialReplies.replace(aiResponse);
         }
-        
-        prompt.append("Provide helpful, concise, and friendly responses. ");
-        prompt.append("Focus on helping customers find the right phone for their needs. ");
-        prompt.append("Be conversational and natural. ");
-        
-        switch (intent) {
-            case "compare":
-                prompt.append("Compare the phones mentioned, highlighting key differences in price, features, camera, and battery.");
-                break;
-            case "recommend":
-                prompt.append("Recommend phones based on the customer's requirements, explaining why each is a good fit.");
-                break;
-            case "search_by_price":
-                prompt.append("Help the customer find phones within their budget, highlighting value for money.");
-                break;
-            default:
-                prompt.append("Answer the customer's question about phones.");
-                break;
+        // Rule-based replies are history too, so conversations without a model still get summarized
+        if (turn.get(RECORD)) {
+            remember(turn.get(TurnKeys.CONVERSATION_ID),
+                    new ChatMessage(ChatMessageRole.USER.value(), turn.get(TurnKeys.MESSAGE)), aiResponse);
+        }
+        out.put(REPLY, new Reply(aiResponse, true, null));
+    }
+
+    // Appends the turn to the conversation history atomically in the store
+    private void remember(String conversationId, ChatMessage userMessage, String reply) {
+        ChatMessage assistantMessage = new ChatMessage(ChatMessageRole.ASSISTANT.value(), reply);
+        ConversationState updated = conversationStore.update(conversationId, existing ->
+                (existing != null ? existing : new ConversationState()).withTurn(userMessage, assistantMessage));
+        conversationSummarizer.compactIfNeeded(conversationId, updated);
+    }
+
+    private static final class Reply {
+        private final String text;
+        private final boolean fallback;
+        // Null when no prompt was sent to the model
+        private final PromptLayout.PrefixReport prefix;
+
+        private Reply(String text, boolean fallback, PromptLayout.PrefixReport prefix) {
+            this.text = text;
+            this.fallback = fallback;
+            this.prefix = prefix;
         }
-        
-        return prompt.toString();
     }
 
-    private String generateFallbackResponse(String message, String intent, List<Phone> phones) {
+    private String generateFallbackResponse(String message, String intent, List<Phone> phones, PhoneComparison comparison) {
         StringBuilder response = new StringBuilder();
         String lowerMessage = message.toLowerCase();
         
@@ -520,6 +909,10 @@ public class ConversationService {
         
         switch (intent) {
             case "compare":
+                if (comparison != null) {
+                    appendComparison(response, comparison);
+                    break;
+                }
                 response.append("Here are some phones for comparison:\n\n");
                 for (Phone phone : phones) {
                     response.append("**").append(phone.getName()).append("**\n");
@@ -588,5 +981,34 @@ public class ConversationService {
         
         return response.toString();
     }
-}
 
+    private static void appendComparison(StringBuilder response, PhoneComparison comparison) {
+        response.append("Here's how ").append(String.join(" and ", comparison.getPhoneNames())).append(" compare:\n\n");
+        for (SpecComparison spec : comparison.getSpecs()) {
+            response.append("**").append(Character.toUpperCase(spec.getSpec().charAt(0))).append(spec.getSpec().substring(1)).append("**: ");
+            for (int i = 0; i < spec.getValues().size(); i++) {
+                if (i > 0) {
+                    response.append(" vs ");
+                }
+                Double value = spec.getValues().get(i);
+                response.append(value == null ? "n/a" : "price".equals(spec.getSpec())
+                        ? spec.getUnit() + ComparisonService.format(value)
+                        : ComparisonService.format(value) + spec.getUnit());
+            }
+            if (spec.getWinnerId() != null) {
+                response.append(" - ").append(ComparisonService.nameOf(comparison, spec.getWinnerId()))
+                        .append("price".equals(spec.getSpec()) ? " is cheaper" : " leads");
+            }
+            response.append("\n");
+        }
+        for (Map.Entry<String, List<String>> entry : comparison.getUniqueFeatures().entrySet()) {
+            if (!entry.getValue().isEmpty()) {
+                response.append("\nOnly the ").append(ComparisonService.nameOf(comparison, entry.getKey()))
+                        .append(" has ").append(String.join(", ", entry.getValue())).append(".");
+            }
+        }
+        if (!comparison.getCommonFeatures().isEmpty()) {
+            response.append(comparison.getPhoneIds().size() == 2 ? "\nBoth offer " : "\nAll of them offer ").append(String.join(", ", comparison.getCommonFeatures())).append(".");
+        }
+    }
+}
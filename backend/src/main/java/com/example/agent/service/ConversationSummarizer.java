@@ -0,0 +1,172 @@
+package com.example.agent.service;
+
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.conversation.ConversationStore;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.completion.chat.ChatMessageRole;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Folds older turns of long conversations into a running summary, off the request path. The
+ * summary comes from the LLM when one is configured, otherwise it is built extractively.
+ */
+@Service
+public class ConversationSummarizer {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConversationSummarizer.class);
+
+    @Autowired
+    private ConversationStore conversationStore;
+
+    @Autowired
+    private OpenAiGateway openAiGateway;
+
+    @Value("${conversation.summary.trigger-messages:12}")
+    private int triggerMessages;
+
+    @Value("${conversation.summary.keep-recent-messages:6}")
+    private int keepRecentMessages;
+
+    @Value("${conversation.summary.max-chars:1200}")
+    private int maxSummaryChars;
+
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    // Compaction is best-effort: when the queue is full the conversation is simply retried on its next turn
+    private final ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256), r -> {
+                Thread thread = new Thread(r, "conversation-summarizer");
+                thread.setDaemon(true);
+                return thread;
+            }, new ThreadPoolExecutor.DiscardPolicy());
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Schedules compaction if the conversation has grown past the threshold. Never blocks.
+     */
+    public void compactIfNeeded(String conversationId, ConversationState state) {
+        if (state == null || state.getMessages().size() <= triggerMessages) {
+            return;
+        }
+        if (pending.add(conversationId)) {
+            executor.execute(() -> {
+                try {
+                    compact(conversationId);
+                } catch (Exception e) {
+                    logger.warn("Failed to summarize conversation {}: {}", conversationId, e.getMessage());
+                } finally {
+                    pending.remove(conversationId);
+                }
+            });
+        }
+    }
+
+    void compact(String conversationId) {
+        ConversationState snapshot = conversationStore.get(conversationId);
+        if (snapshot == null || snapshot.getMessages().size() <= triggerMessages) {
+            return;
+        }
+        int foldCount = snapshot.getMessages().size() - keepRecentMessages;
+        List<ChatMessage> folded = new ArrayList<>(snapshot.getMessages().subList(0, foldCount));
+        String summary = summarize(snapshot.getSummary(), folded);
+
+        ConversationState updated = conversationStore.update(conversationId, current -> {
+            // Turns are only ever appended, so the folded prefix is intact unless someone else compacted first
+            if (current == null || current.getMessages().size() < foldCount
+                    || !sameMessages(current.getMessages().subList(0, foldCount), folded)) {
+                return current;
+            }
+            ConversationState compacted = new ConversationState(current);
+            compacted.setMessages(new ArrayList<>(current.getMessages().subList(foldCount, current.getMessages().size())));
+            compacted.setSummary(summary);
+            compacted.setSummarizedMessages(current.getSummarizedMessages() + foldCount);
+            return compacted;
+        });
+        logger.debug("Compacted conversation {}: {} messages summarized, {} kept", conversationId,
+                updated != null ? updated.getSummarizedMessages() : 0, updated != null ? updated.getMessages().size() : 0);
+    }
+
+    private String summarize(String previousSummary, List<ChatMessage> folded) {
+        if (openAiGateway.isAvailable()) {
+            try {
+                List<ChatMessage> prompt = new ArrayList<>();
+                prompt.add(new ChatMessage(ChatMessageRole.SYSTEM.value(),
+                        "Summarize this phone shopping conversation in at most 120 words. Keep the customer's budget, "
+                                + "preferred brands, required features and the phones already discussed."));
+                StringBuilder transcript = new StringBuilder();
+                if (previousSummary != null) {
+                    transcript.append("Earlier summary: ").append(previousSummary).append("\n");
+                }
+                for (ChatMessage message : folded) {
+                    transcript.append(message.getRole()).append(": ").append(message.getContent()).append("\n");
+                }
+                prompt.add(new ChatMessage(ChatMessageRole.USER.value(), transcript.toString()));
+                return truncate(openAiGateway.complete(prompt, 0.2, 250));
+            } catch (Exception e) {
+                logger.warn("LLM summarization failed, using extractive summary: {}", e.getMessage());
+            }
+        }
+        return extractiveSummary(previousSummary, folded);
+    }
+
+    // Keeps what the customer asked for and the first sentence of each answer
+    String extractiveSummary(String previousSummary, List<ChatMessage> folded) {
+        StringBuilder summary = new StringBuilder();
+        if (previousSummary != null) {
+            summary.append(previousSummary).append(' ');
+        }
+        for (ChatMessage message : folded) {
+            String content = message.getContent() != null ? message.getContent().replaceAll("\\s+", " ").trim() : "";
+            if (content.isEmpty()) {
+                continue;
+            }
+            if (ChatMessageRole.USER.value().equals(message.getRole())) {
+                summary.append("Customer asked: ").append(clip(content, 160)).append(". ");
+            } else if (ChatMessageRole.ASSISTANT.value().equals(message.getRole())) {
+                int end = content.indexOf(". ");
+                summary.append("Assistant: ").append(clip(end > 0 ? content.substring(0, end) : content, 160)).append(". ");
+            }
+        }
+        return truncate(summary.toString().trim());
+    }
+
+    // Over budget, the oldest part of the summary is the least useful
+    private String truncate(String summary) {
+        if (summary.length() <= maxSummaryChars) {
+            return summary;
+        }
+        return "..." + summary.substring(summary.length() - maxSummaryChars + 3);
+    }
+
+    private static String clip(String text, int max) {
+        return text.length() <= max ? text : text.substring(0, max - 3) + "...";
+    }
+
+    private static boolean sameMessages(List<ChatMessage> a, List<ChatMessage> b) {
+        if (a.size() != b.size()) {
+            return false;
+        }
+        for (int i = 0; i < a.size(); i++) {
+            if (a.get(i) != b.get(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,258 @@
+package com.example.agent.service;
+
+import com.example.agent.llm.HedgingLlmClient;
+import com.example.agent.llm.LlmEndpoint;
+import com.example.agent.llm.OpenAiEndpoint;
+import com.example.agent.profiling.ModelCallEvent;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Owns the model endpoints so that everything needing a completion shares one connection pool.
+ * The primary endpoint is the OpenAI API or the OpenAI-compatible server at
+ * {@code openai.api.base-url}; with {@code llm.backup.base-url} set, calls are hedged to a second
+ * one through {@link HedgingLlmClient}.
+ */
+@Service
+public class OpenAiGateway {
+
+    private static final Logger logger = LoggerFactory.getLogger(OpenAiGateway.class);
+
+    @Value("${openai.api.key:}")
+    private String openaiApiKey;
+
+    @Value("${openai.api.model:gpt-3.5-turbo}")
+    private String openaiModel;
+
+    // Empty for the public API; e.g. a local stub for load tests and traffic replays
+    @Value("${openai.api.base-url:}")
+    private String openaiBaseUrl;
+
+    @Value("${llm.backup.base-url:}")
+    private String backupBaseUrl;
+
+    // Never defaults to the OpenAI key, which must not be sent to another provider
+    @Value("${llm.backup.api-key:}")
+    private String backupApiKey;
+
+    // Empty: the backup serves the requested model
+    @Value("${llm.backup.model:}")
+    private String backupModel;
+
+    @Value("${llm.pool.max-idle-connections:32}")
+    private int maxIdleConnections;
+
+    @Value("${llm.pool.keep-alive-seconds:300}")
+    private long keepAliveSeconds;
+
+    @Value("${llm.pool.max-requests:128}")
+    private int maxRequests;
+
+    @Value("${llm.pool.max-requests-per-host:64}")
+    private int maxRequestsPerHost;
+
+    @Value("${llm.timeout.connect-ms:5000}")
+    private long connectTimeoutMs;
+
+    @Value("${llm.timeout.read-ms:30000}")
+    private long readTimeoutMs;
+
+    // The whole call, including a streamed body, so a trickling response can't hold a slot forever
+    @Value("${llm.timeout.call-ms:60000}")
+    private long callTimeoutMs;
+
+    @Autowired
+    private HedgingLlmClient hedgingClient;
+
+    private OkHttpClient httpClient;
+    private LlmEndpoint backup;
+    // Set last, so that a non-null primary means the endpoints are ready
+    private volatile LlmEndpoint primary;
+
+    private CompletableFuture<Void> initialization = CompletableFuture.completedFuture(null);
+
+    @PostConstruct
+    public void init() {
+        // Building the client loads OkHttp, Retrofit and Jackson; do it while the catalog loads
+        initialization = new CompletableFuture<>();
+        Thread thread = new Thread(this::initializeInBackground, "openai-init");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void initializeInBackground() {
+        try {
+            // Initialize OpenAI service if API key is available
+            initializeEndpoints();
+            if (primary != null) {
+                logger.info("OpenAI service initialized successfully");
+            } else {
+                logger.warn("OpenAI service not initialized - API key not available. Fallback responses will be used.");
+            }
+        } catch (RuntimeException e) {
+            logger.error("OpenAI service initialization failed: {}", e.getMessage(), e);
+        } finally {
+            initialization.complete(null);
+        }
+    }
+
+    /**
+     * Completes once the client has been built (or found to be unavailable).
+     */
+    public CompletableFuture<Void> getInitialization() {
+        return initialization;
+    }
+
+    @PreDestroy
+    public void cleanup() {
+        initialization.join();
+        if (httpClient != null) {
+            httpClient.dispatcher().cancelAll();
+            httpClient.dispatcher().executorService().shutdown();
+            httpClient.connectionPool().evictAll();
+            logger.info("OpenAI service shutdown complete");
+        }
+    }
+
+    private synchronized void initializeEndpoints() {
+        boolean hasKey = openaiApiKey != null && !openaiApiKey.isEmpty() && !openaiApiKey.equals("dummy");
+        boolean hasBaseUrl = openaiBaseUrl != null && !openaiBaseUrl.isBlank();
+        // Local OpenAI-compatible servers usually need no key
+        if (primary != null || !(hasKey || hasBaseUrl)) {
+            return;
+        }
+        httpClient = buildHttpClient();
+        if (backupBaseUrl != null && !backupBaseUrl.isBlank()) {
+            backup = new OpenAiEndpoint("backup", backupBaseUrl, backupApiKey, backupModel, httpClient);
+            logger.info("Hedging model calls to the OpenAI-compatible API at {}", backupBaseUrl);
+        }
+        if (hasBaseUrl) {
+            logger.info("Using OpenAI-compatible API at {}", openaiBaseUrl);
+        }
+        primary = new OpenAiEndpoint("primary", openaiBaseUrl, openaiApiKey, null, httpClient);
+    }
+
+    private OkHttpClient buildHttpClient() {
+        // OkHttp keeps idle connections for 5 minutes but the client library's default drops
+        // them after a second, and streams are queued beyond 5 per host; both cost a TLS
+        // handshake or a wait on the calls that can least afford it
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveSeconds, TimeUnit.SECONDS))
+                .dispatcher(dispatcher)
+                .connectTimeout(connectTimeoutMs, TimeUnit.MILLISECONDS)
+                .readTimeout(readTimeoutMs, TimeUnit.MILLISECONDS)
+                .callTimeout(callTimeoutMs, TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    public boolean isAvailable() {
+        initialization.join();
+        if (primary == null) {
+            initializeEndpoints();
+        }
+        return primary != null;
+    }
+
+    /**
+     * Runs a chat completion and returns the assistant's reply. Callers must check
+     * {@link #isAvailable()} first; errors from the API are propagated.
+     */
+    public String complete(List<ChatMessage> messages, double temperature, int maxTokens) {
+        return complete(openaiModel, messages, temperature, maxTokens);
+    }
+
+    /**
+     * Like {@link #complete(List, double, int)}, with a specific model.
+     */
+    public String complete(String model, List<ChatMessage> messages, double temperature, int maxTokens) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("OpenAI service is not configured");
+        }
+        ModelCallEvent event = new ModelCallEvent();
+        event.begin();
+        HedgingLlmClient.Reply reply = null;
+        Exception error = null;
+        try {
+            reply = hedgingClient.complete(primary, backup, model, messages, temperature, maxTokens);
+            return reply.getText();
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            commit(event, model, false, messages, reply, error);
+        }
+    }
+
+    /**
+     * Streams a chat completion, handing each content delta to {@code onDelta} as it arrives,
+     * and returns the full reply. Blocks until the stream ends.
+     */
+    public String stream(List<ChatMessage> messages, double temperature, int maxTokens, Consumer<String> onDelta) {
+        return stream(openaiModel, messages, temperature, maxTokens, onDelta);
+    }
+
+    /**
+     * Like {@link #stream(List, double, int, Consumer)}, with a specific model.
+     */
+    public String stream(String model, List<ChatMessage> messages, double temperature, int maxTokens, Consumer<String> onDelta) {
+        if (!isAvailable()) {
+            throw new IllegalStateException("OpenAI service is not configured");
+        }
+        ModelCallEvent event = new ModelCallEvent();
+        event.begin();
+        HedgingLlmClient.Reply reply = null;
+        Exception error = null;
+        try {
+            reply = hedgingClient.stream(primary, backup, model, messages, temperature, maxTokens, onDelta);
+            return reply.getText();
+        } catch (RuntimeException e) {
+            error = e;
+            throw e;
+        } finally {
+            commit(event, model, true, messages, reply, error);
+        }
+    }
+
+    private static void commit(ModelCallEvent event, String model, boolean streamed, List<ChatMessage> messages,
+                               HedgingLlmClient.Reply reply, Exception error) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.model = model;
+        event.streamed = streamed;
+        event.messages = messages.size();
+        for (ChatMessage message : messages) {
+            event.promptChars += message.getContent() != null ? message.getContent().length() : 0;
+        }
+        event.replyChars = reply != null && reply.getText() != null ? reply.getText().length() : 0;
+        event.endpoint = reply != null ? reply.getEndpoint() : null;
+        event.hedged = reply != null && reply.isHedged();
+        event.error = error != null ? error.getClass().getSimpleName() + ": " + error.getMessage() : null;
+        event.commit();
+    }
+
+    /**
+     * The configured default model.
+     */
+    public String getModel() {
+        return openaiModel;
+    }
+}
@@ -0,0 +1,19 @@
+package com.example.agent.service;
+
+/**
+ * Receives a reply while it is generated. Everything passed to {@link #append(String)} since the
+ * last {@link #replace(String)}, or since the start, is the reply so far.
+ */
+public interface PartialReplies {
+
+    /**
+     * The next part of the reply.
+     */
+    void append(String delta);
+
+    /**
+     * Discards the reply so far in favour of {@code text}, e.g. when a streamed model reply is
+     * abandoned for the rule-based one.
+     */
+    void replace(String text);
+}
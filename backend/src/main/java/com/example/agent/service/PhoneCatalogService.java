@@ -1,80 +1,309 @@
 package com.example.agent.service;
 
+import com.example.agent.catalog.Catalog;
+import com.example.agent.catalog.CatalogDictionaries;
+import com.example.agent.catalog.CatalogQuery;
+import com.example.agent.catalog.CatalogsReloadedEvent;
+import com.example.agent.catalog.NumericColumn;
+import com.example.agent.catalog.Spec;
+import com.example.agent.catalog.SpecRange;
 import com.example.agent.model.Phone;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.core.io.ClassPathResource;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import jakarta.annotation.PostConstruct;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.stream.Collectors;
 
+/**
+ * Serves one or more named catalogs (e.g. per region or store), configured as
+ * {@code catalog.sources=name=location,...}. The catalogs of one load share a set of
+ * dictionaries, so repeated brands, features and processors are stored once across all of them. Methods without
+ * a catalog argument use the default catalog.
+ */
 @Service
 public class PhoneCatalogService {
 
     private static final Logger logger = LoggerFactory.getLogger(PhoneCatalogService.class);
 
-    private List<Phone> phones = new ArrayList<>();
+    @Value("${catalog.sources:default=classpath:phones.json}")
+    private String sources = Catalog.DEFAULT_NAME + "=classpath:phones.json";
+
+    @Value("${catalog.default:default}")
+    private String defaultName = Catalog.DEFAULT_NAME;
+
+    private volatile Map<String, Catalog> catalogs = Map.of(Catalog.DEFAULT_NAME, new Catalog("empty", new ArrayList<>()));
+    // Modification times of the file sources as of the last load; guarded by this
+    private Map<Path, FileTime> sourceTimes = Map.of();
     private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Autowired(required = false)
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private CatalogQueryCache queryCache;
+
     @PostConstruct
-    public void loadPhones() {
+    public synchronized void loadPhones() {
+        Map<String, Catalog> previous = catalogs;
+        // Catalogs kept from an earlier load keep their own dictionaries
+        CatalogDictionaries dictionaries = new CatalogDictionaries();
+        Map<String, Catalog> loaded = new LinkedHashMap<>();
+        Map<Path, FileTime> times = new HashMap<>();
+        for (Map.Entry<String, String> source : sources().entrySet()) {
+            String name = source.getKey();
+            String location = source.getValue();
+            Path file = filePath(location);
+            if (file != null) {
+                // Taken before reading, so that a write during the load triggers another one
+                times.put(file, lastModified(file));
+            }
+            Catalog catalog = loadCatalog(name, location, dictionaries);
+            if (catalog == null) {
+                // A file caught halfway through being rewritten should not empty a served catalog
+                catalog = previous.containsKey(name)
+                        ? previous.get(name)
+                        : new Catalog(name, "empty", new ArrayList<>(), dictionaries);
+            }
+            loaded.put(name, catalog);
+        }
+        if (!loaded.containsKey(defaultName)) {
+            logger.error("Default catalog '{}' is not among the configured sources {}", defaultName, loaded.keySet());
+            loaded.put(defaultName, new Catalog(defaultName, "empty", new ArrayList<>(), dictionaries));
+        }
+        catalogs = Collections.unmodifiableMap(loaded);
+        sourceTimes = times;
+        queryCache.clear();
+        if (eventPublisher != null) {
+            eventPublisher.publishEvent(new CatalogsReloadedEvent(catalogs));
+        }
+    }
+
+    /**
+     * Reloads the catalogs when a file source has been modified since it was last loaded, so
+     * catalogs can be updated in place without a restart. Classpath sources never change.
+     */
+    @Scheduled(fixedDelayString = "${catalog.reload-check-ms:10000}", initialDelayString = "${catalog.reload-check-ms:10000}")
+    public synchronized void reloadIfChanged() {
+        for (Map.Entry<Path, FileTime> source : sourceTimes.entrySet()) {
+            if (!Objects.equals(source.getValue(), lastModified(source.getKey()))) {
+                logger.info("Catalog source {} has changed, reloading catalogs", source.getKey());
+                loadPhones();
+                return;
+            }
+        }
+    }
+
+    private Map<String, String> sources() {
+        Map<String, String> locations = new LinkedHashMap<>();
+        for (String source : sources.split(",")) {
+            String trimmed = source.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int separator = trimmed.indexOf('=');
+            String name = separator > 0 ? trimmed.substring(0, separator).trim() : Catalog.DEFAULT_NAME;
+            locations.put(name, separator > 0 ? trimmed.substring(separator + 1).trim() : trimmed);
+        }
+        return locations;
+    }
+
+    // Null for classpath sources
+    private static Path filePath(String location) {
+        if (location.startsWith("classpath:")) {
+            return null;
+        }
+        return Path.of(location.startsWith("file:") ? location.substring("file:".length()) : location);
+    }
+
+    // Null when the file cannot be read, e.g. while it is being replaced
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Null when the source cannot be read or parsed
+    private Catalog loadCatalog(String name, String location, CatalogDictionaries dictionaries) {
         try {
+            byte[] content = readSource(location);
+            List<Phone> phones = objectMapper.readValue(content, new TypeReference<List<Phone>>() {});
+            int references = 0;
+            for (Phone phone : phones) {
+                // Stable IDs let clients cache phones and refer to them across responses
+                if (phone.getId() == null && phone.getName() != null) {
+                    phone.setId(slugify(phone.getName()));
+                }
+                references += dictionaries.intern(phone);
+            }
+            // Parse free-text specs and build indexes once so queries never touch strings
+            Catalog catalog = new Catalog(name, fingerprint(content), phones, dictionaries);
+            logger.info("Successfully loaded {} phones into catalog '{}' (version {}); {} attribute values share {} dictionary entries",
+                    phones.size(), name, catalog.getVersion(), references, dictionaries.size());
+            return catalog;
+        } catch (IOException e) {
+            logger.error("Error loading catalog '{}' from {}: {}", name, location, e.getMessage(), e);
+            return null;
+        }
+    }
+
+    private byte[] readSource(String location) throws IOException {
+        if (location.startsWith("classpath:")) {
+            String path = location.substring("classpath:".length());
             // Try to load from classpath first (for packaged JAR)
-            InputStream inputStream = getClass().getClassLoader().getResourceAsStream("phones.json");
+            InputStream inputStream = getClass().getClassLoader().getResourceAsStream(path);
             if (inputStream == null) {
                 // Fallback to file system (for development)
-                ClassPathResource resource = new ClassPathResource("phones.json");
+                ClassPathResource resource = new ClassPathResource(path);
                 inputStream = resource.getInputStream();
             }
-            phones = objectMapper.readValue(inputStream, new TypeReference<List<Phone>>() {});
-            logger.info("Successfully loaded {} phones from catalog", phones.size());
-        } catch (IOException e) {
-            logger.error("Error loading phones.json: {}", e.getMessage(), e);
-            phones = new ArrayList<>();
+            try (InputStream in = inputStream) {
+                return in.readAllBytes();
+            }
+        }
+        return Files.readAllBytes(filePath(location));
+    }
+
+    public Catalog getCatalog() {
+        return catalogs.get(defaultName);
+    }
+
+    /**
+     * Returns the named catalog, or the default one when no name is given.
+     *
+     * @throws IllegalArgumentException if no catalog with that name is configured
+     */
+    public Catalog getCatalog(String name) {
+        if (name == null || name.isBlank()) {
+            return getCatalog();
+        }
+        Catalog catalog = catalogs.get(name);
+        if (catalog == null) {
+            throw new IllegalArgumentException("Unknown catalog: " + name);
         }
+        return catalog;
+    }
+
+    /**
+     * All loaded catalogs by name. The map is replaced, never modified, when catalogs reload.
+     */
+    public Map<String, Catalog> getCatalogs() {
+        return catalogs;
+    }
+
+    public String getCatalogVersion() {
+        return getCatalog().getVersion();
     }
 
     public List<Phone> getAllPhones() {
-        return new ArrayList<>(phones);
+        return getAllPhones(getCatalog());
+    }
+
+    /**
+     * The catalog's phones. Like all search results here, the list is unmodifiable and shared.
+     */
+    public List<Phone> getAllPhones(Catalog catalog) {
+        return catalog.getPhones();
     }
 
     public List<Phone> searchByBrand(String brand) {
-        return phones.stream()
-                .filter(phone -> phone.getBrand() != null && 
-                        phone.getBrand().equalsIgnoreCase(brand))
-                .collect(Collectors.toList());
+        return searchByBrand(getCatalog(), brand);
+    }
+
+    public List<Phone> searchByBrand(Catalog catalog, String brand) {
+        CatalogQuery query = CatalogQuery.builder().brand(brand).build();
+        return queryCache.get(catalog, query.key(), current -> current.select(current.brandBitmap(brand)));
     }
 
     public List<Phone> searchByPriceRange(Integer maxPrice) {
-        return phones.stream()
-                .filter(phone -> phone.getPrice() != null && phone.getPrice() <= maxPrice)
-                .collect(Collectors.toList());
+        return searchByPriceRange(getCatalog(), maxPrice);
+    }
+
+    public List<Phone> searchByPriceRange(Catalog catalog, Integer maxPrice) {
+        CatalogQuery query = CatalogQuery.builder().atMost(Spec.PRICE, maxPrice).build();
+        return queryCache.get(catalog, query.key(), current -> current.select(current.match(query)));
     }
 
     public List<Phone> searchByFeature(String feature) {
-        return phones.stream()
-                .filter(phone -> phone.getFeatures() != null &&
-                        phone.getFeatures().stream()
-                                .anyMatch(f -> f.toLowerCase().contains(feature.toLowerCase())))
-                .collect(Collectors.toList());
+        return searchByFeature(getCatalog(), feature);
+    }
+
+    public List<Phone> searchByFeature(Catalog catalog, String feature) {
+        // Substring match on feature names, so keyed apart from the exact feature of a CatalogQuery
+        return queryCache.get(catalog, "feature~" + feature.trim().toLowerCase(Locale.ROOT),
+                current -> current.select(current.featureBitmap(feature)));
     }
 
     public List<Phone> searchByName(String name) {
-        return phones.stream()
+        return searchByName(getCatalog(), name);
+    }
+
+    public List<Phone> searchByName(Catalog catalog, String name) {
+        return catalog.getPhones().stream()
                 .filter(phone -> phone.getName() != null &&
                         phone.getName().toLowerCase().contains(name.toLowerCase()))
                 .collect(Collectors.toList());
     }
 
+    public List<Phone> searchBySpecRange(SpecRange range) {
+        return searchBySpecRanges(List.of(range));
+    }
+
+    public List<Phone> searchBySpecRanges(List<SpecRange> ranges) {
+        return searchBySpecRanges(getCatalog(), ranges);
+    }
+
+    public List<Phone> searchBySpecRanges(Catalog catalog, List<SpecRange> ranges) {
+        CatalogQuery.Builder query = CatalogQuery.builder();
+        ranges.forEach(query::range);
+        return queryCache.get(catalog, query.build().key(), current -> {
+            List<Phone> result = new ArrayList<>();
+            for (int ordinal : current.getSpecColumns().matchAll(ranges)) {
+                result.add(current.getPhones().get(ordinal));
+            }
+            return result;
+        });
+    }
+
+    public List<Phone> query(CatalogQuery query) {
+        return queryCache.get(getCatalog(), query.key(), current -> current.select(current.match(query)));
+    }
+
+    public NumericColumn getSpecColumn(Spec spec) {
+        return getCatalog().getSpecColumns().column(spec);
+    }
+
+    public Phone findById(String id) {
+        return getCatalog().findById(id);
+    }
+
     public Phone findByName(String name) {
-        return phones.stream()
+        return getCatalog().getPhones().stream()
                 .filter(phone -> phone.getName() != null &&
                         phone.getName().equalsIgnoreCase(name))
                 .findFirst()
@@ -82,11 +311,28 @@ public class PhoneCatalogService {
     }
 
     public List<Phone> findMultipleByName(List<String> names) {
-        return phones.stream()
+        return findMultipleByName(getCatalog(), names);
+    }
+
+    public List<Phone> findMultipleByName(Catalog catalog, List<String> names) {
+        return catalog.getPhones().stream()
                 .filter(phone -> phone.getName() != null &&
                         names.stream().anyMatch(name -> 
                                 phone.getName().equalsIgnoreCase(name)))
                 .collect(Collectors.toList());
     }
-}
 
+    private static String slugify(String name) {
+        return name.toLowerCase().replaceAll("[^a-z0-9]+", "-").replaceAll("^-|-$", "");
+    }
+
+    // The catalog version is derived from its content, so identical files share a version
+    private static String fingerprint(byte[] content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content);
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.model.Phone;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the serialized JSON of every phone in the currently loaded catalogs. Catalog phones are
+ * shared instances, so they are looked up by identity; anything else is a miss.
+ */
+@Service
+public class PhoneJsonCache {
+
+    /**
+     * Writer attribute that makes the caching serializer write phones itself, as it must while
+     * the cache is being filled.
+     */
+    public static final String BYPASS = PhoneJsonCache.class.getName() + ".bypass";
+
+    private static final Logger logger = LoggerFactory.getLogger(PhoneJsonCache.class);
+
+    @Autowired
+    private PhoneCatalogService phoneCatalogService;
+
+    // The application's mapper, so that cached bytes follow spring.jackson.* and its modules
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private volatile Entries entries;
+
+    /**
+     * Returns the cached JSON for a catalog phone, or {@code null} if the phone is not part of
+     * the current catalog.
+     */
+    public SerializableString get(Phone phone) {
+        Entries current = entries;
+        Map<String, Catalog> catalogs = phoneCatalogService.getCatalogs();
+        if (current == null || current.catalogs != catalogs) {
+            current = rebuild(catalogs);
+        }
+        return current.json.get(phone);
+    }
+
+    private synchronized Entries rebuild(Map<String, Catalog> catalogs) {
+        Entries current = entries;
+        if (current != null && current.catalogs == catalogs) {
+            return current;
+        }
+        Map<Phone, SerializableString> json = new IdentityHashMap<>();
+        ObjectWriter writer = objectMapper.writer().withAttribute(BYPASS, Boolean.TRUE);
+        long bytes = 0;
+        for (Phone phone : allPhones(catalogs)) {
+            try {
+                SerializedString serialized = new SerializedString(writer.writeValueAsString(phone));
+                // Encode once up front so every response just copies the bytes
+                bytes += serialized.asUnquotedUTF8().length;
+                json.put(phone, serialized);
+            } catch (JsonProcessingException e) {
+                logger.warn("Could not pre-serialize phone {}: {}", phone.getName(), e.getMessage());
+            }
+        }
+        entries = new Entries(catalogs, json);
+        logger.info("Pre-serialized {} phones ({} bytes) for catalogs {}", json.size(), bytes, catalogs.keySet());
+        return entries;
+    }
+
+    private static List<Phone> allPhones(Map<String, Catalog> catalogs) {
+        List<Phone> phones = new ArrayList<>();
+        for (Catalog catalog : catalogs.values()) {
+            phones.addAll(catalog.getPhones());
+        }
+        return phones;
+    }
+
+    private static class Entries {
+        // Identity of the catalog set these entries were built for
+        final Map<String, Catalog> catalogs;
+        final Map<Phone, SerializableString> json;
+
+        Entries(Map<String, Catalog> catalogs, Map<Phone, SerializableString> json) {
+            this.catalogs = catalogs;
+            this.json = json;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.model.Phone;
+import com.example.agent.model.PhoneComparison;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.completion.chat.ChatMessageRole;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lays out LLM prompts so consecutive requests share as long a prefix as possible, which lets
+ * providers and inference servers reuse their prompt cache. Messages go from most to least
+ * stable: a static preamble, the catalog (per catalog version, ordered by phone ID), the
+ * conversation summary and history, and last the parts that depend on this request.
+ * <p>
+ * {@link #recordPrefix} measures how much of each prompt repeats the previous prompt of the
+ * same conversation, or the previous prompt overall for a conversation's first request.
+ */
+@Component
+public class PromptLayout implements MeterBinder {
+
+    static final String PREAMBLE = "You are a helpful phone shopping assistant. "
+            + "Provide helpful, concise, and friendly responses. "
+            + "Focus on helping customers find the right phone for their needs. "
+            + "Be conversational and natural. "
+            + "The catalog below lists the phones we sell; the last system message before the customer's "
+            + "message says which of them match the current request.";
+
+    // History is trimmed in steps rather than one turn at a time, so it stays a stable prefix between trims
+    static final int HISTORY_WINDOW = 10;
+    static final int HISTORY_STEP = 6;
+
+    private final int catalogMaxPhones;
+    private final int trackedConversations;
+
+    private final Map<String, CatalogSection> catalogSections = new ConcurrentHashMap<>();
+    // Guarded by itself; per-message fingerprints of each conversation's previous prompt
+    private final Map<String, long[]> previousByConversation;
+    private volatile long[] previousPrompt = new long[0];
+
+    private final AtomicLong prompts = new AtomicLong();
+    private final AtomicLong promptChars = new AtomicLong();
+    private final AtomicLong sharedPrefixChars = new AtomicLong();
+
+    public PromptLayout(@Value("${prompt.catalog.max-phones:200}") int catalogMaxPhones,
+                        @Value("${prompt.prefix.tracked-conversations:4096}") int trackedConversations) {
+        this.catalogMaxPhones = catalogMaxPhones;
+        this.trackedConversations = trackedConversations;
+        this.previousByConversation = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+                return size() > PromptLayout.this.trackedConversations;
+            }
+        };
+    }
+
+    public List<ChatMessage> build(Catalog catalog, ConversationState state, String intent,
+                                   List<Phone> phones, PhoneComparison comparison, String message) {
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), PREAMBLE));
+        CatalogSection section = catalogSection(catalog);
+        messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(), section.text));
+
+        if (state != null) {
+            // Older turns are folded into a running summary in the background
+            if (state.getSummary() != null) {
+                messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(),
+                        "Summary of the earlier conversation: " + state.getSummary()));
+            }
+            List<ChatMessage> history = state.getMessages();
+            messages.addAll(history.subList(historyStart(history.size()), history.size()));
+        }
+
+        messages.add(new ChatMessage(ChatMessageRole.SYSTEM.value(),
+                requestSection(intent, phones, comparison, section.complete)));
+        messages.add(new ChatMessage(ChatMessageRole.USER.value(), message));
+        return messages;
+    }
+
+    static int historyStart(int size) {
+        if (size <= HISTORY_WINDOW) {
+            return 0;
+        }
+        int excess = size - HISTORY_WINDOW;
+        return (excess + HISTORY_STEP - 1) / HISTORY_STEP * HISTORY_STEP;
+    }
+
+    private CatalogSection catalogSection(Catalog catalog) {
+        CatalogSection cached = catalogSections.get(catalog.getName());
+        if (cached != null && cached.version.equals(catalog.getVersion())) {
+            return cached;
+        }
+        List<Phone> phones = new ArrayList<>(catalog.getPhones());
+        phones.sort(Comparator.comparing(Phone::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        boolean complete = phones.size() <= catalogMaxPhones;
+        StringBuilder text = new StringBuilder();
+        text.append("Catalog ").append(catalog.getName()).append(" version ").append(catalog.getVersion()).append(":\n");
+        for (Phone phone : complete ? phones : phones.subList(0, catalogMaxPhones)) {
+            appendPhone(text, phone);
+        }
+        CatalogSection section = new CatalogSection(catalog.getVersion(), text.toString(), complete);
+        catalogSections.put(catalog.getName(), section);
+        return section;
+    }
+
+    private static String requestSection(String intent, List<Phone> phones, PhoneComparison comparison,
+                                         boolean catalogComplete) {
+        StringBuilder prompt = new StringBuilder();
+        if (comparison != null) {
+            // The precomputed diff saves the model from working it out from the catalog
+            prompt.append("Here is a precomputed comparison from our catalog:\n\n");
+            prompt.append(ComparisonService.toPrompt(comparison)).append("\n");
+        } else if (!phones.isEmpty()) {
+            prompt.append("Phones matching this request:\n");
+            for (Phone phone : phones) {
+                if (catalogComplete) {
+                    prompt.append("- ").append(phone.getName()).append("\n");
+                } else {
+                    appendPhone(prompt, phone);
+                }
+            }
+            prompt.append("\n");
+        } else {
+            prompt.append("No catalog phones match this request.\n\n");
+        }
+
+        switch (intent) {
+            case "compare":
+                prompt.append("Compare the phones mentioned, highlighting key differences in price, features, camera, and battery. Rely on the comparison above rather than recomputing it.");
+                break;
+            case "recommend":
+                prompt.append("Recommend phones based on the customer's requirements, explaining why each is a good fit.");
+                break;
+            case "search_by_price":
+                prompt.append("Help the customer find phones within their budget, highlighting value for money.");
+                break;
+            case "search_by_spec":
+                prompt.append("Help the customer find phones that meet their specification requirements, quoting the relevant specs.");
+                break;
+            default:
+                prompt.append("Answer the customer's question about phones.");
+                break;
+        }
+        return prompt.toString();
+    }
+
+    private static void appendPhone(StringBuilder prompt, Phone phone) {
+        prompt.append("- ").append(phone.getName()).append(" (");
+        prompt.append(phone.getBrand()).append(")");
+        if (phone.getPrice() != null) {
+            prompt.append(" - ₹").append(phone.getPrice());
+        }
+        if (phone.getCamera() != null) {
+            prompt.append(", Camera: ").append(phone.getCamera());
+        }
+        if (phone.getBattery() != null) {
+            prompt.append(", Battery: ").append(phone.getBattery());
+        }
+        if (phone.getFeatures() != null && !phone.getFeatures().isEmpty()) {
+            prompt.append(", Features: ").append(String.join(", ", phone.getFeatures()));
+        }
+        prompt.append("\n");
+    }
+
+    /**
+     * Records a prompt that is sent to the model and returns how many of its characters repeat
+     * the start of the previous prompt. Prefixes are compared message by message.
+     */
+    public PrefixReport recordPrefix(String conversationId, List<ChatMessage> messages) {
+        long[] fingerprints = fingerprint(messages);
+        long[] previous;
+        synchronized (previousByConversation) {
+            previous = previousByConversation.put(conversationId, fingerprints);
+        }
+        if (previous == null) {
+            previous = previousPrompt;
+        }
+        previousPrompt = fingerprints;
+
+        long total = 0;
+        for (int i = 1; i < fingerprints.length; i += 2) {
+            total += fingerprints[i];
+        }
+        long shared = 0;
+        for (int i = 0; i + 1 < fingerprints.length && i + 1 < previous.length; i += 2) {
+            if (fingerprints[i] != previous[i] || fingerprints[i + 1] != previous[i + 1]) {
+                break;
+            }
+            shared += fingerprints[i + 1];
+        }
+        prompts.incrementAndGet();
+        promptChars.addAndGet(total);
+        sharedPrefixChars.addAndGet(shared);
+        return new PrefixReport(total, shared);
+    }
+
+    // Two longs per message: a hash of role and content, and the content length
+    private static long[] fingerprint(List<ChatMessage> messages) {
+        long[] fingerprints = new long[messages.size() * 2];
+        for (int i = 0; i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            String content = message.getContent() != null ? message.getContent() : "";
+            fingerprints[2 * i] = ((long) message.getRole().hashCode() << 32) ^ (content.hashCode() & 0xffffffffL);
+            fingerprints[2 * i + 1] = content.length();
+        }
+        return fingerprints;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("chat.prompt.requests", prompts, AtomicLong::get)
+                .description("Prompts sent to the model")
+                .register(registry);
+        FunctionCounter.builder("chat.prompt.chars", promptChars, AtomicLong::get)
+                .description("Characters of message content in prompts sent to the model")
+                .register(registry);
+        FunctionCounter.builder("chat.prompt.prefix.shared.chars", sharedPrefixChars, AtomicLong::get)
+                .description("Prompt characters repeating the start of the previous prompt")
+                .register(registry);
+    }
+
+    public static final class PrefixReport {
+        private final long promptChars;
+        private final long sharedPrefixChars;
+
+        PrefixReport(long promptChars, long sharedPrefixChars) {
+            this.promptChars = promptChars;
+            this.sharedPrefixChars = sharedPrefixChars;
+        }
+
+        public long getPromptChars() {
+            return promptChars;
+        }
+
+        public long getSharedPrefixChars() {
+            return sharedPrefixChars;
+        }
+    }
+
+    private static final class CatalogSection {
+        private final String version;
+        private final String text;
+        // False when the catalog has more phones than fit in the prompt
+        private final boolean complete;
+
+        private CatalogSection(String version, String text, boolean complete) {
+            this.version = version;
+            this.text = text;
+            this.complete = complete;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.agent.service;
+
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.example.agent.model.Phone;
+import com.example.agent.model.PhoneRecommendation;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Rewrites a response for compact mode: phones are referenced by ID, and full phone data is
+ * only included for phones the client has not reported as cached for the current catalog.
+ */
+@Service
+public class ResponseCompactor {
+
+    public void compact(ChatResponse response, ChatRequest request, String catalogVersion) {
+        // A cache built against another catalog version may hold stale phone data
+        Set<String> cached = catalogVersion.equals(request.getCatalogVersion()) && request.getCachedPhoneIds() != null
+                ? new HashSet<>(request.getCachedPhoneIds())
+                : Collections.emptySet();
+        Map<String, Phone> missing = new LinkedHashMap<>();
+
+        if (response.getRecommendations() != null) {
+            for (PhoneRecommendation recommendation : response.getRecommendations()) {
+                Phone phone = recommendation.getPhone();
+                if (phone != null && phone.getId() != null) {
+                    recommendation.setPhoneId(phone.getId());
+                    recommendation.setPhone(null);
+                    if (!cached.contains(phone.getId())) {
+                        missing.putIfAbsent(phone.getId(), phone);
+                    }
+                }
+            }
+        }
+
+        if (response.getComparisonPhones() != null) {
+            List<String> ids = new ArrayList<>(response.getComparisonPhones().size());
+            for (Phone phone : response.getComparisonPhones()) {
+                ids.add(phone.getId());
+                if (!cached.contains(phone.getId())) {
+                    missing.putIfAbsent(phone.getId(), phone);
+                }
+            }
+            response.setComparisonPhoneIds(ids);
+            response.setComparisonPhones(null);
+        }
+
+        response.setPhones(new ArrayList<>(missing.values()));
+    }
+}
@@ -0,0 +1,303 @@
+package com.example.agent.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Picks how each reply is produced: the rule-based template, a fast model, or the full model.
+ * The choice starts from the intent and the complexity of the query, then steps down a tier
+ * when the chosen tier's recent upstream latency is over {@code routing.latency.max-ms} or the
+ * per-minute token budget cannot cover a typical call. Decisions are counted in
+ * {@code chat.routing.decisions}, tagged by tier and reason.
+ */
+@Component
+public class ResponseRouter implements MeterBinder {
+
+    public enum Tier {
+        TEMPLATE,
+        FAST_MODEL,
+        FULL_MODEL
+    }
+
+    /**
+     * The template tier for turns that are not routed, such as warm-up replays.
+     */
+    public static final Route NOT_ROUTED = new Route(Tier.TEMPLATE, null, 0, "not_routed");
+
+    private static final double SMOOTHING = 0.2;
+
+    private final Set<String> templateIntents;
+    private final Set<String> fullModelIntents;
+    private final int complexQueryWords;
+    private final Set<String> complexQueryCues;
+    private final String fullModel;
+    private final String fastModel;
+    private final int fullMaxTokens;
+    private final int fastMaxTokens;
+    private final double fastCostWeight;
+    private final long maxLatencyNanos;
+    private final int latencyProbeEvery;
+    private final long tokensPerMinute;
+
+    private final TierStats full;
+    private final TierStats fast;
+    private final AtomicLong routed = new AtomicLong();
+    // Guarded by this
+    private long windowStartMillis;
+    private double windowSpend;
+
+    private final Map<String, Counter> decisions = new ConcurrentHashMap<>();
+    private volatile MeterRegistry registry;
+
+    public ResponseRouter(
+            @Value("${routing.template-intents:list_all,search_by_price,search_by_brand,search_by_feature}") String templateIntents,
+            @Value("${routing.full-model-intents:compare,recommend}") String fullModelIntents,
+            @Value("${routing.complex-query-words:15}") int complexQueryWords,
+            @Value("${routing.complex-query-cues:why,which,should,better,worth,difference,versus}") String complexQueryCues,
+            @Value("${openai.api.model:gpt-3.5-turbo}") String fullModel,
+            @Value("${routing.fast-model:}") String fastModel,
+            @Value("${routing.full-max-tokens:500}") int fullMaxTokens,
+            @Value("${routing.fast-max-tokens:250}") int fastMaxTokens,
+            @Value("${routing.fast-cost-weight:0.1}") double fastCostWeight,
+            @Value("${routing.latency.max-ms:8000}") long maxLatencyMs,
+            @Value("${routing.latency.probe-every:20}") int latencyProbeEvery,
+            @Value("${routing.budget.tokens-per-minute:0}") long tokensPerMinute) {
+        this.templateIntents = split(templateIntents);
+        this.fullModelIntents = split(fullModelIntents);
+        this.complexQueryWords = complexQueryWords;
+        this.complexQueryCues = split(complexQueryCues);
+        this.fullModel = fullModel;
+        // Without a separate fast model the fast tier is the same model with a shorter answer
+        this.fastModel = fastModel == null || fastModel.isBlank() ? fullModel : fastModel.trim();
+        this.fullMaxTokens = fullMaxTokens;
+        this.fastMaxTokens = fastMaxTokens;
+        this.fastCostWeight = this.fastModel.equals(fullModel) ? 1.0 : fastCostWeight;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMs);
+        this.latencyProbeEvery = Math.max(1, latencyProbeEvery);
+        this.tokensPerMinute = tokensPerMinute;
+        // Until calls have been seen, assume a prompt about as large as the answer
+        this.full = new TierStats(2.0 * fullMaxTokens);
+        this.fast = new TierStats(2.0 * fastMaxTokens);
+    }
+
+    private static Set<String> split(String values) {
+        return Arrays.stream(values.split(","))
+                .map(value -> value.trim().toLowerCase(Locale.ROOT))
+                .filter(value -> !value.isEmpty())
+                .collect(Collectors.toUnmodifiableSet());
+    }
+
+    /**
+     * Chooses the tier for one reply.
+     *
+     * @param modelAllowed false when the model must not be used, e.g. under overload or when
+     *                     no API key is configured
+     */
+    public Route route(String intent, String message, boolean modelAllowed) {
+        return route(intent, message, modelAllowed, System.currentTimeMillis());
+    }
+
+    Route route(String intent, String message, boolean modelAllowed, long nowMillis) {
+        Route route = decide(intent, message, modelAllowed, nowMillis);
+        count(route);
+        return route;
+    }
+
+    private Route decide(String intent, String message, boolean modelAllowed, long nowMillis) {
+        if (!modelAllowed) {
+            return template("model_unavailable");
+        }
+        if (templateIntents.contains(intent)) {
+            return template("intent");
+        }
+        Tier tier;
+        String reason;
+        if (fullModelIntents.contains(intent)) {
+            tier = Tier.FULL_MODEL;
+            reason = "intent";
+        } else if (isComplex(message)) {
+            tier = Tier.FULL_MODEL;
+            reason = "complex_query";
+        } else {
+            tier = Tier.FAST_MODEL;
+            reason = "simple_query";
+        }
+
+        // A slow tier still gets an occasional request so its latency estimate can recover
+        boolean probe = routed.incrementAndGet() % latencyProbeEvery == 0;
+        if (tier == Tier.FULL_MODEL && !probe && full.latencyNanos() > maxLatencyNanos) {
+            tier = Tier.FAST_MODEL;
+            reason = "latency";
+        }
+        if (tier == Tier.FAST_MODEL && !probe && fast.latencyNanos() > maxLatencyNanos) {
+            return template("latency");
+        }
+
+        if (tokensPerMinute > 0) {
+            double remaining = remainingBudget(nowMillis);
+            if (tier == Tier.FULL_MODEL && remaining < full.tokensPerCall()) {
+                tier = Tier.FAST_MODEL;
+                reason = "budget";
+            }
+            if (tier == Tier.FAST_MODEL && remaining < fast.tokensPerCall() * fastCostWeight) {
+                return template("budget");
+            }
+        }
+        return tier == Tier.FULL_MODEL
+                ? new Route(Tier.FULL_MODEL, fullModel, fullMaxTokens, reason)
+                : new Route(Tier.FAST_MODEL, fastModel, fastMaxTokens, reason);
+    }
+
+    private static Route template(String reason) {
+        return new Route(Tier.TEMPLATE, null, 0, reason);
+    }
+
+    boolean isComplex(String message) {
+        String[] words = message.toLowerCase(Locale.ROOT).split("[^a-z0-9]+");
+        int count = 0;
+        for (String word : words) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            count++;
+            if (complexQueryCues.contains(word)) {
+                return true;
+            }
+        }
+        return count > complexQueryWords;
+    }
+
+    /**
+     * Records a finished model call. Tokens are estimated from characters, which is close
+     * enough for budgeting; failed calls count their latency but no tokens.
+     */
+    public void recordCall(Route route, long nanos, long promptChars, long replyChars) {
+        TierStats stats = route.getTier() == Tier.FULL_MODEL ? full : fast;
+        double tokens = (promptChars + replyChars) / 4.0;
+        stats.record(nanos, tokens);
+        if (tokens > 0) {
+            double weight = route.getTier() == Tier.FULL_MODEL ? 1.0 : fastCostWeight;
+            spend(tokens * weight, System.currentTimeMillis());
+        }
+    }
+
+    private synchronized double remainingBudget(long nowMillis) {
+        rollWindow(nowMillis);
+        return tokensPerMinute - windowSpend;
+    }
+
+    private synchronized void spend(double tokens, long nowMillis) {
+        rollWindow(nowMillis);
+        windowSpend += tokens;
+    }
+
+    private void rollWindow(long nowMillis) {
+        if (nowMillis - windowStartMillis >= 60_000) {
+            windowStartMillis = nowMillis;
+            windowSpend = 0;
+        }
+    }
+
+    private void count(Route route) {
+        MeterRegistry meterRegistry = registry;
+        if (meterRegistry == null) {
+            return;
+        }
+        String tier = route.getTier().name().toLowerCase(Locale.ROOT);
+        decisions.computeIfAbsent(tier + '|' + route.getReason(), key -> Counter.builder("chat.routing.decisions")
+                        .description("Reply tier chosen per turn")
+                        .tag("tier", tier)
+                        .tag("reason", route.getReason())
+                        .register(meterRegistry))
+                .increment();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        this.registry = registry;
+        Gauge.builder("chat.routing.upstream.latency", full, stats -> stats.latencyNanos() / 1_000_000.0)
+                .description("Smoothed model call latency in milliseconds")
+                .tag("tier", "full_model")
+                .register(registry);
+        Gauge.builder("chat.routing.upstream.latency", fast, stats -> stats.latencyNanos() / 1_000_000.0)
+                .description("Smoothed model call latency in milliseconds")
+                .tag("tier", "fast_model")
+                .register(registry);
+        if (tokensPerMinute > 0) {
+            Gauge.builder("chat.routing.budget.remaining", this, router -> router.remainingBudget(System.currentTimeMillis()))
+                    .description("Estimated full-model tokens left in the current minute")
+                    .register(registry);
+        }
+    }
+
+    /**
+     * The chosen tier with the model and answer length to use for it.
+     */
+    public static final class Route {
+        private final Tier tier;
+        private final String model;
+        private final int maxTokens;
+        private final String reason;
+
+        Route(Tier tier, String model, int maxTokens, String reason) {
+            this.tier = tier;
+            this.model = model;
+            this.maxTokens = maxTokens;
+            this.reason = reason;
+        }
+
+        public Tier getTier() {
+            return tier;
+        }
+
+        public String getModel() {
+            return model;
+        }
+
+        public int getMaxTokens() {
+            return maxTokens;
+        }
+
+        public String getReason() {
+            return reason;
+        }
+    }
+
+    private static final class TierStats {
+        // Guarded by this
+        private double latencyNanos;
+        private double tokensPerCall;
+
+        private TierStats(double initialTokensPerCall) {
+            this.tokensPerCall = initialTokensPerCall;
+        }
+
+        private synchronized void record(long nanos, double tokens) {
+            latencyNanos = latencyNanos == 0 ? nanos : latencyNanos + SMOOTHING * (nanos - latencyNanos);
+            if (tokens > 0) {
+                tokensPerCall += SMOOTHING * (tokens - tokensPerCall);
+            }
+        }
+
+        private synchronized double latencyNanos() {
+            return latencyNanos;
+        }
+
+        private synchronized double tokensPerCall() {
+            return tokensPerCall;
+        }
+    }
+}
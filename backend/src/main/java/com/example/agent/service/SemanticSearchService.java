@@ -0,0 +1,141 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.model.Phone;
+import com.example.agent.search.HashingVectorizer;
+import com.example.agent.search.HnswIndex;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+@Service
+public class SemanticSearchService {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticSearchService.class);
+
+    @Autowired
+    private PhoneCatalogService phoneCatalogService;
+
+    @Value("${search.semantic.dimensions:1024}")
+    private int dimensions;
+
+    @Value("${search.semantic.hnsw.m:8}")
+    private int hnswM;
+
+    @Value("${search.semantic.hnsw.ef-construction:64}")
+    private int efConstruction;
+
+    @Value("${search.semantic.hnsw.ef-search:32}")
+    private int efSearch;
+
+    @Value("${search.semantic.min-similarity:0.05}")
+    private double minSimilarity;
+
+    // One index per named catalog
+    private final Map<String, IndexHolder> holders = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void init() {
+        for (Catalog catalog : phoneCatalogService.getCatalogs().values()) {
+            buildIndex(catalog);
+        }
+    }
+
+    private synchronized IndexHolder buildIndex(Catalog catalog) {
+        IndexHolder existing = holders.get(catalog.getName());
+        if (existing != null && existing.version.equals(catalog.getVersion())) {
+            return existing;
+        }
+        long start = System.nanoTime();
+        List<Phone> phones = catalog.getPhones();
+        List<String> documents = phones.stream().map(SemanticSearchService::describe).collect(Collectors.toList());
+
+        HashingVectorizer vectorizer = new HashingVectorizer(dimensions);
+        vectorizer.fit(documents);
+        HnswIndex<Phone> index = new HnswIndex<>(dimensions, hnswM, efConstruction, 42L);
+        for (int i = 0; i < phones.size(); i++) {
+            index.add(phones.get(i), vectorizer.transform(documents.get(i)));
+        }
+        IndexHolder holder = new IndexHolder(catalog.getVersion(), vectorizer, index);
+        holders.put(catalog.getName(), holder);
+        logger.info("Built semantic index over {} phones of catalog '{}' in {} ms", index.size(), catalog.getName(),
+                (System.nanoTime() - start) / 1_000_000);
+        return holder;
+    }
+
+    /**
+     * Returns up to {@code topK} phones ordered by similarity to the query. Phones below the
+     * configured similarity floor are dropped, so the result is empty when nothing is related.
+     */
+    public List<Phone> search(String query, int topK) {
+        return search(phoneCatalogService.getCatalog(), query, topK);
+    }
+
+    public List<Phone> search(Catalog catalog, String query, int topK) {
+        IndexHolder current = holders.get(catalog.getName());
+        if (current == null || !current.version.equals(catalog.getVersion())) {
+            current = buildIndex(catalog);
+        }
+        if (current.index.size() == 0) {
+            return new ArrayList<>();
+        }
+        float[] vector = current.vectorizer.transform(query);
+        List<Phone> results = new ArrayList<>();
+        for (HnswIndex.SearchResult<Phone> result : current.index.search(vector, topK, efSearch)) {
+            if (result.getSimilarity() >= minSimilarity) {
+                results.add(result.getItem());
+            }
+        }
+        return results;
+    }
+
+    static String describe(Phone phone) {
+        StringBuilder text = new StringBuilder();
+        text.append(phone.getName()).append(' ').append(phone.getBrand());
+        if (phone.getFeatures() != null) {
+            for (String feature : phone.getFeatures()) {
+                text.append(' ').append(feature);
+            }
+        }
+        if (phone.getProcessor() != null) {
+            text.append(" processor ").append(phone.getProcessor());
+        }
+        if (phone.getDisplay() != null) {
+            text.append(" display ").append(phone.getDisplay());
+        }
+        if (phone.getCamera() != null) {
+            text.append(" camera ").append(phone.getCamera());
+        }
+        if (phone.getBattery() != null) {
+            text.append(" battery ").append(phone.getBattery());
+        }
+        if (phone.getRam() != null) {
+            text.append(' ').append(phone.getRam()).append("gb ram");
+        }
+        if (phone.getStorage() != null) {
+            text.append(' ').append(phone.getStorage()).append("gb storage");
+        }
+        return text.toString();
+    }
+
+    private static class IndexHolder {
+        final String version;
+        final HashingVectorizer vectorizer;
+        final HnswIndex<Phone> index;
+
+        IndexHolder(String version, HashingVectorizer vectorizer, HnswIndex<Phone> index) {
+            this.version = version;
+            this.vectorizer = vectorizer;
+            this.index = index;
+        }
+    }
+}
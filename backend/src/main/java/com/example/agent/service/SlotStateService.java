@@ -0,0 +1,274 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.catalog.Spec;
+import com.example.agent.catalog.SpecRange;
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.model.ConversationSlots;
+import com.example.agent.model.Phone;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the structured constraints of a conversation (price range, brands, features, spec
+ * ranges) together with the previous result set, so follow-ups like "what about Samsung?",
+ * "cheaper ones?" or "with at least 8GB RAM" refine that set through the catalog bitmaps
+ * instead of starting from scratch.
+ */
+@Service
+public class SlotStateService {
+
+    private static final Pattern RESET_PATTERN = Pattern.compile("\\b(start over|new search|reset|forget (?:it|that|everything))\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHEAPER_PATTERN = Pattern.compile("\\b(cheaper|less expensive|lower price|more affordable)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PRICIER_PATTERN = Pattern.compile("\\b(pricier|more expensive|higher end|premium ones)\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern ALSO_PATTERN = Pattern.compile("\\b(also|too|as well)\\b", Pattern.CASE_INSENSITIVE);
+    // Words the feature pattern also matches that name a spec rather than a feature; "ram" alone
+    // would otherwise be matched as a substring of the phones' feature lists
+    private static final Set<String> SPEC_WORDS = Set.of("camera", "battery", "storage", "ram", "processor");
+
+    /**
+     * Whether this turn should drop any slot state carried over from earlier turns.
+     */
+    public boolean isReset(String message, String intent) {
+        return "list_all".equals(intent) || RESET_PATTERN.matcher(message).find();
+    }
+
+    /**
+     * Refines the previous result set with the constraints in this message. Returns
+     * {@code null} when there is nothing to refine, in which case the turn runs the full query.
+     */
+    public Refinement refine(Catalog catalog, ConversationState state, String message, String intent) {
+        if (state == null || state.getSlots() == null || state.getResultBitmap() == null
+                || "compare".equals(intent) || isReset(message, intent)) {
+            return null;
+        }
+        if (!catalog.getVersion().equals(state.getSlotsCatalogVersion())) {
+            return null;
+        }
+
+        ConversationSlots previous = state.getSlots();
+        BitSet previousResult = BitSet.valueOf(state.getResultBitmap());
+        ConversationSlots slots = new ConversationSlots(previous);
+        // Narrowing turns only add constraints, so the previous result set can be filtered directly
+        boolean narrowing = true;
+        BitSet delta = catalog.all();
+        boolean changed = false;
+
+        List<SpecRange> specRanges = ConversationService.extractSpecRanges(message);
+        Integer maxPrice = ConversationService.extractMaxPrice(
+                specRanges.isEmpty() ? message : ConversationService.stripSpecPhrases(message));
+        if (maxPrice != null) {
+            narrowing &= previous.getMaxPrice() != null && maxPrice <= previous.getMaxPrice() || previous.getMaxPrice() == null;
+            slots.setMaxPrice(maxPrice);
+            delta.and(catalog.rangeBitmap(SpecRange.atMost(Spec.PRICE, maxPrice)));
+            changed = true;
+        }
+        // Without a priced phone in the previous results there is nothing to be cheaper than
+        double highestPrice = maxPrice(catalog, previousResult);
+        if (CHEAPER_PATTERN.matcher(message).find() && !Double.isNaN(highestPrice)) {
+            int cheaperThan = (int) highestPrice;
+            slots.setMaxPrice(cheaperThan - 1);
+            delta.and(catalog.rangeBitmap(SpecRange.atMost(Spec.PRICE, cheaperThan - 1)));
+            changed = true;
+        }
+        if (PRICIER_PATTERN.matcher(message).find() && !Double.isNaN(highestPrice)) {
+            slots.setMinPrice((int) highestPrice + 1);
+            slots.setMaxPrice(null);
+            narrowing = false;
+            changed = true;
+        }
+
+        for (SpecRange range : specRanges) {
+            narrowing &= tightens(previous, range);
+            setSpecRange(slots, range);
+            delta.and(catalog.rangeBitmap(range));
+            changed = true;
+        }
+
+        List<String> brands = extractBrands(message);
+        if (!brands.isEmpty()) {
+            if (ALSO_PATTERN.matcher(message).find()) {
+                for (String brand : brands) {
+                    if (!slots.getBrands().contains(brand)) {
+                        slots.getBrands().add(brand);
+                    }
+                }
+                narrowing = false;
+            } else if (!brands.equals(previous.getBrands())) {
+                narrowing &= previous.getBrands().isEmpty();
+                slots.setBrands(brands);
+                delta.and(brandsBitmap(catalog, brands));
+            }
+            changed = true;
+        }
+
+        List<String> features = extractFeatures(message);
+        for (String feature : features) {
+            if (!slots.getFeatures().contains(feature)) {
+                slots.getFeatures().add(feature);
+                delta.and(catalog.featureBitmap(feature));
+                changed = true;
+            }
+        }
+
+        if (!changed) {
+            return null;
+        }
+        BitSet result;
+        if (narrowing) {
+            result = (BitSet) previousResult.clone();
+            result.and(delta);
+        } else {
+            result = evaluate(catalog, slots);
+        }
+        return new Refinement(catalog, slots, result);
+    }
+
+    /**
+     * Builds fresh slot state from a turn that ran the full query. Returns {@code null} if the
+     * message carried no structured constraints worth remembering.
+     */
+    public Refinement capture(Catalog catalog, String message) {
+        ConversationSlots slots = new ConversationSlots();
+        slots.setMaxPrice(ConversationService.extractMaxPrice(ConversationService.stripSpecPhrases(message)));
+        slots.setBrands(extractBrands(message));
+        slots.setFeatures(extractFeatures(message));
+        for (SpecRange range : ConversationService.extractSpecRanges(message)) {
+            setSpecRange(slots, range);
+        }
+        if (slots.isEmpty()) {
+            return null;
+        }
+        return new Refinement(catalog, slots, evaluate(catalog, slots));
+    }
+
+    private BitSet evaluate(Catalog catalog, ConversationSlots slots) {
+        BitSet result = catalog.all();
+        if (slots.getMinPrice() != null || slots.getMaxPrice() != null) {
+            result.and(catalog.rangeBitmap(new SpecRange(Spec.PRICE,
+                    slots.getMinPrice() != null ? slots.getMinPrice() : Double.NEGATIVE_INFINITY,
+                    slots.getMaxPrice() != null ? slots.getMaxPrice() : Double.POSITIVE_INFINITY)));
+        }
+        if (!slots.getBrands().isEmpty()) {
+            result.and(brandsBitmap(catalog, slots.getBrands()));
+        }
+        for (String feature : slots.getFeatures()) {
+            result.and(catalog.featureBitmap(feature));
+        }
+        for (Spec spec : specs(slots)) {
+            result.and(catalog.rangeBitmap(new SpecRange(spec,
+                    slots.getSpecMinimums().getOrDefault(spec, Double.NEGATIVE_INFINITY),
+                    slots.getSpecMaximums().getOrDefault(spec, Double.POSITIVE_INFINITY))));
+        }
+        return result;
+    }
+
+    private static Set<Spec> specs(ConversationSlots slots) {
+        Set<Spec> specs = EnumSet.noneOf(Spec.class);
+        specs.addAll(slots.getSpecMinimums().keySet());
+        specs.addAll(slots.getSpecMaximums().keySet());
+        return specs;
+    }
+
+    // A new bound on a spec replaces the previous one on the same side
+    private static void setSpecRange(ConversationSlots slots, SpecRange range) {
+        if (range.getMin() != Double.NEGATIVE_INFINITY) {
+            slots.getSpecMinimums().put(range.getSpec(), range.getMin());
+        }
+        if (range.getMax() != Double.POSITIVE_INFINITY) {
+            slots.getSpecMaximums().put(range.getSpec(), range.getMax());
+        }
+    }
+
+    // Whether the range only excludes phones the previous slots allowed
+    private static boolean tightens(ConversationSlots previous, SpecRange range) {
+        Double min = previous.getSpecMinimums().get(range.getSpec());
+        Double max = previous.getSpecMaximums().get(range.getSpec());
+        return (range.getMin() == Double.NEGATIVE_INFINITY || min == null || range.getMin() >= min)
+                && (range.getMax() == Double.POSITIVE_INFINITY || max == null || range.getMax() <= max);
+    }
+
+    private static BitSet brandsBitmap(Catalog catalog, List<String> brands) {
+        BitSet result = new BitSet(catalog.size());
+        for (String brand : brands) {
+            result.or(catalog.brandBitmap(brand));
+        }
+        return result;
+    }
+
+    // NaN when none of the phones has a price
+    private static double maxPrice(Catalog catalog, BitSet ordinals) {
+        double max = Double.NaN;
+        for (int i = ordinals.nextSetBit(0); i >= 0; i = ordinals.nextSetBit(i + 1)) {
+            double price = catalog.getSpecColumns().column(Spec.PRICE).get(i);
+            if (!Double.isNaN(price) && (Double.isNaN(max) || price > max)) {
+                max = price;
+            }
+        }
+        return max;
+    }
+
+    private static List<String> extractBrands(String message) {
+        List<String> brands = new ArrayList<>();
+        java.util.regex.Matcher matcher = ConversationService.BRAND_PATTERN.matcher(message);
+        while (matcher.find()) {
+            String brand = ConversationService.normalizeBrand(matcher.group(1)).toLowerCase(Locale.ROOT);
+            if (!brands.contains(brand)) {
+                brands.add(brand);
+            }
+        }
+        return brands;
+    }
+
+    private static List<String> extractFeatures(String message) {
+        List<String> features = new ArrayList<>();
+        java.util.regex.Matcher matcher = ConversationService.FEATURE_PATTERN.matcher(message);
+        while (matcher.find()) {
+            String feature = matcher.group(1).toLowerCase(Locale.ROOT);
+            if (!SPEC_WORDS.contains(feature) && !features.contains(feature)) {
+                features.add(feature);
+            }
+        }
+        return features;
+    }
+
+    public static class Refinement {
+        private final String catalogVersion;
+        private final ConversationSlots slots;
+        private final BitSet result;
+        private final List<Phone> phones;
+
+        Refinement(Catalog catalog, ConversationSlots slots, BitSet result) {
+            this.catalogVersion = catalog.getVersion();
+            this.slots = slots;
+            this.result = result;
+            this.phones = catalog.select(result);
+            List<String> ids = new ArrayList<>(phones.size());
+            for (Phone phone : phones) {
+                ids.add(phone.getId());
+            }
+            slots.setResultPhoneIds(ids);
+        }
+
+        public ConversationSlots getSlots() {
+            return slots;
+        }
+
+        public List<Phone> getPhones() {
+            return phones;
+        }
+
+        /**
+         * Stores this refinement as the conversation's slot state.
+         */
+        public ConversationState applyTo(ConversationState state) {
+            ConversationState updated = state != null ? new ConversationState(state) : new ConversationState();
+            updated.setSlots(slots);
+            updated.setResultBitmap(result.toLongArray());
+            updated.setSlotsCatalogVersion(catalogVersion);
+            return updated;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.agent.service;
+
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a fixed corpus of representative queries through the rule-based chat path after
+ * startup, so intent regexes, catalog queries and Jackson serializers are JIT-compiled before
+ * real traffic arrives. Registered as the {@code warmup} health indicator, which stays out of
+ * service until the replay has finished.
+ */
+@Service("warmup")
+public class WarmupService implements HealthIndicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarmupService.class);
+
+    // One query per intent and per common phrasing, including spec ranges and follow-up cues
+    static final List<String> CORPUS = List.of(
+            "Show me phones under 30000",
+            "Best camera phone under 25k",
+            "Show me Samsung phones",
+            "Any Pixel phones?",
+            "Phones with fast charging",
+            "I want an AMOLED display with 120Hz",
+            "Compare OnePlus 12R and Pixel 8a",
+            "Difference between Galaxy A54 vs Nothing Phone 2a",
+            "Recommend a good phone for gaming",
+            "Which phone has the best battery?",
+            "Battery over 5000mAh and at least 8GB RAM",
+            "Phones with a camera of at least 50MP under 35000",
+            "Display bigger than 6.5 inches",
+            "List all phones",
+            "Something compact for my mom who loves photos",
+            "Tell me about the Redmi Note 13 Pro",
+            "Any cheaper ones?",
+            "What about Motorola?",
+            "Hello there");
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private OpenAiGateway openAiGateway;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    @Value("${warmup.passes:150}")
+    private int passes;
+
+    @Value("${warmup.max-duration-ms:15000}")
+    private long maxDurationMillis;
+
+    private volatile Status status = Status.PENDING;
+    private volatile Map<String, Object> statistics = Map.of();
+
+    public enum Status {
+        PENDING, RUNNING, COMPLETE, DISABLED, FAILED
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onReady() {
+        if (!enabled) {
+            status = Status.DISABLED;
+            return;
+        }
+        Thread thread = new Thread(this::run, "jit-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Whether the service may take traffic: warm-up has finished, failed or is switched off.
+     */
+    public boolean isReady() {
+        return status != Status.PENDING && status != Status.RUNNING;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public Map<String, Object> getStatistics() {
+        return statistics;
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder builder = isReady() ? Health.up() : Health.outOfService();
+        return builder.withDetail("status", status).withDetails(statistics).build();
+    }
+
+    void run() {
+        status = Status.RUNNING;
+        try {
+            // The OpenAI client is built in parallel with the catalog; wait so both are settled
+            openAiGateway.getInitialization().join();
+            statistics = replay();
+            status = Status.COMPLETE;
+            logger.info("Warm-up complete: {}", statistics);
+        } catch (RuntimeException | JsonProcessingException e) {
+            // A broken warm-up must not keep the node out of rotation forever
+            logger.error("Warm-up failed, marking ready anyway: {}", e.getMessage(), e);
+            status = Status.FAILED;
+        }
+    }
+
+    private Map<String, Object> replay() throws JsonProcessingException {
+        long deadline = System.nanoTime() + maxDurationMillis * 1_000_000L;
+        long start = System.nanoTime();
+        long[] firstPass = null;
+        long[] lastPass = null;
+        int completedPasses = 0;
+        int turns = 0;
+        while (completedPasses < passes && System.nanoTime() < deadline) {
+            long[] latencies = new long[CORPUS.size()];
+            for (int i = 0; i < CORPUS.size(); i++) {
+                long turnStart = System.nanoTime();
+                ChatRequest request = new ChatRequest(CORPUS.get(i));
+                // Alternate compact mode so both serialization paths get compiled
+                request.setCompact((completedPasses & 1) == 1);
+                ChatResponse response = conversationService.warmUp(request);
+                objectMapper.writeValueAsBytes(response);
+                latencies[i] = System.nanoTime() - turnStart;
+                turns++;
+            }
+            if (firstPass == null) {
+                firstPass = latencies;
+            }
+            lastPass = latencies;
+            completedPasses++;
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("passes", completedPasses);
+        result.put("turns", turns);
+        result.put("durationMs", (System.nanoTime() - start) / 1_000_000);
+        if (firstPass != null) {
+            result.put("firstPassMeanMicros", mean(firstPass) / 1000);
+            result.put("lastPassMeanMicros", mean(lastPass) / 1000);
+            result.put("lastPassP50Micros", percentile(lastPass, 0.50) / 1000);
+            result.put("lastPassP99Micros", percentile(lastPass, 0.99) / 1000);
+        }
+        return result;
+    }
+
+    private static long mean(long[] values) {
+        long sum = 0;
+        for (long value : values) {
+            sum += value;
+        }
+        return sum / values.length;
+    }
+
+    private static long percentile(long[] values, double quantile) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+}
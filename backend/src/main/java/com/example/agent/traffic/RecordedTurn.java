@@ -0,0 +1,87 @@
+package com.example.agent.traffic;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One recorded {@code /api/chat} request. Conversations are identified by a pseudonym and the
+ * position of the turn within them, so a replay can rebuild the conversation structure against
+ * whatever conversation IDs the replayed build hands out.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class RecordedTurn {
+
+    // Milliseconds since the recording started
+    private long offsetMillis;
+    private String session;
+    private int turn;
+    private String message;
+    private String catalog;
+    private boolean compact;
+    // What the recorded build answered, for reference
+    private String intent;
+    private long latencyMillis;
+
+    public long getOffsetMillis() {
+        return offsetMillis;
+    }
+
+    public void setOffsetMillis(long offsetMillis) {
+        this.offsetMillis = offsetMillis;
+    }
+
+    public String getSession() {
+        return session;
+    }
+
+    public void setSession(String session) {
+        this.session = session;
+    }
+
+    public int getTurn() {
+        return turn;
+    }
+
+    public void setTurn(int turn) {
+        this.turn = turn;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+
+    public String getCatalog() {
+        return catalog;
+    }
+
+    public void setCatalog(String catalog) {
+        this.catalog = catalog;
+    }
+
+    public boolean isCompact() {
+        return compact;
+    }
+
+    public void setCompact(boolean compact) {
+        this.compact = compact;
+    }
+
+    public String getIntent() {
+        return intent;
+    }
+
+    public void setIntent(String intent) {
+        this.intent = intent;
+    }
+
+    public long getLatencyMillis() {
+        return latencyMillis;
+    }
+
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.agent.traffic;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What one replay of a recording against one build measured. Reports of two builds replaying
+ * the same recording are compared with {@code TrafficReplay compare}.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+@JsonIgnoreProperties(value = "latency", allowGetters = true)
+public class ReplayReport {
+
+    private String target;
+    private double speed;
+    private long durationMillis;
+    // Bytes the target allocated during the replay, from its jvm.gc.memory.allocated metric
+    private Long allocatedBytes;
+    private List<Result> results = new ArrayList<>();
+
+    public String getTarget() {
+        return target;
+    }
+
+    public void setTarget(String target) {
+        this.target = target;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public void setSpeed(double speed) {
+        this.speed = speed;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    public void setDurationMillis(long durationMillis) {
+        this.durationMillis = durationMillis;
+    }
+
+    public Long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    public void setAllocatedBytes(Long allocatedBytes) {
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    public List<Result> getResults() {
+        return results;
+    }
+
+    public void setResults(List<Result> results) {
+        this.results = results;
+    }
+
+    /**
+     * Latency percentiles over successful turns, in milliseconds.
+     */
+    public Map<String, Long> getLatency() {
+        long[] latencies = results.stream()
+                .filter(Result::isSuccessful)
+                .mapToLong(Result::getLatencyMillis)
+                .sorted()
+                .toArray();
+        Map<String, Long> latency = new LinkedHashMap<>();
+        latency.put("p50", percentile(latencies, 50));
+        latency.put("p90", percentile(latencies, 90));
+        latency.put("p99", percentile(latencies, 99));
+        latency.put("max", latencies.length > 0 ? latencies[latencies.length - 1] : 0L);
+        return latency;
+    }
+
+    @JsonIgnore
+    public long getErrors() {
+        return results.stream().filter(result -> !result.isSuccessful()).count();
+    }
+
+    /**
+     * Nearest-rank percentile of sorted values, 0 when there are none.
+     */
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length, rank) - 1)];
+    }
+
+    /**
+     * The outcome of one replayed turn.
+     */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Result {
+
+        private String session;
+        private int turn;
+        // HTTP status, or 0 if the request failed without one
+        private int status;
+        private long latencyMillis;
+        private String intent;
+        private List<String> phoneIds;
+        private String message;
+
+        public String getSession() {
+            return session;
+        }
+
+        public void setSession(String session) {
+            this.session = session;
+        }
+
+        public int getTurn() {
+            return turn;
+        }
+
+        public void setTurn(int turn) {
+            this.turn = turn;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public void setStatus(int status) {
+            this.status = status;
+        }
+
+        public long getLatencyMillis() {
+            return latencyMillis;
+        }
+
+        public void setLatencyMillis(long latencyMillis) {
+            this.latencyMillis = latencyMillis;
+        }
+
+        public String getIntent() {
+            return intent;
+        }
+
+        public void setIntent(String intent) {
+            this.intent = intent;
+        }
+
+        public List<String> getPhoneIds() {
+            return phoneIds;
+        }
+
+        public void setPhoneIds(List<String> phoneIds) {
+            this.phoneIds = phoneIds;
+        }
+
+        public String getMessage() {
+            return message;
+        }
+
+        public void setMessage(String message) {
+            this.message = message;
+        }
+
+        @JsonIgnore
+        public boolean isSuccessful() {
+            return status == 200;
+        }
+
+        @JsonIgnore
+        public String getKey() {
+            return session + "#" + turn;
+        }
+    }
+}
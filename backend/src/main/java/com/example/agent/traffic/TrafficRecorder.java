@@ -0,0 +1,201 @@
+package com.example.agent.traffic;
+
+import com.example.agent.analytics.RingBuffer;
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Opt-in recorder of {@code /api/chat} traffic for replays ({@code traffic.record.enabled}).
+ * Each answered request is sanitized, its conversation ID replaced by a pseudonym, and written
+ * as one JSON line to {@code traffic-<timestamp>.ndjson} in {@code traffic.record.directory}.
+ * Like turn analytics, request threads only publish into a ring buffer; a writer thread does
+ * the I/O, and requests are dropped rather than delayed when the buffer is full.
+ */
+@Component
+public class TrafficRecorder implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficRecorder.class);
+
+    private static final DateTimeFormatter FILE_TIMESTAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final Path directory;
+    private final int maxSessions;
+    private final RingBuffer<RecordedTurn> buffer;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    // Guarded by itself; conversation ID to pseudonym and turn count
+    private final Map<String, Session> sessions;
+    private long sessionCount;
+    private volatile long startedAtMillis;
+
+    private final AtomicLong recorded = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private volatile boolean running;
+    private Thread writerThread;
+    private Path file;
+
+    public TrafficRecorder(@Value("${traffic.record.enabled:false}") boolean enabled,
+                           @Value("${traffic.record.directory:traffic}") String directory,
+                           @Value("${traffic.record.buffer-capacity:4096}") int capacity,
+                           @Value("${traffic.record.max-sessions:100000}") int maxSessions) {
+        this.enabled = enabled;
+        this.directory = Path.of(directory);
+        this.maxSessions = maxSessions;
+        this.buffer = new RingBuffer<>(capacity);
+        this.sessions = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Session> eldest) {
+                return size() > TrafficRecorder.this.maxSessions;
+            }
+        };
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        startedAtMillis = System.currentTimeMillis();
+        file = directory.resolve("traffic-" + LocalDateTime.now().format(FILE_TIMESTAMP) + ".ndjson");
+        running = true;
+        writerThread = new Thread(this::runWriter, "traffic-recorder");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        logger.info("Recording chat traffic to {}", file);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (writerThread != null) {
+            LockSupport.unpark(writerThread);
+            try {
+                writerThread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Records an answered request without blocking.
+     *
+     * @param receivedAtMillis when the request arrived
+     */
+    public void record(ChatRequest request, ChatResponse response, long receivedAtMillis) {
+        if (!enabled) {
+            return;
+        }
+        // The response carries the ID for new conversations, which later turns will send
+        String conversationId = response.getConversationId() != null ? response.getConversationId() : request.getConversationId();
+        RecordedTurn turn = new RecordedTurn();
+        synchronized (sessions) {
+            Session session = conversationId != null ? sessions.get(conversationId) : null;
+            if (session == null) {
+                session = new Session("s" + (++sessionCount));
+                if (conversationId != null) {
+                    sessions.put(conversationId, session);
+                }
+            }
+            turn.setSession(session.pseudonym);
+            turn.setTurn(session.turns++);
+        }
+        turn.setOffsetMillis(receivedAtMillis - startedAtMillis);
+        turn.setMessage(TrafficSanitizer.sanitize(request.getMessage()));
+        turn.setCatalog(request.getCatalog());
+        turn.setCompact(request.isCompact());
+        turn.setIntent(response.getIntent());
+        turn.setLatencyMillis(System.currentTimeMillis() - receivedAtMillis);
+        if (buffer.offer(turn)) {
+            recorded.incrementAndGet();
+        } else {
+            dropped.incrementAndGet();
+        }
+    }
+
+    private void runWriter() {
+        try {
+            Files.createDirectories(directory);
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+                long lastFlush = System.nanoTime();
+                while (running) {
+                    int drained = drain(out);
+                    if (System.nanoTime() - lastFlush >= FLUSH_INTERVAL_NANOS) {
+                        out.flush();
+                        lastFlush = System.nanoTime();
+                    }
+                    if (drained == 0) {
+                        LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    }
+                }
+                while (drain(out) > 0) {
+                    // Write out whatever was recorded before shutdown
+                }
+            }
+        } catch (IOException | UncheckedIOException e) {
+            logger.error("Stopped recording chat traffic to {}: {}", file, e.getMessage(), e);
+        }
+    }
+
+    private int drain(OutputStream out) {
+        return buffer.drain(turn -> {
+            try {
+                out.write(objectMapper.writeValueAsBytes(turn));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }, 512);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("traffic.record.requests", recorded, AtomicLong::get)
+                .description("Chat requests recorded for replay")
+                .register(registry);
+        FunctionCounter.builder("traffic.record.dropped", dropped, AtomicLong::get)
+                .description("Chat requests not recorded because the buffer was full")
+                .register(registry);
+    }
+
+    private static final class Session {
+        private final String pseudonym;
+        private int turns;
+
+        private Session(String pseudonym) {
+            this.pseudonym = pseudonym;
+        }
+    }
+}
@@ -0,0 +1,365 @@
+package com.example.agent.traffic;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Command-line tool around {@link TrafficRecorder} recordings, run with
+ * {@code scripts/replay-traffic.sh}:
+ * <ul>
+ *   <li>{@code replay --recording=FILE [--target=URL] [--speed=N] [--out=FILE]} sends the
+ *   recorded turns to a running build, each conversation in order and on the recorded
+ *   schedule divided by {@code speed}, and writes a {@link ReplayReport};</li>
+ *   <li>{@code compare BASELINE CANDIDATE} prints the latency, allocation and response
+ *   differences between two reports;</li>
+ *   <li>{@code stub [--port=N] [--delay-ms=N] [--word-delay-ms=N]} serves canned OpenAI chat completions, so that
+ *   replays exercise the model path without calling OpenAI.</li>
+ * </ul>
+ */
+public final class TrafficReplay {
+
+    public static final String STUB_REPLY = "Here are a few phones that match what you are looking for.";
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+    private static final String ALLOCATED_METRIC = "/actuator/metrics/jvm.gc.memory.allocated";
+
+    private TrafficReplay() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            usage();
+            return;
+        }
+        Map<String, String> options = new HashMap<>();
+        List<String> files = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].startsWith("--") && args[i].contains("=")) {
+                int split = args[i].indexOf('=');
+                options.put(args[i].substring(2, split), args[i].substring(split + 1));
+            } else {
+                files.add(args[i]);
+            }
+        }
+        switch (args[0]) {
+            case "replay" -> {
+                String recording = options.get("recording");
+                if (recording == null) {
+                    usage();
+                    return;
+                }
+                ReplayReport report = replay(readRecording(Path.of(recording)),
+                        options.getOrDefault("target", "http://localhost:8080"),
+                        Double.parseDouble(options.getOrDefault("speed", "1")));
+                Path out = Path.of(options.getOrDefault("out", "replay-report.json"));
+                MAPPER.writeValue(out.toFile(), report);
+                System.out.printf("Replayed %d turns in %d ms (%d errors), latency %s, wrote %s%n",
+                        report.getResults().size(), report.getDurationMillis(), report.getErrors(),
+                        report.getLatency(), out);
+            }
+            case "compare" -> {
+                if (files.size() != 2) {
+                    usage();
+                    return;
+                }
+                compare(MAPPER.readValue(Path.of(files.get(0)).toFile(), ReplayReport.class),
+                        MAPPER.readValue(Path.of(files.get(1)).toFile(), ReplayReport.class), System.out);
+            }
+            case "stub" -> {
+                int port = Integer.parseInt(options.getOrDefault("port", "18090"));
+                startStub(port, Long.parseLong(options.getOrDefault("delay-ms", "300")),
+                        Long.parseLong(options.getOrDefault("word-delay-ms", "0")));
+                System.out.printf("Stub OpenAI API listening on http://localhost:%d%n", port);
+            }
+            default -> usage();
+        }
+    }
+
+    private static void usage() {
+        System.err.println("""
+                Usage:
+                  replay --recording=FILE [--target=http://localhost:8080] [--speed=1] [--out=replay-report.json]
+                  compare BASELINE.json CANDIDATE.json
+                  stub [--port=18090] [--delay-ms=300] [--word-delay-ms=0]""");
+    }
+
+    static List<RecordedTurn> readRecording(Path file) throws IOException {
+        List<RecordedTurn> turns = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isBlank()) {
+                    turns.add(MAPPER.readValue(line, RecordedTurn.class));
+                }
+            }
+        }
+        return turns;
+    }
+
+    /**
+     * Replays {@code turns} against {@code target}. Conversations run concurrently; within one,
+     * a turn waits for the previous reply, whose conversation ID it sends, and for its own
+     * scheduled time.
+     */
+    static ReplayReport replay(List<RecordedTurn> turns, String target, double speed)
+            throws IOException, InterruptedException {
+        HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(5)).build();
+        Map<String, List<RecordedTurn>> sessions = new LinkedHashMap<>();
+        // The schedule starts with the first recorded turn, not with the recorder
+        long firstOffset = turns.stream().mapToLong(RecordedTurn::getOffsetMillis).min().orElse(0);
+        turns.stream()
+                .sorted(Comparator.comparingLong(RecordedTurn::getOffsetMillis))
+                .forEach(turn -> sessions.computeIfAbsent(turn.getSession(), key -> new ArrayList<>()).add(turn));
+
+        Long allocatedBefore = allocatedBytes(client, target);
+        Queue<ReplayReport.Result> results = new ConcurrentLinkedQueue<>();
+        long startNanos = System.nanoTime();
+        long scheduleStartNanos = startNanos - TimeUnit.MILLISECONDS.toNanos((long) (firstOffset / speed));
+        CompletableFuture.allOf(sessions.values().stream()
+                        .map(session -> replaySession(client, target, speed, scheduleStartNanos, session, 0, null, results))
+                        .toArray(CompletableFuture[]::new))
+                .join();
+        long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        Long allocatedAfter = allocatedBytes(client, target);
+
+        ReplayReport report = new ReplayReport();
+        report.setTarget(target);
+        report.setSpeed(speed);
+        report.setDurationMillis(durationMillis);
+        if (allocatedBefore != null && allocatedAfter != null) {
+            report.setAllocatedBytes(allocatedAfter - allocatedBefore);
+        }
+        List<ReplayReport.Result> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparing(ReplayReport.Result::getSession).thenComparingInt(ReplayReport.Result::getTurn));
+        report.setResults(sorted);
+        return report;
+    }
+
+    private static CompletableFuture<Void> replaySession(HttpClient client, String target, double speed, long startNanos,
+                                                         List<RecordedTurn> session, int index, String conversationId,
+                                                         Queue<ReplayReport.Result> results) {
+        if (index >= session.size()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        RecordedTurn turn = session.get(index);
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+        long delayMillis = Math.max(0, (long) (turn.getOffsetMillis() / speed) - elapsedMillis);
+
+        ObjectNode body = MAPPER.createObjectNode();
+        body.put("message", turn.getMessage());
+        body.put("conversationId", conversationId);
+        body.put("catalog", turn.getCatalog());
+        body.put("compact", turn.isCompact());
+        HttpRequest request = HttpRequest.newBuilder(URI.create(target + "/api/chat"))
+                .timeout(Duration.ofSeconds(60))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+
+        return CompletableFuture.supplyAsync(System::nanoTime, CompletableFuture.delayedExecutor(delayMillis, TimeUnit.MILLISECONDS))
+                .thenCompose(sentAt -> client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                        .handle((response, error) -> {
+                            ReplayReport.Result result = new ReplayReport.Result();
+                            result.setSession(turn.getSession());
+                            result.setTurn(turn.getTurn());
+                            result.setLatencyMillis(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - sentAt));
+                            if (response == null) {
+                                result.setMessage(error.getClass().getSimpleName() + ": " + error.getMessage());
+                                results.add(result);
+                                return conversationId;
+                            }
+                            result.setStatus(response.statusCode());
+                            String nextConversationId = conversationId;
+                            try {
+                                JsonNode reply = MAPPER.readTree(response.body());
+                                result.setIntent(reply.path("intent").asText(null));
+                                result.setMessage(reply.path("message").asText(null));
+                                result.setPhoneIds(phoneIds(reply));
+                                nextConversationId = reply.path("conversationId").asText(conversationId);
+                            } catch (IOException e) {
+                                result.setMessage(response.body());
+                            }
+                            results.add(result);
+                            return nextConversationId;
+                        }))
+                .thenCompose(nextConversationId -> replaySession(client, target, speed, startNanos, session, index + 1,
+                        nextConversationId, results));
+    }
+
+    private static List<String> phoneIds(JsonNode reply) {
+        List<String> ids = new ArrayList<>();
+        reply.path("recommendations").forEach(recommendation -> ids.add(recommendation.path("phoneId").asText()));
+        reply.path("comparisonPhoneIds").forEach(id -> ids.add(id.asText()));
+        reply.path("phones").forEach(phone -> ids.add(phone.path("id").asText()));
+        return ids.isEmpty() ? null : ids;
+    }
+
+    // Null when the target does not expose the metric
+    private static Long allocatedBytes(HttpClient client, String target) throws InterruptedException {
+        try {
+            HttpResponse<String> response = client.send(HttpRequest.newBuilder(URI.create(target + ALLOCATED_METRIC))
+                    .timeout(Duration.ofSeconds(5)).build(), HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) {
+                return null;
+            }
+            JsonNode measurements = MAPPER.readTree(response.body()).path("measurements");
+            return measurements.isEmpty() ? null : measurements.get(0).path("value").asLong();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Prints latency and allocation side by side, then every turn whose intent, phones or
+     * message differ between the two reports.
+     */
+    static void compare(ReplayReport baseline, ReplayReport candidate, PrintStream out) {
+        out.printf("%-12s %14s %14s %10s%n", "", "baseline", "candidate", "change");
+        Map<String, Long> before = baseline.getLatency();
+        Map<String, Long> after = candidate.getLatency();
+        before.forEach((name, value) -> printRow(out, "latency " + name, value, after.get(name), "ms"));
+        printRow(out, "allocated", toKilobytes(baseline.getAllocatedBytes()), toKilobytes(candidate.getAllocatedBytes()), "KB");
+        printRow(out, "errors", baseline.getErrors(), candidate.getErrors(), "");
+
+        Map<String, ReplayReport.Result> candidateResults = new HashMap<>();
+        candidate.getResults().forEach(result -> candidateResults.put(result.getKey(), result));
+        int differences = 0;
+        for (ReplayReport.Result expected : baseline.getResults()) {
+            ReplayReport.Result actual = candidateResults.get(expected.getKey());
+            if (actual == null) {
+                out.printf("%n%s: missing from candidate%n", expected.getKey());
+                differences++;
+            } else if (!Objects.equals(expected.getIntent(), actual.getIntent())
+                    || !Objects.equals(expected.getPhoneIds(), actual.getPhoneIds())
+                    || !Objects.equals(expected.getMessage(), actual.getMessage())) {
+                out.printf("%n%s%n  intent  %s -> %s%n  phones  %s -> %s%n  message %s%n       -> %s%n",
+                        expected.getKey(), expected.getIntent(), actual.getIntent(),
+                        expected.getPhoneIds(), actual.getPhoneIds(), expected.getMessage(), actual.getMessage());
+                differences++;
+            }
+        }
+        out.printf("%n%d of %d turns differ%n", differences, baseline.getResults().size());
+    }
+
+    private static void printRow(PrintStream out, String name, Long before, Long after, String unit) {
+        if (before == null || after == null) {
+            out.printf("%-12s %14s %14s%n", name, format(before, unit), format(after, unit));
+            return;
+        }
+        String change = before == 0 ? "" : String.format("%+.1f%%", 100.0 * (after - before) / before);
+        out.printf("%-12s %14s %14s %10s%n", name, format(before, unit), format(after, unit), change);
+    }
+
+    private static String format(Long value, String unit) {
+        return value == null ? "n/a" : (value + " " + unit).trim();
+    }
+
+    private static Long toKilobytes(Long bytes) {
+        return bytes == null ? null : bytes / 1024;
+    }
+
+    /**
+     * Starts an OpenAI-compatible endpoint answering every chat completion with the same reply
+     * after {@code delayMillis}, as JSON or, for streaming requests, as server-sent events.
+     */
+    public static HttpServer startStub(int port, long delayMillis) throws IOException {
+        return startStub(port, delayMillis, 0);
+    }
+
+    /**
+     * Like {@link #startStub(int, long)}, but streamed replies also wait {@code wordDelayMillis}
+     * before each word after the first, like a model generating them.
+     */
+    public static HttpServer startStub(int port, long delayMillis, long wordDelayMillis) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(port), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/v1/chat/completions", exchange -> {
+            try (exchange) {
+                JsonNode request = MAPPER.readTree(exchange.getRequestBody());
+                Thread.sleep(delayMillis);
+                if (request.path("stream").asBoolean(false)) {
+                    streamReply(exchange, request.path("model").asText(), wordDelayMillis);
+                } else {
+                    reply(exchange, request.path("model").asText());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        server.start();
+        return server;
+    }
+
+    private static void reply(HttpExchange exchange, String model) throws IOException {
+        ObjectNode completion = completion(model, "chat.completion");
+        ObjectNode choice = completion.putArray("choices").addObject();
+        choice.put("index", 0);
+        choice.putObject("message").put("role", "assistant").put("content", STUB_REPLY);
+        choice.put("finish_reason", "stop");
+        byte[] body = MAPPER.writeValueAsBytes(completion);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        exchange.getResponseBody().write(body);
+    }
+
+    private static void streamReply(HttpExchange exchange, String model, long wordDelayMillis)
+            throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        String[] words = STUB_REPLY.split("(?<= )");
+        for (int i = 0; i < words.length; i++) {
+            String word = words[i];
+            if (i > 0 && wordDelayMillis > 0) {
+                Thread.sleep(wordDelayMillis);
+            }
+            ObjectNode chunk = completion(model, "chat.completion.chunk");
+            ObjectNode choice = chunk.putArray("choices").addObject();
+            choice.put("index", 0);
+            choice.putObject("delta").put("content", word);
+            out.write(("data: " + MAPPER.writer().without(SerializationFeature.INDENT_OUTPUT).writeValueAsString(chunk)
+                    + "\n\n").getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+        out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static ObjectNode completion(String model, String object) {
+        ObjectNode completion = MAPPER.createObjectNode();
+        completion.put("id", "stub-" + System.nanoTime());
+        completion.put("object", object);
+        completion.put("created", System.currentTimeMillis() / 1000);
+        completion.put("model", model);
+        return completion;
+    }
+}
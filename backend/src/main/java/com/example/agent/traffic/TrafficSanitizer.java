@@ -0,0 +1,29 @@
+package com.example.agent.traffic;
+
+import java.util.regex.Pattern;
+
+/**
+ * Strips personal data from recorded messages while keeping what drives the query mix:
+ * prices, specs, brands and phone names stay, contact details go.
+ */
+final class TrafficSanitizer {
+
+    private static final Pattern EMAIL = Pattern.compile("[\\w.+-]+@[\\w-]+(?:\\.[\\w-]+)+");
+    // Ten or more digits, optionally separated by single spaces or dashes: phone, card and account numbers
+    private static final Pattern LONG_NUMBER = Pattern.compile("(?<![\\d])\\+?\\d(?:[ -]?\\d){9,}(?![\\d])");
+    private static final Pattern URL = Pattern.compile("\\bhttps?://\\S+", Pattern.CASE_INSENSITIVE);
+    private static final Pattern TAG = Pattern.compile("<[^>]*>");
+
+    private TrafficSanitizer() {
+    }
+
+    static String sanitize(String message) {
+        if (message == null) {
+            return null;
+        }
+        String sanitized = TAG.matcher(message).replaceAll("");
+        sanitized = URL.matcher(sanitized).replaceAll("[url]");
+        sanitized = EMAIL.matcher(sanitized).replaceAll("[email]");
+        return LONG_NUMBER.matcher(sanitized).replaceAll("[number]");
+    }
+}
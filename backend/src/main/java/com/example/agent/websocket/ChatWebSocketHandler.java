@@ -0,0 +1,458 @@
+package com.example.agent.websocket;
+
+import com.example.agent.catalog.CatalogsReloadedEvent;
+import com.example.agent.concurrency.AdaptiveConcurrencyLimiter;
+import com.example.agent.conversation.ConversationRouter;
+import com.example.agent.conversation.ConversationStore;
+import com.example.agent.exception.ServiceOverloadedException;
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.example.agent.model.ChatStreamFrame;
+import com.example.agent.model.Phone;
+import com.example.agent.profiling.SerializationEvent;
+import com.example.agent.service.ConversationService;
+import com.example.agent.service.PartialReplies;
+import com.example.agent.service.PhoneCatalogService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Chat over a WebSocket: a connection is bound to one conversation and carries any number of
+ * turns, each answered by streamed {@code delta} frames followed by a final {@code reply} frame.
+ * Connections also receive a {@code catalog} frame when their catalog version changes.
+ * <p>
+ * Turns of one connection run one at a time, in order, on a shared worker pool; at most
+ * {@code chat.websocket.max-queued-turns} may wait, further turns are answered with an error.
+ * Outgoing frames go through a per-connection send buffer. While it holds more than
+ * {@code chat.websocket.coalesce-bytes}, deltas are merged instead of queued, and a client that
+ * stops reading is disconnected once the buffer or send time limit is exceeded, without
+ * blocking the worker or other connections.
+ */
+@Component
+public class ChatWebSocketHandler extends TextWebSocketHandler implements MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatWebSocketHandler.class);
+
+    private final ConversationService conversationService;
+    private final ConversationStore conversationStore;
+    private final ConversationRouter conversationRouter;
+    private final AdaptiveConcurrencyLimiter concurrencyLimiter;
+    private final PhoneCatalogService phoneCatalogService;
+    private final ObjectMapper objectMapper;
+
+    private final int maxQueuedTurns;
+    private final int maxMessageBytes;
+    private final int sendTimeLimitMs;
+    private final int bufferSizeLimit;
+    private final int coalesceBytes;
+    private final String overloadAction;
+
+    private final ExecutorService workers;
+    private final Map<String, ChatConnection> connections = new ConcurrentHashMap<>();
+    private final AtomicLong turns = new AtomicLong();
+    private final AtomicLong rejectedTurns = new AtomicLong();
+
+    public ChatWebSocketHandler(ConversationService conversationService,
+                                ConversationStore conversationStore,
+                                ConversationRouter conversationRouter,
+                                AdaptiveConcurrencyLimiter concurrencyLimiter,
+                                PhoneCatalogService phoneCatalogService,
+                                ObjectMapper objectMapper,
+                                @Value("${chat.websocket.worker-threads:16}") int workerThreads,
+                                @Value("${chat.websocket.max-queued-turns:4}") int maxQueuedTurns,
+                                @Value("${chat.websocket.max-message-bytes:16384}") int maxMessageBytes,
+                                @Value("${chat.websocket.send-time-limit-ms:10000}") int sendTimeLimitMs,
+                                @Value("${chat.websocket.send-buffer-bytes:524288}") int bufferSizeLimit,
+                                @Value("${chat.websocket.coalesce-bytes:65536}") int coalesceBytes,
+                                @Value("${chat.admission.overload-action:degrade}") String overloadAction) {
+        this.conversationService = conversationService;
+        this.conversationStore = conversationStore;
+        this.conversationRouter = conversationRouter;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.phoneCatalogService = phoneCatalogService;
+        this.objectMapper = objectMapper;
+        this.maxQueuedTurns = Math.max(1, maxQueuedTurns);
+        this.maxMessageBytes = maxMessageBytes;
+        this.sendTimeLimitMs = sendTimeLimitMs;
+        this.bufferSizeLimit = bufferSizeLimit;
+        this.coalesceBytes = coalesceBytes;
+        this.overloadAction = overloadAction;
+        AtomicInteger threadCount = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "chat-ws-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    @Override
+    public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        session.setTextMessageSizeLimit(maxMessageBytes);
+        MultiValueMap<String, String> params = session.getUri() != null
+                ? UriComponentsBuilder.fromUri(session.getUri()).build().getQueryParams()
+                : new LinkedMultiValueMap<>();
+        String conversationId = params.getFirst("conversationId");
+        if (conversationId == null || conversationId.isBlank()) {
+            conversationId = conversationStore.newConversationId();
+        }
+        String catalogName = params.getFirst("catalog");
+        String catalogVersion;
+        try {
+            catalogVersion = phoneCatalogService.getCatalog(catalogName).getVersion();
+        } catch (IllegalArgumentException e) {
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(ChatStreamFrame.error(null, e.getMessage()))));
+            session.close(CloseStatus.POLICY_VIOLATION);
+            return;
+        }
+        WebSocketSession sender = new ConcurrentWebSocketSessionDecorator(session, sendTimeLimitMs, bufferSizeLimit,
+                ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE);
+        ChatConnection connection = new ChatConnection(sender, conversationId, catalogName,
+                Boolean.parseBoolean(params.getFirst("compact")), catalogVersion);
+        connections.put(session.getId(), connection);
+        send(connection, ChatStreamFrame.session(conversationId, catalogVersion));
+        logger.debug("WebSocket {} bound to conversation {}", session.getId(), conversationId);
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+        ChatConnection connection = connections.get(session.getId());
+        if (connection == null) {
+            return;
+        }
+        String text = parseMessage(message.getPayload());
+        if (text == null || text.isBlank()) {
+            send(connection, ChatStreamFrame.error(null, "Message cannot be empty"));
+            return;
+        }
+        boolean accepted;
+        boolean start = false;
+        synchronized (connection) {
+            accepted = connection.pending.size() < maxQueuedTurns;
+            if (accepted) {
+                connection.pending.add(text);
+                start = !connection.running;
+                connection.running = true;
+            }
+        }
+        if (!accepted) {
+            rejectedTurns.incrementAndGet();
+            send(connection, ChatStreamFrame.error(null, "Too many queued messages, wait for the current reply"));
+            return;
+        }
+        if (start) {
+            try {
+                workers.execute(() -> drain(connection));
+            } catch (RejectedExecutionException e) {
+                // Only happens during shutdown
+                synchronized (connection) {
+                    connection.pending.clear();
+                    connection.running = false;
+                }
+            }
+        }
+    }
+
+    // Accepts {"message": "..."} or the plain message text
+    private String parseMessage(String payload) {
+        String trimmed = payload.trim();
+        if (!trimmed.startsWith("{")) {
+            return trimmed;
+        }
+        try {
+            JsonNode node = objectMapper.readTree(trimmed);
+            return node.path("message").asText(null);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void drain(ChatConnection connection) {
+        while (true) {
+            String message;
+            synchronized (connection) {
+                message = connection.pending.poll();
+                if (message == null || !connection.session.isOpen()) {
+                    connection.pending.clear();
+                    connection.running = false;
+                    return;
+                }
+            }
+            runTurn(connection, message);
+        }
+    }
+
+    private void runTurn(ChatConnection connection, String message) {
+        int turn = ++connection.turns;
+        turns.incrementAndGet();
+        ChatRequest request = connection.newRequest(message);
+        try {
+            // In a cluster, turns are handled by the node that owns the conversation
+            ChatResponse response = conversationRouter.forwardIfRemote(request);
+            if (response == null) {
+                response = process(connection, request, turn);
+            }
+            if (response == null) {
+                return;
+            }
+            connection.remember(response);
+            send(connection, ChatStreamFrame.reply(turn, response));
+        } catch (ServiceOverloadedException e) {
+            // The owner of the conversation shed the forwarded turn
+            send(connection, ChatStreamFrame.error(turn, e.getMessage()));
+        } catch (Exception e) {
+            logger.error("Error processing WebSocket turn for conversation {}", connection.conversationId, e);
+            send(connection, ChatStreamFrame.error(turn, "Sorry, something went wrong processing your message."));
+        }
+    }
+
+    private ChatResponse process(ChatConnection connection, ChatRequest request, int turn) {
+        DeltaSender deltas = new DeltaSender(connection, turn);
+        AdaptiveConcurrencyLimiter.Permit permit = concurrencyLimiter.tryAcquire(
+                conversationService.hasConversation(request.getConversationId()));
+        if (permit == null) {
+            // Degraded turns skip the model but still take memory and CPU, so they are bounded too
+            AdaptiveConcurrencyLimiter.Permit degraded = "degrade".equalsIgnoreCase(overloadAction)
+                    ? concurrencyLimiter.tryAcquireDegraded() : null;
+            if (degraded == null) {
+                send(connection, ChatStreamFrame.error(turn, "Too many concurrent requests, please retry shortly."));
+                return null;
+            }
+            try {
+                ChatResponse response = conversationService.processMessage(request, false, deltas);
+                deltas.flush();
+                return response;
+            } finally {
+                degraded.ignore();
+            }
+        }
+        try {
+            ChatResponse response = conversationService.processMessage(request, true, deltas);
+            deltas.flush();
+            permit.success();
+            return response;
+        } catch (RuntimeException e) {
+            // Only overload feeds the limit; client errors and bugs say nothing about capacity
+            if (AdaptiveConcurrencyLimiter.isOverload(e)) {
+                permit.dropped();
+            } else {
+                permit.ignore();
+            }
+            throw e;
+        }
+    }
+
+    @EventListener
+    public void onCatalogsReloaded(CatalogsReloadedEvent event) {
+        for (ChatConnection connection : connections.values()) {
+            String version;
+            try {
+                version = phoneCatalogService.getCatalog(connection.catalogName).getVersion();
+            } catch (IllegalArgumentException e) {
+                send(connection, ChatStreamFrame.error(null, e.getMessage()));
+                continue;
+            }
+            if (connection.updateCatalogVersion(version)) {
+                send(connection, ChatStreamFrame.catalog(version));
+            }
+        }
+    }
+
+    @Override
+    public void handleTransportError(WebSocketSession session, Throwable exception) {
+        logger.debug("WebSocket {} transport error: {}", session.getId(), exception.getMessage());
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        ChatConnection connection = connections.remove(session.getId());
+        if (connection != null) {
+            synchronized (connection) {
+                connection.pending.clear();
+            }
+        }
+    }
+
+    private void send(ChatConnection connection, ChatStreamFrame frame) {
+        if (!connection.session.isOpen()) {
+            return;
+        }
+        try {
+            SerializationEvent event = new SerializationEvent();
+            event.begin();
+            TextMessage message = new TextMessage(objectMapper.writeValueAsString(frame));
+            event.end();
+            if (event.shouldCommit()) {
+                event.transport = "websocket";
+                event.format = "json";
+                event.type = frame.getType();
+                event.bytes = message.getPayloadLength();
+                event.commit();
+            }
+            connection.session.sendMessage(message);
+        } catch (IOException | IllegalStateException e) {
+            // The decorator closes connections that exceed the send buffer or time limit
+            logger.debug("Dropping frame for WebSocket {}: {}", connection.session.getId(), e.getMessage());
+        }
+    }
+
+    public int getConnectionCount() {
+        return connections.size();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("chat.websocket.connections", connections, Map::size)
+                .description("Open chat WebSocket connections")
+                .register(registry);
+        FunctionCounter.builder("chat.websocket.turns", turns, AtomicLong::get)
+                .description("Turns received over chat WebSocket connections")
+                .register(registry);
+        FunctionCounter.builder("chat.websocket.turns.rejected", rejectedTurns, AtomicLong::get)
+                .description("Turns rejected because too many were already queued on the connection")
+                .register(registry);
+    }
+
+    /**
+     * Sends reply deltas as they arrive, merging them while the connection's send buffer is
+     * backed up so a slow client receives fewer, larger frames.
+     */
+    private final class DeltaSender implements PartialReplies {
+
+        private final ChatConnection connection;
+        private final int turn;
+        // Guarded by this: model deltas arrive on the HTTP client's threads, the rest on the turn's
+        private final StringBuilder held = new StringBuilder();
+        private boolean sent;
+
+        DeltaSender(ChatConnection connection, int turn) {
+            this.connection = connection;
+            this.turn = turn;
+        }
+
+        @Override
+        public synchronized void append(String delta) {
+            held.append(delta);
+            if (connection.bufferSize() <= coalesceBytes) {
+                flush();
+            }
+        }
+
+        @Override
+        public synchronized void replace(String text) {
+            held.setLength(0);
+            if (!sent) {
+                append(text);
+                return;
+            }
+            // The client already shows part of another reply, so it must drop that first
+            send(connection, ChatStreamFrame.replace(turn, text));
+        }
+
+        synchronized void flush() {
+            if (held.length() > 0) {
+                send(connection, ChatStreamFrame.delta(turn, held.toString()));
+                held.setLength(0);
+                sent = true;
+            }
+        }
+    }
+
+    private static final class ChatConnection {
+
+        private final WebSocketSession session;
+        private final String conversationId;
+        private final String catalogName;
+        private final boolean compact;
+        // Guarded by this
+        private final ArrayDeque<String> pending = new ArrayDeque<>();
+        private boolean running;
+        private String catalogVersion;
+        // Phones already sent in full on this connection, for compact mode
+        private final Set<String> sentPhoneIds = new HashSet<>();
+        // Only touched by the worker running this connection's turns
+        private int turns;
+
+        ChatConnection(WebSocketSession session, String conversationId, String catalogName,
+                       boolean compact, String catalogVersion) {
+            this.session = session;
+            this.conversationId = conversationId;
+            this.catalogName = catalogName;
+            this.compact = compact;
+            this.catalogVersion = catalogVersion;
+        }
+
+        synchronized ChatRequest newRequest(String message) {
+            ChatRequest request = new ChatRequest(message);
+            request.setConversationId(conversationId);
+            request.setCatalog(catalogName);
+            request.setCompact(compact);
+            request.setCatalogVersion(catalogVersion);
+            request.setCachedPhoneIds(new ArrayList<>(sentPhoneIds));
+            return request;
+        }
+
+        synchronized void remember(ChatResponse response) {
+            if (response.getCatalogVersion() != null) {
+                updateCatalogVersion(response.getCatalogVersion());
+            }
+            if (response.getPhones() != null) {
+                for (Phone phone : response.getPhones()) {
+                    sentPhoneIds.add(phone.getId());
+                }
+            }
+        }
+
+        synchronized boolean updateCatalogVersion(String version) {
+            if (version.equals(catalogVersion)) {
+                return false;
+            }
+            // Phones sent for an older version may be stale
+            catalogVersion = version;
+            sentPhoneIds.clear();
+            return true;
+        }
+
+        int bufferSize() {
+            return session instanceof ConcurrentWebSocketSessionDecorator decorator ? decorator.getBufferSize() : 0;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.example.agent.analytics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RingBufferTest {
+
+    @Test
+    void testRoundsCapacityUpAndRejectsWhenFull() {
+        RingBuffer<Integer> buffer = new RingBuffer<>(5);
+        assertEquals(8, buffer.capacity());
+        for (int i = 0; i < 8; i++) {
+            assertTrue(buffer.offer(i));
+        }
+        assertFalse(buffer.offer(8));
+        assertEquals(0, buffer.poll());
+        assertTrue(buffer.offer(8));
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(8, buffer.drain(drained::add, 100));
+        assertEquals(List.of(1, 2, 3, 4, 5, 6, 7, 8), drained);
+        assertNull(buffer.poll());
+    }
+
+    @Test
+    void testConcurrentProducersLoseNothingThatWasAccepted() throws Exception {
+        RingBuffer<Integer> buffer = new RingBuffer<>(1024);
+        int producers = 4;
+        int perProducer = 20_000;
+        AtomicInteger accepted = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(producers);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        for (int p = 0; p < producers; p++) {
+            int base = p * perProducer;
+            executor.execute(() -> {
+                for (int i = 0; i < perProducer; i++) {
+                    if (buffer.offer(base + i)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        Set<Integer> seen = new HashSet<>();
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            buffer.drain(value -> assertTrue(seen.add(value), "duplicate " + value), 256);
+        }
+        buffer.drain(value -> assertTrue(seen.add(value)), Integer.MAX_VALUE);
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        assertEquals(accepted.get(), seen.size());
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.agent.analytics;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TurnAnalyticsTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWritesPublishedEventsToCompressedFiles() throws IOException {
+        TurnAnalytics analytics = new TurnAnalytics(true, 64, "drop-newest", directory.toString(), 16, 10, 1 << 20, 60);
+        analytics.start();
+        for (int i = 0; i < 10; i++) {
+            analytics.publish(event("conv-" + i));
+        }
+        analytics.stop();
+
+        List<String> lines = readAll();
+        assertEquals(10, lines.size());
+        assertTrue(lines.get(0).contains("\"conversationId\":\"conv-0\""));
+        assertTrue(lines.get(0).contains("\"retrievedPhoneIds\":[\"pixel-8a\"]"));
+        assertEquals(10, analytics.getWritten());
+        assertEquals(0, analytics.getDropped());
+    }
+
+    @Test
+    void testCountsDropsWhenBufferIsFull() {
+        // Not started, so nothing drains the buffer
+        TurnAnalytics newest = new TurnAnalytics(true, 4, "drop-newest", directory.toString(), 16, 10, 1 << 20, 60);
+        TurnAnalytics oldest = new TurnAnalytics(true, 4, "drop-oldest", directory.toString(), 16, 10, 1 << 20, 60);
+        for (int i = 0; i < 6; i++) {
+            newest.publish(event("conv-" + i));
+            oldest.publish(event("conv-" + i));
+        }
+
+        assertEquals(4, newest.getPublished());
+        assertEquals(2, newest.getDropped());
+        assertEquals(6, oldest.getPublished());
+        assertEquals(2, oldest.getDropped());
+    }
+
+    private static TurnEvent event(String conversationId) {
+        return new TurnEvent(System.currentTimeMillis(), conversationId, "recommend",
+                List.of("pixel-8a"), List.of("pixel-8a"), true, 120, 40, 200, 0, 0, "template");
+    }
+
+    private List<String> readAll() throws IOException {
+        List<String> lines = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> stream = Files.list(directory)) {
+            files = stream.sorted().toList();
+        }
+        for (Path file : files) {
+            assertTrue(file.toString().endsWith(".ndjson.gz"), "incomplete file " + file);
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+                reader.lines().forEach(lines::add);
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.agent.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    @Test
+    void testRejectsBeyondLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(4, 2, 10, 1.5, 0.2, 0.0, 16);
+
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(limiter.tryAcquire(false));
+        }
+        assertNull(limiter.tryAcquire(false));
+        assertEquals(4, limiter.getInFlight());
+    }
+
+    @Test
+    void testNewConversationsAreShedFirst() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 2, 10, 1.5, 0.2, 0.5, 16);
+
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(limiter.tryAcquire(false));
+        }
+        assertNull(limiter.tryAcquire(false));
+        assertNotNull(limiter.tryAcquire(true));
+    }
+
+    @Test
+    void testReleaseFreesCapacity() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 10, 1.5, 0.2, 0.0, 16);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquire(false);
+        assertNotNull(limiter.tryAcquire(false));
+        assertNull(limiter.tryAcquire(false));
+
+        first.ignore();
+        first.ignore();
+        assertEquals(1, limiter.getInFlight());
+        assertNotNull(limiter.tryAcquire(false));
+    }
+
+    @Test
+    void testDropsShrinkLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 2, 50, 1.5, 0.2, 0.0, 16);
+
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(true).dropped();
+        }
+        assertTrue(limiter.getLimit() < 20);
+        assertTrue(limiter.getLimit() >= 2);
+    }
+
+    @Test
+    void testDegradedPermitsAreBoundedAndSeparate() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 2, 10, 1.5, 0.2, 0.0, 2);
+
+        AdaptiveConcurrencyLimiter.Permit first = limiter.tryAcquireDegraded();
+        assertNotNull(first);
+        assertNotNull(limiter.tryAcquireDegraded());
+        assertNull(limiter.tryAcquireDegraded());
+        assertEquals(0, limiter.getInFlight());
+
+        first.ignore();
+        assertEquals(1, limiter.getDegradedInFlight());
+        assertNotNull(limiter.tryAcquireDegraded());
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void testOnlyTimeoutsAndRejectionsCountAsOverload() {
+        assertTrue(AdaptiveConcurrencyLimiter.isOverload(new CompletionException(new TimeoutException())));
+        assertTrue(AdaptiveConcurrencyLimiter.isOverload(new RejectedExecutionException()));
+        assertFalse(AdaptiveConcurrencyLimiter.isOverload(new IllegalArgumentException("Unknown catalog")));
+        assertFalse(AdaptiveConcurrencyLimiter.isOverload(new IllegalStateException("bug")));
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.agent.concurrency;
+
+import com.example.agent.exception.ServiceOverloadedException;
+import com.example.agent.model.ChatResponse;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class IdempotencyStoreTest {
+
+    @Test
+    void testRetryAttachesToRunningTurn() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(600, 100, 10, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        ChatResponse response = new ChatResponse();
+
+        CompletableFuture<IdempotencyStore.Result> first = CompletableFuture.supplyAsync(() ->
+                store.execute("key", "request", () -> {
+                    runs.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return response;
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        CompletableFuture<IdempotencyStore.Result> retry = CompletableFuture.supplyAsync(() ->
+                store.execute("key", "request", () -> {
+                    runs.incrementAndGet();
+                    return new ChatResponse();
+                }));
+        release.countDown();
+
+        assertSame(response, first.get(5, TimeUnit.SECONDS).getResponse());
+        assertFalse(first.get().isReplayed());
+        assertSame(response, retry.get(5, TimeUnit.SECONDS).getResponse());
+        assertTrue(retry.get().isReplayed());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void testFailedTurnRunsAgainOnRetry() {
+        IdempotencyStore store = new IdempotencyStore(600, 100, 10, 2);
+
+        assertThrows(IllegalStateException.class, () -> store.execute("key", "request", () -> {
+            throw new IllegalStateException("upstream failed");
+        }));
+        IdempotencyStore.Result retry = store.execute("key", "request", ChatResponse::new);
+
+        assertFalse(retry.isReplayed());
+    }
+
+    @Test
+    void testSlowTurnSendsRetryAway() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(600, 100, 0, 2);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<IdempotencyStore.Result> first = CompletableFuture.supplyAsync(() ->
+                store.execute("key", "request", () -> {
+                    started.countDown();
+                    await(release);
+                    return new ChatResponse();
+                }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        assertThrows(ServiceOverloadedException.class, () -> store.execute("key", "request", ChatResponse::new));
+        release.countDown();
+        first.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void testOldestKeysAreDroppedBeyondCapacity() {
+        IdempotencyStore store = new IdempotencyStore(600, 2, 10, 2);
+        store.execute("a", "request", ChatResponse::new);
+        store.execute("b", "request", ChatResponse::new);
+        store.execute("c", "request", ChatResponse::new);
+
+        assertEquals(2, store.size());
+        assertFalse(store.execute("a", "request", ChatResponse::new).isReplayed());
+        assertTrue(store.execute("c", "request", ChatResponse::new).isReplayed());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.agent.config;
+
+import com.example.agent.model.ChatResponse;
+import com.example.agent.model.Phone;
+import com.theokanning.openai.client.OpenAiApi;
+import com.theokanning.openai.completion.chat.ChatCompletionResult;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeRuntimeHintsTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    NativeRuntimeHintsTest() {
+        new NativeRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testRegistersModelAndOpenAiTypesForBinding() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Phone.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(ChatResponse.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(ChatCompletionResult.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.proxies().forInterfaces(OpenAiApi.class).test(hints));
+    }
+
+    @Test
+    void testRegistersCatalogResource() {
+        assertTrue(RuntimeHintsPredicates.resource().forResource("phones.json").test(hints));
+    }
+
+    @Test
+    void testJacksonTypesExistOnClasspath() {
+        for (String type : NativeRuntimeHints.OPENAI_JACKSON_TYPES) {
+            assertDoesNotThrow(() -> Class.forName(type), type);
+        }
+    }
+}
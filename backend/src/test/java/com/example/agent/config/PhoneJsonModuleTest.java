@@ -0,0 +1,77 @@
+package com.example.agent.config;
+
+import com.example.agent.model.ChatResponse;
+import com.example.agent.model.Phone;
+import com.example.agent.model.PhoneRecommendation;
+import com.example.agent.service.PhoneCatalogService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        "openai.api.key=dummy",
+        "openai.api.model=gpt-3.5-turbo"
+})
+class PhoneJsonModuleTest {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PhoneCatalogService phoneCatalogService;
+
+    @Test
+    void testCachedPhonesSerializeLikePlainJackson() throws Exception {
+        Phone phone = phoneCatalogService.getAllPhones().get(0);
+        ChatResponse response = new ChatResponse();
+        response.setMessage("Compare these");
+        response.setRecommendations(List.of(new PhoneRecommendation(phone, "Great value")));
+        response.setComparisonPhones(List.of(phone, phoneCatalogService.getAllPhones().get(1)));
+
+        ObjectMapper plain = new ObjectMapper();
+        assertEquals(plain.readTree(plain.writeValueAsString(response)),
+                objectMapper.readTree(objectMapper.writeValueAsString(response)));
+        assertEquals(plain.readTree(plain.writeValueAsBytes(response)),
+                objectMapper.readTree(objectMapper.writeValueAsBytes(response)));
+    }
+
+    @Test
+    void testPhonesOutsideCatalogAreSerializedNormally() throws Exception {
+        Phone phone = new Phone("Test Phone", "Test", 9999, "12MP", "3000mAh", List.of("compact"));
+
+        String json = objectMapper.writeValueAsString(phone);
+
+        assertEquals("Test Phone", objectMapper.readTree(json).get("name").asText());
+        assertEquals(new ObjectMapper().readTree(new ObjectMapper().writeValueAsString(phone)), objectMapper.readTree(json));
+    }
+
+    @Nested
+    @TestPropertySource(properties = "spring.jackson.mapper.sort-properties-alphabetically=true")
+    class WithJacksonProperties {
+
+        @Autowired
+        private ObjectMapper objectMapper;
+
+        @Autowired
+        private PhoneCatalogService phoneCatalogService;
+
+        @Test
+        void testCachedPhonesFollowSpringJacksonSettings() throws Exception {
+            Phone phone = phoneCatalogService.getAllPhones().get(0);
+
+            List<String> fields = new ArrayList<>();
+            objectMapper.readTree(objectMapper.writeValueAsString(List.of(phone))).get(0).fieldNames().forEachRemaining(fields::add);
+
+            assertEquals(fields.stream().sorted().toList(), fields);
+        }
+    }
+}
@@ -1,23 +1,35 @@
 package com.example.agent.controller;
 
+import com.example.agent.concurrency.AdaptiveConcurrencyLimiter;
+import com.example.agent.concurrency.IdempotencyStore;
+import com.example.agent.conversation.ConversationRouter;
+import com.example.agent.exception.ServiceOverloadedException;
 import com.example.agent.model.ChatRequest;
 import com.example.agent.model.ChatResponse;
 import com.example.agent.service.ConversationService;
+import com.example.agent.traffic.TrafficRecorder;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(ChatController.class)
+@Import({AdaptiveConcurrencyLimiter.class, IdempotencyStore.class, TrafficRecorder.class})
 class ChatControllerTest {
 
     @Autowired
@@ -26,9 +38,15 @@ class ChatControllerTest {
     @MockBean
     private ConversationService conversationService;
 
+    @MockBean
+    private ConversationRouter conversationRouter;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
     @Test
     void testChatEndpoint() throws Exception {
         ChatRequest request = new ChatRequest("Show me phones under 30000");
@@ -48,6 +66,27 @@ class ChatControllerTest {
                 .andExpect(jsonPath("$.conversationId").value("test-conv-id"));
     }
 
+    @Test
+    void testChatEndpointSpeaksSmile() throws Exception {
+        ChatResponse mockResponse = new ChatResponse();
+        mockResponse.setMessage("Here are some phones under ₹30,000");
+        mockResponse.setIntent("search_by_price");
+        when(conversationService.processMessage(any(ChatRequest.class))).thenReturn(mockResponse);
+        SmileMapper smile = new SmileMapper();
+
+        byte[] body = mockMvc.perform(post("/api/chat")
+                        .contentType("application/x-jackson-smile")
+                        .accept("application/x-jackson-smile")
+                        .content(smile.writeValueAsBytes(new ChatRequest("Show me phones under 30000"))))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        ChatResponse response = smile.readValue(body, ChatResponse.class);
+        assertEquals("search_by_price", response.getIntent());
+        assertEquals("Here are some phones under ₹30,000", response.getMessage());
+    }
+
     @Test
     void testChatEndpointWithEmptyMessage() throws Exception {
         ChatRequest request = new ChatRequest("");
@@ -58,6 +97,107 @@ class ChatControllerTest {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    void testClientErrorsDoNotShrinkConcurrencyLimit() throws Exception {
+        when(conversationService.processMessage(any(ChatRequest.class)))
+                .thenThrow(new IllegalArgumentException("Unknown catalog: mars"));
+        int limit = concurrencyLimiter.getLimit();
+
+        for (int i = 0; i < 5; i++) {
+            mockMvc.perform(post("/api/chat")
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new ChatRequest("Show me Samsung phones"))))
+                    .andExpect(status().isBadRequest());
+        }
+
+        assertEquals(limit, concurrencyLimiter.getLimit());
+        assertEquals(0, concurrencyLimiter.getInFlight());
+    }
+
+    @Test
+    void testTurnsOfRemoteConversationsAreForwarded() throws Exception {
+        ChatResponse forwarded = new ChatResponse();
+        forwarded.setMessage("Answered by the owner");
+        forwarded.setConversationId("remote-conv");
+        when(conversationRouter.forwardIfRemote(any(ChatRequest.class))).thenReturn(forwarded);
+        ChatRequest request = new ChatRequest("Show me Samsung phones");
+        request.setConversationId("remote-conv");
+
+        mockMvc.perform(post("/api/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.message").value("Answered by the owner"));
+
+        verify(conversationService, never()).processMessage(any(ChatRequest.class));
+    }
+
+    @Test
+    void testOwnerSheddingForwardedTurnAnswers503() throws Exception {
+        when(conversationRouter.forwardIfRemote(any(ChatRequest.class)))
+                .thenThrow(new ServiceOverloadedException("Too many concurrent requests, please retry shortly.", 3));
+        ChatRequest request = new ChatRequest("Show me Samsung phones");
+        request.setConversationId("remote-conv");
+
+        mockMvc.perform(post("/api/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "3"));
+    }
+
+    @Test
+    void testRetryWithIdempotencyKeyReplaysResponse() throws Exception {
+        ChatResponse mockResponse = new ChatResponse();
+        mockResponse.setMessage("Here are some Samsung phones");
+        mockResponse.setConversationId("retried-conv-id");
+        when(conversationService.processMessage(any(ChatRequest.class))).thenReturn(mockResponse);
+        String body = objectMapper.writeValueAsString(new ChatRequest("Show me Samsung phones"));
+
+        mockMvc.perform(post("/api/chat")
+                        .header(ChatController.IDEMPOTENCY_KEY_HEADER, "0f8c2a6e-5b1d-4f3a-9c7e-2d4b6a8e1f30")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(ChatController.REPLAYED_HEADER));
+        mockMvc.perform(post("/api/chat")
+                        .header(ChatController.IDEMPOTENCY_KEY_HEADER, "0f8c2a6e-5b1d-4f3a-9c7e-2d4b6a8e1f30")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk())
+                .andExpect(header().string(ChatController.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.conversationId").value("retried-conv-id"));
+
+        verify(conversationService, times(1)).processMessage(any(ChatRequest.class));
+    }
+
+    @Test
+    void testIdempotencyKeyCannotBeReusedForAnotherRequest() throws Exception {
+        when(conversationService.processMessage(any(ChatRequest.class))).thenReturn(new ChatResponse());
+
+        mockMvc.perform(post("/api/chat")
+                        .header(ChatController.IDEMPOTENCY_KEY_HEADER, "7d3e9b14-a2c6-4e85-b0f1-93c5d7e2a648")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ChatRequest("Show me Samsung phones"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(post("/api/chat")
+                        .header(ChatController.IDEMPOTENCY_KEY_HEADER, "7d3e9b14-a2c6-4e85-b0f1-93c5d7e2a648")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ChatRequest("Show me Pixel phones"))))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void testIdempotencyKeyMustBeUuid() throws Exception {
+        mockMvc.perform(post("/api/chat")
+                        .header(ChatController.IDEMPOTENCY_KEY_HEADER, "retry-1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new ChatRequest("Show me Samsung phones"))))
+                .andExpect(status().isBadRequest());
+
+        verify(conversationService, never()).processMessage(any(ChatRequest.class));
+    }
+
     @Test
     void testHealthEndpoint() throws Exception {
         mockMvc.perform(get("/api/chat/health"))
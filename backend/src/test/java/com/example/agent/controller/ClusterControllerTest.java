@@ -0,0 +1,162 @@
+package com.example.agent.controller;
+
+import com.example.agent.concurrency.AdaptiveConcurrencyLimiter;
+import com.example.agent.conversation.ClusteredConversationStore;
+import com.example.agent.conversation.ConversationRouter;
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.example.agent.service.ConversationService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ClusterController.class)
+@Import(AdaptiveConcurrencyLimiter.class)
+@TestPropertySource(properties = {
+        "conversation.store=clustered",
+        "chat.admission.initial-limit=2",
+        "chat.admission.min-limit=1"
+})
+class ClusterControllerTest {
+
+    private static final String SECRET = "s3cret";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter concurrencyLimiter;
+
+    @MockBean
+    private ConversationService conversationService;
+
+    @MockBean
+    private ClusteredConversationStore conversationStore;
+
+    @MockBean
+    private ConversationRouter conversationRouter;
+
+    @BeforeEach
+    void setUp() {
+        when(conversationStore.getSecret()).thenReturn(SECRET);
+        when(conversationStore.getSelfUrl()).thenReturn("http://node-a");
+        when(conversationStore.getMembers()).thenReturn(Set.of("http://node-a"));
+    }
+
+    @Test
+    void testRoutesRequireTheSecret() throws Exception {
+        mockMvc.perform(get("/internal/cluster/members"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/internal/cluster/members").header(ClusteredConversationStore.SECRET_HEADER, "guess"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(put("/internal/cluster/members")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"http://attacker\"]"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/internal/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(forwarded())))
+                .andExpect(status().isUnauthorized());
+
+        verify(conversationStore, never()).setConfiguredNodes(anyCollection());
+        verify(conversationService, never()).processMessage(any(ChatRequest.class));
+    }
+
+    @Test
+    void testRoutesAreClosedWithoutConfiguredSecret() throws Exception {
+        when(conversationStore.getSecret()).thenReturn("");
+
+        mockMvc.perform(get("/internal/cluster/members"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/internal/cluster/members").header(ClusteredConversationStore.SECRET_HEADER, ""))
+                .andExpect(status().isUnauthorized());
+    }
+
+    @Test
+    void testMembersWithSecret() throws Exception {
+        mockMvc.perform(get("/internal/cluster/members").header(ClusteredConversationStore.SECRET_HEADER, SECRET))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.self").value("http://node-a"));
+    }
+
+    @Test
+    void testPutMembersReplacesConfiguredNodes() throws Exception {
+        mockMvc.perform(put("/internal/cluster/members")
+                        .header(ClusteredConversationStore.SECRET_HEADER, SECRET)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"http://node-a\", \"http://node-b\"]"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.self").value("http://node-a"));
+
+        verify(conversationStore).setConfiguredNodes(List.of("http://node-a", "http://node-b"));
+        verify(conversationStore, never()).setMembers(anyCollection());
+    }
+
+    @Test
+    void testForwardedTurnIsProcessedHere() throws Exception {
+        ChatResponse response = new ChatResponse();
+        response.setConversationId("conv-1");
+        response.setMessage("Here are some Samsung phones");
+        when(conversationService.processMessage(any(ChatRequest.class))).thenReturn(response);
+
+        mockMvc.perform(post("/internal/chat")
+                        .header(ClusteredConversationStore.SECRET_HEADER, SECRET)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(forwarded())))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.conversationId").value("conv-1"));
+
+        assertEquals(0, concurrencyLimiter.getInFlight());
+    }
+
+    @Test
+    void testForwardedTurnsCountAgainstConcurrencyLimit() throws Exception {
+        List<AdaptiveConcurrencyLimiter.Permit> held = new ArrayList<>();
+        AdaptiveConcurrencyLimiter.Permit permit;
+        while ((permit = concurrencyLimiter.tryAcquire(true)) != null) {
+            held.add(permit);
+        }
+        try {
+            mockMvc.perform(post("/internal/chat")
+                            .header(ClusteredConversationStore.SECRET_HEADER, SECRET)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(forwarded())))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().exists("Retry-After"));
+            verify(conversationService, never()).processMessage(any(ChatRequest.class));
+        } finally {
+            held.forEach(AdaptiveConcurrencyLimiter.Permit::ignore);
+        }
+    }
+
+    private static ChatRequest forwarded() {
+        ChatRequest request = new ChatRequest("Show me Samsung phones");
+        request.setConversationId("conv-1");
+        return request;
+    }
+}
@@ -0,0 +1,134 @@
+package com.example.agent.controller;
+
+import com.example.agent.service.CatalogPageService;
+import com.example.agent.service.CatalogQueryCache;
+import com.example.agent.service.PhoneCatalogService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.io.ByteArrayInputStream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(PhoneController.class)
+@Import({CatalogPageService.class, CatalogQueryCache.class, PhoneCatalogService.class})
+class PhoneControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Test
+    void testCursorPagination() throws Exception {
+        MvcResult first = mockMvc.perform(get("/api/phones").param("limit", "3"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andExpect(jsonPath("$.phones.length()").value(3))
+                .andExpect(jsonPath("$.total").value(8))
+                .andReturn();
+        String cursor = objectMapper.readTree(first.getResponse().getContentAsByteArray()).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/phones").param("limit", "3").param("cursor", cursor))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.phones[0].name").value("Redmi Note 13 Pro"));
+    }
+
+    @Test
+    void testFilters() throws Exception {
+        mockMvc.perform(get("/api/phones").param("feature", "fast charging").param("minBattery", "5000"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+
+        mockMvc.perform(get("/api/phones").param("brand", "samsung"))
+                .andExpect(jsonPath("$.phones[0].name").value("Samsung Galaxy A54"));
+    }
+
+    @Test
+    void testConditionalRequestReturnsNotModified() throws Exception {
+        String etag = mockMvc.perform(get("/api/phones").param("brand", "Google"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/phones").param("brand", "Google").header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", etag));
+    }
+
+    @Test
+    void testGzipEncoding() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/phones").header("Accept-Encoding", "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn();
+
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+            JsonNode page = objectMapper.readTree(in);
+            assertEquals(8, page.get("total").asInt());
+        }
+    }
+
+    @Test
+    void testGzipBodyHasItsOwnEtag() throws Exception {
+        String identityEtag = mockMvc.perform(get("/api/phones").param("brand", "Google"))
+                .andReturn().getResponse().getHeader("ETag");
+        String gzipEtag = mockMvc.perform(get("/api/phones").param("brand", "Google").header("Accept-Encoding", "gzip"))
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andReturn().getResponse().getHeader("ETag");
+        assertNotEquals(identityEtag, gzipEtag);
+
+        mockMvc.perform(get("/api/phones").param("brand", "Google").header("Accept-Encoding", "gzip")
+                        .header("If-None-Match", gzipEtag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("ETag", gzipEtag));
+        mockMvc.perform(get("/api/phones").param("brand", "Google").header("Accept-Encoding", "gzip")
+                        .header("If-None-Match", identityEtag))
+                .andExpect(status().isOk());
+        // Weak comparison, as intermediaries may weaken the tag
+        mockMvc.perform(get("/api/phones").param("brand", "Google").header("If-None-Match", "W/" + identityEtag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    void testAcceptEncodingQualities() {
+        assertTrue(PhoneController.acceptsGzip("gzip, deflate"));
+        assertTrue(PhoneController.acceptsGzip("GZIP;q=0.5"));
+        assertTrue(PhoneController.acceptsGzip("br, *"));
+        assertFalse(PhoneController.acceptsGzip("gzip;q=0, deflate"));
+        assertFalse(PhoneController.acceptsGzip("*;q=0.5, gzip;q=0"));
+        assertFalse(PhoneController.acceptsGzip("identity"));
+        assertFalse(PhoneController.acceptsGzip(null));
+    }
+
+    @Test
+    void testNegotiatesCborPages() throws Exception {
+        String jsonEtag = mockMvc.perform(get("/api/phones").param("brand", "Google"))
+                .andReturn().getResponse().getHeader("ETag");
+        MvcResult result = mockMvc.perform(get("/api/phones").param("brand", "Google")
+                        .header("Accept", "application/cbor, application/json;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/cbor"))
+                .andReturn();
+
+        JsonNode page = new CBORMapper().readTree(result.getResponse().getContentAsByteArray());
+        assertEquals("Google", page.get("phones").get(0).get("brand").asText());
+        assertNotEquals(jsonEtag, result.getResponse().getHeader("ETag"));
+    }
+
+    @Test
+    void testInvalidCursorIsRejected() throws Exception {
+        mockMvc.perform(get("/api/phones").param("cursor", "not-a-cursor"))
+                .andExpect(status().isBadRequest());
+    }
+}
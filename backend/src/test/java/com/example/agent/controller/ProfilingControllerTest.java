@@ -0,0 +1,66 @@
+package com.example.agent.controller;
+
+import com.example.agent.profiling.FlightRecorderService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@WebMvcTest(ProfilingController.class)
+@TestPropertySource(properties = {
+        "profiling.admin.enabled=true",
+        "profiling.admin.token=s3cret"
+})
+class ProfilingControllerTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @MockBean
+    private FlightRecorderService flightRecorderService;
+
+    @Test
+    void testRequestsNeedTheToken() throws Exception {
+        mockMvc.perform(get("/admin/profiling"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/admin/profiling/start").header(ProfilingController.TOKEN_HEADER, "s3cre"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/admin/profiling/start").header(ProfilingController.TOKEN_HEADER, ""))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/admin/profiling/dump").header(ProfilingController.TOKEN_HEADER, "s3cret!"))
+                .andExpect(status().isUnauthorized());
+
+        verify(flightRecorderService, never()).start();
+        verify(flightRecorderService, never()).dump();
+    }
+
+    @Test
+    void testStatusWithToken() throws Exception {
+        when(flightRecorderService.status()).thenReturn(Map.of("state", "NONE"));
+
+        mockMvc.perform(get("/admin/profiling").header(ProfilingController.TOKEN_HEADER, "s3cret"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("NONE"));
+    }
+
+    @Test
+    void testStartupFailsWithoutToken() {
+        ProfilingController controller = new ProfilingController();
+        ReflectionTestUtils.setField(controller, "token", "");
+
+        assertThrows(IllegalStateException.class, controller::init);
+    }
+}
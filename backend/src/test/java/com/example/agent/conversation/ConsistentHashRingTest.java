@@ -0,0 +1,48 @@
+package com.example.agent.conversation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    @Test
+    void testKeysSpreadAcrossNodes() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("http://a", "http://b", "http://c"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 3000; i++) {
+            counts.merge(ring.ownerOf(UUID.randomUUID().toString()), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        counts.values().forEach(count -> assertTrue(count > 600, "unbalanced: " + counts));
+    }
+
+    @Test
+    void testAddingNodeOnlyMovesItsShare() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("http://a", "http://b", "http://c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("http://a", "http://b", "http://c", "http://d"), 128);
+
+        int moved = 0;
+        for (int i = 0; i < 2000; i++) {
+            String key = "conversation-" + i;
+            String oldOwner = before.ownerOf(key);
+            String newOwner = after.ownerOf(key);
+            if (!oldOwner.equals(newOwner)) {
+                assertEquals("http://d", newOwner);
+                moved++;
+            }
+        }
+        assertTrue(moved > 200 && moved < 900, "moved " + moved);
+    }
+
+    @Test
+    void testEmptyRingHasNoOwner() {
+        assertNull(new ConsistentHashRing(List.of(), 16).ownerOf("x"));
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.agent.llm;
+
+import com.theokanning.openai.completion.chat.ChatMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HedgingLlmClientTest {
+
+    private static final List<ChatMessage> MESSAGES = List.of(new ChatMessage("user", "Best camera phone"));
+
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(4);
+
+    @AfterEach
+    void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    void testHedgesSlowPrimaryAndCancelsIt() {
+        HedgingLlmClient client = new HedgingLlmClient(95, 20, 50, 10, 0.1, 64);
+        FakeEndpoint primary = new FakeEndpoint("primary", 5_000, "slow");
+        FakeEndpoint backup = new FakeEndpoint("backup", 10, "fast");
+
+        HedgingLlmClient.Reply reply = client.complete(primary, backup, "gpt", MESSAGES, 0.7, 100);
+
+        assertEquals("fast", reply.getText());
+        assertEquals("backup", reply.getEndpoint());
+        assertTrue(reply.isHedged());
+        assertTrue(primary.lastCall.isCancelled());
+        // The cancelled primary still counts, as at least as slow as it was when cancelled
+        assertEquals(1, client.latency(primary, "complete").size());
+    }
+
+    @Test
+    void testFastPrimaryIsNotHedged() {
+        HedgingLlmClient client = new HedgingLlmClient(95, 20, 1_000, 10, 0.1, 64);
+        FakeEndpoint primary = new FakeEndpoint("primary", 10, "fast");
+        FakeEndpoint backup = new FakeEndpoint("backup", 10, "backup");
+
+        HedgingLlmClient.Reply reply = client.complete(primary, backup, "gpt", MESSAGES, 0.7, 100);
+
+        assertEquals("fast", reply.getText());
+        assertFalse(reply.isHedged());
+        assertEquals(0, backup.calls);
+    }
+
+    @Test
+    void testHedgesAreLimitedByBudgetButFailoversAreNot() {
+        HedgingLlmClient client = new HedgingLlmClient(95, 20, 20, 10, 0.0, 64);
+        FakeEndpoint slow = new FakeEndpoint("primary", 200, "slow");
+        FakeEndpoint backup = new FakeEndpoint("backup", 10, "backup");
+
+        // The first hedge is free, after which a zero ratio earns no more
+        assertTrue(client.complete(slow, backup, "gpt", MESSAGES, 0.7, 100).isHedged());
+        HedgingLlmClient.Reply waited = client.complete(slow, backup, "gpt", MESSAGES, 0.7, 100);
+        assertEquals("slow", waited.getText());
+        assertFalse(waited.isHedged());
+
+        FakeEndpoint failing = new FakeEndpoint("primary", 0, null);
+        HedgingLlmClient.Reply failedOver = client.complete(failing, backup, "gpt", MESSAGES, 0.7, 100);
+        assertEquals("backup", failedOver.getText());
+        assertTrue(failedOver.isHedged());
+    }
+
+    @Test
+    void testPrimaryFailingAfterHedgeDelayFailsOverWithoutBudget() {
+        HedgingLlmClient client = new HedgingLlmClient(95, 20, 20, 10, 0.0, 64);
+        FakeEndpoint backup = new FakeEndpoint("backup", 10, "backup");
+        // Spends the only hedge credit
+        assertTrue(client.complete(new FakeEndpoint("primary", 200, "slow"), backup, "gpt", MESSAGES, 0.7, 100).isHedged());
+
+        FakeEndpoint failingLate = new FakeEndpoint("primary", 200, null);
+        HedgingLlmClient.Reply failedOver = client.complete(failingLate, backup, "gpt", MESSAGES, 0.7, 100);
+
+        assertEquals("backup", failedOver.getText());
+        assertEquals("backup", failedOver.getEndpoint());
+        assertTrue(failedOver.isHedged());
+        assertEquals(2, backup.calls);
+    }
+
+    @Test
+    void testPropagatesErrorWhenEveryEndpointFails() {
+        HedgingLlmClient client = new HedgingLlmClient(95, 20, 20, 10, 0.1, 64);
+        FakeEndpoint primary = new FakeEndpoint("primary", 0, null);
+        FakeEndpoint backup = new FakeEndpoint("backup", 0, null);
+
+        RuntimeException error = assertThrows(RuntimeException.class,
+                () -> client.complete(primary, backup, "gpt", MESSAGES, 0.7, 100));
+        assertEquals("primary failed", error.getMessage());
+    }
+
+    @Test
+    void testStreamDeliversOnlyTheWinnersDeltas() {
+        HedgingLlmClient client = new HedgingLlmClient(95, 20, 50, 10, 0.1, 64);
+        FakeEndpoint primary = new FakeEndpoint("primary", 5_000, "slow");
+        FakeEndpoint backup = new FakeEndpoint("backup", 10, "fast");
+        List<String> deltas = new CopyOnWriteArrayList<>();
+
+        HedgingLlmClient.Reply reply = client.stream(primary, backup, "gpt", MESSAGES, 0.7, 100, deltas::add);
+
+        assertEquals("fast", reply.getText());
+        assertEquals(List.of("fa", "st"), deltas);
+        assertTrue(primary.lastCall.isCancelled());
+    }
+
+    @Test
+    void testHedgeDelayFollowsObservedPercentile() {
+        HedgingLlmClient client = new HedgingLlmClient(90, 10, 3_000, 100, 0.1, 64);
+        LatencyTracker tracker = new LatencyTracker(64);
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(3_000), client.hedgeDelayNanos(tracker));
+
+        for (int i = 1; i <= 10; i++) {
+            tracker.record(TimeUnit.MILLISECONDS.toNanos(i * 100L));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(900), client.hedgeDelayNanos(tracker));
+
+        LatencyTracker fast = new LatencyTracker(64);
+        for (int i = 0; i < 10; i++) {
+            fast.record(TimeUnit.MILLISECONDS.toNanos(5));
+        }
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(100), client.hedgeDelayNanos(fast));
+    }
+
+    /**
+     * Answers after a delay, streaming the reply in two deltas, or fails when it has none.
+     */
+    private final class FakeEndpoint implements LlmEndpoint {
+        private final String name;
+        private final long delayMillis;
+        private final String reply;
+        private volatile int calls;
+        private volatile CompletableFuture<String> lastCall;
+
+        private FakeEndpoint(String name, long delayMillis, String reply) {
+            this.name = name;
+            this.delayMillis = delayMillis;
+            this.reply = reply;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public CompletableFuture<String> complete(String model, List<ChatMessage> messages, double temperature, int maxTokens) {
+            return stream(model, messages, temperature, maxTokens, null);
+        }
+
+        @Override
+        public CompletableFuture<String> stream(String model, List<ChatMessage> messages, double temperature, int maxTokens,
+                                                Consumer<String> onDelta) {
+            calls++;
+            CompletableFuture<String> future = new CompletableFuture<>();
+            lastCall = future;
+            scheduler.schedule(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                if (reply == null) {
+                    future.completeExceptionally(new IllegalStateException(name + " failed"));
+                    return;
+                }
+                if (onDelta != null) {
+                    int half = reply.length() / 2;
+                    onDelta.accept(reply.substring(0, half));
+                    onDelta.accept(reply.substring(half));
+                }
+                future.complete(reply);
+            }, delayMillis, TimeUnit.MILLISECONDS);
+            return future;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.agent.llm;
+
+import com.example.agent.traffic.TrafficReplay;
+import com.sun.net.httpserver.HttpServer;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAiEndpointTest {
+
+    private static final List<ChatMessage> MESSAGES = List.of(new ChatMessage("user", "Best camera phone"));
+
+    private HttpServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    @Test
+    void testCompletionsQueueOnTheSharedDispatcher() throws Exception {
+        server = TrafficReplay.startStub(0, 300);
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(1);
+        OpenAiEndpoint endpoint = new OpenAiEndpoint("primary", url(), "", null,
+                new OkHttpClient.Builder().dispatcher(dispatcher).build());
+
+        CompletableFuture<String> first = endpoint.complete("gpt", MESSAGES, 0.7, 100);
+        CompletableFuture<String> second = endpoint.complete("gpt", MESSAGES, 0.7, 100);
+        for (int i = 0; i < 100 && dispatcher.runningCallsCount() + dispatcher.queuedCallsCount() < 2; i++) {
+            Thread.sleep(10);
+        }
+
+        assertEquals(1, dispatcher.runningCallsCount());
+        assertEquals(1, dispatcher.queuedCallsCount());
+        assertEquals(TrafficReplay.STUB_REPLY, first.get(5, TimeUnit.SECONDS));
+        assertEquals(TrafficReplay.STUB_REPLY, second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void testSendsOnlyItsOwnKey() throws Exception {
+        List<String> authorizations = new CopyOnWriteArrayList<>();
+        server = HttpServer.create(new InetSocketAddress(0), 0);
+        server.createContext("/v1/chat/completions", exchange -> {
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                authorizations.add(String.valueOf(exchange.getRequestHeaders().getFirst("Authorization")));
+                byte[] body = ("{\"id\":\"1\",\"object\":\"chat.completion\",\"created\":0,\"model\":\"gpt\",\"choices\":"
+                        + "[{\"index\":0,\"message\":{\"role\":\"assistant\",\"content\":\"ok\"},\"finish_reason\":\"stop\"}]}")
+                        .getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        server.start();
+        OkHttpClient pool = new OkHttpClient();
+
+        assertEquals("ok", new OpenAiEndpoint("backup", url(), "backup-key", null, pool)
+                .complete("gpt", MESSAGES, 0.7, 100).get(5, TimeUnit.SECONDS));
+        assertEquals("ok", new OpenAiEndpoint("backup", url(), "", null, pool)
+                .complete("gpt", MESSAGES, 0.7, 100).get(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("Bearer backup-key", "null"), authorizations);
+    }
+
+    private String url() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+}
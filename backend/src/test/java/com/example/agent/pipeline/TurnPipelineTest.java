@@ -0,0 +1,277 @@
+package com.example.agent.pipeline;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TurnPipelineTest {
+
+    private static final PipelineKey<String> INPUT = PipelineKey.of("input");
+    private static final PipelineKey<String> A = PipelineKey.of("a");
+    private static final PipelineKey<String> B = PipelineKey.of("b");
+    private static final PipelineKey<String> C = PipelineKey.of("c");
+    private static final PipelineKey<List<String>> FOUND = PipelineKey.collecting("found");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    void testIndependentBlockingStagesRunConcurrently() {
+        // Each stage waits for the other to start, which only works if they overlap
+        CountDownLatch bothStarted = new CountDownLatch(2);
+        Stage.Body awaitOther = (turn, out) -> {
+            bothStarted.countDown();
+            assertTrue(bothStarted.await(5, TimeUnit.SECONDS));
+        };
+        TurnPipeline pipeline = pipeline(List.of(
+                Stage.builder("first").inputs(INPUT).outputs(A).blocking()
+                        .run((turn, out) -> {
+                            awaitOther.apply(turn, out);
+                            out.put(A, "a");
+                        }).build(),
+                Stage.builder("second").inputs(INPUT).outputs(B).blocking()
+                        .run((turn, out) -> {
+                            awaitOther.apply(turn, out);
+                            out.put(B, "b");
+                        }).build(),
+                Stage.builder("join").inputs(A, B).outputs(C)
+                        .run((turn, out) -> out.put(C, turn.get(A) + turn.get(B))).build()));
+
+        TurnContext turn = new TurnContext().with(INPUT, "x");
+        pipeline.run(turn);
+
+        assertEquals("ab", turn.get(C));
+    }
+
+    @Test
+    void testSkippedStageUsesFallbackAndDependentsStillRun() {
+        TurnPipeline pipeline = pipeline(List.of(
+                Stage.builder("optional").inputs(INPUT).outputs(A)
+                        .when(turn -> !"skip".equals(turn.get(INPUT)))
+                        .run((turn, out) -> out.put(A, "computed"))
+                        .fallback((turn, out) -> out.put(A, "default"))
+                        .build(),
+                Stage.builder("after").inputs(A).outputs(B)
+                        .run((turn, out) -> out.put(B, turn.get(A) + "!")).build()));
+
+        TurnContext turn = new TurnContext().with(INPUT, "skip");
+        pipeline.run(turn);
+
+        assertEquals("default!", turn.get(B));
+        assertEquals(StageOutcome.SKIPPED, turn.getOutcome("optional"));
+        assertEquals(StageOutcome.COMPLETED, turn.getOutcome("after"));
+    }
+
+    @Test
+    void testTimedOutStageIsReplacedByItsFallback() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        TurnPipeline pipeline = pipeline(List.of(
+                Stage.builder("slow").inputs(INPUT).outputs(A).timeoutMs(50)
+                        .run((turn, out) -> {
+                            release.await(5, TimeUnit.SECONDS);
+                            out.put(A, "late");
+                        })
+                        .fallback((turn, out) -> out.put(A, "fallback"))
+                        .build()));
+
+        TurnContext turn = new TurnContext().with(INPUT, "x");
+        long start = System.nanoTime();
+        pipeline.run(turn);
+
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 2000);
+        assertEquals("fallback", turn.get(A));
+        assertEquals(StageOutcome.TIMED_OUT, turn.getOutcome("slow"));
+        release.countDown();
+    }
+
+    @Test
+    void testClaimedStageOutlivesItsTimeout() {
+        TurnPipeline pipeline = pipeline(List.of(
+                Stage.builder("claiming").inputs(INPUT).outputs(A).timeoutMs(50)
+                        .run((turn, out) -> {
+                            assertTrue(out.claim());
+                            Thread.sleep(200);
+                            out.put(A, "claimed");
+                        })
+                        .fallback((turn, out) -> out.put(A, "fallback"))
+                        .build()));
+
+        TurnContext turn = new TurnContext().with(INPUT, "x");
+        pipeline.run(turn);
+
+        assertEquals("claimed", turn.get(A));
+        assertEquals(StageOutcome.COMPLETED, turn.getOutcome("claiming"));
+    }
+
+    @Test
+    void testTimedOutStageCannotClaim() throws Exception {
+        AtomicBoolean claimed = new AtomicBoolean(true);
+        CountDownLatch done = new CountDownLatch(1);
+        TurnPipeline pipeline = pipeline(List.of(
+                Stage.builder("slow").inputs(INPUT).outputs(A).timeoutMs(50)
+                        .run((turn, out) -> {
+                            try {
+                                Thread.sleep(5000);
+                            } catch (InterruptedException e) {
+                                // Cancelled on timeout; a real stage would now try to finish its work
+                            }
+                            claimed.set(out.claim());
+                            done.countDown();
+                        })
+                        .fallback((turn, out) -> out.put(A, "fallback"))
+                        .build()));
+
+        TurnContext turn = new TurnContext().with(INPUT, "x");
+        pipeline.run(turn);
+
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertFalse(claimed.get());
+        assertEquals("fallback", turn.get(A));
+        assertEquals(StageOutcome.TIMED_OUT, turn.getOutcome("slow"));
+    }
+
+    @Test
+    void testStagesOffTheWorkerPathRunWhileWorkerStageIsInFlight() {
+        CountDownLatch workerStarted = new CountDownLatch(1);
+        TurnPipeline pipeline = pipeline(List.of(
+                // Declared first, yet it waits until the worker stage and its producer have started
+                Stage.builder("side").inputs(INPUT).outputs(B)
+                        .run((turn, out) -> out.put(B, workerStarted.await(5, TimeUnit.SECONDS) ? "overlapped" : "serial"))
+                        .build(),
+                Stage.builder("prepare").inputs(INPUT).outputs(A)
+                        .run((turn, out) -> out.put(A, "a")).build(),
+                Stage.builder("call").inputs(A).outputs(C).blocking()
+                        .run((turn, out) -> {
+                            workerStarted.countDown();
+                            out.put(C, "c");
+                        }).build()));
+
+        TurnContext turn = new TurnContext().with(INPUT, "x");
+        pipeline.run(turn);
+
+        assertEquals("overlapped", turn.get(B));
+        assertEquals("c", turn.get(C));
+    }
+
+    @Test
+    void testTimeoutCountsFromWhenStageStarts() {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            TurnPipeline pipeline = pipeline(List.of(
+                    Stage.builder("busy").inputs(INPUT).outputs(A).blocking()
+                            .run((turn, out) -> {
+                                Thread.sleep(300);
+                                out.put(A, "a");
+                            }).build(),
+                    // Queued behind "busy" for longer than its timeout, but quick once running
+                    Stage.builder("queued").inputs(INPUT).outputs(B).timeoutMs(200)
+                            .run((turn, out) -> out.put(B, "b"))
+                            .fallback((turn, out) -> out.put(B, "fallback"))
+                            .build()), single);
+
+            TurnContext turn = new TurnContext().with(INPUT, "x");
+            pipeline.run(turn);
+
+            assertEquals("b", turn.get(B));
+            assertEquals(StageOutcome.COMPLETED, turn.getOutcome("queued"));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test
+    void testStageFallsBackWhenNoWorkerIsFree() throws Exception {
+        ExecutorService bounded = new ThreadPoolExecutor(0, 1, 60, TimeUnit.SECONDS, new SynchronousQueue<>());
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            bounded.execute(() -> {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            TurnPipeline pipeline = pipeline(List.of(
+                    Stage.builder("call").inputs(INPUT).outputs(A).blocking()
+                            .run((turn, out) -> out.put(A, "model"))
+                            .fallback((turn, out) -> out.put(A, "fallback"))
+                            .build()), bounded);
+
+            TurnContext turn = new TurnContext().with(INPUT, "x");
+            pipeline.run(turn);
+
+            assertEquals("fallback", turn.get(A));
+            assertEquals(StageOutcome.REJECTED, turn.getOutcome("call"));
+        } finally {
+            release.countDown();
+            bounded.shutdownNow();
+        }
+    }
+
+    @Test
+    void testCollectingKeyMergesContributionsInStageOrder() {
+        TurnPipeline pipeline = pipeline(List.of(
+                Stage.builder("merge").inputs(FOUND).outputs(C)
+                        .run((turn, out) -> out.put(C, String.join(",", turn.get(FOUND)))).build(),
+                Stage.builder("slow-source").inputs(INPUT).outputs(FOUND).blocking()
+                        .run((turn, out) -> {
+                            Thread.sleep(50);
+                            out.put(FOUND, List.of("x", "y"));
+                        }).build(),
+                Stage.builder("fast-source").inputs(INPUT).outputs(FOUND)
+                        .run((turn, out) -> out.put(FOUND, List.of("z"))).build()));
+
+        TurnContext turn = new TurnContext().with(INPUT, "x");
+        pipeline.run(turn);
+
+        assertEquals("x,y,z", turn.get(C));
+    }
+
+    @Test
+    void testStageFailurePropagates() {
+        TurnPipeline pipeline = pipeline(List.of(
+                Stage.builder("broken").inputs(INPUT).outputs(A).blocking()
+                        .run((turn, out) -> {
+                            throw new IllegalStateException("boom");
+                        }).build()));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> pipeline.run(new TurnContext().with(INPUT, "x")));
+        assertEquals("boom", e.getMessage());
+    }
+
+    @Test
+    void testRejectsInvalidGraphs() {
+        assertThrows(IllegalArgumentException.class, () -> pipeline(List.of(
+                Stage.builder("orphan").inputs(B).outputs(A).run((turn, out) -> { }).build())));
+        assertThrows(IllegalArgumentException.class, () -> pipeline(List.of(
+                Stage.builder("one").inputs(INPUT).outputs(A).run((turn, out) -> { }).build(),
+                Stage.builder("two").inputs(INPUT).outputs(A).run((turn, out) -> { }).build())));
+        assertThrows(IllegalArgumentException.class, () -> pipeline(List.of(
+                Stage.builder("ping").inputs(B).outputs(A).run((turn, out) -> { }).build(),
+                Stage.builder("pong").inputs(A).outputs(B).run((turn, out) -> { }).build())));
+    }
+
+    private TurnPipeline pipeline(List<PipelineStage> stages) {
+        return pipeline(stages, executor);
+    }
+
+    private static TurnPipeline pipeline(List<PipelineStage> stages, ExecutorService executor) {
+        return new TurnPipeline(stages, Set.of(INPUT), stage -> true, PipelineStage::getTimeoutMs, executor, null);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.agent.profiling;
+
+import com.example.agent.controller.ProfilingController;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@TestPropertySource(properties = {
+        "openai.api.key=",
+        "warmup.enabled=false",
+        "profiling.admin.enabled=true",
+        "profiling.admin.token=secret"
+})
+class FlightRecorderServiceTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private FlightRecorderService flightRecorderService;
+
+    @AfterEach
+    void closeRecording() {
+        flightRecorderService.close();
+    }
+
+    @Test
+    void testAdminEndpointNeedsToken() throws Exception {
+        mockMvc.perform(post("/admin/profiling/start"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/admin/profiling").header(ProfilingController.TOKEN_HEADER, "secret"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("NONE"));
+        mockMvc.perform(get("/admin/profiling/dump").header(ProfilingController.TOKEN_HEADER, "secret"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    void testRecordingCapturesTurnEvents() throws Exception {
+        mockMvc.perform(post("/admin/profiling/start").header(ProfilingController.TOKEN_HEADER, "secret"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("RUNNING"));
+        mockMvc.perform(post("/admin/profiling/start").header(ProfilingController.TOKEN_HEADER, "secret"))
+                .andExpect(status().isConflict());
+
+        mockMvc.perform(post("/api/chat")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"message\":\"Show me Samsung phones\"}"))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(post("/admin/profiling/stop").header(ProfilingController.TOKEN_HEADER, "secret"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("STOPPED"));
+        MvcResult dump = mockMvc.perform(get("/admin/profiling/dump").header(ProfilingController.TOKEN_HEADER, "secret"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        byte[] recording = mockMvc.perform(asyncDispatch(dump))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsByteArray();
+
+        Path file = Files.createTempFile("recording-test-", ".jfr");
+        List<RecordedEvent> events;
+        try {
+            Files.write(file, recording);
+            events = RecordingFile.readAllEvents(file);
+        } finally {
+            Files.deleteIfExists(file);
+        }
+
+        RecordedEvent turn = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.example.agent.ChatTurn"))
+                .findFirst().orElseThrow();
+        assertEquals("search_by_brand", turn.getString("intent"));
+        assertEquals("template", turn.getString("tier"));
+        assertEquals("route:model_unavailable", turn.getString("fallbackReason"));
+        assertTrue(turn.getInt("relevantPhones") > 0);
+
+        long turnId = turn.getLong("turnId");
+        Set<String> stages = events.stream()
+                .filter(event -> event.getEventType().getName().equals("com.example.agent.TurnStage"))
+                .filter(event -> event.getLong("turnId") == turnId)
+                .map(event -> event.getString("stage"))
+                .collect(Collectors.toSet());
+        assertTrue(stages.containsAll(Set.of("safety", "intent", "retrieval", "prompt", "generation")), stages.toString());
+
+        assertTrue(events.stream().anyMatch(event -> event.getEventType().getName().equals("com.example.agent.Serialization")
+                && "ChatResponse".equals(event.getString("type"))));
+
+        // These would carry API keys and tokens off the node
+        assertTrue(events.stream().noneMatch(event -> Set.of("jdk.InitialEnvironmentVariable", "jdk.InitialSystemProperty",
+                "jdk.JVMInformation").contains(event.getEventType().getName())));
+    }
+}
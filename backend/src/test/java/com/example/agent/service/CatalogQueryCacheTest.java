@@ -0,0 +1,82 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.model.Phone;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogQueryCacheTest {
+
+    private final Catalog catalog = new Catalog("v1", List.of(
+            new Phone("Pixel 8a", "Google", 32999, "64MP", "4385mAh", List.of("OIS")),
+            new Phone("Galaxy A54", "Samsung", 27999, "50MP", "5000mAh", List.of("AMOLED")),
+            new Phone("OnePlus 12R", "OnePlus", 29999, "50MP", "5500mAh", List.of("fast charging"))));
+
+    @Test
+    void testHitsReturnTheSameUnmodifiableList() {
+        CatalogQueryCache cache = new CatalogQueryCache(100);
+        AtomicInteger computed = new AtomicInteger();
+
+        List<Phone> first = cache.get(catalog, "all", current -> {
+            computed.incrementAndGet();
+            return new ArrayList<>(current.getPhones());
+        });
+        List<Phone> second = cache.get(catalog, "all", current -> {
+            computed.incrementAndGet();
+            return new ArrayList<>(current.getPhones());
+        });
+
+        assertSame(first, second);
+        assertEquals(1, computed.get());
+        assertThrows(UnsupportedOperationException.class, () -> first.add(first.get(0)));
+    }
+
+    @Test
+    void testNewCatalogInstanceMisses() {
+        CatalogQueryCache cache = new CatalogQueryCache(100);
+        Catalog reloaded = new Catalog("v1", catalog.getPhones());
+
+        List<Phone> before = cache.get(catalog, "all", Catalog::getPhones);
+        List<Phone> after = cache.get(reloaded, "all", current -> new ArrayList<>(current.getPhones()));
+
+        assertNotSame(before, after);
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void testEvictsLeastRecentlyUsedByWeight() {
+        // Room for a three-phone result and a one-phone result, weighing 4 and 2
+        CatalogQueryCache cache = new CatalogQueryCache(6);
+        cache.get(catalog, "all", Catalog::getPhones);
+        cache.get(catalog, "pixel", current -> current.getPhones().subList(0, 1));
+        assertEquals(6, cache.weight());
+
+        cache.get(catalog, "all", Catalog::getPhones);
+        cache.get(catalog, "galaxy", current -> current.getPhones().subList(1, 2));
+
+        // "pixel" was used least recently
+        assertEquals(2, cache.size());
+        assertEquals(6, cache.weight());
+        AtomicInteger computed = new AtomicInteger();
+        cache.get(catalog, "all", current -> {
+            computed.incrementAndGet();
+            return current.getPhones();
+        });
+        assertEquals(0, computed.get());
+    }
+
+    @Test
+    void testResultsHeavierThanTheLimitAreNotCached() {
+        CatalogQueryCache cache = new CatalogQueryCache(3);
+
+        cache.get(catalog, "all", Catalog::getPhones);
+
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+}
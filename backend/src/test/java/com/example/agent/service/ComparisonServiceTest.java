@@ -0,0 +1,80 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.model.Phone;
+import com.example.agent.model.PhoneComparison;
+import com.example.agent.model.SpecComparison;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ComparisonServiceTest {
+
+    private final ComparisonService comparisonService = new ComparisonService();
+
+    private final Catalog catalog = new Catalog("v1", List.of(
+            phone("oneplus-12r", "OnePlus 12R", 29999, "50MP", "5500mAh", "fast charging", "AMOLED"),
+            phone("pixel-8a", "Pixel 8a", 32999, "64MP", "4385mAh", "OIS", "AMOLED"),
+            phone("galaxy-a54", "Galaxy A54", 27999, "50MP", "5000mAh", "AMOLED", "water resistant")));
+
+    @Test
+    void testComputesDeltasWinnersAndUniqueFeatures() {
+        PhoneComparison comparison = comparisonService.compare(catalog, List.of(phone(1), phone(0)));
+
+        // Catalog order, regardless of the order asked for
+        assertEquals(List.of("oneplus-12r", "pixel-8a"), comparison.getPhoneIds());
+        SpecComparison price = spec(comparison, "price");
+        assertEquals(List.of(29999.0, 32999.0), price.getValues());
+        assertEquals(3000.0, price.getDelta());
+        assertEquals("oneplus-12r", price.getWinnerId());
+        assertEquals("pixel-8a", spec(comparison, "camera").getWinnerId());
+        assertEquals("oneplus-12r", spec(comparison, "battery").getWinnerId());
+        assertEquals(List.of("AMOLED"), comparison.getCommonFeatures());
+        assertEquals(List.of("fast charging"), comparison.getUniqueFeatures().get("oneplus-12r"));
+        assertEquals(List.of("OIS"), comparison.getUniqueFeatures().get("pixel-8a"));
+    }
+
+    @Test
+    void testTiesHaveNoWinner() {
+        PhoneComparison comparison = comparisonService.compare(catalog, List.of(phone(0), phone(2)));
+
+        assertEquals(0.0, spec(comparison, "camera").getDelta());
+        assertNull(spec(comparison, "camera").getWinnerId());
+        assertEquals("galaxy-a54", spec(comparison, "price").getWinnerId());
+    }
+
+    @Test
+    void testCachesPerSetOfPhones() {
+        PhoneComparison first = comparisonService.compare(catalog, List.of(phone(0), phone(1), phone(2)));
+        PhoneComparison second = comparisonService.compare(catalog, List.of(phone(2), phone(1), phone(0)));
+
+        assertSame(first, second);
+        assertNotSame(first, comparisonService.compare(new Catalog("v2", catalog.getPhones()), catalog.getPhones()));
+        assertNull(comparisonService.compare(catalog, List.of(phone(0))));
+    }
+
+    @Test
+    void testPromptFormIsCompact() {
+        String prompt = ComparisonService.toPrompt(comparisonService.compare(catalog, List.of(phone(0), phone(1))));
+
+        assertTrue(prompt.contains("price ₹: 29999 | 32999 (diff 3000, best OnePlus 12R)"), prompt);
+        assertTrue(prompt.contains("only Pixel 8a: OIS"), prompt);
+    }
+
+    private Phone phone(int ordinal) {
+        return catalog.getPhones().get(ordinal);
+    }
+
+    private static SpecComparison spec(PhoneComparison comparison, String name) {
+        return comparison.getSpecs().stream().filter(s -> s.getSpec().equals(name)).findFirst().orElseThrow();
+    }
+
+    private static Phone phone(String id, String name, int price, String camera, String battery, String... features) {
+        Phone phone = new Phone(name, name.split(" ")[0], price, camera, battery, Arrays.asList(features));
+        phone.setId(id);
+        return phone;
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.agent.service;
 
+import com.example.agent.catalog.Spec;
 import com.example.agent.model.ChatRequest;
 import com.example.agent.model.ChatResponse;
 import org.junit.jupiter.api.Test;
@@ -7,6 +8,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.test.context.TestPropertySource;
 
+import java.util.List;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 @SpringBootTest
@@ -69,5 +72,113 @@ class ConversationServiceTest {
         assertNotNull(response);
         assertTrue(response.getSafetyResult().isSafe());
     }
-}
 
+    @Test
+    void testProcessMessageWithSpecRangeQuery() {
+        ChatRequest request = new ChatRequest("Show phones with battery over 5000");
+        ChatResponse response = conversationService.processMessage(request);
+
+        assertNotNull(response);
+        assertEquals("search_by_spec", response.getIntent());
+        assertTrue(response.getMessage().contains("OnePlus 12R"));
+        assertTrue(response.getMessage().contains("Redmi Note 13 Pro"));
+        assertFalse(response.getMessage().contains("Samsung Galaxy A54"));
+    }
+
+    @Test
+    void testProcessMessageWithRamAndBudget() {
+        ChatRequest request = new ChatRequest("Phones under 40000 with at least 12GB RAM");
+        ChatResponse response = conversationService.processMessage(request);
+
+        assertEquals("search_by_spec", response.getIntent());
+        assertTrue(response.getMessage().contains("Vivo V29"));
+        assertFalse(response.getMessage().contains("Pixel 8a"));
+    }
+
+    @Test
+    void testCompactModeReferencesPhonesById() {
+        ChatRequest request = new ChatRequest("Compare OnePlus 12R and Pixel 8a");
+        request.setCompact(true);
+        ChatResponse response = conversationService.processMessage(request);
+
+        assertNull(response.getComparisonPhones());
+        assertEquals(List.of("oneplus-12r", "pixel-8a"), response.getComparisonPhoneIds());
+        assertEquals(2, response.getPhones().size());
+
+        ChatRequest followUp = new ChatRequest("Compare OnePlus 12R and Pixel 8a");
+        followUp.setCompact(true);
+        followUp.setConversationId(response.getConversationId());
+        followUp.setCatalogVersion(response.getCatalogVersion());
+        followUp.setCachedPhoneIds(List.of("oneplus-12r", "pixel-8a"));
+        ChatResponse followUpResponse = conversationService.processMessage(followUp);
+
+        assertEquals(List.of("oneplus-12r", "pixel-8a"), followUpResponse.getComparisonPhoneIds());
+        assertTrue(followUpResponse.getPhones().isEmpty());
+    }
+
+    @Test
+    void testCompactModeIgnoresCacheFromOtherCatalogVersion() {
+        ChatRequest request = new ChatRequest("Recommend a good phone");
+        request.setCompact(true);
+        request.setCatalogVersion("outdated");
+        request.setCachedPhoneIds(List.of("oneplus-12r"));
+        ChatResponse response = conversationService.processMessage(request);
+
+        assertNotNull(response.getRecommendations());
+        assertTrue(response.getRecommendations().stream().allMatch(r -> r.getPhone() == null && r.getPhoneId() != null));
+        assertEquals(response.getRecommendations().size(), response.getPhones().size());
+    }
+
+    @Test
+    void testFollowUpRefinesPreviousResults() {
+        ChatResponse first = conversationService.processMessage(new ChatRequest("Show me phones under 30000"));
+        assertEquals(30000, first.getSlots().getMaxPrice());
+        assertTrue(first.getSlots().getResultPhoneIds().contains("oneplus-12r"));
+
+        ChatRequest cheaper = new ChatRequest("Any cheaper ones?");
+        cheaper.setConversationId(first.getConversationId());
+        ChatResponse second = conversationService.processMessage(cheaper);
+        assertEquals(29998, second.getSlots().getMaxPrice());
+        assertFalse(second.getSlots().getResultPhoneIds().contains("oneplus-12r"));
+        assertTrue(second.getSlots().getResultPhoneIds().contains("samsung-galaxy-a54"));
+
+        ChatRequest brand = new ChatRequest("What about Samsung?");
+        brand.setConversationId(first.getConversationId());
+        ChatResponse third = conversationService.processMessage(brand);
+        assertEquals(List.of("samsung"), third.getSlots().getBrands());
+        assertEquals(List.of("samsung-galaxy-a54"), third.getSlots().getResultPhoneIds());
+
+        ChatRequest reset = new ChatRequest("Start over and show me all phones");
+        reset.setConversationId(first.getConversationId());
+        assertNull(conversationService.processMessage(reset).getSlots());
+    }
+
+    @Test
+    void testSpecFollowUpsRefineByRange() {
+        ChatResponse first = conversationService.processMessage(new ChatRequest("Show me phones under 30000"));
+
+        ChatRequest ram = new ChatRequest("Which of these have at least 8GB RAM?");
+        ram.setConversationId(first.getConversationId());
+        ChatResponse second = conversationService.processMessage(ram);
+        assertEquals(8.0, second.getSlots().getSpecMinimums().get(Spec.RAM_GB));
+        assertTrue(second.getSlots().getFeatures().isEmpty());
+        assertTrue(second.getSlots().getResultPhoneIds().contains("oneplus-12r"));
+        assertFalse(second.getSlots().getResultPhoneIds().contains("samsung-galaxy-a54"));
+        assertFalse(second.getMessage().startsWith("I couldn't find any phones"), second.getMessage());
+
+        ChatRequest battery = new ChatRequest("ones with battery over 5000");
+        battery.setConversationId(first.getConversationId());
+        ChatResponse third = conversationService.processMessage(battery);
+        assertEquals(30000, third.getSlots().getMaxPrice());
+        assertEquals(List.of("oneplus-12r", "redmi-note-13-pro"), third.getSlots().getResultPhoneIds().stream().sorted().toList());
+        assertFalse(third.getMessage().startsWith("I couldn't find any phones"), third.getMessage());
+    }
+
+    @Test
+    void testCompareIncludesStructuredDiff() {
+        ChatResponse response = conversationService.processMessage(new ChatRequest("Compare OnePlus 12R and Pixel 8a"));
+
+        assertEquals(List.of("oneplus-12r", "pixel-8a"), response.getComparison().getPhoneIds());
+        assertTrue(response.getMessage().contains("OnePlus 12R is cheaper"), response.getMessage());
+    }
+}
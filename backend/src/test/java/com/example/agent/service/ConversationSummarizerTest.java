@@ -0,0 +1,87 @@
+package com.example.agent.service;
+
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.conversation.ConversationStore;
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.completion.chat.ChatMessageRole;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        "openai.api.key=dummy",
+        "openai.api.model=gpt-3.5-turbo"
+})
+class ConversationSummarizerTest {
+
+    @Autowired
+    private ConversationSummarizer conversationSummarizer;
+
+    @Autowired
+    private ConversationStore conversationStore;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Test
+    void testCompactFoldsOlderTurnsIntoSummary() {
+        String conversationId = "summary-test";
+        for (int i = 0; i < 8; i++) {
+            ChatMessage user = new ChatMessage(ChatMessageRole.USER.value(), "Question " + i + " about phones under 30000");
+            ChatMessage assistant = new ChatMessage(ChatMessageRole.ASSISTANT.value(), "Answer " + i + ". More detail here.");
+            conversationStore.update(conversationId, existing ->
+                    (existing != null ? existing : new ConversationState()).withTurn(user, assistant));
+        }
+
+        conversationSummarizer.compact(conversationId);
+
+        ConversationState state = conversationStore.get(conversationId);
+        assertEquals(6, state.getMessages().size());
+        assertEquals(10, state.getSummarizedMessages());
+        assertTrue(state.getSummary().contains("Question 0 about phones under 30000"));
+        assertTrue(state.getSummary().contains("Answer 4"));
+        assertFalse(state.getSummary().contains("More detail"));
+        assertEquals("Question 5 about phones under 30000", state.getMessages().get(0).getContent());
+    }
+
+    @Test
+    void testConversationsWithoutModelAreSummarized() throws InterruptedException {
+        ChatResponse first = conversationService.processMessage(new ChatRequest("Show me phones under 30000"));
+        String conversationId = first.getConversationId();
+        for (int i = 0; i < 7; i++) {
+            ChatRequest request = new ChatRequest("Show me Samsung phones under " + (20000 + i * 1000));
+            request.setConversationId(conversationId);
+            conversationService.processMessage(request);
+        }
+
+        // Compaction runs in the background after the turn that crossed the threshold
+        ConversationState state = conversationStore.get(conversationId);
+        for (int i = 0; i < 100 && state.getSummary() == null; i++) {
+            Thread.sleep(50);
+            state = conversationStore.get(conversationId);
+        }
+        assertNotNull(state.getSummary());
+        assertTrue(state.getSummary().contains("Customer asked: Show me phones under 30000"));
+        assertEquals(16, state.getSummarizedMessages() + state.getMessages().size());
+    }
+
+    @Test
+    void testShortConversationsAreLeftAlone() {
+        String conversationId = "short-test";
+        conversationStore.update(conversationId, existing -> new ConversationState().withTurn(
+                new ChatMessage(ChatMessageRole.USER.value(), "Hi"),
+                new ChatMessage(ChatMessageRole.ASSISTANT.value(), "Hello!")));
+
+        conversationSummarizer.compact(conversationId);
+
+        ConversationState state = conversationStore.get(conversationId);
+        assertNull(state.getSummary());
+        assertEquals(2, state.getMessages().size());
+    }
+}
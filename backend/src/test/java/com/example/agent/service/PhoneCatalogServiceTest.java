@@ -0,0 +1,102 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import com.example.agent.model.Phone;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        "openai.api.key=dummy",
+        "warmup.enabled=false",
+        "catalog.sources=default=classpath:phones.json,east=classpath:catalogs/store-east.json"
+})
+class PhoneCatalogServiceTest {
+
+    @Autowired
+    private PhoneCatalogService phoneCatalogService;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Test
+    void testLoadsNamedCatalogsWithSharedDictionaries() {
+        Catalog defaultCatalog = phoneCatalogService.getCatalog();
+        Catalog east = phoneCatalogService.getCatalog("east");
+
+        assertEquals(8, defaultCatalog.size());
+        assertEquals(2, east.size());
+        assertNotEquals(defaultCatalog.getVersion(), east.getVersion());
+
+        Phone a54 = defaultCatalog.findById("samsung-galaxy-a54");
+        Phone eastA54 = east.findById("samsung-galaxy-a54");
+        // Spelled the same in both source files, stored once
+        assertSame(a54.getProcessor(), eastA54.getProcessor());
+        assertSame(a54.getFeatures().get(0), eastA54.getFeatures().get(0));
+        // Spelled differently: each keeps its own spelling, but both have the same code
+        assertEquals("Samsung", a54.getBrand());
+        assertEquals("SAMSUNG", eastA54.getBrand());
+        assertEquals("AMOLED", a54.getFeatures().get(1));
+        assertEquals("amoled", eastA54.getFeatures().get(1));
+        assertEquals(defaultCatalog.brandCode(defaultCatalog.ordinalOf(a54)), east.brandCode(east.ordinalOf(eastA54)));
+    }
+
+    @Test
+    void testEachLoadBuildsNewDictionaries() {
+        Catalog before = phoneCatalogService.getCatalog();
+
+        phoneCatalogService.loadPhones();
+
+        Catalog after = phoneCatalogService.getCatalog();
+        assertEquals(before.getVersion(), after.getVersion());
+        assertNotSame(before.getDictionaries(), after.getDictionaries());
+        assertSame(after.getDictionaries(), phoneCatalogService.getCatalog("east").getDictionaries());
+        assertEquals(before.getDictionaries().size(), after.getDictionaries().size());
+    }
+
+    @Test
+    void testSearchesRespectTheSelectedCatalog() {
+        Catalog east = phoneCatalogService.getCatalog("east");
+
+        assertEquals(2, phoneCatalogService.searchByBrand(east, "samsung").size());
+        assertEquals(1, phoneCatalogService.searchByBrand("samsung").size());
+        assertEquals(List.of("Samsung Galaxy M34"), phoneCatalogService.searchByPriceRange(east, 20000).stream()
+                .map(Phone::getName).collect(Collectors.toList()));
+    }
+
+    @Test
+    void testRepeatedSearchesShareCachedResults() {
+        Catalog east = phoneCatalogService.getCatalog("east");
+
+        List<Phone> samsung = phoneCatalogService.searchByBrand(east, "Samsung");
+        assertSame(samsung, phoneCatalogService.searchByBrand(east, " samsung "));
+        assertNotSame(samsung, phoneCatalogService.searchByBrand("samsung"));
+        assertSame(phoneCatalogService.searchByPriceRange(east, 20000), phoneCatalogService.searchByPriceRange(east, 20000));
+        assertSame(east.getPhones(), phoneCatalogService.getAllPhones(east));
+        assertThrows(UnsupportedOperationException.class, () -> samsung.remove(0));
+    }
+
+    @Test
+    void testUnknownCatalogIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> phoneCatalogService.getCatalog("west"));
+    }
+
+    @Test
+    void testChatUsesRequestedCatalog() {
+        ChatRequest request = new ChatRequest("Show me phones under 20000");
+        request.setCatalog("east");
+        ChatResponse response = conversationService.processMessage(request);
+
+        assertEquals(phoneCatalogService.getCatalog("east").getVersion(), response.getCatalogVersion());
+        assertEquals(List.of("samsung-galaxy-m34"), response.getSlots().getResultPhoneIds());
+    }
+}
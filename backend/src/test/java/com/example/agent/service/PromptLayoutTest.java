@@ -0,0 +1,81 @@
+package com.example.agent.service;
+
+import com.example.agent.catalog.Catalog;
+import com.example.agent.conversation.ConversationState;
+import com.example.agent.model.Phone;
+import com.theokanning.openai.completion.chat.ChatMessage;
+import com.theokanning.openai.completion.chat.ChatMessageRole;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PromptLayoutTest {
+
+    private final PromptLayout promptLayout = new PromptLayout(200, 16);
+
+    // File order differs from ID order on purpose
+    private final Catalog catalog = new Catalog("v1", List.of(
+            phone("pixel-8a", "Pixel 8a", 32999, "64MP", "4385mAh", "OIS"),
+            phone("galaxy-a54", "Galaxy A54", 27999, "50MP", "5000mAh", "AMOLED"),
+            phone("oneplus-12r", "OnePlus 12R", 29999, "50MP", "5500mAh", "fast charging")));
+
+    @Test
+    void testStableSectionsComeFirst() {
+        List<ChatMessage> messages = promptLayout.build(catalog, null, "recommend",
+                List.of(catalog.getPhones().get(0)), null, "Recommend a camera phone");
+
+        assertEquals(PromptLayout.PREAMBLE, messages.get(0).getContent());
+        String catalogSection = messages.get(1).getContent();
+        assertTrue(catalogSection.startsWith("Catalog default version v1:"));
+        assertTrue(catalogSection.indexOf("Galaxy A54") < catalogSection.indexOf("OnePlus 12R"));
+        assertTrue(catalogSection.indexOf("OnePlus 12R") < catalogSection.indexOf("Pixel 8a"));
+
+        ChatMessage requestSection = messages.get(2);
+        assertEquals(ChatMessageRole.SYSTEM.value(), requestSection.getRole());
+        assertTrue(requestSection.getContent().contains("- Pixel 8a"));
+        assertTrue(requestSection.getContent().contains("Recommend phones"));
+        assertEquals("Recommend a camera phone", messages.get(3).getContent());
+    }
+
+    @Test
+    void testNextTurnReusesEverythingUpToTheNewHistory() {
+        List<ChatMessage> first = promptLayout.build(catalog, null, "recommend",
+                catalog.getPhones(), null, "Recommend a phone");
+        PromptLayout.PrefixReport firstReport = promptLayout.recordPrefix("c1", first);
+        assertEquals(0, firstReport.getSharedPrefixChars());
+
+        ConversationState state = new ConversationState().withTurn(first.get(first.size() - 1),
+                new ChatMessage(ChatMessageRole.ASSISTANT.value(), "Try the Pixel 8a."));
+        List<ChatMessage> second = promptLayout.build(catalog, state, "search_by_price",
+                List.of(catalog.getPhones().get(1)), null, "Anything cheaper?");
+        PromptLayout.PrefixReport secondReport = promptLayout.recordPrefix("c1", second);
+
+        long stable = first.get(0).getContent().length() + first.get(1).getContent().length();
+        assertEquals(stable, secondReport.getSharedPrefixChars());
+
+        // Another conversation's first prompt is compared with the latest prompt overall
+        List<ChatMessage> other = promptLayout.build(catalog, null, "recommend",
+                catalog.getPhones(), null, "Recommend a phone");
+        assertEquals(stable, promptLayout.recordPrefix("c2", other).getSharedPrefixChars());
+        // Its second identical prompt is fully shared
+        PromptLayout.PrefixReport repeat = promptLayout.recordPrefix("c2", other);
+        assertEquals(repeat.getPromptChars(), repeat.getSharedPrefixChars());
+    }
+
+    @Test
+    void testHistoryIsTrimmedInSteps() {
+        assertEquals(0, PromptLayout.historyStart(10));
+        assertEquals(6, PromptLayout.historyStart(11));
+        assertEquals(6, PromptLayout.historyStart(16));
+        assertEquals(12, PromptLayout.historyStart(17));
+    }
+
+    private static Phone phone(String id, String name, int price, String camera, String battery, String... features) {
+        Phone phone = new Phone(name, name.split(" ")[0], price, camera, battery, Arrays.asList(features));
+        phone.setId(id);
+        return phone;
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.agent.service;
+
+import com.example.agent.service.ResponseRouter.Route;
+import com.example.agent.service.ResponseRouter.Tier;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseRouterTest {
+
+    private static ResponseRouter router(long maxLatencyMs, long tokensPerMinute) {
+        return new ResponseRouter("list_all,search_by_price", "compare,recommend", 15,
+                "why,which,better", "gpt-full", "gpt-fast", 500, 250, 0.1,
+                maxLatencyMs, 1000, tokensPerMinute);
+    }
+
+    @Test
+    void testRoutesByIntentAndComplexity() {
+        ResponseRouter router = router(8000, 0);
+
+        assertEquals(Tier.TEMPLATE, router.route("list_all", "show all phones", true).getTier());
+        assertEquals(Tier.TEMPLATE, router.route("search_by_price", "phones under 20000", true).getTier());
+
+        Route recommend = router.route("recommend", "recommend a phone", true);
+        assertEquals(Tier.FULL_MODEL, recommend.getTier());
+        assertEquals("gpt-full", recommend.getModel());
+        assertEquals(500, recommend.getMaxTokens());
+
+        Route simple = router.route("general", "tell me about the pixel", true);
+        assertEquals(Tier.FAST_MODEL, simple.getTier());
+        assertEquals("gpt-fast", simple.getModel());
+        assertEquals(250, simple.getMaxTokens());
+
+        assertEquals(Tier.FULL_MODEL, router.route("general", "which one lasts longer", true).getTier());
+        assertEquals("model_unavailable", router.route("recommend", "recommend a phone", false).getReason());
+    }
+
+    @Test
+    void testSlowUpstreamStepsDownATier() {
+        ResponseRouter router = router(1000, 0);
+        Route full = router.route("recommend", "recommend a phone", true);
+        router.recordCall(full, 5_000_000_000L, 2000, 400);
+
+        Route next = router.route("recommend", "recommend a phone", true);
+        assertEquals(Tier.FAST_MODEL, next.getTier());
+        assertEquals("latency", next.getReason());
+
+        router.recordCall(next, 5_000_000_000L, 2000, 400);
+        assertEquals(Tier.TEMPLATE, router.route("general", "hello there", true).getTier());
+    }
+
+    @Test
+    void testSpentBudgetStepsDownUntilTheWindowRolls() {
+        ResponseRouter router = router(8000, 1000);
+        long now = 1_000_000L;
+        Route full = router.route("recommend", "recommend a phone", true, now);
+        assertEquals(Tier.FULL_MODEL, full.getTier());
+
+        // 1000 estimated tokens use up the minute's budget
+        router.recordCall(full, 1_000_000L, 3000, 1000);
+        Route exhausted = router.route("recommend", "recommend a phone", true, System.currentTimeMillis());
+        assertEquals(Tier.TEMPLATE, exhausted.getTier());
+        assertEquals("budget", exhausted.getReason());
+
+        assertEquals(Tier.FULL_MODEL, router.route("recommend", "recommend a phone", true,
+                System.currentTimeMillis() + 61_000).getTier());
+    }
+}
@@ -0,0 +1,49 @@
+package com.example.agent.service;
+
+import com.example.agent.model.Phone;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        "openai.api.key=dummy",
+        "openai.api.model=gpt-3.5-turbo"
+})
+class SemanticSearchServiceTest {
+
+    @Autowired
+    private SemanticSearchService semanticSearchService;
+
+    @Autowired
+    private PhoneCatalogService phoneCatalogService;
+
+    @Test
+    void testOpenEndedQueryReturnsSmallerRankedList() {
+        List<Phone> phones = semanticSearchService.search("a phone for my mom who mostly takes photos", 3);
+
+        assertFalse(phones.isEmpty());
+        assertTrue(phones.size() <= 3);
+        assertTrue(phones.size() < phoneCatalogService.getAllPhones().size());
+    }
+
+    @Test
+    void testCameraQueryPrefersCameraPhones() {
+        List<Phone> phones = semanticSearchService.search("great camera for portrait photography", 2);
+
+        assertFalse(phones.isEmpty());
+        assertTrue(phones.stream().anyMatch(p -> p.getName().equals("Vivo V29") || p.getName().equals("Redmi Note 13 Pro")));
+    }
+
+    @Test
+    void testUnrelatedQueryReturnsNothing() {
+        List<Phone> phones = semanticSearchService.search("hello there", 5);
+
+        assertTrue(phones.isEmpty());
+    }
+}
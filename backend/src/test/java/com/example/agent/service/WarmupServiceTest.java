@@ -0,0 +1,50 @@
+package com.example.agent.service;
+
+import com.example.agent.conversation.ConversationStore;
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest
+@TestPropertySource(properties = {
+        "openai.api.key=dummy",
+        "warmup.enabled=false",
+        "warmup.passes=3"
+})
+class WarmupServiceTest {
+
+    @Autowired
+    private WarmupService warmupService;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @Autowired
+    private ConversationStore conversationStore;
+
+    @Test
+    void testReplayReportsStatisticsAndBecomesReady() {
+        warmupService.run();
+
+        assertEquals(WarmupService.Status.COMPLETE, warmupService.getStatus());
+        assertTrue(warmupService.isReady());
+        assertEquals(Status.UP, warmupService.health().getStatus());
+        assertEquals(3, warmupService.getStatistics().get("passes"));
+        assertEquals(3 * WarmupService.CORPUS.size(), warmupService.getStatistics().get("turns"));
+        assertTrue(warmupService.getStatistics().containsKey("lastPassP99Micros"));
+    }
+
+    @Test
+    void testWarmUpTurnsLeaveNoConversationState() {
+        ChatResponse response = conversationService.warmUp(new ChatRequest("Show me phones under 30000"));
+
+        assertNotNull(response.getSlots());
+        assertFalse(conversationStore.contains(response.getConversationId()));
+    }
+}
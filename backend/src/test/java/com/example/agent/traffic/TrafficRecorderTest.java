@@ -0,0 +1,78 @@
+package com.example.agent.traffic;
+
+import com.example.agent.model.ChatRequest;
+import com.example.agent.model.ChatResponse;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TrafficRecorderTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testRecordsSanitizedTurnsUnderPseudonyms() throws IOException {
+        TrafficRecorder recorder = new TrafficRecorder(true, directory.toString(), 64, 100);
+        recorder.start();
+        // A new conversation only gets its ID in the response
+        recorder.record(new ChatRequest("Phones under 30000, mail me at jane.doe@example.com"), response("conv-a"),
+                System.currentTimeMillis());
+        ChatRequest followUp = new ChatRequest("Call +91 98765 43210 about <b>Pixel 8a</b>");
+        followUp.setConversationId("conv-a");
+        recorder.record(followUp, response("conv-a"), System.currentTimeMillis());
+        recorder.record(new ChatRequest("Best camera phone"), response("conv-b"), System.currentTimeMillis());
+        recorder.stop();
+
+        List<RecordedTurn> turns;
+        try (Stream<Path> files = Files.list(directory)) {
+            turns = TrafficReplay.readRecording(files.findFirst().orElseThrow());
+        }
+        assertEquals(3, turns.size());
+        assertEquals("s1", turns.get(0).getSession());
+        assertEquals(0, turns.get(0).getTurn());
+        assertEquals("Phones under 30000, mail me at [email]", turns.get(0).getMessage());
+        assertEquals("s1", turns.get(1).getSession());
+        assertEquals(1, turns.get(1).getTurn());
+        assertEquals("Call [number] about Pixel 8a", turns.get(1).getMessage());
+        assertEquals("s2", turns.get(2).getSession());
+        assertEquals(0, turns.get(2).getTurn());
+        assertEquals("recommend", turns.get(2).getIntent());
+    }
+
+    @Test
+    void testRecordsNothingWhenDisabled() throws IOException {
+        TrafficRecorder recorder = new TrafficRecorder(false, directory.toString(), 64, 100);
+        recorder.start();
+        recorder.record(new ChatRequest("Best camera phone"), response("conv-a"), System.currentTimeMillis());
+        recorder.stop();
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test
+    void testReportsNearestRankPercentiles() {
+        long[] latencies = {10, 20, 30, 40, 50, 60, 70, 80, 90, 100};
+
+        assertEquals(50, ReplayReport.percentile(latencies, 50));
+        assertEquals(90, ReplayReport.percentile(latencies, 90));
+        assertEquals(100, ReplayReport.percentile(latencies, 99));
+        assertEquals(0, ReplayReport.percentile(new long[0], 50));
+    }
+
+    private static ChatResponse response(String conversationId) {
+        ChatResponse response = new ChatResponse();
+        response.setConversationId(conversationId);
+        response.setIntent("recommend");
+        return response;
+    }
+}
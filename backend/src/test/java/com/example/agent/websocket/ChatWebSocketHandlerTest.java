@@ -0,0 +1,202 @@
+package com.example.agent.websocket;
+
+import com.example.agent.service.PhoneCatalogService;
+import com.example.agent.traffic.TrafficReplay;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "openai.api.key=",
+        "warmup.enabled=false",
+        "analytics.enabled=false"
+})
+class ChatWebSocketHandlerTest {
+
+    // Streams each word of its reply as a delta, like the OpenAI API
+    private static HttpServer model;
+    private static Path regionalCatalog;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PhoneCatalogService phoneCatalogService;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        model = TrafficReplay.startStub(0, 0);
+        regionalCatalog = Files.createTempFile("store-east", ".json");
+        try (InputStream in = new ClassPathResource("catalogs/store-east.json").getInputStream()) {
+            Files.write(regionalCatalog, in.readAllBytes());
+        }
+        registry.add("openai.api.base-url", () -> "http://localhost:" + model.getAddress().getPort());
+        registry.add("catalog.sources", () -> "default=classpath:phones.json,east=file:" + regionalCatalog);
+    }
+
+    @AfterAll
+    static void stopModel() throws IOException {
+        model.stop(0);
+        Files.deleteIfExists(regionalCatalog);
+    }
+
+    @Test
+    void testMultipleTurnsShareOneConversation() throws Exception {
+        BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        WebSocketSession session = connect("compact=true", frames);
+        try {
+            JsonNode opened = next(frames);
+            assertEquals("session", opened.get("type").asText());
+            String conversationId = opened.get("conversationId").asText();
+            assertNotNull(opened.get("catalogVersion"));
+
+            session.sendMessage(new TextMessage("{\"message\":\"Recommend a Samsung phone\"}"));
+            JsonNode first = awaitReply(frames, 1);
+            assertEquals(conversationId, first.path("response").path("conversationId").asText());
+            int phonesSent = first.path("response").path("phones").size();
+            assertTrue(phonesSent > 0);
+
+            // Plain text frames are accepted too; phones already sent on this connection are not repeated
+            session.sendMessage(new TextMessage("Recommend a Samsung phone"));
+            JsonNode second = awaitReply(frames, 2);
+            assertEquals(conversationId, second.path("response").path("conversationId").asText());
+            assertEquals(0, second.path("response").path("phones").size());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    void testStreamedDeltasArriveExactlyOnce() throws Exception {
+        BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        WebSocketSession session = connect("", frames);
+        try {
+            assertEquals("session", next(frames).get("type").asText());
+
+            session.sendMessage(new TextMessage("Which phone has the best camera?"));
+            List<String> deltas = new ArrayList<>();
+            JsonNode reply = awaitReply(frames, 1, deltas);
+
+            assertEquals(TrafficReplay.STUB_REPLY, reply.path("response").path("message").asText());
+            assertEquals(List.of(TrafficReplay.STUB_REPLY.split("(?<= )")), deltas);
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    void testCatalogFramePushedWhenSourceChanges() throws Exception {
+        BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        WebSocketSession session = connect("catalog=east", frames);
+        try {
+            String version = next(frames).get("catalogVersion").asText();
+
+            ArrayNode phones = (ArrayNode) objectMapper.readTree(regionalCatalog.toFile());
+            phones.remove(phones.size() - 1);
+            objectMapper.writeValue(regionalCatalog.toFile(), phones);
+            // Coarse file system clocks could otherwise hide the change
+            Files.setLastModifiedTime(regionalCatalog, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+            phoneCatalogService.reloadIfChanged();
+
+            JsonNode pushed = next(frames);
+            assertEquals("catalog", pushed.get("type").asText());
+            assertNotEquals(version, pushed.get("catalogVersion").asText());
+            assertEquals(phoneCatalogService.getCatalog("east").getVersion(), pushed.get("catalogVersion").asText());
+            assertEquals(phones.size(), phoneCatalogService.getCatalog("east").size());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    void testUnknownCatalogClosesConnection() throws Exception {
+        BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        WebSocketSession session = connect("catalog=nowhere", frames);
+
+        JsonNode error = next(frames);
+        assertEquals("error", error.get("type").asText());
+        assertTrue(error.get("error").asText().contains("nowhere"));
+        for (int i = 0; i < 50 && session.isOpen(); i++) {
+            Thread.sleep(20);
+        }
+        assertFalse(session.isOpen());
+    }
+
+    private WebSocketSession connect(String query, BlockingQueue<JsonNode> frames) throws Exception {
+        TextWebSocketHandler handler = new TextWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+                frames.add(objectMapper.readTree(message.getPayload()));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            }
+        };
+        return new StandardWebSocketClient()
+                .execute(handler, "ws://localhost:" + port + "/ws/chat?" + query)
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    // Deltas for a turn must all arrive before its reply
+    private JsonNode awaitReply(BlockingQueue<JsonNode> frames, int turn) throws InterruptedException {
+        return awaitReply(frames, turn, new ArrayList<>());
+    }
+
+    private JsonNode awaitReply(BlockingQueue<JsonNode> frames, int turn, List<String> deltas) throws InterruptedException {
+        while (true) {
+            JsonNode frame = next(frames);
+            assertEquals(turn, frame.get("turn").asInt());
+            if ("delta".equals(frame.get("type").asText())) {
+                deltas.add(frame.get("text").asText());
+                continue;
+            }
+            if ("replace".equals(frame.get("type").asText())) {
+                deltas.clear();
+                deltas.add(frame.get("text").asText());
+                continue;
+            }
+            assertEquals("reply", frame.get("type").asText());
+            assertEquals(frame.path("response").path("message").asText(), String.join("", deltas));
+            return frame;
+        }
+    }
+
+    private static JsonNode next(BlockingQueue<JsonNode> frames) throws InterruptedException {
+        JsonNode frame = frames.poll(10, TimeUnit.SECONDS);
+        assertNotNull(frame, "timed out waiting for a frame");
+        return frame;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.agent.websocket;
+
+import com.example.agent.traffic.TrafficReplay;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.client.standard.StandardWebSocketClient;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// The model streams too slowly to finish before generation times out
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@TestPropertySource(properties = {
+        "openai.api.key=",
+        "warmup.enabled=false",
+        "analytics.enabled=false",
+        "pipeline.stages.generation.timeout-ms=1000"
+})
+class ChatWebSocketStreamTimeoutTest {
+
+    private static HttpServer model;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        model = TrafficReplay.startStub(0, 0, 300);
+        registry.add("openai.api.base-url", () -> "http://localhost:" + model.getAddress().getPort());
+    }
+
+    @AfterAll
+    static void stopModel() {
+        model.stop(0);
+    }
+
+    @Test
+    void testTimedOutStreamIsReplacedByFallback() throws Exception {
+        BlockingQueue<JsonNode> frames = new LinkedBlockingQueue<>();
+        WebSocketSession session = connect(frames);
+        try {
+            assertEquals("session", next(frames).get("type").asText());
+
+            session.sendMessage(new TextMessage("Which phone has the best camera?"));
+            List<String> deltas = new ArrayList<>();
+            JsonNode frame;
+            while ("delta".equals((frame = next(frames)).get("type").asText())) {
+                deltas.add(frame.get("text").asText());
+            }
+            assertFalse(deltas.isEmpty());
+            assertTrue(TrafficReplay.STUB_REPLY.startsWith(String.join("", deltas)));
+
+            assertEquals("replace", frame.get("type").asText());
+            String fallback = frame.get("text").asText();
+            assertNotEquals(TrafficReplay.STUB_REPLY, fallback);
+
+            // Nothing from the abandoned stream may follow the fallback
+            JsonNode reply = next(frames);
+            assertEquals("reply", reply.get("type").asText());
+            assertEquals(fallback, reply.path("response").path("message").asText());
+            Thread.sleep(1000);
+            assertNull(frames.poll());
+        } finally {
+            session.close();
+        }
+    }
+
+    private WebSocketSession connect(BlockingQueue<JsonNode> frames) throws Exception {
+        TextWebSocketHandler handler = new TextWebSocketHandler() {
+            @Override
+            protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+                frames.add(objectMapper.readTree(message.getPayload()));
+            }
+
+            @Override
+            public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+            }
+        };
+        return new StandardWebSocketClient()
+                .execute(handler, "ws://localhost:" + port + "/ws/chat")
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    private static JsonNode next(BlockingQueue<JsonNode> frames) throws InterruptedException {
+        JsonNode frame = frames.poll(10, TimeUnit.SECONDS);
+        assertNotNull(frame, "timed out waiting for a frame");
+        return frame;
+    }
+}